@@ -2,6 +2,7 @@
 import argparse
 import base64
 import datetime
+import gzip
 import json
 import os
 import re
@@ -36,6 +37,36 @@ def sanitize_name(value: str) -> str:
     return value or "unknown"
 
 
+def answer_text(content, content_gz):
+    """答案默认以 gzip 压缩存储在 content_gz，旧数据或 text 模式为明文 content"""
+    if content is not None:
+        return str(content)
+    if content_gz is None:
+        return None
+    if hasattr(content_gz, "getBytes"):  # java.sql.Blob
+        content_gz = content_gz.getBytes(1, int(content_gz.length()))
+    return gzip.decompress(bytes(content_gz)).decode("utf-8")
+
+
+def answer_content_query(cur):
+    """内容存放在 answer_contents 表；旧版本备份中内容列仍在 answers 表上"""
+    cur.execute(
+        "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = CURRENT_SCHEMA AND TABLE_NAME = 'ANSWER_CONTENTS'"
+    )
+    if cur.fetchone()[0]:
+        return (
+            "SELECT c.content, c.content_gz FROM answers a JOIN answer_contents c ON c.answer_id = a.id "
+            "WHERE a.user_id = ? AND a.question_id = ?"
+        )
+    cur.execute(
+        "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = CURRENT_SCHEMA "
+        "AND TABLE_NAME = 'ANSWERS' AND COLUMN_NAME = 'CONTENT_GZ'"
+    )
+    if cur.fetchone()[0]:
+        return "SELECT content, content_gz FROM answers WHERE user_id = ? AND question_id = ?"
+    return "SELECT content, NULL FROM answers WHERE user_id = ? AND question_id = ?"
+
+
 def load_data_json(path: Path):
     with path.open("r", encoding="utf-8") as f:
         data = json.load(f)
@@ -179,6 +210,7 @@ def main():
     cur.execute("SELECT id, title FROM questions")
     question_rows = cur.fetchall()
     question_id_map = {row[1]: row[0] for row in question_rows}
+    content_sql = answer_content_query(cur)
 
     today = datetime.datetime.now().strftime("%y%m%d")
     base_dir = Path(args.out_dir) / f"answer_{today}"
@@ -204,14 +236,11 @@ def main():
                 if question_id is None:
                     continue
 
-                cur.execute(
-                    "SELECT content FROM answers WHERE user_id = ? AND question_id = ?",
-                    (user_id, question_id),
-                )
+                cur.execute(content_sql, (user_id, question_id))
                 rows = cur.fetchall()
                 if not rows:
                     continue
-                content = rows[0][0]
+                content = answer_text(rows[0][0], rows[0][1])
                 if not content or not str(content).strip():
                     continue
 
@@ -1,6 +1,5 @@
 package com.example.quiz;
 
-import com.example.quiz.model.Answer;
 import com.example.quiz.model.Chapter;
 import com.example.quiz.model.Question;
 import com.example.quiz.model.User;
@@ -8,6 +7,8 @@ import com.example.quiz.repository.AnswerRepository;
 import com.example.quiz.repository.ChapterRepository;
 import com.example.quiz.repository.QuestionRepository;
 import com.example.quiz.repository.UserRepository;
+import com.example.quiz.service.AnswerCache;
+import com.example.quiz.service.CatalogVersion;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.ObjectProvider;
@@ -82,6 +83,8 @@ public class QuizLoginDemoApplication {
                                               ChapterRepository chapterRepository,
                                               QuestionRepository questionRepository,
                                               AnswerRepository answerRepository,
+                                              ObjectProvider<AnswerCache> answerCacheProvider,
+                                              ObjectProvider<CatalogVersion> catalogVersionProvider,
                                               PlatformTransactionManager transactionManager) {
         return args -> {
             boolean enabled = env.getProperty("app.data-sync.enabled", Boolean.class, true);
@@ -100,6 +103,8 @@ public class QuizLoginDemoApplication {
             ObjectMapper objectMapper = objectMapperProvider.getIfAvailable(ObjectMapper::new);
             LOGGER.info("Data sync start: location={}", location);
 
+            List<String> deletedUsernames = new ArrayList<>();
+            List<Long> deletedQuestionIds = new ArrayList<>();
             new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
                 JsonNode root;
                 try (InputStream is = resource.getInputStream()) {
@@ -126,16 +131,15 @@ public class QuizLoginDemoApplication {
                         .collect(Collectors.toMap(User::getUsername, u -> u, (a, b) -> a, LinkedHashMap::new));
 
                 Set<String> desiredUsernames = desiredUsers.keySet();
-                int deletedUserCount = 0;
-                for (User existing : new ArrayList<>(existingUsersByUsername.values())) {
-                    if (!desiredUsernames.contains(existing.getUsername())) {
-                        List<Answer> answers = answerRepository.findByUser(existing);
-                        if (!answers.isEmpty()) {
-                            answerRepository.deleteAll(answers);
-                        }
-                        userRepository.delete(existing);
-                        deletedUserCount++;
-                    }
+                List<User> staleUsers = existingUsersByUsername.values().stream()
+                        .filter(existing -> !desiredUsernames.contains(existing.getUsername()))
+                        .collect(Collectors.toList());
+                int deletedUserCount = staleUsers.size();
+                if (!staleUsers.isEmpty()) {
+                    // 批量删除，语句数与待删除用户/答案数量无关
+                    answerRepository.deleteByUserIn(staleUsers);
+                    userRepository.deleteAllInBatch(staleUsers);
+                    staleUsers.forEach(u -> deletedUsernames.add(u.getUsername()));
                 }
 
                 int upsertedUsers = 0;
@@ -203,6 +207,8 @@ public class QuizLoginDemoApplication {
                                 question.setQuestionNumber(questionNumber);
                                 question.setDescription(qDescription);
                                 question.setTotalScore(totalScore);
+                                JsonNode rubricNode = q.get("rubric");
+                                question.setRubric(rubricNode != null && rubricNode.isObject() ? rubricNode.toString() : null);
                                 question.setSortOrder(questionOrder);
                                 question.setChapter(chapter);
                                 questionRepository.save(question);
@@ -216,14 +222,9 @@ public class QuizLoginDemoApplication {
                         .collect(Collectors.toList());
                 int deletedQuestions = extraQuestions.size();
                 if (!extraQuestions.isEmpty()) {
-                    List<Answer> answersToDelete = new ArrayList<>();
-                    for (Question q : extraQuestions) {
-                        answersToDelete.addAll(answerRepository.findByQuestion(q));
-                    }
-                    if (!answersToDelete.isEmpty()) {
-                        answerRepository.deleteAll(answersToDelete);
-                    }
-                    questionRepository.deleteAll(extraQuestions);
+                    answerRepository.deleteByQuestionIn(extraQuestions);
+                    questionRepository.deleteAllInBatch(extraQuestions);
+                    extraQuestions.forEach(q -> deletedQuestionIds.add(q.getId()));
                 }
 
                 List<Chapter> extraChapters = chapterRepository.findAll().stream()
@@ -231,12 +232,18 @@ public class QuizLoginDemoApplication {
                         .collect(Collectors.toList());
                 int deletedChapters = extraChapters.size();
                 if (!extraChapters.isEmpty()) {
-                    chapterRepository.deleteAll(extraChapters);
+                    chapterRepository.deleteAllInBatch(extraChapters);
                 }
 
                 LOGGER.info("Data sync done: users(upserted={}, deleted={}), chapters(desired={}, deleted={}), questions(desired={}, deleted={})",
                         upsertedUsers, deletedUserCount, desiredChapters, deletedChapters, desiredQuestions, deletedQuestions);
             });
+            // 提交后再失效，避免并发读取在提交前把旧答案重新放回缓存
+            answerCacheProvider.ifAvailable(answerCache -> {
+                answerCache.invalidateUsers(deletedUsernames);
+                answerCache.invalidateQuestions(deletedQuestionIds);
+            });
+            catalogVersionProvider.ifAvailable(CatalogVersion::bump);
         };
     }
 }
@@ -0,0 +1,22 @@
+package com.example.quiz.backup;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 备份清单：与备份 zip 同目录保存为 {@code <zip>.manifest.json}
+ * 记录归档整体 SHA-256、各条目的大小与 CRC，以及校验时读出的各表行数
+ */
+public record BackupManifest(String archive,
+                             String createdAt,
+                             long sizeBytes,
+                             String sha256,
+                             long durationMillis,
+                             List<Entry> entries,
+                             Map<String, Long> rowCounts) {
+
+    public static final String SUFFIX = ".manifest.json";
+
+    public record Entry(String name, long size, long crc) {
+    }
+}
@@ -0,0 +1,358 @@
+package com.example.quiz.backup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 去重分块备份仓库
+ * <pre>
+ * repository/
+ *   chunks/ab/abcdef...   按 SHA-256 命名、Deflate 压缩的唯一块
+ *   snapshots/pocdb_x.json 快照清单：每个文件由哪些块按顺序组成
+ *   tmp/                   写入中的临时文件
+ * </pre>
+ * 相同内容的块只保存一次，磁盘占用随实际变化量增长；快照清单最后写入，
+ * 因此只要清单存在，它引用的块一定已完整落盘
+ * 写入、恢复与回收都不是线程安全的，调用方需保证同一时间只有一个操作（由备份单线程执行器保证）
+ */
+public final class BackupRepository {
+
+    private static final String SNAPSHOT_SUFFIX = ".json";
+
+    private final Path chunksDir;
+    private final Path snapshotsDir;
+    private final Path tmpDir;
+    private final ObjectMapper objectMapper;
+    private final int threads;
+
+    public record ChunkRef(String hash, int size) {
+    }
+
+    public record FileEntry(String name, long size, List<ChunkRef> chunks) {
+    }
+
+    public record Snapshot(String name,
+                           String createdAt,
+                           String archiveSha256,
+                           Map<String, Long> rowCounts,
+                           List<FileEntry> files,
+                           int newChunks,
+                           long addedBytes) {
+    }
+
+    public record GcResult(int removedSnapshots, int removedChunks, long freedBytes, long repositoryBytes) {
+    }
+
+    public BackupRepository(Path root, ObjectMapper objectMapper, int threads) {
+        this.chunksDir = root.resolve("chunks");
+        this.snapshotsDir = root.resolve("snapshots");
+        this.tmpDir = root.resolve("tmp");
+        this.objectMapper = objectMapper;
+        this.threads = Math.max(1, threads);
+    }
+
+    public Path getTmpDir() throws IOException {
+        return Files.createDirectories(tmpDir);
+    }
+
+    /**
+     * 把目录中的文件分块写入仓库并生成快照
+     * 分块按顺序读取，哈希、压缩与写盘并行；同时在途的块数受限，内存占用约为 2 × 线程数 × 最大块大小
+     */
+    public Snapshot store(String name, Path sourceDir, List<String> fileNames, String archiveSha256,
+                          Map<String, Long> rowCounts, IoThrottle throttle) throws IOException {
+        Map<String, Path> files = new LinkedHashMap<>();
+        for (String fileName : fileNames) {
+            files.put(fileName, sourceDir.resolve(fileName));
+        }
+        return store(name, files, archiveSha256, rowCounts, throttle);
+    }
+
+    /**
+     * @param sources 快照中的文件名（可含子目录，如 images/x.png）到源文件的映射，按顺序写入
+     */
+    public Snapshot store(String name, Map<String, Path> sources, String archiveSha256,
+                          Map<String, Long> rowCounts, IoThrottle throttle) throws IOException {
+        Files.createDirectories(chunksDir);
+        Files.createDirectories(snapshotsDir);
+        Files.createDirectories(tmpDir);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Semaphore inFlight = new Semaphore(threads * 2);
+        try {
+            List<FileEntry> files = new ArrayList<>();
+            int newChunks = 0;
+            long addedBytes = 0;
+            for (Map.Entry<String, Path> source : sources.entrySet()) {
+                String fileName = source.getKey();
+                List<Future<StoredChunk>> futures = new ArrayList<>();
+                try (InputStream in = new ThrottledFilePath.ThrottledInputStream(
+                        Files.newInputStream(source.getValue()), throttle)) {
+                    ContentDefinedChunker chunker = new ContentDefinedChunker(in);
+                    byte[] chunk;
+                    while ((chunk = chunker.next()) != null) {
+                        acquire(inFlight);
+                        byte[] data = chunk;
+                        futures.add(executor.submit(() -> {
+                            try {
+                                return writeChunk(data);
+                            } finally {
+                                inFlight.release();
+                            }
+                        }));
+                    }
+                }
+                List<ChunkRef> refs = new ArrayList<>(futures.size());
+                long size = 0;
+                for (Future<StoredChunk> future : futures) {
+                    StoredChunk stored = await(future);
+                    refs.add(stored.ref());
+                    size += stored.ref().size();
+                    if (stored.written()) {
+                        newChunks++;
+                        addedBytes += stored.storedBytes();
+                    }
+                }
+                files.add(new FileEntry(fileName, size, refs));
+            }
+
+            Snapshot snapshot = new Snapshot(name, Instant.now().toString(), archiveSha256, rowCounts,
+                    files, newChunks, addedBytes);
+            Path tmp = Files.createTempFile(tmpDir, name, SNAPSHOT_SUFFIX);
+            objectMapper.writeValue(tmp.toFile(), snapshot);
+            Files.move(tmp, snapshotsDir.resolve(name + SNAPSHOT_SUFFIX),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return snapshot;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 并行恢复快照到目标目录：各块解压后按偏移量直接写入目标文件，并校验哈希
+     */
+    public Snapshot restore(String name, Path targetDir) throws IOException {
+        Snapshot snapshot = readSnapshot(name);
+        Files.createDirectories(targetDir);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (FileEntry file : snapshot.files()) {
+                Path target = targetDir.resolve(file.name()).normalize();
+                if (!target.startsWith(targetDir)) {
+                    throw new IOException("Illegal file name in snapshot: " + file.name());
+                }
+                Files.createDirectories(target.getParent());
+                try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    List<Future<?>> futures = new ArrayList<>(file.chunks().size());
+                    long offset = 0;
+                    for (ChunkRef ref : file.chunks()) {
+                        long position = offset;
+                        futures.add(executor.submit(() -> {
+                            writeAt(channel, readChunk(ref), position);
+                            return null;
+                        }));
+                        offset += ref.size();
+                    }
+                    for (Future<?> future : futures) {
+                        await(future);
+                    }
+                }
+            }
+            return snapshot;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public List<Snapshot> listSnapshots() throws IOException {
+        if (!Files.isDirectory(snapshotsDir)) {
+            return List.of();
+        }
+        List<Snapshot> snapshots = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(snapshotsDir)) {
+            for (Path path : paths.filter(p -> p.getFileName().toString().endsWith(SNAPSHOT_SUFFIX)).toList()) {
+                snapshots.add(objectMapper.readValue(path.toFile(), Snapshot.class));
+            }
+        }
+        snapshots.sort(Comparator.comparing(Snapshot::createdAt));
+        return snapshots;
+    }
+
+    public Snapshot readSnapshot(String name) throws IOException {
+        Path path = snapshotsDir.resolve(name + SNAPSHOT_SUFFIX);
+        if (!Files.exists(path)) {
+            throw new IOException("Backup snapshot not found: " + name);
+        }
+        return objectMapper.readValue(path.toFile(), Snapshot.class);
+    }
+
+    /**
+     * 删除早于 cutoff 的快照（至少保留最新一个），再按引用计数回收不再被任何快照引用的块
+     */
+    public GcResult gc(Instant cutoff) throws IOException {
+        List<Snapshot> snapshots = listSnapshots();
+        int removedSnapshots = 0;
+        List<Snapshot> live = new ArrayList<>();
+        for (int i = 0; i < snapshots.size(); i++) {
+            Snapshot snapshot = snapshots.get(i);
+            boolean newest = i == snapshots.size() - 1;
+            if (!newest && Instant.parse(snapshot.createdAt()).isBefore(cutoff)) {
+                Files.deleteIfExists(snapshotsDir.resolve(snapshot.name() + SNAPSHOT_SUFFIX));
+                removedSnapshots++;
+            } else {
+                live.add(snapshot);
+            }
+        }
+
+        Map<String, Integer> refCounts = new HashMap<>();
+        for (Snapshot snapshot : live) {
+            for (FileEntry file : snapshot.files()) {
+                for (ChunkRef ref : file.chunks()) {
+                    refCounts.merge(ref.hash(), 1, Integer::sum);
+                }
+            }
+        }
+
+        int removedChunks = 0;
+        long freedBytes = 0;
+        long repositoryBytes = 0;
+        if (Files.isDirectory(chunksDir)) {
+            try (Stream<Path> paths = Files.walk(chunksDir)) {
+                for (Path path : paths.filter(Files::isRegularFile).toList()) {
+                    long size = Files.size(path);
+                    if (refCounts.getOrDefault(path.getFileName().toString(), 0) == 0) {
+                        Files.deleteIfExists(path);
+                        removedChunks++;
+                        freedBytes += size;
+                    } else {
+                        repositoryBytes += size;
+                    }
+                }
+            }
+        }
+        // 中断的写入可能遗留临时文件
+        if (Files.isDirectory(tmpDir)) {
+            try (Stream<Path> paths = Files.list(tmpDir)) {
+                for (Path path : paths.filter(Files::isRegularFile).toList()) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+        return new GcResult(removedSnapshots, removedChunks, freedBytes, repositoryBytes);
+    }
+
+    private record StoredChunk(ChunkRef ref, boolean written, long storedBytes) {
+    }
+
+    private StoredChunk writeChunk(byte[] data) throws IOException {
+        String hash = sha256(data);
+        ChunkRef ref = new ChunkRef(hash, data.length);
+        Path path = chunkPath(hash);
+        if (Files.exists(path)) {
+            return new StoredChunk(ref, false, 0);
+        }
+        Files.createDirectories(path.getParent());
+        Path tmp = Files.createTempFile(tmpDir, hash, ".chunk");
+        try {
+            try (OutputStream os = new DeflaterOutputStream(Files.newOutputStream(tmp), new Deflater(Deflater.BEST_SPEED), 64 * 1024)) {
+                os.write(data);
+            }
+            long storedBytes = Files.size(tmp);
+            // 同一快照内的重复块可能被两个线程同时写入：硬链接在目标已存在时失败，只有一方计为新块
+            // （rename 会静默覆盖已有文件，不能用来判断）
+            try {
+                Files.createLink(path, tmp);
+            } catch (FileAlreadyExistsException e) {
+                return new StoredChunk(ref, false, 0);
+            }
+            return new StoredChunk(ref, true, storedBytes);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private byte[] readChunk(ChunkRef ref) throws IOException {
+        byte[] data;
+        try (InputStream in = new InflaterInputStream(Files.newInputStream(chunkPath(ref.hash())))) {
+            data = in.readAllBytes();
+        }
+        if (data.length != ref.size() || !sha256(data).equals(ref.hash())) {
+            throw new IOException("Backup chunk corrupted: " + ref.hash());
+        }
+        return data;
+    }
+
+    private Path chunkPath(String hash) {
+        return chunksDir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static void writeAt(FileChannel channel, byte[] data, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void acquire(Semaphore semaphore) throws IOException {
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Backup interrupted");
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Backup interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Backup chunk task failed", e.getCause());
+        }
+    }
+}
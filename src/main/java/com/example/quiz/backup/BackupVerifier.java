@@ -0,0 +1,140 @@
+package com.example.quiz.backup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * 备份校验：一次（限速）读取归档，同时计算 SHA-256、校验各条目 CRC 并解压到临时目录，
+ * 然后以独立的只读 H2 实例打开解压出的数据库，统计每张表的行数
+ * 能打开并数出行数即说明该备份可恢复
+ */
+public final class BackupVerifier {
+
+    private static final String DB_FILE_SUFFIX = ".mv.db";
+
+    private BackupVerifier() {
+    }
+
+    public record Result(String sha256, List<BackupManifest.Entry> entries, Map<String, Long> rowCounts) {
+    }
+
+    /**
+     * 校验通过后、删除临时目录前回调，可直接使用解压出的文件（例如写入分块仓库）
+     */
+    @FunctionalInterface
+    public interface ExtractedFilesHandler {
+        void handle(Path scratchDir, Result result) throws IOException;
+    }
+
+    public static Result verify(Path archive, Path scratchDir, IoThrottle throttle) throws IOException, SQLException {
+        return verify(archive, scratchDir, throttle, (dir, result) -> {
+        });
+    }
+
+    public static Result verify(Path archive, Path scratchDir, IoThrottle throttle,
+                                ExtractedFilesHandler handler) throws IOException, SQLException {
+        MessageDigest digest = sha256();
+        List<BackupManifest.Entry> entries = new ArrayList<>();
+        String dbName = null;
+
+        Files.createDirectories(scratchDir);
+        try {
+            try (InputStream raw = new ThrottledFilePath.ThrottledInputStream(Files.newInputStream(archive), throttle);
+                 DigestInputStream digested = new DigestInputStream(raw, digest);
+                 ZipInputStream zis = new ZipInputStream(digested)) {
+                ZipEntry entry;
+                while ((entry = zis.getNextEntry()) != null) {
+                    Path target = scratchDir.resolve(entry.getName()).normalize();
+                    if (!target.startsWith(scratchDir)) {
+                        throw new IOException("Illegal entry in backup archive: " + entry.getName());
+                    }
+                    Files.createDirectories(target.getParent());
+                    long size;
+                    // ZipInputStream 读完条目时校验 CRC，不一致抛出 ZipException
+                    try (OutputStream os = Files.newOutputStream(target)) {
+                        size = zis.transferTo(os);
+                    }
+                    entries.add(new BackupManifest.Entry(entry.getName(), size, entry.getCrc()));
+                    if (entry.getName().endsWith(DB_FILE_SUFFIX)) {
+                        dbName = entry.getName().substring(0, entry.getName().length() - DB_FILE_SUFFIX.length());
+                    }
+                }
+                // 中央目录不会被 ZipInputStream 读取，读完剩余字节使摘要覆盖整个文件
+                digested.transferTo(OutputStream.nullOutputStream());
+            }
+            if (dbName == null) {
+                throw new IOException("Backup archive contains no database file: " + archive);
+            }
+            Map<String, Long> rowCounts = countRows(scratchDir.resolve(dbName));
+            Result result = new Result(HexFormat.of().formatHex(digest.digest()), entries, rowCounts);
+            handler.handle(scratchDir, result);
+            return result;
+        } finally {
+            deleteRecursively(scratchDir);
+        }
+    }
+
+    private static Map<String, Long> countRows(Path db) throws SQLException {
+        String url = "jdbc:h2:file:" + db.toAbsolutePath() + ";ACCESS_MODE_DATA=r;IFEXISTS=TRUE";
+        Map<String, Long> counts = new LinkedHashMap<>();
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement statement = connection.createStatement()) {
+            List<String> tables = new ArrayList<>();
+            try (ResultSet rs = statement.executeQuery("SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES "
+                    + "WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_TYPE = 'BASE TABLE' ORDER BY TABLE_NAME")) {
+                while (rs.next()) {
+                    tables.add(rs.getString(1));
+                }
+            }
+            if (tables.isEmpty()) {
+                throw new SQLException("Backup database contains no tables: " + db);
+            }
+            for (String table : tables) {
+                try (ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM \"" + table.replace("\"", "\"\"") + "\"")) {
+                    rs.next();
+                    counts.put(table.toLowerCase(), rs.getLong(1));
+                }
+            }
+        }
+        return counts;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.quiz.backup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 内容定义分块（Gear 滚动哈希，FastCDC 思路）
+ * 切点只由附近 64 字节的内容决定，文件中间插入或改写数据只影响相邻的一两个块，
+ * 其余块的边界与哈希保持不变，从而可以跨快照去重
+ */
+final class ContentDefinedChunker {
+
+    static final int MIN_SIZE = 128 * 1024;
+    static final int MAX_SIZE = 2 * 1024 * 1024;
+
+    /** 平均块大小 2^19 = 512KB：取哈希最高 19 位全为 0 作为切点 */
+    private static final int AVG_BITS = 19;
+
+    private static final long[] GEAR = new long[256];
+
+    static {
+        // 固定种子：同一内容在任何机器、任何版本上都得到相同的切点
+        Random random = new Random(0x5EED_C0DEL);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[MAX_SIZE];
+    private int length;
+    private boolean eof;
+
+    ContentDefinedChunker(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * @return 下一个块的内容；读完时返回 null
+     */
+    byte[] next() throws IOException {
+        fill();
+        if (length == 0) {
+            return null;
+        }
+        int cut = findCut();
+        byte[] chunk = Arrays.copyOf(buffer, cut);
+        System.arraycopy(buffer, cut, buffer, 0, length - cut);
+        length -= cut;
+        return chunk;
+    }
+
+    private void fill() throws IOException {
+        while (!eof && length < MAX_SIZE) {
+            int n = in.read(buffer, length, MAX_SIZE - length);
+            if (n < 0) {
+                eof = true;
+            } else {
+                length += n;
+            }
+        }
+    }
+
+    private int findCut() {
+        if (length <= MIN_SIZE) {
+            return length;
+        }
+        long hash = 0;
+        for (int i = MIN_SIZE; i < length; i++) {
+            hash = (hash << 1) + GEAR[buffer[i] & 0xFF];
+            if (hash >>> (64 - AVG_BITS) == 0) {
+                return i + 1;
+            }
+        }
+        return length;
+    }
+}
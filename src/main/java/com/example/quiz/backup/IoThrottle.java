@@ -0,0 +1,57 @@
+package com.example.quiz.backup;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按字节速率限流：每次读写前预约对应的时间片，超前则休眠
+ * 速率 <= 0 表示不限速
+ */
+public final class IoThrottle {
+
+    /** 允许的突发量：最多提前消耗 200ms 的额度 */
+    private static final long BURST_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private final long bytesPerSecond;
+    private long nextFreeNanos = System.nanoTime();
+
+    public IoThrottle(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public static IoThrottle ofMegabytesPerSecond(double mbPerSecond) {
+        return new IoThrottle((long) (mbPerSecond * 1024 * 1024));
+    }
+
+    public static IoThrottle unlimited() {
+        return new IoThrottle(0);
+    }
+
+    public boolean isUnlimited() {
+        return bytesPerSecond <= 0;
+    }
+
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    public void acquire(long bytes) throws InterruptedIOException {
+        if (isUnlimited() || bytes <= 0) {
+            return;
+        }
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            nextFreeNanos = Math.max(nextFreeNanos, now - BURST_NANOS) + bytes * 1_000_000_000L / bytesPerSecond;
+            waitNanos = nextFreeNanos - now;
+        }
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Throttled I/O interrupted");
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.quiz.backup;
+
+import org.h2.store.fs.FilePath;
+import org.h2.store.fs.FilePathWrapper;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * H2 文件系统包装：以 "throttled:{字节每秒}:" 为前缀的路径按 {@link IoThrottle} 限速读写
+ * 用于 {@code BACKUP TO 'throttled:1048576:/path/x.zip'}，H2 边读数据文件边写 zip，
+ * 写入被限速后读取也随之放缓，备份不会占满磁盘带宽
+ * 速率编码在路径中，每个流各自限速，并发的备份互不覆盖对方的速率
+ */
+public class ThrottledFilePath extends FilePathWrapper {
+
+    public static final String SCHEME = "throttled";
+
+    /** 单次读写的最大块，避免一次预约过大的时间片 */
+    private static final int CHUNK = 64 * 1024;
+
+    private static volatile boolean registered;
+
+    public ThrottledFilePath() {
+    }
+
+    /**
+     * 注册到 H2 文件系统（幂等）
+     */
+    public static synchronized void register() {
+        if (!registered) {
+            FilePath.register(new ThrottledFilePath());
+            registered = true;
+        }
+    }
+
+    /**
+     * 按 throttle 的速率限速访问 path 的 H2 路径；不限速时速率为 0
+     */
+    public static String prefix(String path, IoThrottle throttle) {
+        return SCHEME + ":" + Math.max(0, throttle.getBytesPerSecond()) + ":" + path;
+    }
+
+    @Override
+    public String getScheme() {
+        return SCHEME;
+    }
+
+    /**
+     * 派生路径（上级目录、同目录文件等）沿用同一速率
+     */
+    @Override
+    protected String getPrefix() {
+        return SCHEME + ":" + bytesPerSecond(name) + ":";
+    }
+
+    @Override
+    protected FilePath unwrap(String path) {
+        return FilePath.get(path.substring(rateEnd(path) + 1));
+    }
+
+    @Override
+    public OutputStream newOutputStream(boolean append) throws IOException {
+        return new ThrottledOutputStream(getBase().newOutputStream(append), new IoThrottle(bytesPerSecond(name)));
+    }
+
+    @Override
+    public InputStream newInputStream() throws IOException {
+        return new ThrottledInputStream(getBase().newInputStream(), new IoThrottle(bytesPerSecond(name)));
+    }
+
+    static long bytesPerSecond(String path) {
+        try {
+            return Long.parseLong(path.substring(SCHEME.length() + 1, rateEnd(path)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("throttled path without rate: " + path, e);
+        }
+    }
+
+    private static int rateEnd(String path) {
+        int end = path.indexOf(':', SCHEME.length() + 1);
+        if (!path.startsWith(SCHEME + ":") || end < 0) {
+            throw new IllegalArgumentException("throttled path without rate: " + path);
+        }
+        return end;
+    }
+
+    static final class ThrottledOutputStream extends FilterOutputStream {
+
+        private final IoThrottle throttle;
+
+        ThrottledOutputStream(OutputStream out, IoThrottle throttle) {
+            super(out);
+            this.throttle = throttle;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            throttle.acquire(1);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, CHUNK);
+                throttle.acquire(n);
+                out.write(b, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+    }
+
+    static final class ThrottledInputStream extends FilterInputStream {
+
+        private final IoThrottle throttle;
+
+        ThrottledInputStream(InputStream in, IoThrottle throttle) {
+            super(in);
+            this.throttle = throttle;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                throttle.acquire(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, Math.min(len, CHUNK));
+            if (n > 0) {
+                throttle.acquire(n);
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.quiz.config;
+
+import com.example.quiz.service.AdmissionControl;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+/**
+ * 保存与导出接口的准入过滤器：必须在表单解析之前申请，否则请求体已经被读入内存
+ * 保存按请求体长度计费，未声明长度（分块传输）时按该接口允许的最大请求体计费，
+ * 导出按 app.admission.export-bytes 预估的渲染与压缩缓冲计费；
+ * 导出是异步流式响应，在异步处理结束时才归还
+ */
+@Component
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdmissionFilter.class);
+    private static final Pattern STREAM_SAVE_PATH = Pattern.compile("/quiz/answer/\\d+/content");
+
+    private final AdmissionControl admissionControl;
+    private final long exportBytes;
+    private final long formSaveMaxBytes;
+    private final long streamSaveMaxBytes;
+
+    /**
+     * 表单保存的上限取 multipart 与 urlencoded 上限中较大者；流式保存的上限与 AnswerContentWriter 一致
+     */
+    public AdmissionFilter(AdmissionControl admissionControl,
+                           @Value("${app.admission.export-bytes:33554432}") long exportBytes,
+                           @Value("${spring.servlet.multipart.max-request-size:10MB}") DataSize multipartMaxSize,
+                           @Value("${server.tomcat.max-http-form-post-size:2MB}") DataSize formPostMaxSize,
+                           @Value("${app.answer-content.max-bytes:104857600}") long streamSaveMaxBytes) {
+        this.admissionControl = admissionControl;
+        this.exportBytes = exportBytes;
+        this.formSaveMaxBytes = Math.max(multipartMaxSize.toBytes(), formPostMaxSize.toBytes());
+        this.streamSaveMaxBytes = streamSaveMaxBytes;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return chargeFor(request) < 0;
+    }
+
+    /**
+     * 需要准入的请求返回计费字节数，其余返回 -1
+     */
+    long chargeFor(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        String method = request.getMethod();
+        if ("GET".equals(method) && ("/grading/export".equals(path) || "/grading/exportScores".equals(path))) {
+            return exportBytes;
+        }
+        if ("POST".equals(method) && "/quiz/save".equals(path)) {
+            return declaredOr(request, formSaveMaxBytes);
+        }
+        if ("PUT".equals(method) && STREAM_SAVE_PATH.matcher(path).matches()) {
+            return declaredOr(request, streamSaveMaxBytes);
+        }
+        return -1;
+    }
+
+    /**
+     * 未声明长度时读取前无法知道实际大小，按上限计费：宁可让分块上传排队，也不让它们少计在途字节
+     */
+    private static long declaredOr(HttpServletRequest request, long maxBytes) {
+        long length = request.getContentLengthLong();
+        return length >= 0 ? Math.min(length, maxBytes) : maxBytes;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long bytes = chargeFor(request);
+        AdmissionControl.Permit permit;
+        try {
+            permit = admissionControl.acquire(bytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            permit = null;
+        }
+        if (permit == null) {
+            LOGGER.warn("Request rejected by admission control. method={}, uri={}, bytes={}, inFlightBytes={}",
+                    request.getMethod(), request.getRequestURI(), bytes, admissionControl.getInFlightBytes());
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(admissionControl.getRetryAfterSeconds()));
+            response.setContentType("text/plain;charset=UTF-8");
+            response.getOutputStream().write("服务器繁忙，请稍后重试".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        boolean releaseLater = false;
+        try {
+            chain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleaseOnComplete(permit));
+                releaseLater = true;
+            }
+        } finally {
+            if (!releaseLater) {
+                permit.close();
+            }
+        }
+    }
+
+    private record ReleaseOnComplete(AdmissionControl.Permit permit) implements AsyncListener {
+        @Override
+        public void onComplete(AsyncEvent event) {
+            permit.close();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            permit.close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            permit.close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.quiz.config;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * 版本化的表结构迁移：在 Hibernate 建表/更新表结构之前，按版本号依次执行 classpath:db/migration 下的脚本，
+ * 执行过的版本记入 schema_version 表，之后不再执行
+ * 脚本只处理 Hibernate 的 ddl-auto=update 做不到的改动（搬迁数据、删除列）；新建或已是当前布局的库直接记为已执行
+ * 数据源只读，或 spring.jpa.hibernate.ddl-auto=none（表结构由外部管理）时不执行
+ */
+@Component
+public class SchemaMigrations {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchemaMigrations.class);
+
+    /**
+     * @param pending 该版本是否还需要执行（如旧列仍存在）；为 false 时只记录版本
+     */
+    private record Migration(int version, String description, String script, Check pending) {
+    }
+
+    @FunctionalInterface
+    private interface Check {
+        boolean test(Connection connection) throws SQLException;
+    }
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "answer content moved to answer_contents", "db/migration/V1__answer_contents.sql",
+                    connection -> hasColumn(connection, "ANSWERS", "CONTENT")
+                            || hasColumn(connection, "ANSWERS", "CONTENT_GZ")),
+            new Migration(2, "answers unique per question and user", "db/migration/V2__answers_unique_question_user.sql",
+                    connection -> hasColumn(connection, "ANSWERS", "QUESTION_ID")
+                            && !hasConstraint(connection, "ANSWERS", "UK_ANSWERS_QUESTION_USER")));
+
+    private final DataSource dataSource;
+    private final Environment environment;
+
+    public SchemaMigrations(DataSource dataSource, Environment environment) {
+        this.dataSource = dataSource;
+        this.environment = environment;
+    }
+
+    @PostConstruct
+    public void migrate() throws SQLException {
+        if ("none".equalsIgnoreCase(environment.getProperty("spring.jpa.hibernate.ddl-auto", "none"))) {
+            LOGGER.info("Schema migrations skipped: spring.jpa.hibernate.ddl-auto=none");
+            return;
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            if (connection.getMetaData().isReadOnly()) {
+                LOGGER.info("Schema migrations skipped: datasource is read-only");
+                return;
+            }
+            migrate(connection);
+        }
+    }
+
+    /**
+     * 在给定连接上执行全部未执行的迁移，返回实际执行脚本的个数
+     */
+    public static int migrate(Connection connection) throws SQLException {
+        try (Statement st = connection.createStatement()) {
+            st.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+                    + "version INT PRIMARY KEY, description VARCHAR(200), installed_at TIMESTAMP)");
+        }
+        int executed = 0;
+        for (Migration migration : MIGRATIONS) {
+            if (isApplied(connection, migration.version())) {
+                continue;
+            }
+            long startNanos = System.nanoTime();
+            boolean pending = migration.pending().test(connection);
+            if (pending) {
+                ScriptUtils.executeSqlScript(connection, new ClassPathResource(migration.script()));
+                executed++;
+            }
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO schema_version (version, description, installed_at) VALUES (?, ?, CURRENT_TIMESTAMP)")) {
+                ps.setInt(1, migration.version());
+                ps.setString(2, migration.description());
+                ps.executeUpdate();
+            }
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+            LOGGER.info("Schema migration {} recorded. description={}, executed={}, elapsedMs={}",
+                    migration.version(), migration.description(), pending, (System.nanoTime() - startNanos) / 1_000_000);
+        }
+        return executed;
+    }
+
+    private static boolean isApplied(Connection connection, int version) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT 1 FROM schema_version WHERE version = ?")) {
+            ps.setInt(1, version);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static boolean hasColumn(Connection connection, String table, String column) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT 1 FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = CURRENT_SCHEMA "
+                        + "AND TABLE_NAME = ? AND COLUMN_NAME = ?")) {
+            ps.setString(1, table);
+            ps.setString(2, column);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static boolean hasConstraint(Connection connection, String table, String constraint) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT 1 FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS WHERE TABLE_SCHEMA = CURRENT_SCHEMA "
+                        + "AND TABLE_NAME = ? AND CONSTRAINT_NAME = ?")) {
+            ps.setString(1, table);
+            ps.setString(2, constraint);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * 让 JPA 的 EntityManagerFactory 在迁移之后创建：Hibernate 看到的已是迁移后的表结构
+     */
+    @Component
+    static class JpaDependsOnSchemaMigrations extends EntityManagerFactoryDependsOnPostProcessor {
+
+        JpaDependsOnSchemaMigrations() {
+            super("schemaMigrations");
+        }
+    }
+}
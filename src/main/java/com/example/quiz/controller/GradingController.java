@@ -2,9 +2,30 @@ package com.example.quiz.controller;
 
 import com.example.quiz.model.*;
 import com.example.quiz.repository.*;
+import com.example.quiz.service.AnswerArchive;
+import com.example.quiz.service.AnswerExportService;
+import com.example.quiz.service.AnswerRevisionLog;
+import com.example.quiz.service.AnswerSearchIndex;
+import com.example.quiz.service.AnswerSimilarityService;
+import com.example.quiz.service.ArchiveSegment;
+import com.example.quiz.service.AutoScoringService;
+import com.example.quiz.service.CatalogVersion;
+import com.example.quiz.service.EmbeddedImages;
+import com.example.quiz.service.GradingQueue;
+import com.example.quiz.service.ImageBackfillService;
+import com.example.quiz.service.ImageStore;
+import com.example.quiz.service.Leaderboard;
+import com.example.quiz.service.ThumbnailService;
+import jakarta.servlet.http.HttpSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -17,13 +38,17 @@ import java.util.*;
 import java.util.stream.Collectors;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.Optional;
 import java.util.List;
 import java.io.OutputStream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
 
 @Controller
 public class GradingController {
@@ -36,10 +61,52 @@ public class GradingController {
     
     @Autowired
     private AnswerRepository answerRepository;
+
+    @Autowired
+    private AnswerContentRepository answerContentRepository;
     
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private AnswerExportService answerExportService;
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+
+    @Autowired
+    private ThumbnailService thumbnailService;
+
+    @Autowired
+    private ImageBackfillService imageBackfillService;
+
+    @Autowired
+    private AnswerSearchIndex answerSearchIndex;
+
+    @Autowired
+    private AnswerSimilarityService answerSimilarityService;
+
+    @Autowired
+    private AnswerRevisionLog answerRevisionLog;
+
+    @Autowired
+    private GradingQueue gradingQueue;
+
+    @Autowired
+    private AutoScoringService autoScoringService;
+
+    @Autowired
+    private Leaderboard leaderboard;
+
+    @Autowired
+    private AnswerArchive answerArchive;
+
+    /** 缩略图与原图按内容哈希寻址，内容不变，可长期缓存 */
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable();
+
+    /** 缩略图尚未生成时请求线程等待的时长，超时后重定向到原图 */
+    private static final long THUMBNAIL_WAIT_MILLIS = 3000;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(GradingController.class);
     
     @GetMapping("/grading")
@@ -65,7 +132,16 @@ public class GradingController {
     
     @GetMapping("/grading/question/{questionId}/answers")
     @ResponseBody
-    public ResponseEntity<List<Map<String, Object>>> getQuestionAnswers(@PathVariable Long questionId) {
+    public ResponseEntity<List<Map<String, Object>>> getQuestionAnswers(@PathVariable Long questionId,
+                                                                        @RequestParam(defaultValue = "false") boolean preview,
+                                                                        @RequestHeader HttpHeaders requestHeaders) {
+        // 先用汇总查询计算 ETag，命中时不读取答案内容；删除答案不改变最近更新时间，因此不发送 Last-Modified
+        AnswerListStatsView stats = answerRepository.findListStatsByQuestionId(questionId);
+        String etag = HttpValidators.answerListETag(catalogVersion.current(), questionId,
+                stats.getCount(), stats.getMaxId(), stats.getMaxUpdatedAt(), stats.getVersionSum(), preview);
+        if (HttpValidators.notModified(requestHeaders, etag, -1)) {
+            return HttpValidators.notModifiedResponse(etag, -1);
+        }
         Optional<Question> questionOptional = questionRepository.findById(questionId);
         if (!questionOptional.isPresent()) {
             LOGGER.warn("Grading answers requested for missing question. questionId={}", questionId);
@@ -73,27 +149,60 @@ public class GradingController {
         }
         
         Question question = questionOptional.get();
-        List<Answer> answers = answerRepository.findByQuestion(question);
+        List<AnswerContent> bodies = answerContentRepository.findByQuestionIdWithUser(questionId);
         
         // 过滤掉admin用户的答案，只显示学生的答案
-        List<Map<String, Object>> result = answers.stream()
-            .filter(answer -> !"admin".equals(answer.getUser().getUsername()))
-            .filter(answer -> answer.getContent() != null && !answer.getContent().trim().isEmpty())
-            .map(answer -> {
+        List<Map<String, Object>> result = bodies.stream()
+            .filter(body -> !"admin".equals(body.getAnswer().getUser().getUsername()))
+            .filter(body -> body.getContent() != null && !body.getContent().trim().isEmpty())
+            .map(body -> {
+                Answer answer = body.getAnswer();
                 Map<String, Object> map = new HashMap<>();
                 map.put("answerId", answer.getId());
                 map.put("username", answer.getUser().getUsername());
-                map.put("content", answer.getContent());
+                // 预览模式下大图替换为缩略图地址，列表传输量与原图大小无关
+                map.put("content", preview ? thumbnailService.previewHtml(answer.getId(), body.getContent()) : body.getContent());
                 map.put("score", answer.getScore());
                 map.put("remark", answer.getRemark());  // 添加备注字段
+                // 自动评分的建议分，学生之后重新保存过则不再显示
+                map.put("suggestedScore", answer.hasCurrentSuggestion() ? answer.getSuggestedScore() : null);
+                map.put("suggestionNote", answer.hasCurrentSuggestion() ? answer.getSuggestionNote() : null);
                 map.put("totalScore", question.getTotalScore());
                 map.put("createdAt", answer.getCreatedAt());
                 map.put("updatedAt", answer.getUpdatedAt());
                 return map;
             })
             .collect(Collectors.toList());
+
+        // 已归档的题目：实时表中没有的学生从归档段补上（只读，内容不做预览改写）
+        if (answerArchive.isArchived(questionId)) {
+            Set<Object> liveUsers = result.stream().map(map -> map.get("username")).collect(Collectors.toSet());
+            for (ArchiveSegment.ArchivedAnswer archived : answerArchive.findByQuestion(questionId)) {
+                if ("admin".equals(archived.username()) || liveUsers.contains(archived.username())
+                        || archived.contentLength() == 0) {
+                    continue;
+                }
+                String content = archived.content();
+                if (content.trim().isEmpty()) {
+                    continue;
+                }
+                Map<String, Object> map = new HashMap<>();
+                map.put("answerId", archived.answerId());
+                map.put("username", archived.username());
+                map.put("content", content);
+                map.put("score", archived.score());
+                map.put("remark", archived.remark());
+                map.put("suggestedScore", null);
+                map.put("suggestionNote", null);
+                map.put("totalScore", question.getTotalScore());
+                map.put("createdAt", archived.createdAt());
+                map.put("updatedAt", archived.updatedAt());
+                map.put("archived", true);
+                result.add(map);
+            }
+        }
         
-        return ResponseEntity.ok(result);
+        return HttpValidators.ok(result, etag, -1);
     }
     
     @PostMapping("/grading/updateScore")
@@ -109,6 +218,11 @@ public class GradingController {
             }
             
             Answer answer = answerOptional.get();
+            if (answerArchive.isArchived(answer.getQuestion().getId())) {
+                LOGGER.warn("Update score rejected: question archived. answerId={}, questionId={}",
+                        answerId, answer.getQuestion().getId());
+                return ResponseEntity.status(HttpStatus.CONFLICT).body("该题已归档，不能再评分");
+            }
             Double totalScore = answer.getQuestion().getTotalScore();
             
             // 验证分数不能超过总分
@@ -118,9 +232,10 @@ public class GradingController {
                 return ResponseEntity.badRequest().body("得分不能超过总分: " + totalScore);
             }
             
-            answer.setScore(score);
-            answer.setRemark(remark);  // 更新备注
-            answerRepository.save(answer);
+            // 只更新得分与备注；整行保存会把加载时的内容版本写回，覆盖学生期间的保存
+            answerRepository.updateScore(answerId, score, remark, LocalDateTime.now());
+            gradingQueue.scored(answer.getQuestion().getId(), answerId);
+            leaderboard.scoreChanged(answer.getUser().getId(), answer.getQuestion().getId(), score);
             LOGGER.info("Score updated. answerId={}, score={}, totalScore={}, remarkLen={}",
                     answerId, score, totalScore, remark != null ? remark.length() : 0);
             
@@ -131,6 +246,397 @@ public class GradingController {
         }
     }
 
+    /**
+     * 答案内嵌图片的缩略图（JPEG）；尚未生成时提交生成并短暂等待，仍未就绪或无法生成时重定向到原图
+     */
+    @GetMapping("/grading/answer/{answerId}/thumbnail/{hash:[0-9a-f]{32}}")
+    @ResponseBody
+    public ResponseEntity<Resource> getThumbnail(@PathVariable Long answerId, @PathVariable String hash) {
+        Optional<Path> file = thumbnailService.await(answerId, hash, THUMBNAIL_WAIT_MILLIS);
+        if (!file.isPresent()) {
+            LOGGER.debug("Thumbnail unavailable, redirecting to full image. answerId={}, hash={}", answerId, hash);
+            return ResponseEntity.status(HttpStatus.FOUND)
+                    .location(URI.create(ThumbnailService.imageUrl(answerId, hash)))
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .cacheControl(IMMUTABLE)
+                .contentType(MediaType.IMAGE_JPEG)
+                .body(new FileSystemResource(file.get()));
+    }
+
+    /**
+     * 答案内嵌图片原图：从答案内容中按哈希找到对应的 data URI 解码返回；已移到外部存储的图片重定向到 /quiz/images/
+     * 内容来自学生，与存储图片一样禁止嗅探并以 sandbox 隔离；SVG 可带脚本，只作为附件下载
+     */
+    @GetMapping("/grading/answer/{answerId}/image/{hash:[0-9a-f]{32}}")
+    @ResponseBody
+    public ResponseEntity<byte[]> getImage(@PathVariable Long answerId, @PathVariable String hash) {
+        Optional<AnswerContentView> view = answerContentRepository.findContentViewById(answerId);
+        if (view.isPresent()) {
+            String html = view.get().getContentText();
+            for (EmbeddedImages.Image image : EmbeddedImages.find(html)) {
+                if (image.hash().equals(hash)) {
+                    MediaType mediaType = MediaType.parseMediaType(image.mimeType());
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                            .cacheControl(IMMUTABLE)
+                            .contentType(mediaType)
+                            .header("X-Content-Type-Options", "nosniff")
+                            .header("Content-Security-Policy", "sandbox");
+                    if ("svg+xml".equalsIgnoreCase(mediaType.getSubtype())) {
+                        response.header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                                .filename(hash + ".svg").build().toString());
+                    }
+                    return response.body(EmbeddedImages.decode(html, image));
+                }
+            }
+            for (String name : ImageStore.references(html)) {
+                if (ImageStore.hashOf(name).equals(hash)) {
+                    return ResponseEntity.status(HttpStatus.FOUND)
+                            .cacheControl(IMMUTABLE)
+                            .location(URI.create(ImageStore.URL_PREFIX + name))
+                            .build();
+                }
+            }
+        }
+        LOGGER.warn("Answer image not found. answerId={}, hash={}", answerId, hash);
+        return ResponseEntity.notFound().build();
+    }
+
+    /**
+     * 启动内嵌图片回填（把已有答案中的图片移到外部存储）；已在运行时返回 409
+     */
+    @PostMapping("/grading/images/backfill")
+    @ResponseBody
+    public ResponseEntity<ImageBackfillService.Status> startImageBackfill(@RequestParam String username) {
+        if (!isAdmin(username)) {
+            LOGGER.warn("Unauthorized image backfill request. username={}", username);
+            return ResponseEntity.status(403).build();
+        }
+        boolean started = imageBackfillService.start();
+        LOGGER.info("Image backfill start requested. started={}", started);
+        return ResponseEntity.status(started ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT).body(imageBackfillService.getStatus());
+    }
+
+    /**
+     * 停止回填：当前批次完成并写入检查点后退出，再次启动时从检查点继续
+     */
+    @PostMapping("/grading/images/backfill/stop")
+    @ResponseBody
+    public ResponseEntity<ImageBackfillService.Status> stopImageBackfill(@RequestParam String username) {
+        if (!isAdmin(username)) {
+            LOGGER.warn("Unauthorized image backfill stop request. username={}", username);
+            return ResponseEntity.status(403).build();
+        }
+        imageBackfillService.stop();
+        return ResponseEntity.ok(imageBackfillService.getStatus());
+    }
+
+    @GetMapping("/grading/images/backfill")
+    @ResponseBody
+    public ResponseEntity<ImageBackfillService.Status> getImageBackfillStatus(@RequestParam String username) {
+        if (!isAdmin(username)) {
+            return ResponseEntity.status(403).build();
+        }
+        return ResponseEntity.ok(imageBackfillService.getStatus());
+    }
+
+    /**
+     * 答案的修订历史（版本、保存时间、是否关键帧、占用字节），按保存顺序
+     */
+    @GetMapping("/grading/answer/{answerId}/revisions")
+    @ResponseBody
+    public ResponseEntity<List<AnswerRevisionLog.Revision>> getAnswerRevisions(@PathVariable Long answerId,
+                                                                              @RequestParam String username) {
+        if (!isAdmin(username)) {
+            LOGGER.warn("Unauthorized revision list request. username={}, answerId={}", username, answerId);
+            return ResponseEntity.status(403).build();
+        }
+        return ResponseEntity.ok(answerRevisionLog.revisions(answerId));
+    }
+
+    /**
+     * 历史版本的内容：按 version 指定，或按 at（如 2024-06-01T10:30:00）取该时刻或之前最后保存的版本
+     */
+    @GetMapping("/grading/answer/{answerId}/revisions/content")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getAnswerRevisionContent(@PathVariable Long answerId,
+                                                                        @RequestParam String username,
+                                                                        @RequestParam(required = false) Long version,
+                                                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        if (!isAdmin(username)) {
+            LOGGER.warn("Unauthorized revision content request. username={}, answerId={}", username, answerId);
+            return ResponseEntity.status(403).build();
+        }
+        if ((version == null) == (at == null)) {
+            return ResponseEntity.badRequest().build();
+        }
+        Optional<AnswerRevisionLog.Revision> revision = version != null
+                ? answerRevisionLog.revisions(answerId).stream().filter(r -> r.version() == version).findFirst()
+                : answerRevisionLog.revisionAt(answerId, at);
+        Optional<String> content = revision.flatMap(r -> answerRevisionLog.contentAt(answerId, r.version()));
+        if (!content.isPresent()) {
+            return ResponseEntity.notFound().build();
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("answerId", answerId);
+        body.put("version", revision.get().version());
+        body.put("savedAt", revision.get().savedAt());
+        body.put("content", content.get());
+        LOGGER.info("Revision content served. answerId={}, version={}", answerId, revision.get().version());
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * 查重：列出该题中相似度不低于 threshold（默认 app.similarity.threshold）的答案分组
+     */
+    @GetMapping("/grading/question/{questionId}/similar")
+    @ResponseBody
+    public ResponseEntity<AnswerSimilarityService.Report> getSimilarAnswers(@PathVariable Long questionId,
+                                                                           @RequestParam String username,
+                                                                           @RequestParam(required = false) Double threshold) {
+        if (!isAdmin(username)) {
+            LOGGER.warn("Unauthorized similarity request. username={}, questionId={}", username, questionId);
+            return ResponseEntity.status(403).build();
+        }
+        if (threshold != null && (threshold <= 0 || threshold > 1)) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!questionRepository.existsById(questionId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(answerSimilarityService.report(questionId, threshold));
+    }
+
+    /**
+     * 按总分排名：前 top 名，以及 user 指定时该学生的名次与百分位；从内存中的排名树读取，不扫描答案
+     */
+    @GetMapping("/grading/leaderboard")
+    @ResponseBody
+    public ResponseEntity<Leaderboard.Board> getLeaderboard(@RequestParam String username,
+                                                            @RequestParam(defaultValue = "10") int top,
+                                                            @RequestParam(required = false) String user) {
+        if (!isAdmin(username)) {
+            LOGGER.warn("Unauthorized leaderboard request. username={}", username);
+            return ResponseEntity.status(403).build();
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(leaderboard.board(Math.max(0, Math.min(100, top)), user));
+    }
+
+    /**
+     * 归档章节：这些章节下题目的答案移入只读归档段并从实时表删除，之后不再接受保存，读答案与阅卷列表从归档段读取
+     * 仍有未评分的学生答案时返回 409（ungraded 为数量），确认后以 force=true 重新提交；已有归档在运行时返回 409
+     */
+    @PostMapping("/grading/archive")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> startArchive(@RequestParam String username,
+                                                            @RequestParam List<Long> chapterIds,
+                                                            @RequestParam(defaultValue = "false") boolean force) {
+        if (!isAdmin(username)) {
+            LOGGER.warn("Unauthorized archive request. username={}, chapterIds={}", username, chapterIds);
+            return ResponseEntity.status(403).build();
+        }
+        List<Long> questionIds = chapterIds.stream()
+                .flatMap(chapterId -> questionRepository.findByChapterIdOrderBySortOrder(chapterId).stream())
+                .map(Question::getId)
+                .distinct()
+                .toList();
+        if (questionIds.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        long ungraded = answerRepository.countUngradedByQuestionIdIn(questionIds);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("questionIds", questionIds);
+        body.put("ungraded", ungraded);
+        if (ungraded > 0 && !force) {
+            body.put("status", answerArchive.getStatus());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(body);
+        }
+        boolean started = answerArchive.start(questionIds);
+        LOGGER.info("Archive requested. chapterIds={}, questions={}, ungraded={}, started={}",
+                chapterIds, questionIds.size(), ungraded, started);
+        body.put("status", answerArchive.getStatus());
+        return ResponseEntity.status(started ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT).body(body);
+    }
+
+    @GetMapping("/grading/archive")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getArchiveStatus(@RequestParam String username) {
+        if (!isAdmin(username)) {
+            return ResponseEntity.status(403).build();
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", answerArchive.getStatus());
+        body.put("segments", answerArchive.segmentCount());
+        body.put("archivedQuestionIds", answerArchive.archivedQuestionIds());
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * 按题目评分规则为答案计算建议分（questionId 为空时为全部有规则的题目），不修改得分；已有评分任务在运行时返回 409
+     */
+    @PostMapping("/grading/autoscore")
+    @ResponseBody
+    public ResponseEntity<AutoScoringService.Summary> autoScore(@RequestParam String username,
+                                                               @RequestParam(required = false) Long questionId) {
+        if (!isAdmin(username)) {
+            LOGGER.warn("Unauthorized auto scoring request. username={}, questionId={}", username, questionId);
+            return ResponseEntity.status(403).build();
+        }
+        if (questionId != null && !questionRepository.existsById(questionId)) {
+            return ResponseEntity.notFound().build();
+        }
+        Optional<AutoScoringService.Summary> summary = autoScoringService.run(questionId);
+        if (!summary.isPresent()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.ok(summary.get());
+    }
+
+    /**
+     * 采纳建议分：尚未评分的答案以建议分作为得分；answerIds 为空时采纳该题全部建议，已评分的答案不受影响
+     */
+    @PostMapping("/grading/autoscore/confirm")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> confirmSuggestedScores(@RequestParam String username,
+                                                                      @RequestParam Long questionId,
+                                                                      @RequestParam(required = false) List<Long> answerIds) {
+        if (!isAdmin(username)) {
+            LOGGER.warn("Unauthorized suggested score confirmation. username={}, questionId={}", username, questionId);
+            return ResponseEntity.status(403).build();
+        }
+        if (answerArchive.isArchived(questionId)) {
+            LOGGER.warn("Suggested score confirmation rejected: question archived. questionId={}", questionId);
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        List<Long> confirmed = autoScoringService.confirm(questionId, answerIds);
+        confirmed.forEach(answerId -> gradingQueue.scored(questionId, answerId));
+        if (!confirmed.isEmpty()) {
+            leaderboard.invalidate();
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("confirmed", confirmed.size());
+        body.put("answerIds", confirmed);
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * 多人阅卷：为阅卷人领取该题下一份未评分答案并加租约，租约期内不会分给其他人；grader 缺省为当前会话
+     * 已持有未到期租约时返回同一份；没有可领取的答案时返回 204
+     */
+    @GetMapping("/grading/next")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> nextUngradedAnswer(@RequestParam String username,
+                                                                  @RequestParam Long questionId,
+                                                                  @RequestParam(required = false) String grader,
+                                                                  HttpSession session) {
+        if (!isAdmin(username)) {
+            LOGGER.warn("Unauthorized grading queue request. username={}, questionId={}", username, questionId);
+            return ResponseEntity.status(403).build();
+        }
+        if (!questionRepository.existsById(questionId)) {
+            return ResponseEntity.notFound().build();
+        }
+        String graderId = grader != null && !grader.isBlank() ? grader : session.getId();
+        while (true) {
+            Optional<GradingQueue.Lease> lease = gradingQueue.next(questionId, graderId);
+            if (!lease.isPresent()) {
+                return ResponseEntity.noContent().build();
+            }
+            long answerId = lease.get().answerId();
+            // 队列只保存ID，领取后核对一次：已删除或已被评分（初始化期间的并发评分）的答案剔除后继续领取
+            Optional<Answer> answerOptional = answerRepository.findById(answerId);
+            if (!answerOptional.isPresent() || answerOptional.get().getScore() != null) {
+                gradingQueue.scored(questionId, answerId);
+                continue;
+            }
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("answerId", answerId);
+            body.put("questionId", questionId);
+            body.put("username", answerOptional.get().getUser().getUsername());
+            body.put("grader", graderId);
+            body.put("leaseExpiresAt", LocalDateTime.ofInstant(Instant.ofEpochMilli(lease.get().expiresAtMillis()), ZoneId.systemDefault()));
+            body.put("remaining", gradingQueue.remaining(questionId));
+            LOGGER.info("Grading lease granted. questionId={}, answerId={}, grader={}", questionId, answerId, graderId);
+            return ResponseEntity.ok(body);
+        }
+    }
+
+    /**
+     * 放弃当前租约（跳过这一份），答案重新排到队尾
+     */
+    @PostMapping("/grading/next/release")
+    @ResponseBody
+    public ResponseEntity<Void> releaseGradingLease(@RequestParam String username,
+                                                    @RequestParam Long questionId,
+                                                    @RequestParam Long answerId,
+                                                    @RequestParam(required = false) String grader,
+                                                    HttpSession session) {
+        if (!isAdmin(username)) {
+            LOGGER.warn("Unauthorized grading lease release. username={}, answerId={}", username, answerId);
+            return ResponseEntity.status(403).build();
+        }
+        String graderId = grader != null && !grader.isBlank() ? grader : session.getId();
+        if (!gradingQueue.release(questionId, answerId, graderId)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * 答案全文检索：多个词须同时出现，按相关度排序；questionId 可限定在一道题内
+     * 启动后索引在后台构建：快照读入前返回 503（无快照时直到全量构建完成），之后构建完成前 ready 为 false，结果可能略旧
+     */
+    @GetMapping("/grading/search")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> searchAnswers(@RequestParam String username,
+                                                             @RequestParam String q,
+                                                             @RequestParam(required = false) Long questionId,
+                                                             @RequestParam(defaultValue = "0") int page,
+                                                             @RequestParam(defaultValue = "20") int size) {
+        if (!isAdmin(username)) {
+            LOGGER.warn("Unauthorized answer search request. username={}", username);
+            return ResponseEntity.status(403).build();
+        }
+        if (!answerSearchIndex.isSearchable()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "5").build();
+        }
+        int pageSize = Math.max(1, Math.min(100, size));
+        int pageIndex = Math.max(0, page);
+        long startNanos = System.nanoTime();
+        AnswerSearchIndex.Result result = answerSearchIndex.search(q, questionId, pageIndex, pageSize);
+        Map<Long, String> titles = new HashMap<>();
+        questionRepository.findAllById(result.hits().stream().map(AnswerSearchIndex.Hit::questionId).distinct().toList())
+                .forEach(question -> titles.put(question.getId(), question.getTitle()));
+        List<Map<String, Object>> hits = new ArrayList<>(result.hits().size());
+        for (AnswerSearchIndex.Hit hit : result.hits()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("answerId", hit.answerId());
+            item.put("questionId", hit.questionId());
+            item.put("questionTitle", titles.get(hit.questionId()));
+            item.put("username", hit.username());
+            item.put("score", Math.round(hit.score() * 1000) / 1000.0);
+            item.put("snippet", hit.snippet());
+            hits.add(item);
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("query", q);
+        body.put("total", result.total());
+        body.put("page", pageIndex);
+        body.put("size", pageSize);
+        body.put("ready", answerSearchIndex.isReady());
+        body.put("tookMs", (System.nanoTime() - startNanos) / 1_000_000);
+        body.put("hits", hits);
+        LOGGER.info("Answer search. query={}, questionId={}, total={}, tookMs={}", q, questionId, result.total(), body.get("tookMs"));
+        return ResponseEntity.ok(body);
+    }
+
+    private boolean isAdmin(String username) {
+        return "admin".equals(username) && userRepository.findByUsername(username).isPresent();
+    }
+
     @GetMapping("/grading/export")
     @ResponseBody
     public ResponseEntity<StreamingResponseBody> export(@RequestParam String username) {
@@ -142,47 +648,8 @@ public class GradingController {
         DateTimeFormatter df = DateTimeFormatter.ofPattern("yyMMdd");
         String fname = "poc_answer_" + LocalDate.now().format(df) + ".zip";
         StreamingResponseBody body = (OutputStream os) -> {
-            try (ZipOutputStream zos = new ZipOutputStream(os)) {
-                List<User> users = userRepository.findAll().stream()
-                        .filter(user -> user.getUsername() != null && !"admin".equals(user.getUsername()))
-                        .collect(Collectors.toList());
-                List<Question> questions = questionRepository.findAllOrderByChapterAndSortOrder();
-                LOGGER.info("Export answers start. users={}, questions={}", users.size(), questions.size());
-                for (User user : users) {
-                    String safe = sanitizeFilename(user.getUsername()) + ".html";
-                    zos.putNextEntry(new ZipEntry(safe));
-                    StringBuilder sb = new StringBuilder();
-                    sb.append("<!DOCTYPE html><html lang=\"zh-CN\"><head><meta charset=\"UTF-8\"><title>")
-                      .append(escapeHtml(user.getUsername()))
-                      .append("</title></head><body><h1>")
-                      .append(escapeHtml(user.getUsername()))
-                      .append("</h1>");
-                    for (Question q : questions) {
-                        Optional<Answer> ansOpt = answerRepository.findByQuestionIdAndUserId(q.getId(), user.getId());
-                        if (ansOpt.isPresent()) {
-                            Answer a = ansOpt.get();
-                            String c = a.getContent();
-                            if (c != null && !c.trim().isEmpty()) {
-                                sb.append("<section>")
-                                  .append("<h2>")
-                                  .append(escapeHtml(q.getQuestionNumber()))
-                                  .append("</h2>")
-                                  .append("<div>")
-                                  .append(escapeHtml(q.getDescription()))
-                                  .append("</div>")
-                                  .append("<div>")
-                                  .append(c)
-                                  .append("</div>")
-                                  .append("</section>");
-                            }
-                        }
-                    }
-                    sb.append("</body></html>");
-                    byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
-                    zos.write(bytes);
-                    zos.closeEntry();
-                }
-                LOGGER.info("Export answers done. users={}", users.size());
+            try {
+                answerExportService.writeAnswersZip(os);
             } catch (Exception e) {
                 LOGGER.error("Export answers error", e);
                 throw e;
@@ -208,47 +675,7 @@ public class GradingController {
 
         StreamingResponseBody body = (OutputStream os) -> {
             try {
-                // Write BOM for Excel compatibility
-                os.write(new byte[]{(byte)0xEF, (byte)0xBB, (byte)0xBF});
-
-                StringBuilder sb = new StringBuilder();
-
-                // 1. Get Users (exclude admin, sort by ID to match data.json order)
-                List<User> users = userRepository.findAll().stream()
-                        .filter(user -> user.getUsername() != null && !"admin".equals(user.getUsername()))
-                        .sorted(Comparator.comparing(User::getId))
-                        .collect(Collectors.toList());
-
-                // 2. Get Questions
-                List<Question> questions = questionRepository.findAllOrderByChapterAndSortOrder();
-                LOGGER.info("Export scores start. users={}, questions={}", users.size(), questions.size());
-
-                // 3. Header Row: empty, total, user1, user2...
-                sb.append(",total");
-                for (User user : users) {
-                    sb.append(",").append(escapeCsv(user.getUsername()));
-                }
-                sb.append("\n");
-
-                // 4. Data Rows
-                for (Question q : questions) {
-                    sb.append(escapeCsv(q.getTitle()));
-                    sb.append(",").append(q.getTotalScore() != null ? (int) q.getTotalScore().doubleValue() : 0);
-
-                    for (User user : users) {
-                        sb.append(",");
-                        Optional<Answer> ansOpt = answerRepository.findByQuestionIdAndUserId(q.getId(), user.getId());
-                        int score = 0;
-                        if (ansOpt.isPresent() && ansOpt.get().getScore() != null) {
-                            score = (int) ansOpt.get().getScore().doubleValue();
-                        }
-                        sb.append(score);
-                    }
-                    sb.append("\n");
-                }
-
-                os.write(sb.toString().getBytes(StandardCharsets.UTF_8));
-                LOGGER.info("Export scores done. users={}", users.size());
+                answerExportService.writeScoresCsv(os);
             } catch (Exception e) {
                 LOGGER.error("Export scores error", e);
                 throw e;
@@ -260,41 +687,4 @@ public class GradingController {
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=UTF-8''" + URLEncoder.encode(fname, StandardCharsets.UTF_8))
                 .body(body);
     }
-
-    private String escapeCsv(String s) {
-        if (s == null) return "";
-        if (s.contains(",") || s.contains("\"") || s.contains("\n")) {
-            return "\"" + s.replace("\"", "\"\"") + "\"";
-        }
-        return s;
-    }
-
-
-    private String sanitizeFilename(String s) {
-        StringBuilder r = new StringBuilder();
-        for (char ch : s.toCharArray()) {
-            if (Character.isLetterOrDigit(ch) || ch == '-' || ch == '_' || ch == '.') {
-                r.append(ch);
-            } else {
-                r.append('_');
-            }
-        }
-        return r.toString();
-    }
-
-    private String escapeHtml(String s) {
-        if (s == null) return "";
-        StringBuilder r = new StringBuilder();
-        for (char c : s.toCharArray()) {
-            switch (c) {
-                case '&': r.append("&amp;"); break;
-                case '<': r.append("&lt;"); break;
-                case '>': r.append("&gt;"); break;
-                case '"': r.append("&quot;"); break;
-                case '\'': r.append("&#39;"); break;
-                default: r.append(c);
-            }
-        }
-        return r.toString();
-    }
 }
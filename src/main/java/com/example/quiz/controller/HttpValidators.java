@@ -0,0 +1,117 @@
+package com.example.quiz.controller;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.ETag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * 条件 GET 校验：ETag / Last-Modified 由元数据计算，命中时直接返回 304，不读取、不序列化内容
+ * 答案内容可能被重新打分等操作改变 updatedAt 但不改变内容，因此答案使用弱 ETag（按内容版本）
+ */
+final class HttpValidators {
+
+    /** 浏览器可以缓存，但每次使用前必须携带校验头重新验证 */
+    static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
+    private HttpValidators() {}
+
+    static String questionETag(long catalogVersion, Long questionId) {
+        return "W/\"c" + catalogVersion + "-q" + questionId + "\"";
+    }
+
+    /**
+     * 单个答案；尚未作答（或用户不存在）时 answerId 为 null
+     */
+    static String answerETag(Long answerId, Long contentVersion) {
+        if (answerId == null) {
+            return "W/\"a0\"";
+        }
+        return "W/\"a" + answerId + "-v" + (contentVersion != null ? contentVersion : 0L) + "\"";
+    }
+
+    /**
+     * 阅卷答案列表：题库版本 + 答案数量、最大ID与最近更新时间（内容保存与评分都会更新 updatedAt）
+     * 预览（缩略图）与完整内容是不同的表示，ETag 加以区分
+     */
+    static String answerListETag(long catalogVersion, Long questionId, long count, Long maxId, LocalDateTime maxUpdatedAt,
+                                 Long versionSum, boolean preview) {
+        return "W/\"c" + catalogVersion + "-q" + questionId + "-n" + count + "-" + (maxId != null ? maxId : 0L)
+                + "-" + toEpochMillis(maxUpdatedAt) + "-v" + (versionSum != null ? versionSum : 0L) + (preview ? "-p" : "") + "\"";
+    }
+
+    static long toEpochMillis(LocalDateTime time) {
+        return time != null ? time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : -1;
+    }
+
+    /**
+     * If-None-Match 优先（弱比较）；没有 If-None-Match 时才看 If-Modified-Since（秒级精度）
+     */
+    static boolean notModified(HttpHeaders requestHeaders, String etag, long lastModifiedMillis) {
+        List<String> ifNoneMatch = requestHeaders.getIfNoneMatch();
+        if (!ifNoneMatch.isEmpty()) {
+            String currentTag = ETag.parse(etag).get(0).tag();
+            for (String header : ifNoneMatch) {
+                for (ETag candidate : ETag.parse(header)) {
+                    if (candidate.isWildcard() || candidate.tag().equals(currentTag)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = requestHeaders.getIfModifiedSince();
+        return ifModifiedSince >= 0 && lastModifiedMillis >= 0 && lastModifiedMillis / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * Accept-Encoding 中包含 gzip（或 *）且 q 不为 0
+     */
+    static boolean acceptsGzip(HttpHeaders requestHeaders) {
+        for (String header : requestHeaders.getOrEmpty(HttpHeaders.ACCEPT_ENCODING)) {
+            for (String part : header.split(",")) {
+                String[] tokens = part.trim().split(";");
+                String coding = tokens[0].trim();
+                if (!"gzip".equalsIgnoreCase(coding) && !"*".equals(coding)) {
+                    continue;
+                }
+                boolean refused = false;
+                for (int i = 1; i < tokens.length; i++) {
+                    String param = tokens[i].trim().replace(" ", "");
+                    if (param.equals("q=0") || param.matches("q=0\\.0*")) {
+                        refused = true;
+                    }
+                }
+                if (!refused) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    static <T> ResponseEntity<T> notModifiedResponse(String etag, long lastModifiedMillis) {
+        return validated(ResponseEntity.status(HttpStatus.NOT_MODIFIED), etag, lastModifiedMillis).build();
+    }
+
+    static <T> ResponseEntity<T> ok(T body, String etag, long lastModifiedMillis) {
+        return okBuilder(etag, lastModifiedMillis).body(body);
+    }
+
+    static ResponseEntity.BodyBuilder okBuilder(String etag, long lastModifiedMillis) {
+        return validated(ResponseEntity.ok(), etag, lastModifiedMillis);
+    }
+
+    private static ResponseEntity.BodyBuilder validated(ResponseEntity.BodyBuilder builder, String etag, long lastModifiedMillis) {
+        builder.eTag(etag).cacheControl(REVALIDATE);
+        if (lastModifiedMillis >= 0) {
+            builder.lastModified(lastModifiedMillis);
+        }
+        return builder;
+    }
+}
@@ -1,29 +1,52 @@
 package com.example.quiz.controller;
 
 import com.example.quiz.dto.AnswerDTO;
+import com.example.quiz.dto.AnswerMetaDTO;
+import com.example.quiz.dto.BootstrapDTO;
 import com.example.quiz.dto.QuestionDTO;
+import com.example.quiz.dto.QuestionWithAnswerDTO;
 import com.example.quiz.model.*;
 import com.example.quiz.repository.*;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.quiz.service.AnswerArchive;
+import com.example.quiz.service.AnswerCache;
+import com.example.quiz.service.AnswerContentWriter;
+import com.example.quiz.service.AnswerRevisionLog;
+import com.example.quiz.service.AnswerSaveService;
+import com.example.quiz.service.AnswerSearchIndex;
+import com.example.quiz.service.AnswerSimilarityService;
+import com.example.quiz.service.ArchiveSegment;
+import com.example.quiz.service.CatalogVersion;
+import com.example.quiz.service.DiagnosticsSink;
+import com.example.quiz.service.EmbeddedImages;
+import com.example.quiz.service.GradingQueue;
+import com.example.quiz.service.ImageIngestService;
+import com.example.quiz.service.ImageStore;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
+import java.nio.charset.CharacterCodingException;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Controller
 public class QuizController {
@@ -36,55 +59,64 @@ public class QuizController {
     
     @Autowired
     private AnswerRepository answerRepository;
+
+    @Autowired
+    private AnswerContentRepository answerContentRepository;
     
     @Autowired
     private UserRepository userRepository;
 
-    private static final String DEBUG_LOG_PATH = java.nio.file.Paths.get("data", "debug.log").toString();
-    private static final String DEBUG_MODE_LOG_PATH = "/Users/mac/IdeaProjects/poc_web/.cursor/debug.log";
-    private static final ObjectMapper DEBUG_MAPPER = new ObjectMapper();
+    @Autowired
+    private AnswerCache answerCache;
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+
+    @Autowired
+    private AnswerContentWriter answerContentWriter;
+
+    @Autowired
+    private AnswerSaveService answerSaveService;
+
+    @Autowired
+    private ImageIngestService imageIngestService;
+
+    @Autowired
+    private AnswerSearchIndex answerSearchIndex;
+
+    @Autowired
+    private AnswerSimilarityService answerSimilarityService;
+
+    @Autowired
+    private AnswerRevisionLog answerRevisionLog;
+
+    @Autowired
+    private GradingQueue gradingQueue;
+
+    @Autowired
+    private ImageStore imageStore;
+
+    @Autowired
+    private DiagnosticsSink diagnosticsSink;
+
+    @Autowired
+    private AnswerArchive answerArchive;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(QuizController.class);
+    private static final MediaType HTML_UTF8 = new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8);
 
+    /**
+     * 调试事件交给异步诊断落盘，请求线程不写文件
+     */
     private void debugLog(String hypothesisId, String location, String message, Map<String, Object> data) {
-        try {
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("sessionId", "debug-session");
-            payload.put("runId", "pre-fix");
-            payload.put("hypothesisId", hypothesisId);
-            payload.put("location", location);
-            payload.put("message", message);
-            payload.put("data", data);
-            payload.put("timestamp", System.currentTimeMillis());
-            String json = DEBUG_MAPPER.writeValueAsString(payload);
-            Path logPath = Paths.get(DEBUG_LOG_PATH);
-            if (logPath.getParent() != null) {
-                Files.createDirectories(logPath.getParent());
-            }
-            Files.write(logPath, (json + System.lineSeparator()).getBytes(StandardCharsets.UTF_8),
-                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
-        } catch (Exception ignored) {
-        }
-    }
-
-    private void debugModeLog(String hypothesisId, String location, String message, Map<String, Object> data) {
-        try {
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("sessionId", "debug-session");
-            payload.put("runId", "pre-fix");
-            payload.put("hypothesisId", hypothesisId);
-            payload.put("location", location);
-            payload.put("message", message);
-            payload.put("data", data);
-            payload.put("timestamp", System.currentTimeMillis());
-            String json = DEBUG_MAPPER.writeValueAsString(payload);
-            Path logPath = Paths.get(DEBUG_MODE_LOG_PATH);
-            if (logPath.getParent() != null) {
-                Files.createDirectories(logPath.getParent());
-            }
-            Files.write(logPath, (json + System.lineSeparator()).getBytes(StandardCharsets.UTF_8),
-                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
-        } catch (Exception ignored) {
-        }
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("source", "server");
+        payload.put("hypothesisId", hypothesisId);
+        payload.put("location", location);
+        payload.put("message", message);
+        payload.put("data", data);
+        payload.put("timestamp", System.currentTimeMillis());
+        diagnosticsSink.offer(payload);
     }
     
     @GetMapping("/quiz")
@@ -137,39 +169,116 @@ public class QuizController {
     
     @GetMapping("/quiz/question/{questionId}")
     @ResponseBody
-    public ResponseEntity<QuestionDTO> getQuestion(@PathVariable Long questionId, @RequestParam String username) {
+    public ResponseEntity<QuestionDTO> getQuestion(@PathVariable Long questionId, @RequestParam String username,
+                                                   @RequestHeader HttpHeaders requestHeaders) {
+        // 版本号先于查询读取：同步恰好发生在两者之间时只会多一次重新下载，不会把新数据标成旧版本
+        String etag = HttpValidators.questionETag(catalogVersion.current(), questionId);
+        if (HttpValidators.notModified(requestHeaders, etag, -1)) {
+            return HttpValidators.notModifiedResponse(etag, -1);
+        }
         Optional<Question> questionOptional = questionRepository.findById(questionId);
         if (questionOptional.isPresent()) {
             Question question = questionOptional.get();
-            QuestionDTO questionDTO = new QuestionDTO(
-                question.getId(),
-                question.getTitle(),
-                question.getDescription(),
-                question.getQuestionNumber(),
-                question.getSortOrder(),
-                question.getChapter().getId(),
-                question.getChapter().getTitle()
-            );
-            return ResponseEntity.ok(questionDTO);
+            return HttpValidators.ok(QuestionDTO.from(question), etag, -1);
         }
         LOGGER.warn("Question not found. questionId={}, username={}", questionId, username);
         return ResponseEntity.notFound().build();
     }
     
+    /**
+     * 答题页启动数据：有序章节与题目，以及该用户每道题答案的元数据（不含内容）
+     * 语句数固定：用户、章节、题目（含章节）、答案元数据各一次
+     */
+    @GetMapping("/quiz/bootstrap")
+    @ResponseBody
+    public ResponseEntity<BootstrapDTO> bootstrap(@RequestParam String username) {
+        Optional<User> userOptional = userRepository.findByUsername(username);
+        if (!userOptional.isPresent()) {
+            LOGGER.warn("Bootstrap requested with unknown user: {}", username);
+            return ResponseEntity.badRequest().build();
+        }
+        Map<Long, AnswerMetaDTO> metaByQuestionId = new HashMap<>();
+        for (AnswerMetaView view : answerRepository.findMetaByUserId(userOptional.get().getId())) {
+            metaByQuestionId.putIfAbsent(view.getQuestionId(), AnswerMetaDTO.from(view));
+        }
+        // 已归档的题目从归档段补上元数据（不查库）
+        for (Long archivedQuestionId : answerArchive.archivedQuestionIds()) {
+            if (!metaByQuestionId.containsKey(archivedQuestionId)) {
+                answerArchive.find(archivedQuestionId, userOptional.get().getId()).ifPresent(a -> metaByQuestionId.put(
+                        archivedQuestionId, new AnswerMetaDTO(a.answerId(), a.updatedAt(), a.contentLength(), a.contentVersion())));
+            }
+        }
+
+        BootstrapDTO result = new BootstrapDTO(username);
+        Map<Long, BootstrapDTO.ChapterEntry> chapterEntries = new HashMap<>();
+        for (Chapter chapter : chapterRepository.findAllOrderBySortOrder()) {
+            BootstrapDTO.ChapterEntry entry = new BootstrapDTO.ChapterEntry(chapter.getId(), chapter.getTitle(), chapter.getSortOrder());
+            chapterEntries.put(chapter.getId(), entry);
+            result.getChapters().add(entry);
+        }
+        for (Question question : questionRepository.findAllWithChapterOrdered()) {
+            BootstrapDTO.ChapterEntry entry = chapterEntries.get(question.getChapter().getId());
+            if (entry != null) {
+                entry.getQuestions().add(new BootstrapDTO.QuestionEntry(question, metaByQuestionId.get(question.getId())));
+            }
+        }
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * 题目与该用户答案一次取回：题目、章节、用户与答案在同一条 join 查询中读取
+     */
+    @GetMapping("/quiz/question/{questionId}/with-answer")
+    @ResponseBody
+    public ResponseEntity<QuestionWithAnswerDTO> getQuestionWithAnswer(@PathVariable Long questionId, @RequestParam String username) {
+        List<Object[]> rows = questionRepository.findWithAnswer(questionId, username);
+        if (rows.isEmpty()) {
+            LOGGER.warn("Question not found. questionId={}, username={}", questionId, username);
+            return ResponseEntity.notFound().build();
+        }
+        Object[] row = rows.get(0);
+        Question question = (Question) row[0];
+        Long userId = (Long) row[1];
+        AnswerContent body = (AnswerContent) row[3];
+
+        AnswerDTO answerDTO = body != null ? AnswerDTO.from(body, username)
+                : userId != null ? answerArchive.find(questionId, userId).map(QuizController::archivedAnswer).orElseGet(AnswerDTO::new)
+                : new AnswerDTO();
+        if (userId != null) {
+            answerCache.putIfAbsent(username, questionId, answerDTO);
+        } else {
+            LOGGER.warn("Answer query with unknown user. questionId={}, username={}", questionId, username);
+        }
+        return ResponseEntity.ok(new QuestionWithAnswerDTO(QuestionDTO.from(question), answerDTO));
+    }
+
     @GetMapping("/quiz/answer/{questionId}")
     @ResponseBody
-    public ResponseEntity<AnswerDTO> getAnswer(@PathVariable Long questionId, @RequestParam String username) {
+    public ResponseEntity<AnswerDTO> getAnswer(@PathVariable Long questionId, @RequestParam String username,
+                                               @RequestHeader HttpHeaders requestHeaders) {
         // #region agent log
         debugLog("H2", "QuizController.getAnswer:entry", "getAnswerById", new HashMap<>(Map.of(
                 "questionId", questionId,
                 "username", username
         )));
         // #endregion
+        AnswerDTO cached = answerCache.get(username, questionId);
+        if (cached != null) {
+            return answerResponse(cached, requestHeaders);
+        }
+        if (isConditional(requestHeaders)) {
+            // 条件请求先只查元数据，命中时不读取答案内容
+            Optional<AnswerMetaView> meta = answerRepository.findMetaByQuestionIdAndUsername(questionId, username);
+            ResponseEntity<AnswerDTO> notModified = notModifiedAnswer(meta, requestHeaders);
+            if (notModified != null) {
+                return notModified;
+            }
+        }
         Optional<User> userOptional = userRepository.findByUsername(username);
         if (userOptional.isPresent()) {
-            Optional<Answer> answerOptional = answerRepository.findByQuestionIdAndUserId(questionId, userOptional.get().getId());
-            if (answerOptional.isPresent()) {
-                Answer answer = answerOptional.get();
+            Optional<AnswerContent> bodyOptional = answerContentRepository.findByQuestionIdAndUserId(questionId, userOptional.get().getId());
+            if (bodyOptional.isPresent()) {
+                Answer answer = bodyOptional.get().getAnswer();
                 // #region agent log
                 debugLog("H2", "QuizController.getAnswer:found", "answerFoundById", new HashMap<>(Map.of(
                         "questionId", questionId,
@@ -177,27 +286,122 @@ public class QuizController {
                         "answerQuestionId", answer.getQuestion().getId()
                 )));
                 // #endregion
-                AnswerDTO answerDTO = new AnswerDTO(
-                    answer.getId(),
-                    answer.getContent(),
-                    answer.getCreatedAt(),
-                    answer.getUpdatedAt(),
-                    answer.getQuestion().getId(),
-                    answer.getUser().getId(),
-                    username
-                );
-                return ResponseEntity.ok(answerDTO);
+                AnswerDTO dto = AnswerDTO.from(bodyOptional.get(), username);
+                answerCache.putIfAbsent(username, questionId, dto);
+                return answerResponse(dto, requestHeaders);
+            }
+            Optional<ArchiveSegment.ArchivedAnswer> archived = answerArchive.find(questionId, userOptional.get().getId());
+            if (archived.isPresent()) {
+                AnswerDTO dto = archivedAnswer(archived.get());
+                answerCache.putIfAbsent(username, questionId, dto);
+                return answerResponse(dto, requestHeaders);
             }
+            // 尚未作答也缓存空答案，保存时写穿覆盖
+            AnswerDTO empty = new AnswerDTO();
+            answerCache.putIfAbsent(username, questionId, empty);
+            return answerResponse(empty, requestHeaders);
         } else {
             LOGGER.warn("Answer query with unknown user. questionId={}, username={}", questionId, username);
         }
         // 返回空答案DTO
-        return ResponseEntity.ok(new AnswerDTO());
+        return answerResponse(new AnswerDTO(), requestHeaders);
+    }
+
+    /**
+     * 外部存储中的答案图片：文件名即内容哈希，内容不变，可长期缓存
+     * 禁止嗅探并以 sandbox 方式返回，SVG 被直接打开时也不会执行脚本
+     */
+    @GetMapping("/quiz/images/{name:" + ImageStore.NAME_PATTERN + "}")
+    @ResponseBody
+    public ResponseEntity<Resource> getStoredImage(@PathVariable String name) {
+        Optional<Path> file = imageStore.find(name);
+        if (!file.isPresent()) {
+            LOGGER.warn("Stored image not found. name={}", name);
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable())
+                .contentType(MediaTypeFactory.getMediaType(name).orElse(MediaType.APPLICATION_OCTET_STREAM))
+                .header("X-Content-Type-Options", "nosniff")
+                .header("Content-Security-Policy", "sandbox")
+                .body(new FileSystemResource(file.get()));
+    }
+
+    /**
+     * 答案内容（text/html）：客户端接受 gzip 且内容为压缩存储时，直接发送库中的 gzip 字节，不在服务端解压与转码
+     * 题目切换时启动数据里已有答案元数据，只需取内容本身
+     */
+    @GetMapping("/quiz/answer/{questionId}/content")
+    @ResponseBody
+    public ResponseEntity<byte[]> getAnswerContent(@PathVariable Long questionId, @RequestParam String username,
+                                                   @RequestHeader HttpHeaders requestHeaders) {
+        AnswerDTO cached = answerCache.get(username, questionId);
+        if (cached != null) {
+            String etag = HttpValidators.answerETag(cached.getId(), cached.getContentVersion());
+            long lastModified = HttpValidators.toEpochMillis(cached.getUpdatedAt());
+            if (HttpValidators.notModified(requestHeaders, etag, lastModified)) {
+                return HttpValidators.notModifiedResponse(etag, lastModified);
+            }
+        }
+        Optional<AnswerBodyView> bodyOptional = answerContentRepository.findBodyByQuestionIdAndUsername(questionId, username);
+        if (!bodyOptional.isPresent() && answerArchive.isArchived(questionId)) {
+            Optional<ArchiveSegment.ArchivedAnswer> archived = userRepository.findByUsername(username)
+                    .flatMap(user -> answerArchive.find(questionId, user.getId()));
+            if (archived.isPresent()) {
+                return archivedContent(archived.get(), requestHeaders);
+            }
+        }
+        String etag = bodyOptional.map(b -> HttpValidators.answerETag(b.getId(), b.getContentVersion()))
+                .orElse(HttpValidators.answerETag(null, null));
+        long lastModified = bodyOptional.map(b -> HttpValidators.toEpochMillis(b.getUpdatedAt())).orElse(-1L);
+        if (HttpValidators.notModified(requestHeaders, etag, lastModified)) {
+            return HttpValidators.notModifiedResponse(etag, lastModified);
+        }
+
+        ResponseEntity.BodyBuilder builder = HttpValidators.okBuilder(etag, lastModified)
+                .contentType(HTML_UTF8)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (!bodyOptional.isPresent()) {
+            return builder.body(new byte[0]);
+        }
+        AnswerBodyView body = bodyOptional.get();
+        if (body.getContentGzip() != null && HttpValidators.acceptsGzip(requestHeaders)) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(body.getContentGzip());
+        }
+        String text = body.getContent() != null ? body.getContent()
+                : AnswerContentCodec.gunzip(body.getContentGzip(), body.getContentLength() != null ? body.getContentLength() : -1);
+        return builder.body(text != null ? text.getBytes(StandardCharsets.UTF_8) : new byte[0]);
+    }
+
+    /**
+     * 归档答案的内容：归档段中总是 gzip 字节，客户端接受时原样发送
+     */
+    private static ResponseEntity<byte[]> archivedContent(ArchiveSegment.ArchivedAnswer archived, HttpHeaders requestHeaders) {
+        String etag = HttpValidators.answerETag(archived.answerId(), archived.contentVersion());
+        long lastModified = HttpValidators.toEpochMillis(archived.updatedAt());
+        if (HttpValidators.notModified(requestHeaders, etag, lastModified)) {
+            return HttpValidators.notModifiedResponse(etag, lastModified);
+        }
+        ResponseEntity.BodyBuilder builder = HttpValidators.okBuilder(etag, lastModified)
+                .contentType(HTML_UTF8)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (HttpValidators.acceptsGzip(requestHeaders)) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(archived.contentGzip());
+        }
+        return builder.body(archived.content().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static AnswerDTO archivedAnswer(ArchiveSegment.ArchivedAnswer archived) {
+        AnswerDTO dto = new AnswerDTO(archived.answerId(), archived.content(), archived.createdAt(), archived.updatedAt(),
+                archived.questionId(), archived.userId(), archived.username());
+        dto.setContentVersion(archived.contentVersion());
+        return dto;
     }
 
     @GetMapping("/quiz/answer")
     @ResponseBody
-    public ResponseEntity<AnswerDTO> getAnswerByTitle(@RequestParam String title, @RequestParam String username) {
+    public ResponseEntity<AnswerDTO> getAnswerByTitle(@RequestParam String title, @RequestParam String username,
+                                                      @RequestHeader HttpHeaders requestHeaders) {
         // #region agent log
         debugLog("H1", "QuizController.getAnswerByTitle:entry", "getAnswerByTitle", new HashMap<>(Map.of(
                 "title", title,
@@ -213,11 +417,18 @@ public class QuizController {
             )));
         }
         // #endregion
+        if (isConditional(requestHeaders)) {
+            Optional<AnswerMetaView> meta = answerRepository.findMetaByQuestionTitleAndUsername(title, username).stream().findFirst();
+            ResponseEntity<AnswerDTO> notModified = notModifiedAnswer(meta, requestHeaders);
+            if (notModified != null) {
+                return notModified;
+            }
+        }
         Optional<User> userOptional = userRepository.findByUsername(username);
         if (userOptional.isPresent()) {
-            Optional<Answer> answerOptional = answerRepository.findByQuestion_TitleAndUser(title, userOptional.get());
-            if (answerOptional.isPresent()) {
-                Answer answer = answerOptional.get();
+            Optional<AnswerContent> bodyOptional = answerContentRepository.findByQuestionTitleAndUser(title, userOptional.get()).stream().findFirst();
+            if (bodyOptional.isPresent()) {
+                Answer answer = bodyOptional.get().getAnswer();
                 // #region agent log
                 debugLog("H1", "QuizController.getAnswerByTitle:found", "answerFoundByTitle", new HashMap<>(Map.of(
                         "title", title,
@@ -225,21 +436,43 @@ public class QuizController {
                         "answerQuestionId", answer.getQuestion().getId()
                 )));
                 // #endregion
-                AnswerDTO answerDTO = new AnswerDTO(
-                        answer.getId(),
-                        answer.getContent(),
-                        answer.getCreatedAt(),
-                        answer.getUpdatedAt(),
-                        answer.getQuestion().getId(),
-                        answer.getUser().getId(),
-                        username
-                );
-                return ResponseEntity.ok(answerDTO);
+                return answerResponse(AnswerDTO.from(bodyOptional.get(), username), requestHeaders);
+            }
+            Optional<ArchiveSegment.ArchivedAnswer> archived = questionsByTitle.stream().findFirst()
+                    .flatMap(question -> answerArchive.find(question.getId(), userOptional.get().getId()));
+            if (archived.isPresent()) {
+                return answerResponse(archivedAnswer(archived.get()), requestHeaders);
             }
         } else {
             LOGGER.warn("Answer query by title with unknown user. title={}, username={}", title, username);
         }
-        return ResponseEntity.ok(new AnswerDTO());
+        return answerResponse(new AnswerDTO(), requestHeaders);
+    }
+
+    private static boolean isConditional(HttpHeaders requestHeaders) {
+        return !requestHeaders.getIfNoneMatch().isEmpty() || requestHeaders.getIfModifiedSince() >= 0;
+    }
+
+    /**
+     * 按答案元数据判断条件请求是否命中；未命中返回 null，由调用方继续读取完整答案
+     */
+    private static ResponseEntity<AnswerDTO> notModifiedAnswer(Optional<AnswerMetaView> meta, HttpHeaders requestHeaders) {
+        String etag = meta.map(m -> HttpValidators.answerETag(m.getId(), m.getContentVersion()))
+                .orElse(HttpValidators.answerETag(null, null));
+        long lastModified = meta.map(m -> HttpValidators.toEpochMillis(m.getUpdatedAt())).orElse(-1L);
+        if (HttpValidators.notModified(requestHeaders, etag, lastModified)) {
+            return HttpValidators.notModifiedResponse(etag, lastModified);
+        }
+        return null;
+    }
+
+    private static ResponseEntity<AnswerDTO> answerResponse(AnswerDTO dto, HttpHeaders requestHeaders) {
+        String etag = HttpValidators.answerETag(dto.getId(), dto.getContentVersion());
+        long lastModified = HttpValidators.toEpochMillis(dto.getUpdatedAt());
+        if (HttpValidators.notModified(requestHeaders, etag, lastModified)) {
+            return HttpValidators.notModifiedResponse(etag, lastModified);
+        }
+        return HttpValidators.ok(dto, etag, lastModified);
     }
     
     @PostMapping("/quiz/save")
@@ -261,7 +494,7 @@ public class QuizController {
             entryPayload.put("heapMaxBytes", rt.maxMemory());
             entryPayload.put("heapTotalBytes", rt.totalMemory());
             entryPayload.put("heapFreeBytes", rt.freeMemory());
-            debugModeLog("H1", "QuizController.saveAnswer:entry", "saveAnswerEntry", entryPayload);
+            debugLog("H1", "QuizController.saveAnswer:entry", "saveAnswerEntry", entryPayload);
             // #endregion
             // #region agent log
             Map<String, Object> entryPayloadLegacy = new HashMap<>();
@@ -278,7 +511,7 @@ public class QuizController {
                 Map<String, Object> userMissingPayload = new HashMap<>();
                 userMissingPayload.put("traceId", traceId);
                 userMissingPayload.put("username", username);
-                debugModeLog("H2", "QuizController.saveAnswer:userMissing", "userNotFound", userMissingPayload);
+                debugLog("H2", "QuizController.saveAnswer:userMissing", "userNotFound", userMissingPayload);
                 // #endregion
                 LOGGER.warn("Save answer failed: unknown user. questionId={}, questionTitle={}, username={}",
                         questionId, questionTitle, username);
@@ -290,7 +523,7 @@ public class QuizController {
                 Map<String, Object> missingQuestionPayload = new HashMap<>();
                 missingQuestionPayload.put("traceId", traceId);
                 missingQuestionPayload.put("username", username);
-                debugModeLog("H2", "QuizController.saveAnswer:missingQuestion", "missingQuestionIdentifiers", missingQuestionPayload);
+                debugLog("H2", "QuizController.saveAnswer:missingQuestion", "missingQuestionIdentifiers", missingQuestionPayload);
                 // #endregion
                 LOGGER.warn("Save answer failed: missing question identifiers. username={}", username);
                 return ResponseEntity.badRequest().body("必须提供题目ID或题目名称");
@@ -313,7 +546,7 @@ public class QuizController {
                 questionMissingPayload.put("traceId", traceId);
                 questionMissingPayload.put("questionId", questionId);
                 questionMissingPayload.put("questionTitle", questionTitle);
-                debugModeLog("H2", "QuizController.saveAnswer:questionMissing", "questionNotFound", questionMissingPayload);
+                debugLog("H2", "QuizController.saveAnswer:questionMissing", "questionNotFound", questionMissingPayload);
                 // #endregion
                 LOGGER.warn("Save answer failed: question not found. questionId={}, questionTitle={}, username={}",
                         questionId, questionTitle, username);
@@ -322,6 +555,10 @@ public class QuizController {
             
             User user = userOptional.get();
             Question question = questionOptional.get();
+            if (answerArchive.isArchived(question.getId())) {
+                LOGGER.warn("Save answer rejected: question archived. questionId={}, username={}", question.getId(), username);
+                return ResponseEntity.status(HttpStatus.CONFLICT).body("该题已归档，不能再修改答案");
+            }
             // #region agent log
             Map<String, Object> resolvedPayload = new HashMap<>();
             resolvedPayload.put("resolvedQuestionId", question.getId());
@@ -331,43 +568,28 @@ public class QuizController {
             debugLog("H1", "QuizController.saveAnswer:resolved", "resolvedQuestion", resolvedPayload);
             // #endregion
             
-            // 查找现有答案
-            Optional<Answer> existingAnswerOptional = answerRepository.findByQuestionAndUser(question, user);
-            
-            Answer answer;
-            boolean isUpdate = existingAnswerOptional.isPresent();
-            
-            if (isUpdate) {
-                // 更新现有答案
-                answer = existingAnswerOptional.get();
-                answer.setContent(content);
-                answer.setUpdatedAt(LocalDateTime.now());
-            } else {
-                // 创建新答案
-                answer = new Answer(content, question, user);
-            }
-            
             // #region agent log
             Runtime rtBeforeSave = Runtime.getRuntime();
             Map<String, Object> beforeSavePayload = new HashMap<>();
             beforeSavePayload.put("traceId", traceId);
-            beforeSavePayload.put("isUpdate", isUpdate);
-            beforeSavePayload.put("answerId", answer.getId());
             beforeSavePayload.put("contentLen", content != null ? content.length() : 0);
             beforeSavePayload.put("heapTotalBytes", rtBeforeSave.totalMemory());
             beforeSavePayload.put("heapFreeBytes", rtBeforeSave.freeMemory());
-            debugModeLog("H1", "QuizController.saveAnswer:beforeSave", "beforeSave", beforeSavePayload);
+            debugLog("H1", "QuizController.saveAnswer:beforeSave", "beforeSave", beforeSavePayload);
             // #endregion
-            answerRepository.save(answer);
+            AnswerSaveService.Result saved = answerSaveService.save(question, user, content);
+            Answer answer = saved.answer();
+            boolean isUpdate = saved.updated();
             // #region agent log
             Runtime rtAfterSave = Runtime.getRuntime();
             Map<String, Object> afterSavePayload = new HashMap<>();
             afterSavePayload.put("traceId", traceId);
+            afterSavePayload.put("isUpdate", isUpdate);
             afterSavePayload.put("savedAnswerId", answer.getId());
             afterSavePayload.put("savedQuestionId", answer.getQuestion().getId());
             afterSavePayload.put("heapTotalBytes", rtAfterSave.totalMemory());
             afterSavePayload.put("heapFreeBytes", rtAfterSave.freeMemory());
-            debugModeLog("H1", "QuizController.saveAnswer:afterSave", "afterSave", afterSavePayload);
+            debugLog("H1", "QuizController.saveAnswer:afterSave", "afterSave", afterSavePayload);
             // #endregion
             LOGGER.info("Answer saved. answerId={}, questionId={}, questionTitle={}, username={}, isUpdate={}, contentLen={}",
                     answer.getId(), question.getId(), question.getTitle(), username, isUpdate,
@@ -388,7 +610,7 @@ public class QuizController {
             Map<String, Object> errorPayload = new HashMap<>();
             errorPayload.put("errorType", e.getClass().getName());
             errorPayload.put("errorMessage", e.getMessage() != null ? e.getMessage() : "");
-            debugModeLog("H3", "QuizController.saveAnswer:error", "saveAnswerException", errorPayload);
+            debugLog("H3", "QuizController.saveAnswer:error", "saveAnswerException", errorPayload);
             // #endregion
             LOGGER.error("Save answer error. questionId={}, questionTitle={}, username={}",
                     questionId, questionTitle, username, e);
@@ -396,6 +618,69 @@ public class QuizController {
         }
     }
     
+    /**
+     * 流式保存：请求体即答案内容（UTF-8 的 HTML），不经表单解码，边读边校验并以 JDBC 流写库，不生成内容 String
+     * 响应的 ETag 为保存后的答案版本
+     */
+    @PutMapping("/quiz/answer/{questionId}/content")
+    @ResponseBody
+    public ResponseEntity<String> saveAnswerContent(@PathVariable Long questionId, @RequestParam String username,
+                                                    @RequestHeader HttpHeaders requestHeaders,
+                                                    HttpServletRequest request) {
+        MediaType contentType = requestHeaders.getContentType();
+        if (contentType != null && contentType.getCharset() != null && !StandardCharsets.UTF_8.equals(contentType.getCharset())) {
+            LOGGER.warn("Stream save rejected: unsupported charset. questionId={}, username={}, contentType={}",
+                    questionId, username, contentType);
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).body("仅支持 UTF-8 编码");
+        }
+        if (requestHeaders.getContentLength() > answerContentWriter.getMaxBytes()) {
+            LOGGER.warn("Stream save rejected: content too large. questionId={}, username={}, contentLength={}",
+                    questionId, username, requestHeaders.getContentLength());
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body("答案内容过大");
+        }
+        Optional<User> userOptional = userRepository.findByUsername(username);
+        if (!userOptional.isPresent()) {
+            LOGGER.warn("Stream save failed: unknown user. questionId={}, username={}", questionId, username);
+            return ResponseEntity.badRequest().body("用户不存在: " + username);
+        }
+        if (!questionRepository.existsById(questionId)) {
+            LOGGER.warn("Stream save failed: question not found. questionId={}, username={}", questionId, username);
+            return ResponseEntity.badRequest().body("题目不存在: " + questionId);
+        }
+        if (answerArchive.isArchived(questionId)) {
+            LOGGER.warn("Stream save rejected: question archived. questionId={}, username={}", questionId, username);
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("该题已归档，不能再修改答案");
+        }
+        // 写入前先失效，提交后再留下版本标记，期间开始的读取不会把旧内容填回缓存
+        answerCache.invalidate(username, questionId);
+        try {
+            AnswerContentWriter.Result result = answerContentWriter.write(questionId, userOptional.get().getId(), request.getInputStream());
+            answerCache.invalidate(username, questionId, result.contentVersion());
+            imageIngestService.submit(result.answerId(), username, questionId);
+            answerSearchIndex.reindexAfterCommit(result.answerId());
+            answerSimilarityService.refreshAfterCommit(result.answerId());
+            answerRevisionLog.appendAfterCommit(result.answerId());
+            // 与表单保存相同：未评分、内容非空白的学生答案加入阅卷队列（已在队列中的不会重复加入）
+            if (result.unscored() && !result.blank() && !"admin".equals(username)) {
+                gradingQueue.ungraded(questionId, result.answerId());
+            }
+            LOGGER.info("Answer saved (stream). answerId={}, questionId={}, username={}, isUpdate={}, bytes={}, contentLen={}",
+                    result.answerId(), questionId, username, result.updated(), result.bytes(), result.chars());
+            return ResponseEntity.ok()
+                    .eTag(HttpValidators.answerETag(result.answerId(), result.contentVersion()))
+                    .body(result.updated() ? "答案更新成功" : "答案保存成功");
+        } catch (AnswerContentWriter.ContentTooLargeException e) {
+            LOGGER.warn("Stream save rejected: content too large. questionId={}, username={}", questionId, username);
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body("答案内容过大");
+        } catch (CharacterCodingException e) {
+            LOGGER.warn("Stream save rejected: malformed UTF-8. questionId={}, username={}", questionId, username);
+            return ResponseEntity.badRequest().body("答案内容不是合法的 UTF-8");
+        } catch (Exception e) {
+            LOGGER.error("Stream save error. questionId={}, username={}", questionId, username, e);
+            return ResponseEntity.internalServerError().body("保存失败: " + e.getMessage());
+        }
+    }
+
     @GetMapping("/quiz/stats/{username}")
     @ResponseBody
     public ResponseEntity<String> getUserStats(@PathVariable String username) {
@@ -406,12 +691,16 @@ public class QuizController {
             }
             
             User user = userOptional.get();
-            List<Answer> answers = answerRepository.findByUser(user);
-            
-            int totalAnswers = answers.size();
-            int answeredQuestions = (int) answers.stream()
-                .filter(answer -> answer.getContent() != null && !answer.getContent().trim().isEmpty())
-                .count();
+            // 只按元数据计数，不读取答案内容
+            int totalAnswers = (int) answerRepository.countByUser(user);
+            int answeredQuestions = (int) answerRepository.countNonEmptyByUser(user);
+            for (Long archivedQuestionId : answerArchive.archivedQuestionIds()) {
+                Optional<ArchiveSegment.ArchivedAnswer> archived = answerArchive.find(archivedQuestionId, user.getId());
+                if (archived.isPresent()) {
+                    totalAnswers++;
+                    answeredQuestions += archived.get().contentLength() > 0 ? 1 : 0;
+                }
+            }
             
             String stats = String.format("用户 %s 的答题统计：总共答题 %d 道，有效答案 %d 道", 
                 username, totalAnswers, answeredQuestions);
@@ -0,0 +1,204 @@
+package com.example.quiz.controller;
+
+import com.example.quiz.service.DiagnosticsSink;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 浏览器遥测：页面把事件攒成一批，每隔几秒或页面隐藏时用 navigator.sendBeacon 发送一次
+ * 请求体 {"sessionId":..., "username":..., "page":..., "events":[{"location":..., "message":..., "timestamp":..., "data":{...}}]}
+ * 用流式解析器逐个读取事件，按会话抽样（同一会话的事件要么全部保留要么全部丢弃）后放入异步诊断落盘
+ */
+@Controller
+public class TelemetryController {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TelemetryController.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final JsonFactory JSON = MAPPER.getFactory();
+    private static final int MAX_STRING_LENGTH = 256;
+
+    @Autowired
+    private DiagnosticsSink diagnosticsSink;
+
+    @Value("${app.telemetry.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.telemetry.max-bytes:65536}")
+    private int maxBytes;
+
+    @Value("${app.telemetry.max-events:200}")
+    private int maxEvents;
+
+    @Value("${app.telemetry.sample-rate:1.0}")
+    private double sampleRate;
+
+    private final Counter accepted;
+    private final Counter sampledOut;
+    private final Counter rejected;
+
+    public TelemetryController(MeterRegistry meterRegistry) {
+        this.accepted = Counter.builder("quiz.telemetry.events").tag("result", "accepted").register(meterRegistry);
+        this.sampledOut = Counter.builder("quiz.telemetry.events").tag("result", "sampled").register(meterRegistry);
+        this.rejected = Counter.builder("quiz.telemetry.batches").tag("result", "rejected").register(meterRegistry);
+    }
+
+    /**
+     * sendBeacon 不读取响应，成功统一返回 204；请求体过大 413，格式错误 400
+     */
+    @PostMapping("/telemetry")
+    @ResponseBody
+    public ResponseEntity<Void> ingest(HttpServletRequest request) throws IOException {
+        if (!enabled) {
+            return ResponseEntity.noContent().build();
+        }
+        if (request.getContentLengthLong() > maxBytes) {
+            rejected.increment();
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        // 上限很小，先读入定长缓冲区，防止未声明长度的请求无限读取
+        byte[] body = request.getInputStream().readNBytes(maxBytes + 1);
+        if (body.length > maxBytes) {
+            rejected.increment();
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        Batch batch;
+        try (JsonParser parser = JSON.createParser(body)) {
+            batch = parse(parser);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            rejected.increment();
+            LOGGER.debug("Malformed telemetry batch. remoteAddr={}, error={}", request.getRemoteAddr(), e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+        if (!sampled(batch.sessionId)) {
+            sampledOut.increment(batch.events.size());
+            return ResponseEntity.noContent().build();
+        }
+        for (Map<String, Object> event : batch.events) {
+            event.put("source", "client");
+            event.put("sessionId", batch.sessionId);
+            event.put("username", batch.username);
+            event.put("page", batch.page);
+            event.put("receivedAt", System.currentTimeMillis());
+            if (diagnosticsSink.offer(event)) {
+                accepted.increment();
+            }
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    private static final class Batch {
+        String sessionId;
+        String username;
+        String page;
+        final List<Map<String, Object>> events = new ArrayList<>();
+    }
+
+    /**
+     * 只接受已知字段，其余跳过；超过 max-events 的事件丢弃
+     */
+    private Batch parse(JsonParser parser) throws IOException {
+        Batch batch = new Batch();
+        expect(parser.nextToken(), JsonToken.START_OBJECT);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "sessionId" -> batch.sessionId = text(parser, value);
+                case "username" -> batch.username = text(parser, value);
+                case "page" -> batch.page = text(parser, value);
+                case "events" -> {
+                    expect(value, JsonToken.START_ARRAY);
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        Map<String, Object> event = parseEvent(parser);
+                        if (batch.events.size() < maxEvents) {
+                            batch.events.add(event);
+                        }
+                    }
+                    expect(parser.currentToken(), JsonToken.END_ARRAY);
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        expect(parser.currentToken(), JsonToken.END_OBJECT);
+        return batch;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> parseEvent(JsonParser parser) throws IOException {
+        Map<String, Object> event = new HashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "location", "message", "hypothesisId" -> event.put(field, text(parser, value));
+                case "timestamp" -> {
+                    if (value != JsonToken.VALUE_NUMBER_INT) {
+                        throw new IllegalArgumentException("timestamp must be an integer");
+                    }
+                    event.put(field, parser.getLongValue());
+                }
+                case "data" -> {
+                    expect(value, JsonToken.START_OBJECT);
+                    event.put(field, MAPPER.readValue(parser, Map.class));
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        if (!(event.get("message") instanceof String)) {
+            throw new IllegalArgumentException("event without message");
+        }
+        return event;
+    }
+
+    private static String text(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token != JsonToken.VALUE_STRING) {
+            throw new IllegalArgumentException("expected string at " + parser.currentName());
+        }
+        String text = parser.getText();
+        return text.length() > MAX_STRING_LENGTH ? text.substring(0, MAX_STRING_LENGTH) : text;
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected) {
+        if (actual != expected) {
+            throw new IllegalArgumentException("expected " + expected + " but was " + actual);
+        }
+    }
+
+    /**
+     * 按会话ID哈希抽样，同一会话结果一致；没有会话ID时随机
+     */
+    private boolean sampled(String sessionId) {
+        if (sampleRate >= 1.0) {
+            return true;
+        }
+        double point = sessionId != null
+                ? (sessionId.hashCode() & 0x7fffffff) % 10_000 / 10_000.0
+                : ThreadLocalRandom.current().nextDouble();
+        return point < sampleRate;
+    }
+}
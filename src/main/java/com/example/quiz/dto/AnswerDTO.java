@@ -1,5 +1,8 @@
 package com.example.quiz.dto;
 
+import com.example.quiz.model.Answer;
+import com.example.quiz.model.AnswerContent;
+
 import java.time.LocalDateTime;
 
 /**
@@ -14,6 +17,7 @@ public class AnswerDTO {
     private Long questionId;
     private Long userId;
     private String username;
+    private Long contentVersion;
     
     // 默认构造函数
     public AnswerDTO() {}
@@ -29,6 +33,24 @@ public class AnswerDTO {
         this.userId = userId;
         this.username = username;
     }
+
+    /**
+     * 由答案内容及其答案构建DTO，username 由调用方传入以避免再次加载用户
+     */
+    public static AnswerDTO from(AnswerContent body, String username) {
+        Answer answer = body.getAnswer();
+        AnswerDTO dto = new AnswerDTO(
+            answer.getId(),
+            body.getContent(),
+            answer.getCreatedAt(),
+            answer.getUpdatedAt(),
+            answer.getQuestion().getId(),
+            answer.getUser().getId(),
+            username
+        );
+        dto.setContentVersion(answer.getContentVersion() != null ? answer.getContentVersion() : 0L);
+        return dto;
+    }
     
     // Getter 和 Setter 方法
     public Long getId() {
@@ -86,4 +108,12 @@ public class AnswerDTO {
     public void setUsername(String username) {
         this.username = username;
     }
+
+    public Long getContentVersion() {
+        return contentVersion;
+    }
+
+    public void setContentVersion(Long contentVersion) {
+        this.contentVersion = contentVersion;
+    }
 }
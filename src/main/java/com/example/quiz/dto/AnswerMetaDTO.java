@@ -0,0 +1,44 @@
+package com.example.quiz.dto;
+
+import com.example.quiz.repository.AnswerMetaView;
+
+import java.time.LocalDateTime;
+
+/**
+ * 答案元数据：不含内容，供答题页启动时标记已答题目、判断是否需要加载答案
+ */
+public class AnswerMetaDTO {
+    private Long id;
+    private LocalDateTime updatedAt;
+    private Integer contentLength;
+    private Long contentVersion;
+
+    public AnswerMetaDTO() {}
+
+    public AnswerMetaDTO(Long id, LocalDateTime updatedAt, Integer contentLength, Long contentVersion) {
+        this.id = id;
+        this.updatedAt = updatedAt;
+        this.contentLength = contentLength;
+        this.contentVersion = contentVersion;
+    }
+
+    public static AnswerMetaDTO from(AnswerMetaView view) {
+        return new AnswerMetaDTO(view.getId(), view.getUpdatedAt(), view.getContentLength(), view.getContentVersion());
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public Integer getContentLength() {
+        return contentLength;
+    }
+
+    public Long getContentVersion() {
+        return contentVersion;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.quiz.dto;
+
+import com.example.quiz.model.Question;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 答题页启动数据：有序的章节与题目，以及每道题该用户答案的元数据（不含内容）
+ */
+public class BootstrapDTO {
+    private String username;
+    private List<ChapterEntry> chapters = new ArrayList<>();
+
+    public BootstrapDTO() {}
+
+    public BootstrapDTO(String username) {
+        this.username = username;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public List<ChapterEntry> getChapters() {
+        return chapters;
+    }
+
+    public static class ChapterEntry {
+        private Long id;
+        private String title;
+        private Integer sortOrder;
+        private List<QuestionEntry> questions = new ArrayList<>();
+
+        public ChapterEntry() {}
+
+        public ChapterEntry(Long id, String title, Integer sortOrder) {
+            this.id = id;
+            this.title = title;
+            this.sortOrder = sortOrder;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public Integer getSortOrder() {
+            return sortOrder;
+        }
+
+        public List<QuestionEntry> getQuestions() {
+            return questions;
+        }
+    }
+
+    /**
+     * 题目字段与 QuestionDTO 相同，另附该用户答案的元数据（未作答为 null）
+     */
+    public static class QuestionEntry extends QuestionDTO {
+        private AnswerMetaDTO answer;
+
+        public QuestionEntry() {}
+
+        public QuestionEntry(Question question, AnswerMetaDTO answer) {
+            super(question.getId(), question.getTitle(), question.getDescription(), question.getQuestionNumber(),
+                    question.getSortOrder(), question.getChapter().getId(), question.getChapter().getTitle());
+            this.answer = answer;
+        }
+
+        public AnswerMetaDTO getAnswer() {
+            return answer;
+        }
+    }
+}
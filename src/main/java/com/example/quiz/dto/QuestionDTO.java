@@ -1,5 +1,7 @@
 package com.example.quiz.dto;
 
+import com.example.quiz.model.Question;
+
 /**
  * Question数据传输对象，用于JSON序列化
  * 避免循环引用问题
@@ -27,6 +29,18 @@ public class QuestionDTO {
         this.chapterId = chapterId;
         this.chapterTitle = chapterTitle;
     }
+
+    public static QuestionDTO from(Question question) {
+        return new QuestionDTO(
+            question.getId(),
+            question.getTitle(),
+            question.getDescription(),
+            question.getQuestionNumber(),
+            question.getSortOrder(),
+            question.getChapter().getId(),
+            question.getChapter().getTitle()
+        );
+    }
     
     // Getter 和 Setter 方法
     public Long getId() {
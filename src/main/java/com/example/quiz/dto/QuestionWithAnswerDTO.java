@@ -0,0 +1,24 @@
+package com.example.quiz.dto;
+
+/**
+ * 题目与该用户答案的组合，切换题目时一次请求取回
+ */
+public class QuestionWithAnswerDTO {
+    private QuestionDTO question;
+    private AnswerDTO answer;
+
+    public QuestionWithAnswerDTO() {}
+
+    public QuestionWithAnswerDTO(QuestionDTO question, AnswerDTO answer) {
+        this.question = question;
+        this.answer = answer;
+    }
+
+    public QuestionDTO getQuestion() {
+        return question;
+    }
+
+    public AnswerDTO getAnswer() {
+        return answer;
+    }
+}
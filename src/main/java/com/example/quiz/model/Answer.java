@@ -2,30 +2,50 @@ package com.example.quiz.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.hibernate.annotations.DynamicUpdate;
 import java.time.LocalDateTime;
 
+/**
+ * 答案元数据；内容本身存放在 answer_contents 表（AnswerContent），加载答案不会读取内容
+ * 只更新变化的列：保存内容时不会把加载时的得分、备注写回，与阅卷的 UPDATE 互不覆盖
+ * 每个用户每道题至多一行（唯一约束 question_id + user_id），并发的首次保存只有一个能插入
+ */
 @Entity
-@Table(name = "answers")
+@DynamicUpdate
+@Table(name = "answers", uniqueConstraints = @UniqueConstraint(name = "uk_answers_question_user",
+        columnNames = {"question_id", "user_id"}))
 public class Answer {
     
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
-    @Column(columnDefinition = "TEXT")
-    private String content;
-    
     @Column(name = "score")
     private Double score;  // 该用户这道题得的分数
     
     @Column(name = "remark", length = 500)
     private String remark;  // 管理员备注
+
+    @Column(name = "suggested_score")
+    private Double suggestedScore;  // 按评分规则自动给出的建议分，阅卷人采纳后才写入 score
+
+    @Column(name = "suggested_version")
+    private Long suggestedVersion;  // 建议分对应的内容版本，学生之后再保存则建议失效
+
+    @Column(name = "suggestion_note", length = 500)
+    private String suggestionNote;  // 建议分的命中与缺少项
     
     @Column(name = "created_at")
     private LocalDateTime createdAt;
     
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
+
+    @Column(name = "content_length")
+    private Integer contentLength;  // 内容字符数，统计与元数据查询无需读取内容本身
+
+    @Column(name = "content_version")
+    private Long contentVersion;  // 内容每变化一次加 1，旧数据为空视为 0
     
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "question_id", nullable = false)
@@ -40,9 +60,8 @@ public class Answer {
     // 默认构造函数
     public Answer() {}
     
-    // 带参数的构造函数
-    public Answer(String content, Question question, User user) {
-        this.content = content;
+    // 带参数的构造函数，内容由 AnswerContent 另行保存
+    public Answer(Question question, User user) {
         this.question = question;
         this.user = user;
         this.createdAt = LocalDateTime.now();
@@ -69,12 +88,20 @@ public class Answer {
         this.id = id;
     }
     
-    public String getContent() {
-        return content;
+    /**
+     * 内容变化时由 AnswerContent 调用：更新字符数并把版本号加 1
+     */
+    void contentChanged(int length) {
+        this.contentLength = length;
+        this.contentVersion = (contentVersion != null ? contentVersion : 0L) + 1;
     }
-    
-    public void setContent(String content) {
-        this.content = content;
+
+    public Integer getContentLength() {
+        return contentLength;
+    }
+
+    public Long getContentVersion() {
+        return contentVersion;
     }
     
     public LocalDateTime getCreatedAt() {
@@ -124,12 +151,32 @@ public class Answer {
     public void setRemark(String remark) {
         this.remark = remark;
     }
+
+    public Double getSuggestedScore() {
+        return suggestedScore;
+    }
+
+    public Long getSuggestedVersion() {
+        return suggestedVersion;
+    }
+
+    public String getSuggestionNote() {
+        return suggestionNote;
+    }
+
+    /**
+     * 建议分是否针对当前内容（之后没有再保存过）
+     */
+    public boolean hasCurrentSuggestion() {
+        return suggestedScore != null && suggestedVersion != null
+                && suggestedVersion.equals(contentVersion != null ? contentVersion : 0L);
+    }
     
     @Override
     public String toString() {
         return "Answer{" +
                 "id=" + id +
-                ", content='" + content + '\'' +
+                ", contentLength=" + contentLength +
                 ", createdAt=" + createdAt +
                 ", updatedAt=" + updatedAt +
                 '}';
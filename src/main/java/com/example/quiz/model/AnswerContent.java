@@ -0,0 +1,110 @@
+package com.example.quiz.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * 答案内容，单独存放在 answer_contents 表，主键即答案ID
+ * Answer 不引用本实体：评分、统计、元数据查询只读 answers 表，耗时与答案大小无关；
+ * 需要内容时通过 AnswerContentRepository 显式读取。删除答案时数据库级联删除内容
+ */
+@Entity
+@Table(name = "answer_contents")
+public class AnswerContent {
+
+    @Id
+    @Column(name = "answer_id")
+    private Long id;
+
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "answer_id")
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @JsonIgnore
+    private Answer answer;
+
+    @Column(columnDefinition = "TEXT")
+    private String content;  // 明文存储（text 模式或迁移前的旧数据）
+
+    @Lob
+    @Column(name = "content_gz")
+    @JsonIgnore
+    private byte[] contentGzip;  // gzip 压缩存储，与 content 二选一
+
+    @Transient
+    private String plainContent;  // 解压结果，同一实体多次读取只解压一次
+
+    public AnswerContent() {}
+
+    /**
+     * answer 需先于本实体持久化（共享主键）
+     * @param compress 存储模式，取自 AnswerContentStorage.isCompressed()
+     */
+    public AnswerContent(Answer answer, String content, boolean compress) {
+        this.answer = answer;
+        setContent(content, compress);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Answer getAnswer() {
+        return answer;
+    }
+
+    public String getContent() {
+        if (content != null || contentGzip == null) {
+            return content;
+        }
+        if (plainContent == null) {
+            Integer length = answer.getContentLength();
+            plainContent = AnswerContentCodec.gunzip(contentGzip, length != null ? length : -1);
+        }
+        return plainContent;
+    }
+
+    /**
+     * 按给定的存储模式写入，内容变化时同步答案上的长度与版本号；
+     * 压缩模式下比较压缩字节判断内容是否变化，无需解压旧内容
+     */
+    public void setContent(String content, boolean compress) {
+        boolean stored = answer.getContentVersion() != null;
+        if (compress && content != null) {
+            byte[] compressed = AnswerContentCodec.gzip(content);
+            if (stored && this.content == null && Arrays.equals(contentGzip, compressed)) {
+                return;
+            }
+            this.contentGzip = compressed;
+            this.content = null;
+        } else {
+            if (stored && contentGzip == null && Objects.equals(this.content, content)) {
+                return;
+            }
+            this.content = content;
+            this.contentGzip = null;
+        }
+        this.plainContent = content;
+        answer.contentChanged(content != null ? content.length() : 0);
+    }
+
+    /**
+     * 压缩后的内容；明文存储时返回 null
+     */
+    public byte[] getContentGzip() {
+        return contentGzip;
+    }
+
+    @Override
+    public String toString() {
+        return "AnswerContent{" +
+                "id=" + id +
+                ", compressed=" + (contentGzip != null) +
+                '}';
+    }
+}
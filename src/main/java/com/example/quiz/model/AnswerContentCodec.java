@@ -0,0 +1,63 @@
+package com.example.quiz.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 答案内容压缩存储：UTF-8 文本的 gzip 字节，可原样作为 Content-Encoding: gzip 响应体发送
+ * 写入模式由 app.answer-content.storage 决定（gzip / text，见 AnswerContentStorage），读取两种格式都支持
+ */
+public final class AnswerContentCodec {
+
+    /** 逐段编码，避免 getBytes 为大内容一次性分配完整 UTF-8 副本 */
+    private static final int CHUNK_CHARS = 8192;
+
+    private AnswerContentCodec() {}
+
+    /**
+     * Java 的 GZIPOutputStream 头部时间戳固定为 0，相同文本得到相同字节，可用于判断内容是否变化
+     */
+    public static byte[] gzip(String text) {
+        if (text == null) {
+            return null;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, text.length() / 4));
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(out, CHUNK_CHARS), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < text.length(); i += CHUNK_CHARS) {
+                writer.write(text, i, Math.min(CHUNK_CHARS, text.length() - i));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @param expectedChars 已知字符数时用于预分配，未知传 -1
+     */
+    public static String gunzip(byte[] compressed, int expectedChars) {
+        if (compressed == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(expectedChars > 0 ? expectedChars : compressed.length * 2);
+        char[] buffer = new char[CHUNK_CHARS];
+        try (Reader reader = new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(compressed), CHUNK_CHARS), StandardCharsets.UTF_8)) {
+            int n;
+            while ((n = reader.read(buffer)) != -1) {
+                sb.append(buffer, 0, n);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+}
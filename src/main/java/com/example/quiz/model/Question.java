@@ -26,6 +26,10 @@ public class Question {
     
     @Column(name = "total_score")
     private Double totalScore;  // 这道题的总分
+
+    @Column(name = "rubric", length = 4000)
+    @JsonIgnore
+    private String rubric;  // 自动评分规则（data.json 中的 rubric，JSON 文本），为空表示不自动评分
     
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "chapter_id", nullable = false)
@@ -111,6 +115,14 @@ public class Question {
     public void setTotalScore(Double totalScore) {
         this.totalScore = totalScore;
     }
+
+    public String getRubric() {
+        return rubric;
+    }
+
+    public void setRubric(String rubric) {
+        this.rubric = rubric;
+    }
     
     @Override
     public String toString() {
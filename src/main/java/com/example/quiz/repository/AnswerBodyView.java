@@ -0,0 +1,11 @@
+package com.example.quiz.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * 答案内容投影：明文或压缩字节二选一，附带计算 ETag 所需的元数据
+ */
+public interface AnswerBodyView extends AnswerStorageView {
+
+    LocalDateTime getUpdatedAt();
+}
@@ -0,0 +1,119 @@
+package com.example.quiz.repository;
+
+import com.example.quiz.model.AnswerContent;
+import com.example.quiz.model.User;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+/**
+ * 答案内容（answer_contents 表）；读取内容的查询都在这里，AnswerRepository 只访问元数据
+ */
+@Repository
+public interface AnswerContentRepository extends JpaRepository<AnswerContent, Long> {
+
+    /**
+     * 内容与答案一次取回
+     */
+    @Query("SELECT c FROM AnswerContent c JOIN FETCH c.answer a WHERE a.question.id = :questionId AND a.user.id = :userId")
+    Optional<AnswerContent> findByQuestionIdAndUserId(@Param("questionId") Long questionId, @Param("userId") Long userId);
+
+    @Query("SELECT c FROM AnswerContent c JOIN FETCH c.answer a WHERE a.question.title = :title AND a.user = :user")
+    List<AnswerContent> findByQuestionTitleAndUser(@Param("title") String title, @Param("user") User user);
+
+    @Query("SELECT c FROM AnswerContent c JOIN FETCH c.answer a JOIN FETCH a.user WHERE a.question.id = :questionId")
+    List<AnswerContent> findByQuestionIdWithUser(@Param("questionId") Long questionId);
+
+    /**
+     * 按用户ID顺序流式读取全部答案内容，导出时逐用户消费，避免逐题查询
+     * 调用方需在事务内使用并关闭 Stream
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "50"))
+    @Query("SELECT a.user.id AS userId, a.question.id AS questionId, c.content AS content, "
+            + "c.contentGzip AS contentGzip, a.contentLength AS contentLength FROM AnswerContent c JOIN c.answer a ORDER BY a.user.id")
+    Stream<AnswerContentView> streamAllContentOrderByUser();
+
+    @Query("SELECT a.user.id AS userId, a.question.id AS questionId, c.content AS content, "
+            + "c.contentGzip AS contentGzip, a.contentLength AS contentLength FROM AnswerContent c JOIN c.answer a WHERE c.id = :answerId")
+    Optional<AnswerContentView> findContentViewById(@Param("answerId") Long answerId);
+
+    /**
+     * 指定答案的内容与校验元数据，内容接口直接取压缩字节，不经过实体
+     */
+    @Query("SELECT a.id AS id, c.content AS content, c.contentGzip AS contentGzip, a.contentLength AS contentLength, "
+            + "COALESCE(a.contentVersion, 0) AS contentVersion, a.updatedAt AS updatedAt "
+            + "FROM AnswerContent c JOIN c.answer a WHERE a.question.id = :questionId AND a.user.username = :username")
+    Optional<AnswerBodyView> findBodyByQuestionIdAndUsername(@Param("questionId") Long questionId, @Param("username") String username);
+
+    @Query("SELECT c.id AS id, c.content AS content, c.contentGzip AS contentGzip, a.contentLength AS contentLength, "
+            + "COALESCE(a.contentVersion, 0) AS contentVersion FROM AnswerContent c JOIN c.answer a "
+            + "WHERE c.id > :afterId AND c.content IS NOT NULL ORDER BY c.id")
+    List<AnswerStorageView> findTextStoredAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT c.id AS id, c.content AS content, c.contentGzip AS contentGzip, a.contentLength AS contentLength, "
+            + "COALESCE(a.contentVersion, 0) AS contentVersion FROM AnswerContent c JOIN c.answer a "
+            + "WHERE c.id > :afterId AND c.contentGzip IS NOT NULL ORDER BY c.id")
+    List<AnswerStorageView> findGzipStoredAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT c.id AS id, c.content AS content, c.contentGzip AS contentGzip, a.contentLength AS contentLength, "
+            + "COALESCE(a.contentVersion, 0) AS contentVersion FROM AnswerContent c JOIN c.answer a WHERE c.id = :id")
+    Optional<AnswerStorageView> findStorageViewById(@Param("id") Long id);
+
+    /**
+     * 按答案ID顺序分批读取内容（图片回填、搜索索引构建）；压缩存储无法在 SQL 中判断是否含图片，由调用方过滤
+     */
+    @Query("SELECT c.id AS id, c.content AS content, c.contentGzip AS contentGzip, a.contentLength AS contentLength, "
+            + "COALESCE(a.contentVersion, 0) AS contentVersion, u.username AS username, a.question.id AS questionId "
+            + "FROM AnswerContent c JOIN c.answer a JOIN a.user u WHERE c.id > :afterId ORDER BY c.id")
+    List<AnswerContentRowView> findContentRowsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT c.id AS id, c.content AS content, c.contentGzip AS contentGzip, a.contentLength AS contentLength, "
+            + "COALESCE(a.contentVersion, 0) AS contentVersion, u.username AS username, a.question.id AS questionId "
+            + "FROM AnswerContent c JOIN c.answer a JOIN a.user u WHERE c.id = :id")
+    Optional<AnswerContentRowView> findContentRowById(@Param("id") Long id);
+
+    @Query("SELECT c.id AS id, c.content AS content, c.contentGzip AS contentGzip, a.contentLength AS contentLength, "
+            + "COALESCE(a.contentVersion, 0) AS contentVersion, COALESCE(a.updatedAt, a.createdAt) AS savedAt "
+            + "FROM AnswerContent c JOIN c.answer a WHERE c.id = :id")
+    Optional<AnswerRevisionRowView> findRevisionRowById(@Param("id") Long id);
+
+    @Query("SELECT c.id AS id, c.content AS content, c.contentGzip AS contentGzip, a.contentLength AS contentLength, "
+            + "COALESCE(a.contentVersion, 0) AS contentVersion, u.username AS username, a.question.id AS questionId "
+            + "FROM AnswerContent c JOIN c.answer a JOIN a.user u WHERE c.id IN :ids")
+    List<AnswerContentRowView> findContentRowsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 整体替换内容（按当前存储模式只写其中一列），需与 AnswerRepository.advanceContentVersion 在同一事务中调用
+     */
+    @Modifying
+    @Query("UPDATE AnswerContent c SET c.content = :text, c.contentGzip = :gzip WHERE c.id = :id")
+    int replaceContent(@Param("id") Long id, @Param("text") String text, @Param("gzip") byte[] gzip);
+
+    /**
+     * 迁移为压缩存储；版本号不符说明期间已被保存（新内容已按当前模式写入），跳过
+     * 只更新内容表，答案的 updatedAt 与 ETag 保持不变
+     */
+    @Modifying
+    @Query("UPDATE AnswerContent c SET c.contentGzip = :gzip, c.content = NULL "
+            + "WHERE c.id = :id AND c.content IS NOT NULL "
+            + "AND EXISTS (SELECT 1 FROM Answer a WHERE a.id = :id AND COALESCE(a.contentVersion, 0) = :version)")
+    int storeCompressed(@Param("id") Long id, @Param("version") Long version, @Param("gzip") byte[] gzip);
+
+    @Modifying
+    @Query("UPDATE AnswerContent c SET c.content = :text, c.contentGzip = NULL "
+            + "WHERE c.id = :id AND c.contentGzip IS NOT NULL "
+            + "AND EXISTS (SELECT 1 FROM Answer a WHERE a.id = :id AND COALESCE(a.contentVersion, 0) = :version)")
+    int storeText(@Param("id") Long id, @Param("version") Long version, @Param("text") String text);
+}
@@ -0,0 +1,11 @@
+package com.example.quiz.repository;
+
+/**
+ * 按行处理答案内容的投影（图片回填、搜索索引）：存储投影加上答案缓存与索引需要的用户名与题目ID
+ */
+public interface AnswerContentRowView extends AnswerStorageView {
+
+    String getUsername();
+
+    Long getQuestionId();
+}
@@ -0,0 +1,29 @@
+package com.example.quiz.repository;
+
+import com.example.quiz.model.AnswerContentCodec;
+
+/**
+ * 答案内容投影：只取导出所需的列，不加载实体
+ */
+public interface AnswerContentView {
+
+    Long getUserId();
+
+    Long getQuestionId();
+
+    String getContent();
+
+    byte[] getContentGzip();
+
+    Integer getContentLength();
+
+    /**
+     * 明文或压缩存储的内容统一解为文本
+     */
+    default String getContentText() {
+        if (getContent() != null) {
+            return getContent();
+        }
+        return AnswerContentCodec.gunzip(getContentGzip(), getContentLength() != null ? getContentLength() : -1);
+    }
+}
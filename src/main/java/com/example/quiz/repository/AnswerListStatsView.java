@@ -0,0 +1,18 @@
+package com.example.quiz.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * 某题答案列表的汇总投影：阅卷列表计算 ETag 使用，不读取答案内容
+ */
+public interface AnswerListStatsView {
+
+    Long getCount();
+
+    Long getMaxId();
+
+    LocalDateTime getMaxUpdatedAt();
+
+    /** 内容版本之和：后台改写内容不改 updatedAt，靠它让 ETag 变化 */
+    Long getVersionSum();
+}
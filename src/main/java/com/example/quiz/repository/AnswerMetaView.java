@@ -0,0 +1,19 @@
+package com.example.quiz.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * 答案元数据投影：答题页启动时标记已答题目、条件请求计算校验值，不读取答案内容
+ */
+public interface AnswerMetaView {
+
+    Long getQuestionId();
+
+    Long getId();
+
+    LocalDateTime getUpdatedAt();
+
+    Integer getContentLength();
+
+    Long getContentVersion();
+}
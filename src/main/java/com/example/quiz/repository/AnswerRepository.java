@@ -3,11 +3,17 @@ package com.example.quiz.repository;
 import com.example.quiz.model.Answer;
 import com.example.quiz.model.Question;
 import com.example.quiz.model.User;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,10 +24,130 @@ public interface AnswerRepository extends JpaRepository<Answer, Long> {
     
     @Query("SELECT a FROM Answer a WHERE a.question.id = :questionId AND a.user.id = :userId")
     Optional<Answer> findByQuestionIdAndUserId(@Param("questionId") Long questionId, @Param("userId") Long userId);
+
+    /**
+     * 同上，并以 SELECT ... FOR UPDATE 锁住答案行直到事务结束
+     * 改写内容的各条路径（表单保存、流式保存、图片入库/回填）都先锁答案行再写内容行，按提交顺序排队，内容版本不会重复
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Answer a WHERE a.question.id = :questionId AND a.user.id = :userId")
+    Optional<Answer> findForUpdateByQuestionIdAndUserId(@Param("questionId") Long questionId, @Param("userId") Long userId);
     
     List<Answer> findByUser(User user);
+
+    long countByUser(User user);
     
     List<Answer> findByQuestion(Question question);
 
     Optional<Answer> findByQuestion_TitleAndUser(String title, User user);
+
+    @Query("SELECT a FROM Answer a JOIN FETCH a.user WHERE a.question.id = :questionId")
+    List<Answer> findByQuestionIdWithUser(@Param("questionId") Long questionId);
+
+    /**
+     * 用户全部答案的元数据；content_version 为空的旧数据视为 0；不读取 answer_contents 表
+     */
+    @Query("SELECT a.question.id AS questionId, a.id AS id, a.updatedAt AS updatedAt, "
+            + "COALESCE(a.contentLength, 0) AS contentLength, "
+            + "COALESCE(a.contentVersion, 0) AS contentVersion "
+            + "FROM Answer a WHERE a.user.id = :userId")
+    List<AnswerMetaView> findMetaByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT a.question.id AS questionId, a.id AS id, a.updatedAt AS updatedAt, "
+            + "COALESCE(a.contentLength, 0) AS contentLength, "
+            + "COALESCE(a.contentVersion, 0) AS contentVersion "
+            + "FROM Answer a WHERE a.question.id = :questionId AND a.user.username = :username")
+    Optional<AnswerMetaView> findMetaByQuestionIdAndUsername(@Param("questionId") Long questionId, @Param("username") String username);
+
+    @Query("SELECT a.question.id AS questionId, a.id AS id, a.updatedAt AS updatedAt, "
+            + "COALESCE(a.contentLength, 0) AS contentLength, "
+            + "COALESCE(a.contentVersion, 0) AS contentVersion "
+            + "FROM Answer a WHERE a.question.title = :title AND a.user.username = :username")
+    List<AnswerMetaView> findMetaByQuestionTitleAndUsername(@Param("title") String title, @Param("username") String username);
+
+    @Query("SELECT COUNT(a) AS count, MAX(a.id) AS maxId, MAX(a.updatedAt) AS maxUpdatedAt, "
+            + "SUM(COALESCE(a.contentVersion, 0)) AS versionSum FROM Answer a WHERE a.question.id = :questionId")
+    AnswerListStatsView findListStatsByQuestionId(@Param("questionId") Long questionId);
+
+    /**
+     * 有内容（字符数大于 0）的答案数，答题统计用，不读取内容
+     */
+    @Query("SELECT COUNT(a) FROM Answer a WHERE a.user = :user AND a.contentLength > 0")
+    long countNonEmptyByUser(@Param("user") User user);
+
+    @Query("SELECT a.question.id AS questionId, a.user.id AS userId, a.score AS score FROM Answer a WHERE a.score IS NOT NULL")
+    List<AnswerScoreView> findAllScores();
+
+    /**
+     * 该题有内容、尚未评分的学生答案（不含 admin），阅卷工作队列首次使用该题时据此初始化
+     */
+    @Query("SELECT a.id FROM Answer a WHERE a.question.id = :questionId AND a.score IS NULL "
+            + "AND a.contentLength > 0 AND a.user.username <> 'admin' ORDER BY a.id")
+    List<Long> findUngradedIdsByQuestionId(@Param("questionId") Long questionId);
+
+    /**
+     * 自动评分的对象：这些题目下有内容的学生答案（不含 admin）
+     */
+    @Query("SELECT a.id FROM Answer a WHERE a.question.id IN :questionIds "
+            + "AND a.contentLength > 0 AND a.user.username <> 'admin' ORDER BY a.id")
+    List<Long> findScorableIdsByQuestionIdIn(@Param("questionIds") Collection<Long> questionIds);
+
+    /**
+     * 这些题目下有内容、尚未评分的学生答案数；归档前检查，归档后不能再评分
+     */
+    @Query("SELECT COUNT(a) FROM Answer a WHERE a.question.id IN :questionIds AND a.score IS NULL "
+            + "AND a.contentLength > 0 AND a.user.username <> 'admin'")
+    long countUngradedByQuestionIdIn(@Param("questionIds") Collection<Long> questionIds);
+
+    /**
+     * 可采纳建议分的答案：尚未评分，建议分针对当前内容版本
+     */
+    @Query("SELECT a.id FROM Answer a WHERE a.question.id = :questionId AND a.score IS NULL "
+            + "AND a.suggestedScore IS NOT NULL AND a.suggestedVersion = COALESCE(a.contentVersion, 0) ORDER BY a.id")
+    List<Long> findConfirmableSuggestionIds(@Param("questionId") Long questionId);
+
+    /**
+     * 把建议分写入得分；条件与 findConfirmableSuggestionIds 相同，期间被评分或重新保存的答案不受影响
+     * 与 updateScore 一样刷新 updatedAt，答案列表的 ETag 据此变化
+     */
+    @Modifying
+    @Query("UPDATE Answer a SET a.score = a.suggestedScore, a.updatedAt = :updatedAt WHERE a.id IN :ids AND a.score IS NULL "
+            + "AND a.suggestedScore IS NOT NULL AND a.suggestedVersion = COALESCE(a.contentVersion, 0)")
+    int confirmSuggestedScores(@Param("ids") Collection<Long> ids, @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * 阅卷写入得分与备注：只更新这几列（updatedAt 与实体保存时一致地刷新），
+     * 不会把加载时的内容版本与字数写回，期间学生重新保存的内容不受影响
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Answer a SET a.score = :score, a.remark = :remark, a.updatedAt = :updatedAt WHERE a.id = :id")
+    int updateScore(@Param("id") Long id, @Param("score") Double score, @Param("remark") String remark,
+                    @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * 全部答案的内容版本（只读 answers 表），搜索索引重启后据此找出需要重建的答案
+     */
+    @Query("SELECT a.id AS id, COALESCE(a.contentVersion, 0) AS contentVersion FROM Answer a")
+    List<AnswerVersionView> findAllContentVersions();
+
+    @Query("SELECT a.id AS id, COALESCE(a.contentVersion, 0) AS contentVersion FROM Answer a WHERE a.question.id = :questionId")
+    List<AnswerVersionView> findContentVersionsByQuestionId(@Param("questionId") Long questionId);
+
+    /**
+     * 后台改写内容（如图片重新压缩）时推进内容版本；版本号不符说明期间已被保存，返回 0
+     * 不修改 updatedAt，阅卷页显示的仍是学生的提交时间
+     */
+    @Modifying
+    @Query("UPDATE Answer a SET a.contentVersion = :version + 1, a.contentLength = :length "
+            + "WHERE a.id = :id AND COALESCE(a.contentVersion, 0) = :version")
+    int advanceContentVersion(@Param("id") Long id, @Param("version") Long version, @Param("length") Integer length);
+
+    @Modifying
+    @Query("DELETE FROM Answer a WHERE a.user IN :users")
+    int deleteByUserIn(@Param("users") Collection<User> users);
+
+    @Modifying
+    @Query("DELETE FROM Answer a WHERE a.question IN :questions")
+    int deleteByQuestionIn(@Param("questions") Collection<Question> questions);
 }
@@ -0,0 +1,11 @@
+package com.example.quiz.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * 修订历史追加用的投影：内容、版本与保存时间在同一次读取中取得，三者对应同一次保存
+ */
+public interface AnswerRevisionRowView extends AnswerStorageView {
+
+    LocalDateTime getSavedAt();
+}
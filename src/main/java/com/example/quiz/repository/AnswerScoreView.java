@@ -0,0 +1,13 @@
+package com.example.quiz.repository;
+
+/**
+ * 答案得分投影：得分矩阵导出使用，不涉及答案内容
+ */
+public interface AnswerScoreView {
+
+    Long getQuestionId();
+
+    Long getUserId();
+
+    Double getScore();
+}
@@ -0,0 +1,26 @@
+package com.example.quiz.repository;
+
+import com.example.quiz.model.AnswerContentCodec;
+
+/**
+ * 答案内容存储投影（格式迁移、图片重新压缩）：只取内容列与版本号，不加载实体
+ */
+public interface AnswerStorageView {
+
+    Long getId();
+
+    String getContent();
+
+    byte[] getContentGzip();
+
+    Integer getContentLength();
+
+    Long getContentVersion();
+
+    default String getContentText() {
+        if (getContent() != null) {
+            return getContent();
+        }
+        return AnswerContentCodec.gunzip(getContentGzip(), getContentLength() != null ? getContentLength() : -1);
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.quiz.repository;
+
+/**
+ * 答案ID与内容版本投影：搜索索引与快照比对，不读取内容
+ */
+public interface AnswerVersionView {
+
+    Long getId();
+
+    Long getContentVersion();
+}
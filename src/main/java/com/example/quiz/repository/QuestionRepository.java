@@ -18,6 +18,20 @@ public interface QuestionRepository extends JpaRepository<Question, Long> {
     @Query("SELECT q FROM Question q ORDER BY q.chapter.sortOrder ASC, q.sortOrder ASC")
     List<Question> findAllOrderByChapterAndSortOrder();
 
+    @Query("SELECT q FROM Question q JOIN FETCH q.chapter c ORDER BY c.sortOrder ASC, q.sortOrder ASC")
+    List<Question> findAllWithChapterOrdered();
+
+    /**
+     * 一次查询取出题目（含章节）与该用户的答案及内容：返回 [Question, Long userId, Answer, AnswerContent]，
+     * 用户不存在时 userId 为 null，未作答时 Answer 与 AnswerContent 为 null
+     */
+    @Query("SELECT q, u.id, a, c FROM Question q JOIN FETCH q.chapter "
+            + "LEFT JOIN User u ON u.username = :username "
+            + "LEFT JOIN Answer a ON a.question = q AND a.user = u "
+            + "LEFT JOIN AnswerContent c ON c.answer = a "
+            + "WHERE q.id = :questionId")
+    List<Object[]> findWithAnswer(@Param("questionId") Long questionId, @Param("username") String username);
+
     Optional<Question> findByTitle(String title);
 
     List<Question> findAllByTitle(String title);
@@ -0,0 +1,239 @@
+package com.example.quiz.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 准入控制：按在途字节数（保存请求体、导出缓冲）与老年代占用决定是否接收大请求
+ * 超出预算或堆压力过高时短暂排队，超时后拒绝（由调用方返回 503 + Retry-After），避免考试中途 OOM
+ * 指标：quiz.admission.admitted、quiz.admission.queued、quiz.admission.rejected{reason=budget|heap}、
+ * quiz.admission.inflight.bytes、quiz.admission.waiting、quiz.admission.heap.pressure
+ */
+@Service
+public class AdmissionControl {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdmissionControl.class);
+
+    /** 排队时的检查间隔，堆压力解除不会触发通知，需要轮询 */
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final long budgetBytes;
+    private final long queueTimeoutNanos;
+    private final int retryAfterSeconds;
+    private final double heapThreshold;
+    private final Counter admitted;
+    private final Counter queued;
+    private final Counter rejectedBudget;
+    private final Counter rejectedHeap;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private long inFlightBytes;
+    private int waiting;
+
+    private final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+    private final NotificationListener heapListener = this::onMemoryNotification;
+    private volatile boolean heapPressure;
+
+    /**
+     * @param maxInflightBytes 在途字节预算，0 表示取最大堆的 1/8
+     * @param heapThreshold    老年代占用超过最大值的该比例时视为堆压力，0 表示不监听
+     */
+    public AdmissionControl(@Value("${app.admission.max-inflight-bytes:0}") long maxInflightBytes,
+                            @Value("${app.admission.queue-timeout-ms:3000}") long queueTimeoutMillis,
+                            @Value("${app.admission.retry-after-seconds:5}") int retryAfterSeconds,
+                            @Value("${app.admission.heap-threshold:0.85}") double heapThreshold,
+                            MeterRegistry meterRegistry) {
+        this.budgetBytes = maxInflightBytes > 0 ? maxInflightBytes : Runtime.getRuntime().maxMemory() / 8;
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMillis);
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.heapThreshold = heapThreshold;
+        this.admitted = Counter.builder("quiz.admission.admitted").register(meterRegistry);
+        this.queued = Counter.builder("quiz.admission.queued").register(meterRegistry);
+        this.rejectedBudget = Counter.builder("quiz.admission.rejected").tag("reason", "budget").register(meterRegistry);
+        this.rejectedHeap = Counter.builder("quiz.admission.rejected").tag("reason", "heap").register(meterRegistry);
+        Gauge.builder("quiz.admission.inflight.bytes", this, AdmissionControl::getInFlightBytes).register(meterRegistry);
+        Gauge.builder("quiz.admission.waiting", this, AdmissionControl::getWaiting).register(meterRegistry);
+        Gauge.builder("quiz.admission.heap.pressure", this, c -> c.heapPressure ? 1 : 0).register(meterRegistry);
+    }
+
+    /**
+     * 在老年代（支持回收后阈值的堆内存池）上设置使用阈值并监听超限通知
+     */
+    @PostConstruct
+    public void registerHeapListener() {
+        if (heapThreshold <= 0) {
+            return;
+        }
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            long max = pool.getUsage().getMax();
+            if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported()
+                    && pool.isCollectionUsageThresholdSupported() && max > 0) {
+                long threshold = (long) (max * heapThreshold);
+                pool.setUsageThreshold(threshold);
+                pool.setCollectionUsageThreshold(threshold);
+                heapPools.add(pool);
+            }
+        }
+        if (!heapPools.isEmpty()) {
+            ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(heapListener, null, null);
+        }
+        LOGGER.info("Admission control ready. budgetBytes={}, heapPools={}, heapThreshold={}",
+                budgetBytes, heapPools.stream().map(MemoryPoolMXBean::getName).toList(), heapThreshold);
+    }
+
+    @PreDestroy
+    public void unregisterHeapListener() {
+        if (heapPools.isEmpty()) {
+            return;
+        }
+        try {
+            ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).removeNotificationListener(heapListener);
+        } catch (ListenerNotFoundException ignored) {
+        }
+    }
+
+    private void onMemoryNotification(Notification notification, Object handback) {
+        String type = notification.getType();
+        if (MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED.equals(type)
+                || MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(type)) {
+            if (!heapPressure) {
+                LOGGER.warn("Heap usage threshold exceeded, shedding large requests. notification={}", type);
+            }
+            heapPressure = true;
+        }
+    }
+
+    /**
+     * 堆压力由通知置位；当前占用回落到阈值以下时解除
+     */
+    public boolean isUnderHeapPressure() {
+        if (!heapPressure) {
+            return false;
+        }
+        for (MemoryPoolMXBean pool : heapPools) {
+            if (pool.isUsageThresholdExceeded() && pool.getUsage().getUsed() >= pool.getUsageThreshold()) {
+                return true;
+            }
+        }
+        heapPressure = false;
+        LOGGER.info("Heap usage back below threshold, admitting large requests again");
+        return false;
+    }
+
+    /**
+     * 申请在途字节，排队至多 queue-timeout-ms；被拒绝时返回 null
+     * 当前没有在途请求时，单个超出预算的请求也会被接收，避免永远无法处理
+     */
+    public Permit acquire(long bytes) throws InterruptedException {
+        long deadline = System.nanoTime() + queueTimeoutNanos;
+        lock.lock();
+        try {
+            boolean counted = false;
+            while (true) {
+                boolean overBudget = inFlightBytes > 0 && inFlightBytes + bytes > budgetBytes;
+                boolean pressure = isUnderHeapPressure();
+                if (!overBudget && !pressure) {
+                    break;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    (pressure ? rejectedHeap : rejectedBudget).increment();
+                    return null;
+                }
+                if (!counted) {
+                    queued.increment();
+                    counted = true;
+                }
+                waiting++;
+                try {
+                    released.awaitNanos(Math.min(remaining, POLL_NANOS));
+                } finally {
+                    waiting--;
+                }
+            }
+            inFlightBytes += bytes;
+            admitted.increment();
+            return new Permit(bytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(long bytes) {
+        lock.lock();
+        try {
+            inFlightBytes -= bytes;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getInFlightBytes() {
+        lock.lock();
+        try {
+            return inFlightBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * 已接收的在途字节，处理结束后 close 归还；重复 close 无副作用
+     */
+    public final class Permit implements AutoCloseable {
+        private final long bytes;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Permit(long bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                release(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.quiz.service;
+
+import org.slf4j.Logger;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 提交后的后台更新：单线程按提交顺序执行，队列有界（QUEUE_CAPACITY 个任务）
+ * 任务只应持有答案ID等小对象，内容在后台线程中从库里读取；队列满时丢弃并记 warn 日志，
+ * 由各服务自己的版本比对（重启补建、查询时重算）补上
+ */
+final class AfterCommitExecutor {
+
+    static final int QUEUE_CAPACITY = 10_000;
+
+    private final ThreadPoolExecutor executor;
+    private final Logger logger;
+    private final String name;
+
+    /**
+     * @param name   线程名，也用于日志
+     * @param logger 所属服务的日志，任务失败与丢弃都记在它下面
+     */
+    AfterCommitExecutor(String name, int priority, Logger logger) {
+        this.name = name;
+        this.logger = logger;
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE_CAPACITY), r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            thread.setPriority(priority);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 当前有事务时在提交后执行（回滚则不执行），没有事务时立即执行
+     */
+    static void afterCommit(Runnable task) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            task.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                task.run();
+            }
+        });
+    }
+
+    /**
+     * 提交后排入后台线程；任务抛出的异常与队列满都只记日志
+     */
+    void executeAfterCommit(Runnable task) {
+        afterCommit(() -> {
+            try {
+                execute(task);
+            } catch (RejectedExecutionException e) {
+                logger.warn("{} queue full, update dropped", name);
+            }
+        });
+    }
+
+    /**
+     * 立即排入后台线程，排在之前登记的任务之后；队列满时抛出 RejectedExecutionException，由调用方决定如何处理
+     */
+    void execute(Runnable task) {
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.warn("{} update failed", name, e);
+            }
+        });
+    }
+
+    <T> Future<T> submit(Callable<T> task) {
+        return executor.submit(task);
+    }
+
+    /**
+     * 等待已排队的任务执行完（最多 5 秒）
+     */
+    void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 放弃排队中的任务
+     */
+    void shutdownNow() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.quiz.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Aho-Corasick 多模式匹配：一次扫描文本找出所有出现过的模式，耗时与文本长度成正比，与模式数量无关
+ * 构建后只读，可被多个线程同时使用；不依赖 Spring，供评分规则编译使用
+ */
+public final class AhoCorasick {
+
+    /** 每个状态的转移表（字符 → 状态），根为 0 */
+    private final List<Map<Character, Integer>> transitions = new ArrayList<>();
+    private final int[] fail;
+    /** 每个状态结束的模式下标（含沿失败链可达的输出） */
+    private final int[][] outputs;
+    private final int patternCount;
+
+    public AhoCorasick(List<String> patterns) {
+        this.patternCount = patterns.size();
+        List<List<Integer>> ends = new ArrayList<>();
+        transitions.add(new HashMap<>());
+        ends.add(new ArrayList<>());
+        for (int p = 0; p < patterns.size(); p++) {
+            String pattern = patterns.get(p);
+            if (pattern.isEmpty()) {
+                throw new IllegalArgumentException("empty pattern at " + p);
+            }
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                Integer next = transitions.get(state).get(pattern.charAt(i));
+                if (next == null) {
+                    next = transitions.size();
+                    transitions.add(new HashMap<>());
+                    ends.add(new ArrayList<>());
+                    transitions.get(state).put(pattern.charAt(i), next);
+                }
+                state = next;
+            }
+            ends.get(state).add(p);
+        }
+
+        // 按层次遍历计算失败链，输出合并失败状态的输出
+        this.fail = new int[transitions.size()];
+        this.outputs = new int[transitions.size()][];
+        outputs[0] = toArray(ends.get(0));
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int child : transitions.get(0).values()) {
+            fail[child] = 0;
+            outputs[child] = toArray(ends.get(child));
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (Map.Entry<Character, Integer> edge : transitions.get(state).entrySet()) {
+                int child = edge.getValue();
+                int f = fail[state];
+                while (f != 0 && !transitions.get(f).containsKey(edge.getKey())) {
+                    f = fail[f];
+                }
+                Integer target = transitions.get(f).get(edge.getKey());
+                fail[child] = target != null && target != child ? target : 0;
+                int[] own = toArray(ends.get(child));
+                int[] inherited = outputs[fail[child]];
+                int[] merged = Arrays.copyOf(own, own.length + inherited.length);
+                System.arraycopy(inherited, 0, merged, own.length, inherited.length);
+                outputs[child] = merged;
+                queue.add(child);
+            }
+        }
+    }
+
+    public int patternCount() {
+        return patternCount;
+    }
+
+    /**
+     * 文本中出现过的模式下标；全部模式都已找到时提前结束
+     */
+    public BitSet matches(CharSequence text) {
+        BitSet found = new BitSet(patternCount);
+        if (patternCount == 0) {
+            return found;
+        }
+        int state = 0;
+        int remaining = patternCount;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            Integer next;
+            while ((next = transitions.get(state).get(c)) == null && state != 0) {
+                state = fail[state];
+            }
+            state = next != null ? next : 0;
+            for (int p : outputs[state]) {
+                if (!found.get(p)) {
+                    found.set(p);
+                    if (--remaining == 0) {
+                        return found;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
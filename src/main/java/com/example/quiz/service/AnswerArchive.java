@@ -0,0 +1,482 @@
+package com.example.quiz.service;
+
+import com.example.quiz.model.AnswerContentCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 冷归档：管理员把考完的章节归档后，这些题目的答案（含内容、得分、备注）按 (题目ID, 用户ID) 顺序写入 app.archive.dir 下
+ * 只读的段文件（ArchiveSegment），段落盘后再分批从 answers / answer_contents 删除，实时表只保留进行中的考试
+ * 归档的题目不再接受保存；读答案、取内容、阅卷列表与成绩导出在实时表中没有时从内存映射的段中二分查找
+ * 实时表中仍有（归档中途失败、或同一答案未能删除）时以实时表为准
+ * 指标：quiz.archive.answers{result=archived|deleted}、quiz.archive.reads、quiz.archive.segments
+ */
+@Service
+public class AnswerArchive {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AnswerArchive.class);
+
+    public static final String STATE_IDLE = "idle";
+    public static final String STATE_RUNNING = "running";
+    public static final String STATE_FAILED = "failed";
+    public static final String STATE_COMPLETED = "completed";
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    /** 已归档（拒绝保存）的题目ID，每行一个；段落盘后、删除实时数据前写入 */
+    private static final String MANIFEST = "archived-questions.txt";
+
+    private static final String SELECT_SQL = "SELECT a.id, a.question_id, a.user_id, u.username, a.score, a.remark, "
+            + "a.created_at, a.updated_at, COALESCE(a.content_version, 0), a.content_length, c.content, c.content_gz "
+            + "FROM answers a JOIN users u ON u.id = a.user_id LEFT JOIN answer_contents c ON c.answer_id = a.id "
+            + "WHERE a.question_id IN (%s) ORDER BY a.question_id, a.user_id, a.id";
+    // 只删除内容版本、得分、备注与更新时间都与归档时一致的答案，归档期间被改写或评分的答案留在实时表
+    private static final String UNCHANGED = "id = ? AND COALESCE(content_version, 0) = ? AND score IS NOT DISTINCT FROM ? "
+            + "AND remark IS NOT DISTINCT FROM ? AND updated_at IS NOT DISTINCT FROM ?";
+    private static final String DELETE_CONTENT_SQL = "DELETE FROM answer_contents WHERE answer_id IN "
+            + "(SELECT id FROM answers WHERE " + UNCHANGED + ")";
+    private static final String DELETE_ANSWER_SQL = "DELETE FROM answers WHERE " + UNCHANGED;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AnswerCache answerCache;
+    private final CatalogVersion catalogVersion;
+    private final AnswerSearchIndex answerSearchIndex;
+    private final AnswerSimilarityService answerSimilarityService;
+    private final GradingQueue gradingQueue;
+    private final Path dir;
+    private final long segmentBytes;
+    private final int deleteBatchSize;
+
+    /** 按段号升序，后写的段在后 */
+    private final List<ArchiveSegment> segments = new CopyOnWriteArrayList<>();
+    private final Set<Long> archivedQuestions = ConcurrentHashMap.newKeySet();
+    /** 正在归档的题目，运行期间已拒绝保存 */
+    private final Set<Long> closing = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean opened;
+    private volatile Status status = new Status(STATE_IDLE, 0, 0, 0, 0);
+
+    private final Counter archived;
+    private final Counter deleted;
+    private final Counter reads;
+
+    /**
+     * @param answersDeleted 从实时表删除的答案数，少于 answersArchived 表示有答案在归档期间被改写而保留
+     */
+    public record Status(String state, int questions, long answersArchived, long answersDeleted, long bytesWritten) {
+    }
+
+    /**
+     * 写入段的答案在归档时的状态，删除时据此判断期间是否被改写或评分
+     */
+    private record Written(long answerId, long questionId, long contentVersion, Double score, String remark,
+                           Timestamp updatedAt) {
+    }
+
+    public AnswerArchive(JdbcTemplate jdbcTemplate,
+                         TransactionTemplate transactionTemplate,
+                         AnswerCache answerCache,
+                         CatalogVersion catalogVersion,
+                         AnswerSearchIndex answerSearchIndex,
+                         AnswerSimilarityService answerSimilarityService,
+                         GradingQueue gradingQueue,
+                         @Value("${app.archive.dir:data/archive}") String dir,
+                         @Value("${app.archive.segment-bytes:268435456}") long segmentBytes,
+                         @Value("${app.archive.delete-batch-size:500}") int deleteBatchSize,
+                         MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.answerCache = answerCache;
+        this.catalogVersion = catalogVersion;
+        this.answerSearchIndex = answerSearchIndex;
+        this.answerSimilarityService = answerSimilarityService;
+        this.gradingQueue = gradingQueue;
+        this.dir = Paths.get(dir);
+        this.segmentBytes = Math.min(Math.max(1, segmentBytes), ArchiveSegment.MAX_DATA_BYTES / 2);
+        this.deleteBatchSize = Math.max(1, deleteBatchSize);
+        this.archived = Counter.builder("quiz.archive.answers").tag("result", "archived").register(meterRegistry);
+        this.deleted = Counter.builder("quiz.archive.answers").tag("result", "deleted").register(meterRegistry);
+        this.reads = Counter.builder("quiz.archive.reads").register(meterRegistry);
+        Gauge.builder("quiz.archive.segments", segments, List::size).register(meterRegistry);
+    }
+
+    /**
+     * 首次使用时映射已有的段并读取清单；没有完成的段（缺少 .idx）与临时文件是上次中途退出留下的，删除
+     * 只有清单中的题目算作已归档：写清单前中断的运行留下的段不影响保存，重新归档后以最新的段为准
+     */
+    private void ensureOpen() {
+        if (opened) {
+            return;
+        }
+        synchronized (this) {
+            if (opened) {
+                return;
+            }
+            try {
+                if (Files.isDirectory(dir)) {
+                    openSegments();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open answer archive: " + dir, e);
+            }
+            opened = true;
+        }
+    }
+
+    private void openSegments() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.sorted().toList();
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(ArchiveSegment.TMP_SUFFIX)) {
+                LOGGER.warn("Removing unfinished archive file. file={}", file);
+                Files.deleteIfExists(file);
+            } else if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(ArchiveSegment.DATA_SUFFIX)
+                    && !Files.exists(indexFileFor(file))) {
+                LOGGER.warn("Removing archive segment without index. file={}", file);
+                Files.deleteIfExists(file);
+            } else if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(ArchiveSegment.INDEX_SUFFIX)) {
+                ArchiveSegment segment = ArchiveSegment.open(file, dataFileFor(file));
+                segments.add(segment);
+            }
+        }
+        Path manifest = dir.resolve(MANIFEST);
+        if (Files.exists(manifest)) {
+            for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                if (!line.isBlank()) {
+                    archivedQuestions.add(Long.parseLong(line.trim()));
+                }
+            }
+        }
+        LOGGER.info("Answer archive opened. dir={}, segments={}, answers={}, questions={}", dir, segments.size(),
+                segments.stream().mapToLong(ArchiveSegment::size).sum(), archivedQuestions.size());
+    }
+
+    private static Path indexFileFor(Path dataFile) {
+        String name = dataFile.getFileName().toString();
+        return dataFile.resolveSibling(name.substring(0, name.length() - ArchiveSegment.DATA_SUFFIX.length())
+                + ArchiveSegment.INDEX_SUFFIX);
+    }
+
+    private static Path dataFileFor(Path indexFile) {
+        String name = indexFile.getFileName().toString();
+        return indexFile.resolveSibling(name.substring(0, name.length() - ArchiveSegment.INDEX_SUFFIX.length())
+                + ArchiveSegment.DATA_SUFFIX);
+    }
+
+    /**
+     * 已归档或正在归档的题目不再接受保存与评分
+     */
+    public boolean isArchived(long questionId) {
+        if (closing.contains(questionId)) {
+            return true;
+        }
+        ensureOpen();
+        return archivedQuestions.contains(questionId);
+    }
+
+    public Set<Long> archivedQuestionIds() {
+        ensureOpen();
+        return Collections.unmodifiableSet(new TreeSet<>(archivedQuestions));
+    }
+
+    /**
+     * 学生某题的归档答案；同一答案重复归档时取最新的段
+     */
+    public Optional<ArchiveSegment.ArchivedAnswer> find(long questionId, long userId) {
+        if (!isArchived(questionId)) {
+            return Optional.empty();
+        }
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            ArchiveSegment.ArchivedAnswer answer = segments.get(i).find(questionId, userId);
+            if (answer != null) {
+                reads.increment();
+                return Optional.of(answer);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * 该题全部归档答案（每个学生一份，按用户ID排序）
+     */
+    public List<ArchiveSegment.ArchivedAnswer> findByQuestion(long questionId) {
+        if (!isArchived(questionId)) {
+            return List.of();
+        }
+        List<ArchiveSegment.ArchivedAnswer> answers = new ArrayList<>();
+        Set<Long> users = new HashSet<>();
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            for (ArchiveSegment.ArchivedAnswer answer : segments.get(i).findByQuestion(questionId)) {
+                if (users.add(answer.userId())) {
+                    answers.add(answer);
+                }
+            }
+        }
+        answers.sort((a, b) -> Long.compare(a.userId(), b.userId()));
+        reads.increment(answers.size());
+        return answers;
+    }
+
+    /**
+     * 全部归档得分（每个学生每题一份），只读段索引；成绩导出与排行榜初始化时与实时表合并
+     */
+    public List<ArchiveSegment.ScoreRow> scores() {
+        ensureOpen();
+        List<ArchiveSegment.ScoreRow> rows = new ArrayList<>();
+        Set<List<Long>> seen = new HashSet<>();
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            for (ArchiveSegment.ScoreRow row : segments.get(i).scores()) {
+                if (seen.add(List.of(row.questionId(), row.userId()))) {
+                    rows.add(row);
+                }
+            }
+        }
+        return rows;
+    }
+
+    public int segmentCount() {
+        ensureOpen();
+        return segments.size();
+    }
+
+    /**
+     * 在后台线程归档这些题目的答案；已在运行时返回 false
+     */
+    public boolean start(Collection<Long> questionIds) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        Set<Long> ids = new TreeSet<>(questionIds);
+        status = new Status(STATE_RUNNING, ids.size(), 0, 0, 0);
+        Thread thread = new Thread(() -> {
+            try {
+                run(ids);
+            } finally {
+                running.set(false);
+            }
+        }, "answer-archive");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * 同步执行一次归档，返回最终状态
+     * 顺序：标记题目为归档中（拒绝保存）→ 按 (题目, 用户) 顺序读出答案写段，超过 segment-bytes 换新段 →
+     * 段与清单落盘 → 每批 delete-batch-size 份一个事务从实时表删除，提交后把删掉的答案移出检索索引、查重签名与阅卷队列 → 清理缓存
+     * 删除前失败时撤销标记，已写成的段保留（实时表优先，不影响读取），可重新归档
+     */
+    Status run(Set<Long> questionIds) {
+        long startNanos = System.nanoTime();
+        ensureOpen();
+        closing.addAll(questionIds);
+        LOGGER.info("Answer archive start. questions={}", questionIds);
+        List<Written> written = new ArrayList<>();
+        long bytes = 0;
+        boolean manifestWritten = false;
+        try {
+            Files.createDirectories(dir);
+            bytes = writeSegments(questionIds, written);
+            writeManifest(questionIds);
+            manifestWritten = true;
+            archivedQuestions.addAll(questionIds);
+
+            long removed = 0;
+            for (int from = 0; from < written.size(); from += deleteBatchSize) {
+                List<Written> batch = written.subList(from, Math.min(from + deleteBatchSize, written.size()));
+                List<Written> rows = deleteBatch(batch);
+                forget(rows);
+                removed += rows.size();
+                status = new Status(STATE_RUNNING, questionIds.size(), written.size(), removed, bytes);
+            }
+            deleted.increment(removed);
+            status = new Status(STATE_COMPLETED, questionIds.size(), written.size(), removed, bytes);
+        } catch (Exception e) {
+            LOGGER.error("Answer archive failed. questions={}, archived={}", questionIds, written.size(), e);
+            status = new Status(STATE_FAILED, questionIds.size(), written.size(), status.answersDeleted(), bytes);
+        } finally {
+            closing.removeAll(questionIds);
+            if (manifestWritten) {
+                // 删除了部分或全部实时数据，缓存的答案与阅卷列表失效
+                answerCache.invalidateQuestions(questionIds);
+                catalogVersion.bump();
+            }
+        }
+        LOGGER.info("Answer archive {}. questions={}, archived={}, deleted={}, bytes={}, segments={}, elapsedMs={}",
+                status.state(), questionIds.size(), status.answersArchived(), status.answersDeleted(), bytes,
+                segments.size(), (System.nanoTime() - startNanos) / 1_000_000);
+        return status;
+    }
+
+    /**
+     * 流式读出答案写入新段，written 收集写入时的答案状态；返回写入的字节数
+     */
+    private long writeSegments(Set<Long> questionIds, List<Written> written) throws IOException {
+        if (questionIds.isEmpty()) {
+            return 0;
+        }
+        long[] bytes = new long[1];
+        ArchiveSegment.Writer[] writer = new ArchiveSegment.Writer[1];
+        String sql = String.format(SELECT_SQL, questionIds.stream().map(id -> "?").collect(Collectors.joining(", ")));
+        try {
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(sql);
+                int i = 1;
+                for (Long id : questionIds) {
+                    ps.setLong(i++, id);
+                }
+                ps.setFetchSize(100);
+                return ps;
+            }, rs -> {
+                Double score = rs.getObject(5) != null ? rs.getDouble(5) : null;
+                Timestamp createdAt = rs.getTimestamp(7);
+                Timestamp updatedAt = rs.getTimestamp(8);
+                String content = rs.getString(11);
+                byte[] gzip = rs.getBytes(12);
+                if (gzip == null) {
+                    gzip = AnswerContentCodec.gzip(content != null ? content : "");
+                }
+                ArchiveSegment.ArchivedAnswer answer = new ArchiveSegment.ArchivedAnswer(rs.getLong(1), rs.getLong(2),
+                        rs.getLong(3), rs.getString(4), score, rs.getString(6),
+                        createdAt != null ? createdAt.toLocalDateTime() : null,
+                        updatedAt != null ? updatedAt.toLocalDateTime() : null,
+                        rs.getLong(9), content != null ? content.length() : rs.getInt(10), gzip);
+                try {
+                    if (writer[0] == null) {
+                        Path dataFile = nextDataFile();
+                        writer[0] = new ArchiveSegment.Writer(dataFile, indexFileFor(dataFile));
+                    }
+                    writer[0].append(answer);
+                    written.add(new Written(answer.answerId(), answer.questionId(), answer.contentVersion(), score,
+                            answer.remark(), updatedAt));
+                    archived.increment();
+                    if (writer[0].bytesWritten() >= segmentBytes) {
+                        bytes[0] += finish(writer[0]);
+                        writer[0] = null;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                status = new Status(STATE_RUNNING, questionIds.size(), written.size(), 0, bytes[0]);
+            });
+            if (writer[0] != null) {
+                bytes[0] += finish(writer[0]);
+                writer[0] = null;
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            if (writer[0] != null) {
+                writer[0].close();
+            }
+        }
+        return bytes[0];
+    }
+
+    private long finish(ArchiveSegment.Writer writer) throws IOException {
+        ArchiveSegment segment = writer.finish();
+        segments.add(segment);
+        LOGGER.info("Archive segment written. file={}, answers={}, bytes={}", segment.indexFile(), segment.size(),
+                segment.dataBytes());
+        return segment.dataBytes();
+    }
+
+    private Path nextDataFile() {
+        int next = 1;
+        for (ArchiveSegment segment : segments) {
+            String name = segment.indexFile().getFileName().toString();
+            next = Math.max(next, Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+                    name.length() - ArchiveSegment.INDEX_SUFFIX.length())) + 1);
+        }
+        return dir.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, next, ArchiveSegment.DATA_SUFFIX));
+    }
+
+    private void writeManifest(Set<Long> questionIds) throws IOException {
+        Set<Long> all = new TreeSet<>(archivedQuestions);
+        all.addAll(questionIds);
+        Path manifest = dir.resolve(MANIFEST);
+        Path tmp = dir.resolve(MANIFEST + ArchiveSegment.TMP_SUFFIX);
+        Files.write(tmp, all.stream().map(String::valueOf).toList(), StandardCharsets.UTF_8);
+        Files.move(tmp, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 一个事务删除一批答案，返回实际删除的行（归档期间被改写的不在其中）
+     */
+    private List<Written> deleteBatch(List<Written> batch) {
+        List<Object[]> args = new ArrayList<>(batch.size());
+        for (Written row : batch) {
+            args.add(new Object[]{row.answerId(), row.contentVersion(), row.score(), row.remark(), row.updatedAt()});
+        }
+        int[] types = {Types.BIGINT, Types.BIGINT, Types.DOUBLE, Types.VARCHAR, Types.TIMESTAMP};
+        List<Written> removed = transactionTemplate.execute(tx -> {
+            jdbcTemplate.batchUpdate(DELETE_CONTENT_SQL, args, types);
+            int[] counts = jdbcTemplate.batchUpdate(DELETE_ANSWER_SQL, args, types);
+            List<Written> rows = new ArrayList<>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    rows.add(batch.get(i));
+                }
+            }
+            return rows;
+        });
+        return removed != null ? removed : List.of();
+    }
+
+    /**
+     * 已从实时表删除的答案不再出现在全文检索、查重与阅卷队列中（归档段只供按题目/学生读取）
+     */
+    private void forget(List<Written> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<Long> answerIds = rows.stream().map(Written::answerId).toList();
+        answerSearchIndex.removeAll(answerIds);
+        answerSimilarityService.removeAll(answerIds);
+        for (Written row : rows) {
+            gradingQueue.scored(row.questionId(), row.answerId());
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.quiz.service;
+
+import com.example.quiz.dto.AnswerDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * 答题页答案缓存：按 (用户名, 题目ID) 缓存 AnswerDTO，按内容占用字节数而非条目数淘汰（LRU）
+ * 读取时填充，saveAnswer 成功后写穿更新（不覆盖内容版本更新的条目），数据同步删除用户或题目后失效
+ * 流式保存提交后留下带内容版本的失效标记：提交前开始的读取晚于标记填充时，版本低于标记的旧值不会写入
+ * 指标：quiz.answer.cache.requests{result=hit|miss}、quiz.answer.cache.evictions、quiz.answer.cache.bytes、quiz.answer.cache.entries
+ */
+@Service
+public class AnswerCache {
+
+    /** 每个条目除内容外的估算开销：DTO、键、时间对象与链表节点 */
+    private static final long ENTRY_OVERHEAD_BYTES = 256;
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    /** accessOrder=true：迭代顺序即 LRU 顺序 */
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+
+    public AnswerCache(@Value("${app.answer-cache.max-bytes:67108864}") long maxBytes,
+                       @Value("${app.answer-cache.max-entry-bytes:4194304}") long maxEntryBytes,
+                       MeterRegistry meterRegistry) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+        this.hits = Counter.builder("quiz.answer.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("quiz.answer.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.evictions = Counter.builder("quiz.answer.cache.evictions").register(meterRegistry);
+        Gauge.builder("quiz.answer.cache.bytes", this, AnswerCache::getTotalBytes).register(meterRegistry);
+        Gauge.builder("quiz.answer.cache.entries", this, AnswerCache::size).register(meterRegistry);
+    }
+
+    public synchronized AnswerDTO get(String username, Long questionId) {
+        Entry entry = entries.get(new Key(username, questionId));
+        if (entry == null || entry.answer() == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.answer();
+    }
+
+    /**
+     * 读取后填充：已有条目时不覆盖，避免并发保存写穿的新值被读到的旧值覆盖；
+     * 只有失效标记时，内容版本不低于标记的才写入
+     */
+    public synchronized void putIfAbsent(String username, Long questionId, AnswerDTO answer) {
+        Key key = new Key(username, questionId);
+        Entry existing = entries.get(key);
+        if (existing == null || existing.answer() == null && versionOf(answer) >= existing.minVersion()) {
+            store(key, answer);
+        }
+    }
+
+    /**
+     * 保存成功后写穿：提交后才执行，可能晚于之后提交的保存或改写；
+     * 已有条目或失效标记的内容版本更新时不覆盖，旧内容与旧 ETag 不会留在缓存中
+     */
+    public synchronized void put(String username, Long questionId, AnswerDTO answer) {
+        Key key = new Key(username, questionId);
+        Entry existing = entries.get(key);
+        long version = versionOf(answer);
+        if (existing != null && (existing.answer() != null ? versionOf(existing.answer()) : existing.minVersion()) > version) {
+            return;
+        }
+        store(key, answer);
+    }
+
+    /**
+     * 内容在别处改写后失效，下次读取时重新加载
+     */
+    public synchronized void invalidate(String username, Long questionId) {
+        Entry previous = entries.remove(new Key(username, questionId));
+        if (previous != null) {
+            totalBytes -= previous.bytes();
+        }
+    }
+
+    /**
+     * 流式保存不在内存中持有内容，提交后失效并留下标记，读取填充时拒绝低于 contentVersion 的旧值
+     * 标记与普通条目一样按 LRU 淘汰
+     */
+    public synchronized void invalidate(String username, Long questionId, long contentVersion) {
+        Key key = new Key(username, questionId);
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            totalBytes -= previous.bytes();
+        }
+        insert(key, new Entry(null, ENTRY_OVERHEAD_BYTES, contentVersion));
+    }
+
+    public synchronized void invalidateUsers(Collection<String> usernames) {
+        if (usernames.isEmpty()) {
+            return;
+        }
+        Set<String> targets = Set.copyOf(usernames);
+        removeIf(key -> targets.contains(key.username()));
+    }
+
+    public synchronized void invalidateQuestions(Collection<Long> questionIds) {
+        if (questionIds.isEmpty()) {
+            return;
+        }
+        Set<Long> targets = Set.copyOf(questionIds);
+        removeIf(key -> targets.contains(key.questionId()));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void store(Key key, AnswerDTO answer) {
+        long bytes = weigh(answer);
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            totalBytes -= previous.bytes();
+        }
+        // 单个超大答案不缓存，否则会把其他条目全部挤出
+        if (bytes > maxEntryBytes) {
+            return;
+        }
+        insert(key, new Entry(answer, bytes, 0));
+    }
+
+    private void insert(Key key, Entry entry) {
+        entries.put(key, entry);
+        totalBytes += entry.bytes();
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            totalBytes -= it.next().getValue().bytes();
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    private void removeIf(Predicate<Key> predicate) {
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, Entry> e = it.next();
+            if (predicate.test(e.getKey())) {
+                totalBytes -= e.getValue().bytes();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * 按 UTF-16 估算字符串占用（中文与 base64 混合内容取上界）
+     */
+    private static long weigh(AnswerDTO answer) {
+        String content = answer.getContent();
+        return ENTRY_OVERHEAD_BYTES + (content != null ? content.length() * 2L : 0);
+    }
+
+    private record Key(String username, Long questionId) {
+    }
+
+    private static long versionOf(AnswerDTO answer) {
+        return answer.getContentVersion() != null ? answer.getContentVersion() : 0;
+    }
+
+    /**
+     * answer 为 null 时是失效标记，minVersion 为可以写入的最低内容版本
+     */
+    private record Entry(AnswerDTO answer, long bytes, long minVersion) {
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.quiz.service;
+
+import com.example.quiz.model.AnswerContentCodec;
+import com.example.quiz.repository.AnswerContentRepository;
+import com.example.quiz.repository.AnswerRepository;
+import com.example.quiz.repository.AnswerStorageView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * 答案内容存储模式：app.answer-content.storage=gzip（默认，压缩后存入 content_gz）或 text（明文 content 列）
+ * 启动完成后在后台线程把另一种格式的旧数据分批迁移为当前模式，迁移期间两种格式都可正常读取
+ * 内容存放在 answer_contents 表；旧版本存在 answers 表上的内容列由 SchemaMigrations 的 V1 迁移搬迁
+ */
+@Service
+public class AnswerContentStorage {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AnswerContentStorage.class);
+
+    /** 每批迁移的答案数，单条可能含 MB 级图片，批次不宜过大 */
+    private static final int BATCH_SIZE = 50;
+
+    private final AnswerContentRepository answerContentRepository;
+    private final AnswerRepository answerRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean compress;
+    private final boolean migrateOnStartup;
+
+    public AnswerContentStorage(AnswerContentRepository answerContentRepository,
+                                AnswerRepository answerRepository,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${app.answer-content.storage:gzip}") String storage,
+                                @Value("${app.answer-content.migrate-on-startup:true}") boolean migrateOnStartup) {
+        if (!"gzip".equalsIgnoreCase(storage) && !"text".equalsIgnoreCase(storage)) {
+            throw new IllegalArgumentException("app.answer-content.storage must be gzip or text: " + storage);
+        }
+        this.answerContentRepository = answerContentRepository;
+        this.answerRepository = answerRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.compress = "gzip".equalsIgnoreCase(storage);
+        this.migrateOnStartup = migrateOnStartup;
+    }
+
+    /**
+     * 新写入的内容是否压缩；保存答案的各条路径按此决定写入哪一列
+     */
+    public boolean isCompressed() {
+        return compress;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startMigration() {
+        if (!migrateOnStartup) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                migrateAll();
+            } catch (Exception e) {
+                LOGGER.error("Answer content migration failed; remaining rows stay in their old format", e);
+            }
+        }, "answer-content-migration");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 把非当前模式存储的答案全部迁移，返回迁移条数；每批一个事务，可随时中断，下次启动继续
+     */
+    public int migrateAll() {
+        long startNanos = System.nanoTime();
+        int migrated = 0;
+        long afterId = 0;
+        while (true) {
+            long cursor = afterId;
+            List<AnswerStorageView> batch = compress
+                    ? answerContentRepository.findTextStoredAfter(cursor, PageRequest.of(0, BATCH_SIZE))
+                    : answerContentRepository.findGzipStoredAfter(cursor, PageRequest.of(0, BATCH_SIZE));
+            if (batch.isEmpty()) {
+                break;
+            }
+            Integer updated = transactionTemplate.execute(status -> {
+                int count = 0;
+                for (AnswerStorageView row : batch) {
+                    count += compress ? compressRow(row) : decompressRow(row);
+                }
+                return count;
+            });
+            migrated += updated != null ? updated : 0;
+            afterId = batch.get(batch.size() - 1).getId();
+        }
+        if (migrated > 0) {
+            LOGGER.info("Answer content migrated to {} storage. rows={}, elapsedMs={}",
+                    compress ? "gzip" : "text", migrated, (System.nanoTime() - startNanos) / 1_000_000);
+        }
+        return migrated;
+    }
+
+    /**
+     * 后台改写答案内容（图片压缩、移出到外部存储）：按当前存储模式写入并推进内容版本，不改 updatedAt
+     * 读取后答案又被保存过（版本号不符）时不写入，返回 false
+     */
+    public boolean replaceContent(long answerId, long expectedVersion, String html) {
+        Boolean stored = transactionTemplate.execute(status -> {
+            if (answerRepository.advanceContentVersion(answerId, expectedVersion, html.length()) == 0) {
+                return false;
+            }
+            answerContentRepository.replaceContent(answerId, compress ? null : html,
+                    compress ? AnswerContentCodec.gzip(html) : null);
+            return true;
+        });
+        return Boolean.TRUE.equals(stored);
+    }
+
+    private int compressRow(AnswerStorageView row) {
+        String text = row.getContent();
+        return answerContentRepository.storeCompressed(row.getId(), row.getContentVersion(), AnswerContentCodec.gzip(text));
+    }
+
+    private int decompressRow(AnswerStorageView row) {
+        String text = AnswerContentCodec.gunzip(row.getContentGzip(), row.getContentLength() != null ? row.getContentLength() : -1);
+        return answerContentRepository.storeText(row.getId(), row.getContentVersion(), text);
+    }
+}
@@ -0,0 +1,367 @@
+package com.example.quiz.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 流式保存答案内容：请求体边读边做 UTF-8 校验与计数，经 JDBC 二进制流（gzip 模式）或字符流（text 模式）直接写入 answer_contents，
+ * 全程不生成内容 String，每次保存的堆占用只有几个固定大小的缓冲区
+ */
+@Service
+public class AnswerContentWriter {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AnswerContentStorage answerContentStorage;
+    private final long maxBytes;
+
+    public AnswerContentWriter(JdbcTemplate jdbcTemplate,
+                               AnswerContentStorage answerContentStorage,
+                               @Value("${app.answer-content.max-bytes:104857600}") long maxBytes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.answerContentStorage = answerContentStorage;
+        this.maxBytes = maxBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @param unscored 答案尚未评分（新答案总是未评分）
+     * @param blank    内容为空或只有空白（与 String.trim().isEmpty() 一致）
+     */
+    public record Result(long answerId, long contentVersion, boolean updated, long bytes, long chars,
+                         boolean unscored, boolean blank) {}
+
+    /**
+     * 内容超出上限抛出 ContentTooLargeException，不是合法 UTF-8 抛出 CharacterCodingException，均回滚不落库
+     * 内容版本每次保存加 1（不解压旧内容做比较），在 SQL 中递增并在同一事务中读回：递增同时锁住答案行，
+     * 并发的保存与图片入库/回填的条件替换按提交顺序各得一个版本，不会有两份内容共用同一个版本（ETag）
+     * 首次保存插入答案行；并发的另一个首次保存因唯一约束插入失败，等前者提交后改为更新同一行，得到下一个版本
+     * 答案的更新时间与 content_length 在流读完后写入
+     */
+    @Transactional(rollbackFor = IOException.class)
+    public Result write(long questionId, long userId, InputStream body) throws IOException {
+        Utf8CountingInputStream counted = new Utf8CountingInputStream(body, maxBytes);
+        boolean compress = answerContentStorage.isCompressed();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Long existingId = findAnswerId(questionId, userId);
+
+        long answerId;
+        long version;
+        boolean updated = existingId != null;
+        if (!updated) {
+            KeyHolder keys = new GeneratedKeyHolder();
+            try {
+                jdbcTemplate.update(con -> {
+                    PreparedStatement ps = con.prepareStatement("INSERT INTO answers "
+                            + "(created_at, updated_at, question_id, user_id, content_length, content_version) VALUES (?, ?, ?, ?, 0, 1)",
+                            Statement.RETURN_GENERATED_KEYS);
+                    ps.setTimestamp(1, now);
+                    ps.setTimestamp(2, now);
+                    ps.setLong(3, questionId);
+                    ps.setLong(4, userId);
+                    return ps;
+                }, keys);
+            } catch (DuplicateKeyException e) {
+                // 并发的首次保存已插入并提交了这一答案行（唯一约束 question_id + user_id），改为更新它
+                existingId = findAnswerId(questionId, userId);
+                if (existingId == null) {
+                    throw e;
+                }
+                updated = true;
+            }
+            answerId = updated ? existingId : keys.getKeyAs(Long.class);
+        } else {
+            answerId = existingId;
+        }
+        if (updated) {
+            jdbcTemplate.update("UPDATE answers SET content_version = COALESCE(content_version, 0) + 1 WHERE id = ?", answerId);
+            version = jdbcTemplate.queryForObject("SELECT content_version FROM answers WHERE id = ?", Long.class, answerId);
+        } else {
+            version = 1;
+        }
+        // 内容写入 answer_contents（旧答案可能尚无内容行，用 MERGE），另一种格式的列置空
+        String sql = "MERGE INTO answer_contents (answer_id, content, content_gz) KEY (answer_id) VALUES (?, "
+                + (compress ? "NULL, ?)" : "?, NULL)");
+        IOException failure;
+        try {
+            jdbcTemplate.update(con -> {
+                PreparedStatement ps = con.prepareStatement(sql);
+                ps.setLong(1, answerId);
+                bindContent(ps, 2, counted, compress);
+                return ps;
+            });
+            failure = counted.getFailure();
+        } catch (DataAccessException e) {
+            // 驱动读取请求体时的异常会被包装为 SQLException，还原为原始的校验失败
+            if (counted.getFailure() == null) {
+                throw e;
+            }
+            failure = counted.getFailure();
+        }
+        if (failure != null) {
+            if (!updated) {
+                // 加入外层事务时回滚由外层决定，先删掉本次插入的空答案
+                jdbcTemplate.update("DELETE FROM answers WHERE id = ?", answerId);
+            }
+            throw failure;
+        }
+        jdbcTemplate.update("UPDATE answers SET updated_at = ?, content_length = ? WHERE id = ?",
+                now, counted.getChars(), answerId);
+        boolean unscored = !updated || Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT score IS NULL FROM answers WHERE id = ?", Boolean.class, answerId));
+        return new Result(answerId, version, updated, counted.getBytes(), counted.getChars(), unscored, counted.isBlank());
+    }
+
+    private Long findAnswerId(long questionId, long userId) {
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM answers WHERE question_id = ? AND user_id = ?", Long.class, questionId, userId);
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    private static void bindContent(PreparedStatement ps, int index, Utf8CountingInputStream counted, boolean compress) throws java.sql.SQLException {
+        if (compress) {
+            ps.setBinaryStream(index, new GzipDeflatingInputStream(counted));
+        } else {
+            CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT);
+            ps.setCharacterStream(index, new InputStreamReader(counted, decoder));
+        }
+    }
+
+    /**
+     * 内容超过 app.answer-content.max-bytes
+     */
+    public static class ContentTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public ContentTooLargeException(long maxBytes) {
+            super("content exceeds " + maxBytes + " bytes");
+        }
+    }
+
+    /**
+     * 透传字节的同时增量解码 UTF-8（解码结果丢弃），统计字节数与 UTF-16 字符数（与 String.length() 一致）及是否只有空白，
+     * 超限或非法编码时记录并抛出异常
+     */
+    static final class Utf8CountingInputStream extends FilterInputStream {
+
+        private final long maxBytes;
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        private final ByteBuffer pending = ByteBuffer.allocate(BUFFER_SIZE);
+        private final CharBuffer decoded = CharBuffer.allocate(BUFFER_SIZE);
+        private long bytes;
+        private long chars;
+        private boolean text;
+        private boolean finished;
+        private IOException failure;
+
+        Utf8CountingInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n = read(one, 0, 1);
+            return n < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                bytes += n;
+                if (bytes > maxBytes) {
+                    throw fail(new ContentTooLargeException(maxBytes));
+                }
+                feed(b, off, n);
+            } else if (n < 0 && !finished) {
+                finished = true;
+                pending.flip();
+                decode(true);
+                decoded.clear();
+                decoder.flush(decoded);
+                count();
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // 跳过的字节同样需要校验
+            byte[] buffer = new byte[(int) Math.min(n, BUFFER_SIZE)];
+            int read = read(buffer, 0, buffer.length);
+            return Math.max(read, 0);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void feed(byte[] b, int off, int n) throws IOException {
+            while (n > 0) {
+                int take = Math.min(n, pending.remaining());
+                pending.put(b, off, take);
+                off += take;
+                n -= take;
+                pending.flip();
+                decode(false);
+                pending.compact();
+            }
+        }
+
+        private void decode(boolean endOfInput) throws IOException {
+            while (true) {
+                decoded.clear();
+                CoderResult result = decoder.decode(pending, decoded, endOfInput);
+                count();
+                if (result.isError()) {
+                    try {
+                        result.throwException();
+                    } catch (IOException e) {
+                        throw fail(e);
+                    }
+                }
+                if (result.isUnderflow()) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * 累加本次解码出的字符；尚未见到非空白字符时逐个检查（空白的判断与 String.trim 相同：不大于 U+0020）
+         */
+        private void count() {
+            int n = decoded.position();
+            chars += n;
+            for (int i = 0; i < n && !text; i++) {
+                text = decoded.get(i) > ' ';
+            }
+        }
+
+        private IOException fail(IOException e) {
+            failure = e;
+            return e;
+        }
+
+        long getBytes() {
+            return bytes;
+        }
+
+        long getChars() {
+            return chars;
+        }
+
+        boolean isBlank() {
+            return !text;
+        }
+
+        IOException getFailure() {
+            return failure;
+        }
+    }
+
+    /**
+     * 拉取式 gzip 压缩流：每次从源读取一块写入 GZIPOutputStream，再从其输出缓冲区交给读取方
+     * 与 AnswerContentCodec.gzip 使用相同的 JDK 实现与参数，同一文本得到相同字节
+     */
+    static final class GzipDeflatingInputStream extends InputStream {
+
+        private final InputStream source;
+        private final DrainableBuffer buffer = new DrainableBuffer();
+        private final GZIPOutputStream gzip;
+        private final byte[] chunk = new byte[BUFFER_SIZE];
+        private int position;
+        private boolean finished;
+
+        GzipDeflatingInputStream(InputStream source) {
+            this.source = source;
+            try {
+                this.gzip = new GZIPOutputStream(buffer, BUFFER_SIZE);
+            } catch (IOException e) {
+                // 写入内存缓冲区不会失败
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n = read(one, 0, 1);
+            return n < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            while (position >= buffer.size()) {
+                if (finished) {
+                    return -1;
+                }
+                buffer.reset();
+                position = 0;
+                int n = source.read(chunk);
+                if (n < 0) {
+                    gzip.finish();
+                    finished = true;
+                } else {
+                    gzip.write(chunk, 0, n);
+                }
+            }
+            int n = Math.min(len, buffer.size() - position);
+            System.arraycopy(buffer.array(), position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+    }
+
+    private static final class DrainableBuffer extends ByteArrayOutputStream {
+        DrainableBuffer() {
+            super(BUFFER_SIZE * 2);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.quiz.service;
+
+import com.example.quiz.model.Question;
+import com.example.quiz.model.User;
+import com.example.quiz.repository.AnswerContentView;
+import com.example.quiz.repository.AnswerContentRepository;
+import com.example.quiz.repository.AnswerRepository;
+import com.example.quiz.repository.AnswerScoreView;
+import com.example.quiz.repository.QuestionRepository;
+import com.example.quiz.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 判题导出：答案 ZIP（每个学生一个 HTML）与得分矩阵 CSV
+ * 查询次数与用户数、题目数无关：用户、题目各一次，答案一次
+ * 已归档题目的答案与得分从归档段读取
+ * 已移到外部存储的图片放在 ZIP 的 images/ 目录下，HTML 中改为相对路径引用，离线打开也能显示
+ */
+@Service
+public class AnswerExportService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AnswerExportService.class);
+
+    private final UserRepository userRepository;
+    private final QuestionRepository questionRepository;
+    private final AnswerRepository answerRepository;
+    private final AnswerContentRepository answerContentRepository;
+    private final ImageStore imageStore;
+    private final AnswerArchive answerArchive;
+
+    public AnswerExportService(UserRepository userRepository,
+                               QuestionRepository questionRepository,
+                               AnswerRepository answerRepository,
+                               AnswerContentRepository answerContentRepository,
+                               ImageStore imageStore,
+                               AnswerArchive answerArchive) {
+        this.userRepository = userRepository;
+        this.questionRepository = questionRepository;
+        this.answerRepository = answerRepository;
+        this.answerContentRepository = answerContentRepository;
+        this.imageStore = imageStore;
+        this.answerArchive = answerArchive;
+    }
+
+    @Transactional(readOnly = true)
+    public void writeAnswersZip(OutputStream os) throws IOException {
+        writeAnswersZip(os, 1);
+    }
+
+    /**
+     * @param workers 渲染 HTML 的并行线程数；数据库读取与 zip 写入仍是单线程顺序进行，
+     *                条目顺序与单线程导出一致。同时在途的用户数不超过 2 × workers
+     */
+    @Transactional(readOnly = true)
+    public void writeAnswersZip(OutputStream os, int workers) throws IOException {
+        List<User> users = findStudentsOrderById();
+        List<Question> questions = questionRepository.findAllOrderByChapterAndSortOrder();
+        LOGGER.info("Export answers start. users={}, questions={}, workers={}", users.size(), questions.size(), workers);
+
+        ExecutorService renderPool = workers > 1 ? Executors.newFixedThreadPool(workers) : null;
+        Deque<RenderedEntry> window = new ArrayDeque<>();
+        Set<String> imageNames = new TreeSet<>();
+        Set<Long> archivedQuestionIds = answerArchive.archivedQuestionIds();
+        try (ZipOutputStream zos = new ZipOutputStream(os);
+             Stream<AnswerContentView> rows = answerContentRepository.streamAllContentOrderByUser()) {
+            // 答案按 user_id 排序，与用户列表做归并，每次只持有一个用户的答案
+            Iterator<AnswerContentView> it = rows.iterator();
+            AnswerContentView pending = it.hasNext() ? it.next() : null;
+            for (User user : users) {
+                Map<Long, String> contentByQuestionId = new HashMap<>();
+                while (pending != null && pending.getUserId() <= user.getId()) {
+                    if (pending.getUserId().equals(user.getId())) {
+                        contentByQuestionId.put(pending.getQuestionId(), ImageStore.relativize(pending.getContentText(), imageNames));
+                    }
+                    pending = it.hasNext() ? it.next() : null;
+                }
+                // 已归档题目的答案按 (题目, 用户) 从归档段取，不查库
+                for (Long questionId : archivedQuestionIds) {
+                    if (!contentByQuestionId.containsKey(questionId)) {
+                        answerArchive.find(questionId, user.getId()).ifPresent(archived -> contentByQuestionId.put(
+                                questionId, ImageStore.relativize(archived.content(), imageNames)));
+                    }
+                }
+                String username = user.getUsername();
+                if (renderPool == null) {
+                    writeEntry(zos, username, render(username, questions, contentByQuestionId));
+                    continue;
+                }
+                window.add(new RenderedEntry(username,
+                        renderPool.submit(() -> render(username, questions, contentByQuestionId))));
+                if (window.size() >= workers * 2) {
+                    RenderedEntry done = window.poll();
+                    writeEntry(zos, done.username(), await(done.html()));
+                }
+            }
+            while (!window.isEmpty()) {
+                RenderedEntry done = window.poll();
+                writeEntry(zos, done.username(), await(done.html()));
+            }
+            writeImages(zos, imageNames);
+        } finally {
+            if (renderPool != null) {
+                renderPool.shutdownNow();
+            }
+        }
+        LOGGER.info("Export answers done. users={}, images={}", users.size(), imageNames.size());
+    }
+
+    @Transactional(readOnly = true)
+    public void writeScoresCsv(OutputStream os) throws IOException {
+        // Write BOM for Excel compatibility
+        os.write(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF});
+
+        // 1. Get Users (exclude admin, sort by ID to match data.json order)
+        List<User> users = findStudentsOrderById();
+
+        // 2. Get Questions
+        List<Question> questions = questionRepository.findAllOrderByChapterAndSortOrder();
+        LOGGER.info("Export scores start. users={}, questions={}", users.size(), questions.size());
+
+        // 3. Collect scores: questionId -> (userId -> score)
+        Map<Long, Map<Long, Double>> scores = new HashMap<>();
+        for (ArchiveSegment.ScoreRow row : answerArchive.scores()) {
+            scores.computeIfAbsent(row.questionId(), k -> new HashMap<>()).put(row.userId(), row.score());
+        }
+        for (AnswerScoreView row : answerRepository.findAllScores()) {
+            scores.computeIfAbsent(row.getQuestionId(), k -> new HashMap<>()).put(row.getUserId(), row.getScore());
+        }
+
+        // 4. Header + data rows
+        String csv = ExportFormatter.renderScoreCsv(users, questions, scores);
+        os.write(csv.getBytes(StandardCharsets.UTF_8));
+        LOGGER.info("Export scores done. users={}", users.size());
+    }
+
+    private record RenderedEntry(String username, Future<byte[]> html) {
+    }
+
+    private static void writeEntry(ZipOutputStream zos, String username, byte[] html) throws IOException {
+        zos.putNextEntry(new ZipEntry(ExportFormatter.sanitizeFilename(username) + ".html"));
+        zos.write(html);
+        zos.closeEntry();
+    }
+
+    /**
+     * 图片按文件名排序写入，导出结果与渲染线程数无关；文件缺失时跳过（HTML 中的引用保留）
+     */
+    private void writeImages(ZipOutputStream zos, Set<String> imageNames) throws IOException {
+        for (String name : imageNames) {
+            Optional<Path> file = imageStore.find(name);
+            if (!file.isPresent()) {
+                LOGGER.warn("Stored image missing from export. name={}", name);
+                continue;
+            }
+            zos.putNextEntry(new ZipEntry("images/" + name));
+            Files.copy(file.get(), zos);
+            zos.closeEntry();
+        }
+    }
+
+    private static byte[] render(String username, List<Question> questions, Map<Long, String> contentByQuestionId) {
+        return ExportFormatter.renderUserHtml(username, questions, contentByQuestionId).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] await(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Export answers interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private List<User> findStudentsOrderById() {
+        return userRepository.findAll().stream()
+                .filter(user -> user.getUsername() != null && !"admin".equals(user.getUsername()))
+                .sorted(Comparator.comparing(User::getId))
+                .collect(Collectors.toList());
+    }
+}
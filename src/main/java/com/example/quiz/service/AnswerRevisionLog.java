@@ -0,0 +1,587 @@
+package com.example.quiz.service;
+
+import com.example.quiz.repository.AnswerContentRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 答案修订历史：每次保存在提交后追加一条记录到只追加的段文件 app.revisions.dir/revisions-{代}.log，
+ * 记录为对上一修订的二进制差量（BinaryDelta，deflate 压缩），每 keyframe-interval 条或差量不划算时写一条完整内容（关键帧）
+ * 内存中按答案维护修订在段文件中的偏移，启动时扫描段文件重建，末尾不完整的记录截掉；
+ * 压缩任务把早于 keep-all 的修订稀疏为每 thin-interval 至多一条，重新编码写入下一代段文件后切换
+ * 指标：quiz.revisions.appended{kind=keyframe|delta}、quiz.revisions.stored.bytes、quiz.revisions.content.bytes、quiz.revisions.segment.bytes
+ */
+@Service
+public class AnswerRevisionLog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AnswerRevisionLog.class);
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("revisions-(\\d{6})\\.log");
+    private static final byte KIND_KEYFRAME = 0;
+    private static final byte KIND_DELTA = 1;
+    /** 记录头：负载长度、答案ID、版本、保存时间、类型、原文长度 */
+    private static final int HEADER_BYTES = 4 + 8 + 8 + 8 + 1 + 4;
+    private static final int CRC_BYTES = 4;
+
+    private final AnswerContentRepository answerContentRepository;
+    private final boolean enabled;
+    private final Path directory;
+    private final int keyframeInterval;
+    private final Duration keepAll;
+    private final Duration thinInterval;
+    private final long cacheBytes;
+    private final AfterCommitExecutor writer;
+    private final Counter keyframes;
+    private final Counter deltas;
+    private final Counter storedBytes;
+    private final Counter contentBytes;
+
+    /** 段文件与索引的切换（压缩）加写锁，读取修订加读锁；追加只在 writer 线程中进行 */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile FileChannel channel;
+    private int generation;
+    private volatile Map<Long, List<Entry>> index;
+
+    /** 各答案最近一条修订的内容（仅 writer 线程访问），按总字节数淘汰，未命中时从段文件重建 */
+    private final LinkedHashMap<Long, byte[]> latest = new LinkedHashMap<>(16, 0.75f, true);
+    private long latestBytes;
+
+    /**
+     * 修订在段文件中的位置
+     */
+    record Entry(long version, long savedAt, long offset, int length, boolean keyframe) {
+    }
+
+    public record Revision(long version, LocalDateTime savedAt, boolean keyframe, int storedBytes) {
+    }
+
+    public AnswerRevisionLog(AnswerContentRepository answerContentRepository,
+                             @Value("${app.revisions.enabled:true}") boolean enabled,
+                             @Value("${app.revisions.dir:data/revisions}") String directory,
+                             @Value("${app.revisions.keyframe-interval:20}") int keyframeInterval,
+                             @Value("${app.revisions.keep-all:P7D}") Duration keepAll,
+                             @Value("${app.revisions.thin-interval:PT1H}") Duration thinInterval,
+                             @Value("${app.revisions.cache-bytes:67108864}") long cacheBytes,
+                             MeterRegistry meterRegistry) {
+        this.answerContentRepository = answerContentRepository;
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.keyframeInterval = keyframeInterval;
+        this.keepAll = keepAll;
+        this.thinInterval = thinInterval;
+        this.cacheBytes = cacheBytes;
+        this.writer = new AfterCommitExecutor("revision-log", Thread.NORM_PRIORITY, LOGGER);
+        this.keyframes = Counter.builder("quiz.revisions.appended").tag("kind", "keyframe").register(meterRegistry);
+        this.deltas = Counter.builder("quiz.revisions.appended").tag("kind", "delta").register(meterRegistry);
+        this.storedBytes = Counter.builder("quiz.revisions.stored.bytes").register(meterRegistry);
+        this.contentBytes = Counter.builder("quiz.revisions.content.bytes").register(meterRegistry);
+        Gauge.builder("quiz.revisions.segment.bytes", this, AnswerRevisionLog::segmentBytes).register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdown();
+        lock.writeLock().lock();
+        try {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close revision log", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 保存（表单或流式）后调用：提交后由写线程从库中一次读出内容、版本与保存时间（updated_at）再编码追加，
+     * 三者总是同一次保存的值；写线程落后时读到的已是更新的保存，按版本去重后只记一次，时间也是那次保存的
+     * 队列中只有答案ID，不持有内容：突发的大答案保存在准入许可归还后不会继续占用堆
+     */
+    public void appendAfterCommit(long answerId) {
+        if (!enabled) {
+            return;
+        }
+        writer.executeAfterCommit(() -> answerContentRepository.findRevisionRowById(answerId).ifPresent(row -> {
+            String text = row.getContentText();
+            long savedAt = row.getSavedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            append(answerId, row.getContentVersion(), savedAt, text != null ? text : "");
+        }));
+    }
+
+    /**
+     * 在写线程中追加一条修订；版本不比最后一条新（重复提交或乱序）时跳过
+     */
+    void append(long answerId, long version, long savedAt, String html) {
+        byte[] content = html.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            open();
+            List<Entry> entries = index.getOrDefault(answerId, List.of());
+            Entry last = entries.isEmpty() ? null : entries.get(entries.size() - 1);
+            if (last != null && last.version() >= version) {
+                return;
+            }
+            byte[] previous = last == null ? null : latestContent(answerId, entries);
+            Entry entry = write(channel, answerId, version, savedAt, content, previous, sinceKeyframe(entries));
+            if (entry == null) {
+                return;
+            }
+            index.computeIfAbsent(answerId, k -> Collections.synchronizedList(new ArrayList<>())).add(entry);
+            (entry.keyframe() ? keyframes : deltas).increment();
+            storedBytes.increment(entry.length());
+            contentBytes.increment(content.length);
+            remember(answerId, content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 与上一条内容相同时返回 null（不写）；距上个关键帧达到间隔、没有上一条或差量超过原文一半时写关键帧
+     */
+    private Entry write(FileChannel target, long answerId, long version, long savedAt, byte[] content,
+                        byte[] previous, int sinceKeyframe) throws IOException {
+        if (previous != null && Arrays.equals(previous, content)) {
+            return null;
+        }
+        byte kind = KIND_KEYFRAME;
+        byte[] payload = null;
+        if (previous != null && sinceKeyframe < keyframeInterval - 1) {
+            byte[] delta = deflate(BinaryDelta.encode(previous, content));
+            if (delta.length <= content.length / 2) {
+                kind = KIND_DELTA;
+                payload = delta;
+            }
+        }
+        if (payload == null) {
+            payload = deflate(content);
+        }
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length + CRC_BYTES);
+        record.putInt(payload.length).putLong(answerId).putLong(version).putLong(savedAt).put(kind).putInt(content.length)
+                .put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, record.position());
+        record.putInt((int) crc.getValue());
+        record.flip();
+        long offset = target.size();
+        while (record.hasRemaining()) {
+            target.write(record, offset + record.position());
+        }
+        return new Entry(version, savedAt, offset, record.capacity(), kind == KIND_KEYFRAME);
+    }
+
+    private static int sinceKeyframe(List<Entry> entries) {
+        int count = 0;
+        for (int i = entries.size() - 1; i >= 0 && !entries.get(i).keyframe(); i--) {
+            count++;
+        }
+        return count;
+    }
+
+    private byte[] latestContent(long answerId, List<Entry> entries) throws IOException {
+        byte[] cached = latest.get(answerId);
+        return cached != null ? cached : reconstruct(channel, entries, entries.size() - 1);
+    }
+
+    private void remember(long answerId, byte[] content) {
+        byte[] old = latest.put(answerId, content);
+        latestBytes += content.length - (old != null ? old.length : 0);
+        var iterator = latest.entrySet().iterator();
+        while (latestBytes > cacheBytes && iterator.hasNext()) {
+            latestBytes -= iterator.next().getValue().length;
+            iterator.remove();
+        }
+    }
+
+    public List<Revision> revisions(long answerId) {
+        lock.readLock().lock();
+        try {
+            if (!enabled || !ensureOpen()) {
+                return List.of();
+            }
+            List<Revision> revisions = new ArrayList<>();
+            for (Entry entry : snapshot(answerId)) {
+                revisions.add(new Revision(entry.version(), toLocal(entry.savedAt()), entry.keyframe(), entry.length()));
+            }
+            return revisions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 指定版本的内容；该版本不在历史中（未记录或已被稀疏）时返回空
+     */
+    public Optional<String> contentAt(long answerId, long version) {
+        lock.readLock().lock();
+        try {
+            if (!enabled || !ensureOpen()) {
+                return Optional.empty();
+            }
+            List<Entry> entries = snapshot(answerId);
+            for (int i = 0; i < entries.size(); i++) {
+                if (entries.get(i).version() == version) {
+                    return Optional.of(new String(reconstruct(channel, entries, i), StandardCharsets.UTF_8));
+                }
+            }
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 某一时刻的修订：该时刻或之前最后保存的一条
+     */
+    public Optional<Revision> revisionAt(long answerId, LocalDateTime at) {
+        Revision found = null;
+        for (Revision revision : revisions(answerId)) {
+            if (!revision.savedAt().isAfter(at)) {
+                found = revision;
+            }
+        }
+        return Optional.ofNullable(found);
+    }
+
+    private List<Entry> snapshot(long answerId) {
+        List<Entry> entries = index.get(answerId);
+        if (entries == null) {
+            return List.of();
+        }
+        synchronized (entries) {
+            return new ArrayList<>(entries);
+        }
+    }
+
+    /**
+     * 从目标之前最近的关键帧开始依次应用差量
+     */
+    private static byte[] reconstruct(FileChannel source, List<Entry> entries, int target) throws IOException {
+        int start = target;
+        while (!entries.get(start).keyframe()) {
+            start--;
+        }
+        byte[] content = null;
+        for (int i = start; i <= target; i++) {
+            Entry entry = entries.get(i);
+            ByteBuffer record = ByteBuffer.allocate(entry.length());
+            while (record.hasRemaining()) {
+                if (source.read(record, entry.offset() + record.position()) < 0) {
+                    throw new IOException("revision record truncated at " + entry.offset());
+                }
+            }
+            int payloadLength = record.getInt(0);
+            byte kind = record.get(28);
+            int rawLength = record.getInt(29);
+            byte[] payload = new byte[payloadLength];
+            record.get(HEADER_BYTES, payload);
+            if (kind == KIND_KEYFRAME) {
+                content = inflate(payload, rawLength);
+            } else {
+                content = BinaryDelta.apply(content, inflate(payload, -1));
+            }
+        }
+        return content;
+    }
+
+    @Scheduled(cron = "${app.revisions.compact-cron:0 30 3 * * *}")
+    public void scheduledCompaction() {
+        if (!enabled || !Files.isDirectory(directory)) {
+            return;
+        }
+        try {
+            compactNow(System.currentTimeMillis());
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Revision compaction not scheduled: writer queue full");
+        }
+    }
+
+    /**
+     * 压缩：早于 keep-all 的修订每 thin-interval 保留最后一条，每个答案的最后一条总是保留；
+     * 保留的修订重新编码写入下一代段文件，完成后原子切换并删除旧段文件
+     * 在写线程中执行，与追加互斥；切换时短暂阻塞读取
+     */
+    Future<?> compactNow(long now) {
+        return writer.submit(() -> {
+            try {
+                compact(now);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Revision log compaction failed", e);
+                throw e;
+            }
+            return null;
+        });
+    }
+
+    private void compact(long now) throws IOException {
+        long startNanos = System.nanoTime();
+        Map<Long, List<Entry>> current;
+        FileChannel source;
+        int nextGeneration;
+        lock.readLock().lock();
+        try {
+            open();
+            current = new HashMap<>(index);
+            source = channel;
+            nextGeneration = generation + 1;
+        } finally {
+            lock.readLock().unlock();
+        }
+        long cutoff = now - keepAll.toMillis();
+        long bucket = Math.max(1, thinInterval.toMillis());
+        Path temp = directory.resolve(segmentName(nextGeneration) + ".tmp");
+        Map<Long, List<Entry>> compacted = new ConcurrentHashMap<>();
+        long before = source.size();
+        int dropped = 0;
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            for (Map.Entry<Long, List<Entry>> answer : current.entrySet()) {
+                List<Entry> entries = snapshotOf(answer.getValue());
+                List<Entry> kept = new ArrayList<>();
+                byte[] previous = null;
+                byte[] content = null;
+                for (int i = 0; i < entries.size(); i++) {
+                    Entry entry = entries.get(i);
+                    boolean lastOfBucket = i == entries.size() - 1
+                            || entries.get(i + 1).savedAt() >= cutoff
+                            || entries.get(i + 1).savedAt() / bucket != entry.savedAt() / bucket;
+                    if (entry.savedAt() < cutoff && !lastOfBucket) {
+                        dropped++;
+                        continue;
+                    }
+                    // 逐条重建；相邻保留的修订之间可能隔着被丢弃的差量，需要沿原链重建
+                    content = reconstruct(source, entries, i);
+                    Entry written = write(out, answer.getKey(), entry.version(), entry.savedAt(), content, previous,
+                            sinceKeyframe(kept));
+                    if (written != null) {
+                        kept.add(written);
+                        previous = content;
+                    }
+                }
+                if (!kept.isEmpty()) {
+                    compacted.put(answer.getKey(), Collections.synchronizedList(kept));
+                }
+            }
+            out.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Path next = directory.resolve(segmentName(nextGeneration));
+        Files.move(temp, next, StandardCopyOption.ATOMIC_MOVE);
+        lock.writeLock().lock();
+        try {
+            FileChannel old = channel;
+            channel = FileChannel.open(next, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            index = compacted;
+            generation = nextGeneration;
+            old.close();
+            Files.deleteIfExists(directory.resolve(segmentName(nextGeneration - 1)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        LOGGER.info("Revision log compacted. generation={}, answers={}, dropped={}, bytesBefore={}, bytesAfter={}, elapsedMs={}",
+                nextGeneration, compacted.size(), dropped, before, channel.size(), (System.nanoTime() - startNanos) / 1_000_000);
+    }
+
+    private static List<Entry> snapshotOf(List<Entry> entries) {
+        synchronized (entries) {
+            return new ArrayList<>(entries);
+        }
+    }
+
+    /**
+     * 读取时若尚未打开且目录不存在则视为无历史，不创建文件
+     */
+    private boolean ensureOpen() {
+        if (index != null) {
+            return true;
+        }
+        if (!Files.isDirectory(directory)) {
+            return false;
+        }
+        try {
+            open();
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 首次使用时打开最新一代段文件并扫描重建索引；旧代与未完成的压缩临时文件删除
+     */
+    private synchronized void open() throws IOException {
+        if (index != null) {
+            return;
+        }
+        Files.createDirectories(directory);
+        int latestGeneration = 1;
+        List<Path> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(segments::add);
+        }
+        for (Path file : segments) {
+            Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+            if (matcher.matches()) {
+                latestGeneration = Math.max(latestGeneration, Integer.parseInt(matcher.group(1)));
+            }
+        }
+        for (Path file : segments) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(".tmp") || (SEGMENT_NAME.matcher(name).matches() && !name.equals(segmentName(latestGeneration)))) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Path segment = directory.resolve(segmentName(latestGeneration));
+        FileChannel opened = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Map<Long, List<Entry>> scanned = scan(opened);
+        generation = latestGeneration;
+        channel = opened;
+        index = scanned;
+        LOGGER.info("Revision log opened. segment={}, answers={}, bytes={}", segment, scanned.size(), opened.size());
+    }
+
+    /**
+     * 顺序读取记录头与校验和；遇到不完整或校验失败的记录时截断到此处（写入中途崩溃）
+     */
+    private static Map<Long, List<Entry>> scan(FileChannel source) throws IOException {
+        Map<Long, List<Entry>> scanned = new ConcurrentHashMap<>();
+        long size = source.size();
+        long offset = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (offset + HEADER_BYTES + CRC_BYTES <= size) {
+            header.clear();
+            while (header.hasRemaining() && source.read(header, offset + header.position()) >= 0) {
+                // 读满记录头
+            }
+            int payloadLength = header.getInt(0);
+            int length = HEADER_BYTES + payloadLength + CRC_BYTES;
+            if (payloadLength < 0 || offset + length > size || !checksumMatches(source, offset, length)) {
+                break;
+            }
+            Entry entry = new Entry(header.getLong(12), header.getLong(20), offset, length, header.get(28) == KIND_KEYFRAME);
+            scanned.computeIfAbsent(header.getLong(4), k -> Collections.synchronizedList(new ArrayList<>())).add(entry);
+            offset += length;
+        }
+        if (offset < size) {
+            LOGGER.warn("Truncating incomplete revision record. offset={}, size={}", offset, size);
+            source.truncate(offset);
+        }
+        return scanned;
+    }
+
+    private static boolean checksumMatches(FileChannel source, long offset, int length) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(length);
+        while (record.hasRemaining()) {
+            if (source.read(record, offset + record.position()) < 0) {
+                return false;
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, length - CRC_BYTES);
+        return (int) crc.getValue() == record.getInt(length - CRC_BYTES);
+    }
+
+    private long segmentBytes() {
+        FileChannel current = channel;
+        try {
+            return current != null && current.isOpen() ? current.size() : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static String segmentName(int generation) {
+        return String.format("revisions-%06d.log", generation);
+    }
+
+    private static LocalDateTime toLocal(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data, int expectedLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(expectedLength > 0 ? expectedLength : data.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("corrupt revision payload");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("corrupt revision payload", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.quiz.service;
+
+import com.example.quiz.dto.AnswerDTO;
+import com.example.quiz.model.Answer;
+import com.example.quiz.model.AnswerContent;
+import com.example.quiz.model.Question;
+import com.example.quiz.model.User;
+import com.example.quiz.repository.AnswerContentRepository;
+import com.example.quiz.repository.AnswerRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * 表单保存答案：答案行与内容行在同一个事务中写入，任一失败整体回滚，不会留下只有元数据或只有内容的答案
+ * 已有答案先加行锁再读取，内容版本在锁内递增，与并发的保存、流式保存、图片入库/回填改写互不丢失
+ * 缓存、搜索索引、相似度签名、修订日志、图片入库与阅卷队列都在事务内登记，提交后才生效
+ */
+@Service
+public class AnswerSaveService {
+
+    private final AnswerRepository answerRepository;
+    private final AnswerContentRepository answerContentRepository;
+    private final AnswerContentStorage answerContentStorage;
+    private final AnswerCache answerCache;
+    private final ImageIngestService imageIngestService;
+    private final AnswerSearchIndex answerSearchIndex;
+    private final AnswerSimilarityService answerSimilarityService;
+    private final AnswerRevisionLog answerRevisionLog;
+    private final GradingQueue gradingQueue;
+
+    public AnswerSaveService(AnswerRepository answerRepository,
+                             AnswerContentRepository answerContentRepository,
+                             AnswerContentStorage answerContentStorage,
+                             AnswerCache answerCache,
+                             ImageIngestService imageIngestService,
+                             AnswerSearchIndex answerSearchIndex,
+                             AnswerSimilarityService answerSimilarityService,
+                             AnswerRevisionLog answerRevisionLog,
+                             GradingQueue gradingQueue) {
+        this.answerRepository = answerRepository;
+        this.answerContentRepository = answerContentRepository;
+        this.answerContentStorage = answerContentStorage;
+        this.answerCache = answerCache;
+        this.imageIngestService = imageIngestService;
+        this.answerSearchIndex = answerSearchIndex;
+        this.answerSimilarityService = answerSimilarityService;
+        this.answerRevisionLog = answerRevisionLog;
+        this.gradingQueue = gradingQueue;
+    }
+
+    public record Result(Answer answer, boolean updated) {}
+
+    @Transactional
+    public Result save(Question question, User user, String content) {
+        String username = user.getUsername();
+        // 先锁住已有的答案行，再取内容：锁内读到的是最新的内容与版本，版本加 1 后两次保存不会得到同一个版本（ETag）
+        Optional<Answer> lockedOptional = answerRepository.findForUpdateByQuestionIdAndUserId(question.getId(), user.getId());
+
+        Answer answer;
+        AnswerContent body;
+        boolean compress = answerContentStorage.isCompressed();
+        boolean isUpdate = lockedOptional.isPresent();
+        if (isUpdate) {
+            answer = lockedOptional.get();
+            // 旧答案可能尚无内容行：为锁住的这一行补建，不另插入答案
+            Optional<AnswerContent> existingBodyOptional = answerContentRepository.findById(answer.getId());
+            if (existingBodyOptional.isPresent()) {
+                body = existingBodyOptional.get();
+                body.setContent(content, compress);
+            } else {
+                body = new AnswerContent(answer, content, compress);
+            }
+            answer.setUpdatedAt(LocalDateTime.now());
+        } else {
+            answer = new Answer(question, user);
+            body = new AnswerContent(answer, content, compress);
+        }
+        answerRepository.save(answer);
+        answerContentRepository.save(body);
+
+        long answerId = answer.getId();
+        Long questionId = question.getId();
+        AnswerDTO dto = AnswerDTO.from(body, username);
+        // 先失效旧条目（事务回滚时也只是少一次命中），提交后再写入新内容
+        answerCache.invalidate(username, questionId);
+        AfterCommitExecutor.afterCommit(() -> answerCache.put(username, questionId, dto));
+        if (EmbeddedImages.mayContain(content)) {
+            imageIngestService.submit(answerId, username, questionId);
+        }
+        answerSearchIndex.reindexAfterCommit(answerId);
+        answerSimilarityService.refreshAfterCommit(answerId);
+        answerRevisionLog.appendAfterCommit(answerId);
+        if (answer.getScore() == null && content != null && !content.trim().isEmpty() && !"admin".equals(username)) {
+            AfterCommitExecutor.afterCommit(() -> gradingQueue.ungraded(questionId, answerId));
+        }
+        return new Result(answer, isUpdate);
+    }
+}
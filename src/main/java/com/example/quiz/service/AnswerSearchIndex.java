@@ -0,0 +1,534 @@
+package com.example.quiz.service;
+
+import com.example.quiz.repository.AnswerContentRepository;
+import com.example.quiz.repository.AnswerContentRowView;
+import com.example.quiz.repository.AnswerRepository;
+import com.example.quiz.repository.AnswerVersionView;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 答案全文检索：进程内倒排索引，按 BM25 排序，多个词之间为“与”关系
+ * 启动后在后台先读磁盘快照，再按内容版本比对只重建变化的答案（无快照时多线程全量构建）；
+ * 快照读入后即可查询（结果可能略旧），无快照时全量构建完成前不可查询；
+ * 保存答案提交后增量更新，定时与关闭时把有变化的索引写回快照
+ * 指标：quiz.search.documents、quiz.search.terms、quiz.search.latency
+ */
+@Service
+public class AnswerSearchIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AnswerSearchIndex.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x51534931; // "QSI1"
+    private static final int BUILD_BATCH_SIZE = 100;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int SNIPPET_BEFORE = 30;
+    private static final int SNIPPET_AFTER = 70;
+
+    private final AnswerContentRepository answerContentRepository;
+    private final AnswerRepository answerRepository;
+    private final boolean enabled;
+    private final Path snapshotFile;
+    private final int threads;
+    private final Timer latency;
+    private final AfterCommitExecutor updater;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Doc> docs = new HashMap<>();
+    private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+    private long totalLength;
+    private volatile boolean searchable;
+    private volatile boolean ready;
+    private volatile ExecutorService buildPool;
+    private volatile boolean dirty;
+
+    /**
+     * 已索引的答案：纯文本保留用于摘要与快照
+     */
+    record Doc(long answerId, long questionId, String username, long version, String text,
+               Map<String, Integer> termFrequencies, int length) {
+
+        static Doc of(long answerId, long questionId, String username, long version, String text) {
+            List<String> tokens = SearchTokenizer.indexTokens(text);
+            Map<String, Integer> frequencies = new HashMap<>();
+            for (String token : tokens) {
+                frequencies.merge(token, 1, Integer::sum);
+            }
+            return new Doc(answerId, questionId, username, version, text, frequencies, tokens.size());
+        }
+    }
+
+    public record Hit(long answerId, long questionId, String username, double score, String snippet) {
+    }
+
+    public record Result(int total, List<Hit> hits) {
+    }
+
+    public AnswerSearchIndex(AnswerContentRepository answerContentRepository,
+                             AnswerRepository answerRepository,
+                             @Value("${app.search.enabled:true}") boolean enabled,
+                             @Value("${app.search.index-file:data/search-index.bin}") String snapshotFile,
+                             @Value("${app.search.threads:0}") int threads,
+                             MeterRegistry meterRegistry) {
+        this.answerContentRepository = answerContentRepository;
+        this.answerRepository = answerRepository;
+        this.enabled = enabled;
+        this.snapshotFile = Paths.get(snapshotFile);
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.latency = Timer.builder("quiz.search.latency").register(meterRegistry);
+        // 增量更新单线程顺序执行，同一答案的多次保存按提交顺序生效；队列满时丢弃的更新在重启时按版本比对补上
+        this.updater = new AfterCommitExecutor("search-index", Thread.NORM_PRIORITY, LOGGER);
+        Gauge.builder("quiz.search.documents", this, AnswerSearchIndex::size).register(meterRegistry);
+        Gauge.builder("quiz.search.terms", this, AnswerSearchIndex::termCount).register(meterRegistry);
+    }
+
+    /**
+     * 快照已读入或全量构建已完成：此后的查询结果可用（ready 为 false 时可能略旧）；未启用时查询总是返回空结果
+     */
+    public boolean isSearchable() {
+        return !enabled || searchable;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 启动完成后提交到构建线程池在后台执行，不阻塞启动事件；协调任务自己占一个线程，其余 threads 个线程并行分词
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        if (!enabled) {
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads + 1, namedThreads("search-build-"));
+        buildPool = pool;
+        pool.execute(() -> {
+            try {
+                buildNow(pool);
+            } finally {
+                pool.shutdown();
+            }
+        });
+    }
+
+    private void buildNow(ExecutorService pool) {
+        long startNanos = System.nanoTime();
+        try {
+            int loaded = loadSnapshot(pool);
+            int rebuilt = loaded > 0 ? catchUp(pool) : buildAll(pool);
+            searchable = true;
+            ready = true;
+            LOGGER.info("Search index ready. documents={}, terms={}, fromSnapshot={}, rebuilt={}, threads={}, elapsedMs={}",
+                    size(), termCount(), loaded, rebuilt, threads, (System.nanoTime() - startNanos) / 1_000_000);
+            if (rebuilt > 0) {
+                writeSnapshot();
+            }
+        } catch (Exception e) {
+            searchable = true;
+            LOGGER.error("Search index build failed; search results will be incomplete", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.snapshot-interval-ms:300000}",
+            initialDelayString = "${app.search.snapshot-interval-ms:300000}")
+    public void snapshotIfDirty() {
+        if (ready && dirty) {
+            try {
+                writeSnapshot();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to write search index snapshot", e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ExecutorService pool = buildPool;
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+        updater.shutdown();
+        snapshotIfDirty();
+    }
+
+    /**
+     * 保存（表单或流式）后调用：提交后由后台线程从库中读取该答案，去标签、分词并写入索引
+     * 队列中只有答案ID，不持有内容，也不增加保存请求的分配
+     */
+    public void reindexAfterCommit(long answerId) {
+        if (!enabled) {
+            return;
+        }
+        updater.executeAfterCommit(() -> answerContentRepository.findContentRowById(answerId).ifPresent(row -> put(toDoc(row))));
+    }
+
+    /**
+     * 答案已从实时表删除（冷归档）：交给更新线程移除，排在之前登记的写入之后，不会被它们重新加回
+     */
+    public void removeAll(Collection<Long> answerIds) {
+        if (!enabled || answerIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(answerIds);
+        try {
+            updater.execute(() -> ids.forEach(this::remove));
+        } catch (RejectedExecutionException e) {
+            ids.forEach(this::remove);
+        }
+    }
+
+    /**
+     * 写入或替换一个答案；比索引中已有版本旧的结果丢弃
+     */
+    void put(Doc doc) {
+        lock.writeLock().lock();
+        try {
+            Doc old = docs.get(doc.answerId());
+            if (old != null) {
+                if (old.version() > doc.version()) {
+                    return;
+                }
+                unlink(old);
+            }
+            docs.put(doc.answerId(), doc);
+            for (Map.Entry<String, Integer> e : doc.termFrequencies().entrySet()) {
+                postings.computeIfAbsent(e.getKey(), k -> new HashMap<>()).put(doc.answerId(), e.getValue());
+            }
+            totalLength += doc.length();
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(long answerId) {
+        lock.writeLock().lock();
+        try {
+            Doc old = docs.remove(answerId);
+            if (old != null) {
+                unlink(old);
+                dirty = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void unlink(Doc doc) {
+        for (String term : doc.termFrequencies().keySet()) {
+            Map<Long, Integer> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(doc.answerId());
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        totalLength -= doc.length();
+    }
+
+    /**
+     * 按 BM25 得分降序分页返回；questionId 非空时只在该题的答案中搜索
+     */
+    public Result search(String query, Long questionId, int page, int size) {
+        long startNanos = System.nanoTime();
+        List<String> terms = SearchTokenizer.queryTokens(query == null ? "" : query);
+        if (terms.isEmpty()) {
+            return new Result(0, List.of());
+        }
+        List<Hit> matched = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            List<Map<Long, Integer>> lists = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                Map<Long, Integer> posting = postings.get(term);
+                if (posting == null) {
+                    return new Result(0, List.of());
+                }
+                lists.add(posting);
+            }
+            int n = docs.size();
+            double averageLength = n == 0 ? 1 : Math.max(1.0, (double) totalLength / n);
+            double[] idf = new double[lists.size()];
+            for (int i = 0; i < lists.size(); i++) {
+                int df = lists.get(i).size();
+                idf[i] = Math.log(1 + (n - df + 0.5) / (df + 0.5));
+            }
+            // 从最短的倒排表出发，逐个检查其余词是否出现
+            Map<Long, Integer> shortest = lists.stream().min(Comparator.comparingInt(Map::size)).orElseThrow();
+            for (Long answerId : shortest.keySet()) {
+                Doc doc = docs.get(answerId);
+                if (questionId != null && doc.questionId() != questionId) {
+                    continue;
+                }
+                double score = 0;
+                boolean all = true;
+                for (int i = 0; i < lists.size() && all; i++) {
+                    Integer tf = lists.get(i).get(answerId);
+                    if (tf == null) {
+                        all = false;
+                    } else {
+                        score += idf[i] * tf * (K1 + 1) / (tf + K1 * (1 - B + B * doc.length() / averageLength));
+                    }
+                }
+                if (all) {
+                    matched.add(new Hit(answerId, doc.questionId(), doc.username(), score, doc.text()));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        matched.sort(Comparator.comparingDouble(Hit::score).reversed().thenComparingLong(Hit::answerId));
+        int from = Math.min(matched.size(), Math.max(0, page) * size);
+        int to = Math.min(matched.size(), from + size);
+        List<Hit> hits = new ArrayList<>(to - from);
+        for (Hit hit : matched.subList(from, to)) {
+            hits.add(new Hit(hit.answerId(), hit.questionId(), hit.username(), hit.score(), snippet(hit.snippet(), terms)));
+        }
+        latency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        return new Result(matched.size(), hits);
+    }
+
+    /**
+     * 摘要：第一个命中词前后的一段文字
+     */
+    static String snippet(String text, List<String> terms) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        int position = -1;
+        for (String term : terms) {
+            int index = lower.indexOf(term);
+            if (index >= 0 && (position < 0 || index < position)) {
+                position = index;
+            }
+        }
+        int to = Math.min(text.length(), Math.max(0, position) + SNIPPET_AFTER);
+        int from = Math.min(to, Math.max(0, position - SNIPPET_BEFORE));
+        return (from > 0 ? "…" : "") + text.substring(from, to) + (to < text.length() ? "…" : "");
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int termCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Doc toDoc(AnswerContentRowView row) {
+        return Doc.of(row.getId(), row.getQuestionId(), row.getUsername(), row.getContentVersion(),
+                SearchTokenizer.plainText(row.getContentText()));
+    }
+
+    /**
+     * 无快照时全量构建：按答案ID分批顺序读取，每批的解压、去标签与分词并行执行
+     */
+    private int buildAll(ExecutorService pool) throws IOException {
+        int count = 0;
+        long afterId = 0;
+        while (true) {
+            List<AnswerContentRowView> batch = answerContentRepository.findContentRowsAfter(afterId, PageRequest.of(0, BUILD_BATCH_SIZE));
+            if (batch.isEmpty()) {
+                return count;
+            }
+            List<Callable<Doc>> tasks = new ArrayList<>(batch.size());
+            for (AnswerContentRowView row : batch) {
+                tasks.add(() -> toDoc(row));
+            }
+            for (Doc doc : invokeAll(pool, tasks)) {
+                put(doc);
+            }
+            count += batch.size();
+            afterId = batch.get(batch.size() - 1).getId();
+        }
+    }
+
+    /**
+     * 读入快照后与库中的内容版本比对：删除已不存在的答案，重建新增或版本变化的答案
+     */
+    private int catchUp(ExecutorService pool) throws IOException {
+        Map<Long, Long> versions = new HashMap<>();
+        for (AnswerVersionView view : answerRepository.findAllContentVersions()) {
+            versions.put(view.getId(), view.getContentVersion());
+        }
+        List<Long> stale = new ArrayList<>();
+        Set<Long> removed = new HashSet<>();
+        lock.readLock().lock();
+        try {
+            for (Long id : docs.keySet()) {
+                if (!versions.containsKey(id)) {
+                    removed.add(id);
+                }
+            }
+            for (Map.Entry<Long, Long> e : versions.entrySet()) {
+                Doc doc = docs.get(e.getKey());
+                if (doc == null || doc.version() != e.getValue()) {
+                    stale.add(e.getKey());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        removed.forEach(this::remove);
+        List<Callable<Doc>> tasks = new ArrayList<>(stale.size());
+        for (Long id : stale) {
+            tasks.add(() -> answerContentRepository.findContentRowById(id).map(AnswerSearchIndex::toDoc).orElse(null));
+        }
+        for (Doc doc : invokeAll(pool, tasks)) {
+            if (doc != null) {
+                put(doc);
+            }
+        }
+        return stale.size() + removed.size();
+    }
+
+    private static <T> List<T> invokeAll(ExecutorService pool, List<Callable<T>> tasks) throws IOException {
+        try {
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Search index build interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * 快照只保存各答案的纯文本与版本，读入时重新分词（并行），格式简单且与分词规则变化无关
+     */
+    int loadSnapshot(ExecutorService pool) {
+        if (!Files.exists(snapshotFile)) {
+            return 0;
+        }
+        List<Callable<Doc>> tasks = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(snapshotFile))))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("not a search index snapshot");
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long answerId = in.readLong();
+                long questionId = in.readLong();
+                String username = in.readUTF();
+                long version = in.readLong();
+                String text = new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8);
+                tasks.add(() -> Doc.of(answerId, questionId, username, version, text));
+            }
+            for (Doc doc : invokeAll(pool, tasks)) {
+                put(doc);
+            }
+            searchable = true;
+            return count;
+        } catch (IOException e) {
+            LOGGER.warn("Unreadable search index snapshot, rebuilding from the database. file={}", snapshotFile, e);
+            lock.writeLock().lock();
+            try {
+                docs.clear();
+                postings.clear();
+                totalLength = 0;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return 0;
+        }
+    }
+
+    synchronized void writeSnapshot() throws IOException {
+        List<Doc> snapshot;
+        lock.readLock().lock();
+        try {
+            snapshot = new ArrayList<>(docs.values());
+            dirty = false;
+        } finally {
+            lock.readLock().unlock();
+        }
+        Path dir = snapshotFile.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, snapshotFile.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temp))))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(snapshot.size());
+                for (Doc doc : snapshot) {
+                    out.writeLong(doc.answerId());
+                    out.writeLong(doc.questionId());
+                    out.writeUTF(doc.username());
+                    out.writeLong(doc.version());
+                    byte[] text = doc.text().getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(text.length);
+                    out.write(text);
+                }
+            }
+            Files.move(temp, snapshotFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        LOGGER.debug("Search index snapshot written. documents={}, file={}", snapshot.size(), snapshotFile);
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger index = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,419 @@
+package com.example.quiz.service;
+
+import com.example.quiz.repository.AnswerContentRepository;
+import com.example.quiz.repository.AnswerContentRowView;
+import com.example.quiz.repository.AnswerRepository;
+import com.example.quiz.repository.AnswerVersionView;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 答案查重：答案正文按字符 k-gram 切片（只保留字母与数字，忽略大小写、空白与标点），连同图片哈希计算 MinHash 签名，
+ * 同一题的签名经 LSH 分段分桶找出候选对，再按签名估计的 Jaccard 相似度确认，相似的答案用并查集归为一组
+ * 保存答案提交后在后台计算签名；查询时版本不符或缺失的签名用 ForkJoin 线程池并行重算（重启后即全量重算）
+ * 指标：quiz.similarity.signatures、quiz.similarity.report
+ */
+@Service
+public class AnswerSimilarityService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AnswerSimilarityService.class);
+
+    /** ForkJoin 叶子任务一次读取的答案数 */
+    private static final int LEAF_SIZE = 16;
+
+    /** 每组返回的相似对上限 */
+    private static final int MAX_PAIRS_PER_CLUSTER = 50;
+
+    private final AnswerContentRepository answerContentRepository;
+    private final AnswerRepository answerRepository;
+    private final boolean enabled;
+    private final int bands;
+    private final int rows;
+    private final int shingleSize;
+    private final int minShingles;
+    private final double defaultThreshold;
+    private final long[] seeds;
+    private final ForkJoinPool pool;
+    private final AfterCommitExecutor updater;
+    private final Map<Long, Signature> signatures = new ConcurrentHashMap<>();
+    private final Counter computed;
+    private final Timer reportTimer;
+
+    /**
+     * @param minHashes 每个 int 为一个哈希函数在所有切片上的最小值；正文过短且没有图片时为 null，不参与比较
+     */
+    record Signature(long answerId, long questionId, String username, long version, int[] minHashes) {
+    }
+
+    public record Member(long answerId, String username) {
+    }
+
+    public record Pair(long answerId1, long answerId2, double similarity) {
+    }
+
+    public record Cluster(List<Member> members, double maxSimilarity, List<Pair> pairs) {
+    }
+
+    /**
+     * @param answers       该题答案数
+     * @param compared      参与比较（足够长或含图片）的答案数
+     * @param candidatePairs LSH 候选对数（未确认前）
+     */
+    public record Report(long questionId, double threshold, int answers, int compared, int candidatePairs,
+                         int recomputed, List<Cluster> clusters) {
+    }
+
+    /**
+     * @param bands 签名分段数，rows 为每段的哈希数，签名长度为两者之积；
+     *              相似度约为 (1/bands)^(1/rows) 以上的答案对大概率落入同一个桶
+     */
+    public AnswerSimilarityService(AnswerContentRepository answerContentRepository,
+                                   AnswerRepository answerRepository,
+                                   @Value("${app.similarity.enabled:true}") boolean enabled,
+                                   @Value("${app.similarity.bands:32}") int bands,
+                                   @Value("${app.similarity.rows:4}") int rows,
+                                   @Value("${app.similarity.shingle-size:5}") int shingleSize,
+                                   @Value("${app.similarity.min-shingles:20}") int minShingles,
+                                   @Value("${app.similarity.threshold:0.8}") double defaultThreshold,
+                                   @Value("${app.similarity.threads:0}") int threads,
+                                   MeterRegistry meterRegistry) {
+        this.answerContentRepository = answerContentRepository;
+        this.answerRepository = answerRepository;
+        this.enabled = enabled;
+        this.bands = bands;
+        this.rows = rows;
+        this.shingleSize = shingleSize;
+        this.minShingles = minShingles;
+        this.defaultThreshold = defaultThreshold;
+        // 固定种子：签名只保存在内存中，但同一进程内必须一致
+        SplittableRandom random = new SplittableRandom(0x5EED5EEDL);
+        this.seeds = new long[bands * rows];
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = random.nextLong();
+        }
+        this.pool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        // 队列满时丢弃的更新在查询时按版本重算
+        this.updater = new AfterCommitExecutor("similarity", Thread.MIN_PRIORITY, LOGGER);
+        this.computed = Counter.builder("quiz.similarity.signatures").register(meterRegistry);
+        this.reportTimer = Timer.builder("quiz.similarity.report").register(meterRegistry);
+    }
+
+    public double getDefaultThreshold() {
+        return defaultThreshold;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        updater.shutdownNow();
+        pool.shutdownNow();
+    }
+
+    /**
+     * 保存（表单或流式）后调用：提交后由后台线程从库中读取内容计算签名，队列中只有答案ID
+     */
+    public void refreshAfterCommit(long answerId) {
+        if (!enabled) {
+            return;
+        }
+        updater.executeAfterCommit(() -> answerContentRepository.findContentRowById(answerId).ifPresent(row -> store(signature(row))));
+    }
+
+    /**
+     * 答案已从实时表删除（冷归档）：交给更新线程移除签名，排在之前登记的计算之后，不会被它们重新加回
+     */
+    public void removeAll(Collection<Long> answerIds) {
+        if (!enabled || answerIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(answerIds);
+        try {
+            updater.execute(() -> ids.forEach(signatures::remove));
+        } catch (RejectedExecutionException e) {
+            ids.forEach(signatures::remove);
+        }
+    }
+
+    /**
+     * 只保存不比已有版本旧的签名
+     */
+    void store(Signature signature) {
+        signatures.merge(signature.answerId(), signature, (old, created) -> created.version() >= old.version() ? created : old);
+    }
+
+    /**
+     * 查重报告：先补算该题版本不符的签名，再做 LSH 分桶与确认
+     */
+    public Report report(long questionId, Double threshold) {
+        long startNanos = System.nanoTime();
+        double minSimilarity = threshold != null ? threshold : defaultThreshold;
+        List<AnswerVersionView> versions = answerRepository.findContentVersionsByQuestionId(questionId);
+        List<Long> stale = new ArrayList<>();
+        Set<Long> ids = new HashSet<>();
+        for (AnswerVersionView view : versions) {
+            ids.add(view.getId());
+            Signature signature = signatures.get(view.getId());
+            if (signature == null || signature.version() != view.getContentVersion()) {
+                stale.add(view.getId());
+            }
+        }
+        // 已删除答案的签名
+        signatures.values().removeIf(s -> s.questionId() == questionId && !ids.contains(s.answerId()));
+        if (!stale.isEmpty()) {
+            pool.invoke(new ComputeTask(stale)).forEach(this::store);
+        }
+        List<Signature> current = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Signature signature = signatures.get(id);
+            if (signature != null) {
+                current.add(signature);
+            }
+        }
+        Report report = clusters(questionId, current, minSimilarity, stale.size());
+        long elapsed = System.nanoTime() - startNanos;
+        reportTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        LOGGER.info("Similarity report. questionId={}, answers={}, recomputed={}, candidatePairs={}, clusters={}, elapsedMs={}",
+                questionId, report.answers(), stale.size(), report.candidatePairs(), report.clusters().size(), elapsed / 1_000_000);
+        return report;
+    }
+
+    /**
+     * 并行补算签名：按答案ID列表二分，叶子批量读取内容后计算
+     */
+    private final class ComputeTask extends RecursiveTask<List<Signature>> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Long> ids;
+
+        ComputeTask(List<Long> ids) {
+            this.ids = ids;
+        }
+
+        @Override
+        protected List<Signature> compute() {
+            if (ids.size() <= LEAF_SIZE) {
+                List<Signature> result = new ArrayList<>(ids.size());
+                for (AnswerContentRowView row : answerContentRepository.findContentRowsByIdIn(ids)) {
+                    result.add(signature(row));
+                }
+                return result;
+            }
+            int middle = ids.size() / 2;
+            ComputeTask left = new ComputeTask(ids.subList(0, middle));
+            left.fork();
+            List<Signature> result = new ComputeTask(ids.subList(middle, ids.size())).compute();
+            result.addAll(left.join());
+            return result;
+        }
+    }
+
+    private Signature signature(AnswerContentRowView row) {
+        return signature(row.getId(), row.getQuestionId(), row.getUsername(), row.getContentVersion(), row.getContentText());
+    }
+
+    /**
+     * 计算 MinHash 签名：每个切片先取 64 位哈希并去重，再对每个种子取混合后的最小值
+     */
+    Signature signature(long answerId, long questionId, String username, long version, String html) {
+        computed.increment();
+        long[] shingles = shingles(SearchTokenizer.plainText(html));
+        int textShingles = shingles.length;
+        List<String> images = new ArrayList<>();
+        for (EmbeddedImages.Image image : EmbeddedImages.find(html)) {
+            images.add(image.hash());
+        }
+        images.addAll(ImageStore.referencedHashes(html));
+        if (textShingles < minShingles && images.isEmpty()) {
+            return new Signature(answerId, questionId, username, version, null);
+        }
+        long[] features = Arrays.copyOf(shingles, textShingles + images.size());
+        for (int i = 0; i < images.size(); i++) {
+            features[textShingles + i] = hash64("img:" + images.get(i));
+        }
+        int[] minHashes = new int[seeds.length];
+        Arrays.fill(minHashes, Integer.MAX_VALUE);
+        for (long feature : features) {
+            for (int i = 0; i < seeds.length; i++) {
+                int h = (int) (mix64(feature ^ seeds[i]) >>> 33);
+                if (h < minHashes[i]) {
+                    minHashes[i] = h;
+                }
+            }
+        }
+        return new Signature(answerId, questionId, username, version, minHashes);
+    }
+
+    /**
+     * 字符 k-gram 切片的去重哈希；文本短于 k 时整段作为一个切片
+     */
+    private long[] shingles(String text) {
+        int[] codePoints = text.codePoints()
+                .filter(Character::isLetterOrDigit)
+                .map(Character::toLowerCase)
+                .toArray();
+        if (codePoints.length == 0) {
+            return new long[0];
+        }
+        int count = Math.max(1, codePoints.length - shingleSize + 1);
+        long[] hashes = new long[count];
+        for (int i = 0; i < count; i++) {
+            long h = 0x9E3779B97F4A7C15L;
+            for (int j = i; j < Math.min(codePoints.length, i + shingleSize); j++) {
+                h = mix64(h ^ codePoints[j]);
+            }
+            hashes[i] = h;
+        }
+        Arrays.sort(hashes);
+        int unique = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            if (i == 0 || hashes[i] != hashes[i - 1]) {
+                hashes[unique++] = hashes[i];
+            }
+        }
+        return Arrays.copyOf(hashes, unique);
+    }
+
+    /**
+     * LSH：每段 rows 个哈希值组成桶键，同桶的答案为候选对；候选对按签名一致比例确认后并查集归组
+     */
+    Report clusters(long questionId, List<Signature> all, double threshold, int recomputed) {
+        List<Signature> comparable = all.stream()
+                .filter(s -> s.minHashes() != null)
+                .sorted(Comparator.comparingLong(Signature::answerId))
+                .toList();
+        int n = comparable.size();
+        Set<Long> candidates = new HashSet<>();
+        for (int band = 0; band < bands; band++) {
+            Map<BandKey, List<Integer>> buckets = new HashMap<>();
+            for (int i = 0; i < n; i++) {
+                int[] minHashes = comparable.get(i).minHashes();
+                buckets.computeIfAbsent(new BandKey(Arrays.copyOfRange(minHashes, band * rows, (band + 1) * rows)),
+                        k -> new ArrayList<>()).add(i);
+            }
+            for (List<Integer> bucket : buckets.values()) {
+                for (int a = 0; a < bucket.size(); a++) {
+                    for (int b = a + 1; b < bucket.size(); b++) {
+                        candidates.add((long) bucket.get(a) * n + bucket.get(b));
+                    }
+                }
+            }
+        }
+
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+        }
+        List<int[]> confirmed = new ArrayList<>();
+        List<Double> similarities = new ArrayList<>();
+        for (long key : candidates) {
+            int a = (int) (key / n);
+            int b = (int) (key % n);
+            double similarity = similarity(comparable.get(a).minHashes(), comparable.get(b).minHashes());
+            if (similarity >= threshold) {
+                confirmed.add(new int[]{a, b});
+                similarities.add(similarity);
+                parent[find(parent, a)] = find(parent, b);
+            }
+        }
+
+        Map<Integer, List<Integer>> groups = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            groups.computeIfAbsent(find(parent, i), k -> new ArrayList<>()).add(i);
+        }
+        Map<Integer, List<Pair>> pairsByRoot = new HashMap<>();
+        for (int i = 0; i < confirmed.size(); i++) {
+            int[] pair = confirmed.get(i);
+            pairsByRoot.computeIfAbsent(find(parent, pair[0]), k -> new ArrayList<>()).add(new Pair(
+                    comparable.get(pair[0]).answerId(), comparable.get(pair[1]).answerId(), round(similarities.get(i))));
+        }
+        List<Cluster> clusters = new ArrayList<>();
+        for (Map.Entry<Integer, List<Integer>> group : groups.entrySet()) {
+            if (group.getValue().size() < 2) {
+                continue;
+            }
+            List<Member> members = group.getValue().stream()
+                    .map(i -> new Member(comparable.get(i).answerId(), comparable.get(i).username()))
+                    .toList();
+            List<Pair> pairs = new ArrayList<>(pairsByRoot.get(group.getKey()));
+            pairs.sort(Comparator.comparingDouble(Pair::similarity).reversed()
+                    .thenComparingLong(Pair::answerId1).thenComparingLong(Pair::answerId2));
+            clusters.add(new Cluster(members, pairs.get(0).similarity(),
+                    pairs.subList(0, Math.min(MAX_PAIRS_PER_CLUSTER, pairs.size()))));
+        }
+        clusters.sort(Comparator.comparingInt((Cluster c) -> c.members().size()).reversed()
+                .thenComparing(Comparator.comparingDouble(Cluster::maxSimilarity).reversed())
+                .thenComparingLong(c -> c.members().get(0).answerId()));
+        return new Report(questionId, threshold, all.size(), n, candidates.size(), recomputed, clusters);
+    }
+
+    /** 签名中取值相同的比例，即 Jaccard 相似度的估计 */
+    static double similarity(int[] a, int[] b) {
+        int same = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) {
+                same++;
+            }
+        }
+        return (double) same / a.length;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static long hash64(String value) {
+        long h = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < value.length(); i++) {
+            h = mix64(h ^ value.charAt(i));
+        }
+        return h;
+    }
+
+    /** SplitMix64 的混合函数 */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private record BandKey(int[] values) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof BandKey other && Arrays.equals(values, other.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(values);
+        }
+    }
+}
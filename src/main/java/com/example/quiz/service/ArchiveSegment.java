@@ -0,0 +1,321 @@
+package com.example.quiz.service;
+
+import com.example.quiz.model.AnswerContentCodec;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 答案归档段：数据文件（.dat）逐条存放答案记录，内容为 gzip 字节；索引文件（.idx）为按 (题目ID, 用户ID, 答案ID) 排序的定长条目，
+ * 每条记下记录在数据文件中的偏移、长度与得分
+ * 两个文件都以只读方式内存映射：按题目与用户查找是索引上的二分，只读取命中的记录；得分统计只扫描索引
+ * 段写成后不再修改；索引最后写入并原子改名，存在 .idx 即表示段完整
+ */
+public final class ArchiveSegment {
+
+    public static final String DATA_SUFFIX = ".dat";
+    public static final String INDEX_SUFFIX = ".idx";
+    public static final String TMP_SUFFIX = ".tmp";
+
+    private static final int MAGIC = 0x51414931; // "QAI1"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+    // questionId, userId, answerId, offset (long) + length (int) + score (double，NaN 为未评分)
+    private static final int ENTRY_BYTES = 8 * 4 + 4 + 8;
+    /** 单个文件整体映射为一个缓冲区，不超过 2GB */
+    public static final long MAX_DATA_BYTES = Integer.MAX_VALUE;
+
+    /**
+     * 归档的答案；contentGzip 可原样作为 Content-Encoding: gzip 响应体发送
+     */
+    public record ArchivedAnswer(long answerId, long questionId, long userId, String username, Double score, String remark,
+                                 LocalDateTime createdAt, LocalDateTime updatedAt, long contentVersion, int contentLength,
+                                 byte[] contentGzip) {
+
+        public String content() {
+            return AnswerContentCodec.gunzip(contentGzip, contentLength);
+        }
+    }
+
+    public record ScoreRow(long questionId, long userId, double score) {
+    }
+
+    private record IndexEntry(long questionId, long userId, long answerId, long offset, int length, double score) {
+    }
+
+    private static final Comparator<IndexEntry> ORDER = Comparator.comparingLong(IndexEntry::questionId)
+            .thenComparingLong(IndexEntry::userId)
+            .thenComparingLong(IndexEntry::answerId);
+
+    private final Path indexFile;
+    private final MappedByteBuffer data;
+    private final MappedByteBuffer index;
+    private final int count;
+
+    private ArchiveSegment(Path indexFile, MappedByteBuffer data, MappedByteBuffer index, int count) {
+        this.indexFile = indexFile;
+        this.data = data;
+        this.index = index;
+        this.count = count;
+    }
+
+    /**
+     * 映射已写成的段；文件头或长度不符时抛出 IOException
+     */
+    public static ArchiveSegment open(Path indexFile, Path dataFile) throws IOException {
+        MappedByteBuffer index = map(indexFile);
+        MappedByteBuffer data = map(dataFile);
+        if (index.capacity() < HEADER_BYTES || index.getInt(0) != MAGIC || index.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Not an archive index: " + indexFile);
+        }
+        int count = index.getInt(8);
+        if (count < 0 || (long) HEADER_BYTES + (long) count * ENTRY_BYTES != index.capacity()) {
+            throw new IOException("Truncated archive index: " + indexFile);
+        }
+        return new ArchiveSegment(indexFile, data, index, count);
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > MAX_DATA_BYTES) {
+                throw new IOException("Archive file too large to map: " + file);
+            }
+            // 映射在通道关闭后仍然有效
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    public Path indexFile() {
+        return indexFile;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public long dataBytes() {
+        return data.capacity();
+    }
+
+    /**
+     * 同一学生同一题有多条记录时返回答案ID最小的一条（与实时表 findFirst 的结果一致）；不存在时返回 null
+     */
+    public ArchivedAnswer find(long questionId, long userId) {
+        int i = lowerBound(questionId, userId);
+        if (i < count && questionId(i) == questionId && userId(i) == userId) {
+            return read(i);
+        }
+        return null;
+    }
+
+    /**
+     * 该题全部归档答案，按用户ID排序
+     */
+    public List<ArchivedAnswer> findByQuestion(long questionId) {
+        List<ArchivedAnswer> answers = new ArrayList<>();
+        for (int i = lowerBound(questionId, Long.MIN_VALUE); i < count && questionId(i) == questionId; i++) {
+            answers.add(read(i));
+        }
+        return answers;
+    }
+
+    /**
+     * 已评分记录的得分，只读索引
+     */
+    public List<ScoreRow> scores() {
+        List<ScoreRow> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            double score = index.getDouble(entry(i) + 36);
+            if (!Double.isNaN(score)) {
+                rows.add(new ScoreRow(questionId(i), userId(i), score));
+            }
+        }
+        return rows;
+    }
+
+    private int lowerBound(long questionId, long userId) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            long q = questionId(middle);
+            if (q < questionId || (q == questionId && userId(middle) < userId)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int entry(int i) {
+        return HEADER_BYTES + i * ENTRY_BYTES;
+    }
+
+    private long questionId(int i) {
+        return index.getLong(entry(i));
+    }
+
+    private long userId(int i) {
+        return index.getLong(entry(i) + 8);
+    }
+
+    /**
+     * 只用绝对位置读取，映射缓冲区可由多个线程同时读
+     */
+    private ArchivedAnswer read(int i) {
+        int p = (int) index.getLong(entry(i) + 24);
+        long answerId = data.getLong(p);
+        long questionId = data.getLong(p + 8);
+        long userId = data.getLong(p + 16);
+        long createdAt = data.getLong(p + 24);
+        long updatedAt = data.getLong(p + 32);
+        long contentVersion = data.getLong(p + 40);
+        int contentLength = data.getInt(p + 48);
+        boolean scored = data.get(p + 52) != 0;
+        double score = data.getDouble(p + 53);
+        p += 61;
+        byte[] username = bytes(p);
+        p += 4 + username.length;
+        byte[] remark = bytes(p);
+        p += 4 + (remark != null ? remark.length : 0);
+        byte[] gzip = bytes(p);
+        return new ArchivedAnswer(answerId, questionId, userId, new String(username, StandardCharsets.UTF_8),
+                scored ? score : null, remark != null ? new String(remark, StandardCharsets.UTF_8) : null,
+                toDateTime(createdAt), toDateTime(updatedAt), contentVersion, contentLength, gzip);
+    }
+
+    private byte[] bytes(int p) {
+        int length = data.getInt(p);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        data.get(p + 4, bytes);
+        return bytes;
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time != null ? Timestamp.valueOf(time).getTime() : Long.MIN_VALUE;
+    }
+
+    private static LocalDateTime toDateTime(long millis) {
+        return millis != Long.MIN_VALUE ? new Timestamp(millis).toLocalDateTime() : null;
+    }
+
+    /**
+     * 顺序写入一个新段：记录先写到 .dat.tmp，finish 时排序并写出索引，两个文件落盘后依次改名
+     * 未 finish 就 close 时删除临时文件
+     */
+    public static final class Writer implements Closeable {
+        private final Path dataFile;
+        private final Path indexFile;
+        private final Path dataTmp;
+        private final FileChannel channel;
+        private final DataOutputStream out;
+        private final List<IndexEntry> entries = new ArrayList<>();
+        private long offset;
+        private boolean finished;
+
+        public Writer(Path dataFile, Path indexFile) throws IOException {
+            this.dataFile = dataFile;
+            this.indexFile = indexFile;
+            this.dataTmp = dataFile.resolveSibling(dataFile.getFileName() + TMP_SUFFIX);
+            this.channel = FileChannel.open(dataTmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+        }
+
+        public void append(ArchivedAnswer answer) throws IOException {
+            byte[] username = answer.username() != null ? answer.username().getBytes(StandardCharsets.UTF_8) : new byte[0];
+            byte[] remark = answer.remark() != null ? answer.remark().getBytes(StandardCharsets.UTF_8) : null;
+            byte[] gzip = answer.contentGzip();
+            long length = 61L + 4 + username.length + 4 + (remark != null ? remark.length : 0) + 4 + gzip.length;
+            if (offset + length > MAX_DATA_BYTES) {
+                throw new IOException("Archive segment full: " + dataFile);
+            }
+            out.writeLong(answer.answerId());
+            out.writeLong(answer.questionId());
+            out.writeLong(answer.userId());
+            out.writeLong(toEpochMillis(answer.createdAt()));
+            out.writeLong(toEpochMillis(answer.updatedAt()));
+            out.writeLong(answer.contentVersion());
+            out.writeInt(answer.contentLength());
+            out.writeBoolean(answer.score() != null);
+            out.writeDouble(answer.score() != null ? answer.score() : 0.0);
+            out.writeInt(username.length);
+            out.write(username);
+            out.writeInt(remark != null ? remark.length : -1);
+            if (remark != null) {
+                out.write(remark);
+            }
+            out.writeInt(gzip.length);
+            out.write(gzip);
+            entries.add(new IndexEntry(answer.questionId(), answer.userId(), answer.answerId(), offset, (int) length,
+                    answer.score() != null ? answer.score() : Double.NaN));
+            offset += length;
+        }
+
+        public long bytesWritten() {
+            return offset;
+        }
+
+        public int count() {
+            return entries.size();
+        }
+
+        public ArchiveSegment finish() throws IOException {
+            out.flush();
+            channel.force(true);
+            out.close();
+            entries.sort(ORDER);
+            Path indexTmp = indexFile.resolveSibling(indexFile.getFileName() + TMP_SUFFIX);
+            try (FileChannel indexChannel = FileChannel.open(indexTmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                DataOutputStream indexOut = new DataOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(indexChannel), 64 * 1024));
+                indexOut.writeInt(MAGIC);
+                indexOut.writeInt(FORMAT_VERSION);
+                indexOut.writeInt(entries.size());
+                for (IndexEntry entry : entries) {
+                    indexOut.writeLong(entry.questionId());
+                    indexOut.writeLong(entry.userId());
+                    indexOut.writeLong(entry.answerId());
+                    indexOut.writeLong(entry.offset());
+                    indexOut.writeInt(entry.length());
+                    indexOut.writeDouble(entry.score());
+                }
+                indexOut.flush();
+                indexChannel.force(true);
+            }
+            Files.move(dataTmp, dataFile, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(indexTmp, indexFile, StandardCopyOption.ATOMIC_MOVE);
+            finished = true;
+            return open(indexFile, dataFile);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                out.close();
+                Files.deleteIfExists(dataTmp);
+                Files.deleteIfExists(indexFile.resolveSibling(indexFile.getFileName() + TMP_SUFFIX));
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.quiz.service;
+
+import com.example.quiz.model.Question;
+import com.example.quiz.repository.AnswerContentRepository;
+import com.example.quiz.repository.AnswerContentRowView;
+import com.example.quiz.repository.AnswerRepository;
+import com.example.quiz.repository.QuestionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 按题目评分规则（Question.rubric）自动预评分：规则编译一次，答案按ID列表在 ForkJoin 线程池中二分，
+ * 叶子批量读取内容、计算建议分并批量写回 answers.suggested_score，不修改 score；阅卷人采纳或改写后才计入成绩
+ * 指标：quiz.autoscore.suggested、quiz.autoscore.run
+ */
+@Service
+public class AutoScoringService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AutoScoringService.class);
+
+    private static final String UPDATE_SQL =
+            "UPDATE answers SET suggested_score = ?, suggested_version = ?, suggestion_note = ? WHERE id = ?";
+
+    private final AnswerContentRepository answerContentRepository;
+    private final AnswerRepository answerRepository;
+    private final QuestionRepository questionRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final CatalogVersion catalogVersion;
+    private final AnswerArchive answerArchive;
+    private final int batchSize;
+    private final ForkJoinPool pool;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Counter suggested;
+    private final Timer runTimer;
+
+    /**
+     * @param questions 参与评分（有可用规则）的题目数
+     * @param invalid   规则无法解析而跳过的题目数
+     */
+    public record Summary(int questions, int invalid, int answers, long elapsedMs) {
+    }
+
+    public AutoScoringService(AnswerContentRepository answerContentRepository,
+                              AnswerRepository answerRepository,
+                              QuestionRepository questionRepository,
+                              JdbcTemplate jdbcTemplate,
+                              CatalogVersion catalogVersion,
+                              AnswerArchive answerArchive,
+                              @Value("${app.autoscore.threads:0}") int threads,
+                              @Value("${app.autoscore.batch-size:100}") int batchSize,
+                              MeterRegistry meterRegistry) {
+        this.answerContentRepository = answerContentRepository;
+        this.answerRepository = answerRepository;
+        this.questionRepository = questionRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.catalogVersion = catalogVersion;
+        this.answerArchive = answerArchive;
+        this.batchSize = Math.max(1, batchSize);
+        this.pool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        this.suggested = Counter.builder("quiz.autoscore.suggested").register(meterRegistry);
+        this.runTimer = Timer.builder("quiz.autoscore.run").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private record Compiled(ScoringRubric rubric, double totalScore) {
+    }
+
+    /**
+     * 为有评分规则的题目（questionId 为空时为全部题目）的所有答案计算建议分；已有运行在进行时返回空
+     */
+    public Optional<Summary> run(Long questionId) {
+        if (!running.compareAndSet(false, true)) {
+            return Optional.empty();
+        }
+        try {
+            long startNanos = System.nanoTime();
+            Map<Long, Compiled> rubrics = new HashMap<>();
+            int invalid = 0;
+            List<Question> questions = questionId != null
+                    ? questionRepository.findById(questionId).map(List::of).orElse(List.of())
+                    : questionRepository.findAll();
+            for (Question question : questions) {
+                if (question.getRubric() == null || question.getRubric().isBlank()) {
+                    continue;
+                }
+                try {
+                    double totalScore = question.getTotalScore() != null ? question.getTotalScore() : 0.0;
+                    rubrics.put(question.getId(), new Compiled(ScoringRubric.parse(question.getRubric()), totalScore));
+                } catch (IllegalArgumentException e) {
+                    invalid++;
+                    LOGGER.warn("Skipping question with invalid rubric. questionId={}, title={}, error={}",
+                            question.getId(), question.getTitle(), e.getMessage());
+                }
+            }
+            int answers = 0;
+            if (!rubrics.isEmpty()) {
+                List<Long> ids = answerRepository.findScorableIdsByQuestionIdIn(rubrics.keySet());
+                answers = pool.invoke(new ScoreTask(ids, rubrics));
+                catalogVersion.bump();
+            }
+            long elapsed = System.nanoTime() - startNanos;
+            runTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            Summary summary = new Summary(rubrics.size(), invalid, answers, elapsed / 1_000_000);
+            LOGGER.info("Auto scoring done. questionId={}, questions={}, invalid={}, answers={}, elapsedMs={}",
+                    questionId, summary.questions(), invalid, answers, summary.elapsedMs());
+            return Optional.of(summary);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * 采纳建议分：把尚未评分、建议分仍针对当前内容的答案的建议分写入得分，返回被采纳的答案ID
+     * answerIds 为空时采纳该题全部建议；已归档或正在归档的题目不再写入得分
+     */
+    @Transactional
+    public List<Long> confirm(long questionId, Collection<Long> answerIds) {
+        if (answerArchive.isArchived(questionId)) {
+            LOGGER.warn("Suggested scores not confirmed: question archived. questionId={}", questionId);
+            return List.of();
+        }
+        List<Long> ids = answerRepository.findConfirmableSuggestionIds(questionId);
+        if (answerIds != null && !answerIds.isEmpty()) {
+            ids = ids.stream().filter(answerIds::contains).toList();
+        }
+        if (ids.isEmpty()) {
+            return ids;
+        }
+        // 只改得分：像人工评分一样刷新 updatedAt 让答案列表的 ETag 变化，不递增全局题库版本
+        int updated = answerRepository.confirmSuggestedScores(ids, LocalDateTime.now());
+        LOGGER.info("Suggested scores confirmed. questionId={}, candidates={}, updated={}", questionId, ids.size(), updated);
+        return ids;
+    }
+
+    /**
+     * 按答案ID列表二分；叶子读取 batch-size 份内容，计算后以一次 JDBC 批量更新写回
+     */
+    private final class ScoreTask extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Long> ids;
+        private final Map<Long, Compiled> rubrics;
+
+        ScoreTask(List<Long> ids, Map<Long, Compiled> rubrics) {
+            this.ids = ids;
+            this.rubrics = rubrics;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (ids.size() <= batchSize) {
+                return scoreBatch(ids, rubrics);
+            }
+            int middle = ids.size() / 2;
+            ScoreTask left = new ScoreTask(ids.subList(0, middle), rubrics);
+            left.fork();
+            int right = new ScoreTask(ids.subList(middle, ids.size()), rubrics).compute();
+            return right + left.join();
+        }
+    }
+
+    private int scoreBatch(List<Long> ids, Map<Long, Compiled> rubrics) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        List<Object[]> updates = new ArrayList<>(ids.size());
+        for (AnswerContentRowView row : answerContentRepository.findContentRowsByIdIn(ids)) {
+            Compiled compiled = rubrics.get(row.getQuestionId());
+            if (compiled == null) {
+                continue;
+            }
+            ScoringRubric.Suggestion suggestion = compiled.rubric().evaluate(row.getContentText(), compiled.totalScore());
+            updates.add(new Object[]{suggestion.score(), row.getContentVersion(), suggestion.note(), row.getId()});
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+            suggested.increment(updates.size());
+        }
+        return updates.size();
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.quiz.service;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * 二进制差量：把 target 编码为对 base 的 COPY（复制 base 中一段）与 INSERT（新字节）指令序列
+ * 先去掉公共前后缀（自动保存通常只改动一处），中间部分按 16 字节对齐分块建哈希表，用滚动哈希在 target 中查找可复制的块
+ * 格式：varint 目标长度，之后每条指令为 0 + varint 偏移 + varint 长度（COPY）或 1 + varint 长度 + 字节（INSERT）
+ */
+public final class BinaryDelta {
+
+    private static final int BLOCK = 16;
+    private static final int PRIME = 0x01000193;
+    private static final int MAX_PROBES = 8;
+    private static final int OP_COPY = 0;
+    private static final int OP_INSERT = 1;
+
+    private BinaryDelta() {
+    }
+
+    public static byte[] encode(byte[] base, byte[] target) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        writeVarint(out, target.length);
+        int prefix = 0;
+        int limit = Math.min(base.length, target.length);
+        while (prefix < limit && base[prefix] == target[prefix]) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < limit - prefix && base[base.length - 1 - suffix] == target[target.length - 1 - suffix]) {
+            suffix++;
+        }
+        if (prefix > 0) {
+            copy(out, 0, prefix);
+        }
+        encodeMiddle(out, base, target, prefix, target.length - suffix);
+        if (suffix > 0) {
+            copy(out, base.length - suffix, suffix);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * target[from, to) 按块匹配 base 的任意位置，匹配不到的字节作为 INSERT
+     */
+    private static void encodeMiddle(ByteArrayOutputStream out, byte[] base, byte[] target, int from, int to) {
+        if (to - from < BLOCK * 2 || base.length < BLOCK) {
+            insert(out, target, from, to);
+            return;
+        }
+        int blocks = base.length / BLOCK;
+        int capacity = Integer.highestOneBit(blocks * 2 - 1) << 1;
+        int[] hashes = new int[capacity];
+        int[] offsets = new int[capacity]; // 偏移 + 1，0 表示空槽
+        for (int b = 0; b < blocks; b++) {
+            int h = hash(base, b * BLOCK);
+            for (int probe = 0, slot = h & (capacity - 1); probe < MAX_PROBES; probe++, slot = (slot + 1) & (capacity - 1)) {
+                if (offsets[slot] == 0) {
+                    hashes[slot] = h;
+                    offsets[slot] = b * BLOCK + 1;
+                    break;
+                }
+                if (hashes[slot] == h) {
+                    break; // 相同内容的块保留第一个
+                }
+            }
+        }
+
+        int power = 1;
+        for (int i = 0; i < BLOCK - 1; i++) {
+            power *= PRIME;
+        }
+        int literal = from;
+        int i = from;
+        int h = hash(target, i);
+        while (i + BLOCK <= to) {
+            int match = lookup(base, target, i, h, hashes, offsets);
+            if (match >= 0) {
+                int start = i;
+                int baseStart = match;
+                while (start > literal && baseStart > 0 && base[baseStart - 1] == target[start - 1]) {
+                    start--;
+                    baseStart--;
+                }
+                int end = i + BLOCK;
+                int baseEnd = match + BLOCK;
+                while (end < to && baseEnd < base.length && base[baseEnd] == target[end]) {
+                    end++;
+                    baseEnd++;
+                }
+                insert(out, target, literal, start);
+                copy(out, baseStart, end - start);
+                literal = end;
+                i = end;
+                if (i + BLOCK <= to) {
+                    h = hash(target, i);
+                }
+                continue;
+            }
+            if (i + BLOCK < to) {
+                h = (h - target[i] * power) * PRIME + target[i + BLOCK];
+            }
+            i++;
+        }
+        insert(out, target, literal, to);
+    }
+
+    private static int lookup(byte[] base, byte[] target, int position, int h, int[] hashes, int[] offsets) {
+        int mask = hashes.length - 1;
+        for (int probe = 0, slot = h & mask; probe < MAX_PROBES && offsets[slot] != 0; probe++, slot = (slot + 1) & mask) {
+            if (hashes[slot] == h) {
+                int offset = offsets[slot] - 1;
+                for (int k = 0; k < BLOCK; k++) {
+                    if (base[offset + k] != target[position + k]) {
+                        return -1;
+                    }
+                }
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    private static int hash(byte[] data, int offset) {
+        int h = 0;
+        for (int k = 0; k < BLOCK; k++) {
+            h = h * PRIME + data[offset + k];
+        }
+        return h;
+    }
+
+    public static byte[] apply(byte[] base, byte[] delta) {
+        int[] position = {0};
+        int length = readVarint(delta, position);
+        byte[] target = new byte[length];
+        int written = 0;
+        while (position[0] < delta.length) {
+            int op = delta[position[0]++];
+            if (op == OP_COPY) {
+                int offset = readVarint(delta, position);
+                int n = readVarint(delta, position);
+                System.arraycopy(base, offset, target, written, n);
+                written += n;
+            } else if (op == OP_INSERT) {
+                int n = readVarint(delta, position);
+                System.arraycopy(delta, position[0], target, written, n);
+                position[0] += n;
+                written += n;
+            } else {
+                throw new IllegalArgumentException("corrupt delta: unknown op " + op);
+            }
+        }
+        if (written != length) {
+            throw new IllegalArgumentException("corrupt delta: expected " + length + " bytes, got " + written);
+        }
+        return target;
+    }
+
+    private static void copy(ByteArrayOutputStream out, int offset, int length) {
+        out.write(OP_COPY);
+        writeVarint(out, offset);
+        writeVarint(out, length);
+    }
+
+    private static void insert(ByteArrayOutputStream out, byte[] data, int from, int to) {
+        if (to > from) {
+            out.write(OP_INSERT);
+            writeVarint(out, to - from);
+            out.write(data, from, to - from);
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(byte[] data, int[] position) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = data[position[0]++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("corrupt delta: varint too long");
+    }
+}
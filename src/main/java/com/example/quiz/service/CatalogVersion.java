@@ -0,0 +1,23 @@
+package com.example.quiz.service;
+
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 题库（章节与题目）版本号，用于题目读取接口的 ETag
+ * 初值取启动时间，重启后客户端缓存自然失效；数据同步提交后递增
+ */
+@Service
+public class CatalogVersion {
+
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+
+    public long current() {
+        return version.get();
+    }
+
+    public void bump() {
+        version.incrementAndGet();
+    }
+}
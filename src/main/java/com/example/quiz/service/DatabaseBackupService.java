@@ -1,71 +1,174 @@
 package com.example.quiz.service;
 
+import com.example.quiz.backup.BackupManifest;
+import com.example.quiz.backup.BackupRepository;
+import com.example.quiz.backup.BackupVerifier;
+import com.example.quiz.backup.IoThrottle;
+import com.example.quiz.backup.ThrottledFilePath;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 
+/**
+ * 数据库在线备份：在独立线程、独立连接上执行 H2 BACKUP TO，按配置的 MB/s 限速写盘，
+ * 生成后解压到临时目录以只读方式打开并统计行数，校验通过才写入去重分块仓库（见 {@link BackupRepository}）
+ * 过期快照按引用计数回收，磁盘占用随实际变化量增长而不是天数 × 库大小
+ * 备份耗时、大小与失败次数通过 Micrometer 暴露（/actuator/metrics/quiz.db.backup.*）
+ */
 @Service
 public class DatabaseBackupService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseBackupService.class);
+    /** 快照中图片目录的前缀，还原后位于还原目录的 images/ 下 */
+    public static final String IMAGES_PREFIX = "images/";
+    /** 快照中冷归档目录（段、索引与已归档题目清单）的前缀 */
+    public static final String ARCHIVE_PREFIX = "archive/";
     private static final DateTimeFormatter BACKUP_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")
             .withLocale(Locale.ROOT)
             .withZone(ZoneId.systemDefault());
 
-    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final Timer successTimer;
+    private final Timer failureTimer;
+    private final Counter skippedCounter;
+    private final AtomicLong lastSizeBytes = new AtomicLong();
+    private final AtomicLong lastAddedBytes = new AtomicLong();
+    private final AtomicLong repositorySizeBytes = new AtomicLong();
+    private final AtomicLong lastSuccessEpochSeconds = new AtomicLong();
+
+    /** 同一时间最多一个备份在跑，上一次未结束时本次触发直接跳过 */
+    private final ExecutorService backupExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new SynchronousQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "db-backup");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+
+    @Value("${spring.datasource.url}")
+    private String datasourceUrl;
+
+    @Value("${spring.datasource.username:sa}")
+    private String datasourceUsername;
+
+    @Value("${spring.datasource.password:}")
+    private String datasourcePassword;
 
     @Value("${app.db-backup.dir:data/backups}")
     private String backupDir;
 
+    @Value("${app.image-store.dir:data/images}")
+    private String imageStoreDir;
+
+    @Value("${app.archive.dir:data/archive}")
+    private String archiveDir;
+
     @Value("${app.db-backup.retention-days:30}")
     private int retentionDays;
 
-    public DatabaseBackupService(JdbcTemplate jdbcTemplate) {
-        this.jdbcTemplate = jdbcTemplate;
+    @Value("${app.db-backup.throttle-mb-per-sec:32}")
+    private double throttleMbPerSec;
+
+    @Value("${app.db-backup.threads:2}")
+    private int backupThreads;
+
+    private BackupRepository backupRepository;
+
+    public DatabaseBackupService(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.successTimer = Timer.builder("quiz.db.backup.duration")
+                .description("Database backup duration including verification")
+                .tag("result", "success")
+                .register(meterRegistry);
+        this.failureTimer = Timer.builder("quiz.db.backup.duration")
+                .description("Database backup duration including verification")
+                .tag("result", "failure")
+                .register(meterRegistry);
+        this.skippedCounter = Counter.builder("quiz.db.backup.skipped")
+                .description("Scheduled backups skipped because the previous one was still running")
+                .register(meterRegistry);
+        meterRegistry.gauge("quiz.db.backup.last.size.bytes", lastSizeBytes);
+        meterRegistry.gauge("quiz.db.backup.last.added.bytes", lastAddedBytes);
+        meterRegistry.gauge("quiz.db.backup.repository.size.bytes", repositorySizeBytes);
+        meterRegistry.gauge("quiz.db.backup.last.success.epoch.seconds", lastSuccessEpochSeconds);
     }
 
+    /**
+     * 定时触发：只负责把备份任务交给后台线程，不占用调度线程
+     */
     @Scheduled(cron = "${app.db-backup.cron:0 0 2 * * *}")
     public void backupDatabase() {
-        Path dir = Paths.get(backupDir);
         try {
-            Files.createDirectories(dir);
-        } catch (Exception e) {
-            LOGGER.error("Database backup failed: cannot create backup dir {}", dir, e);
-            return;
+            backupExecutor.execute(this::runScheduledBackup);
+        } catch (RejectedExecutionException e) {
+            skippedCounter.increment();
+            LOGGER.warn("Database backup skipped: previous backup still running");
         }
+    }
 
-        String timestamp = BACKUP_FORMATTER.format(Instant.now());
-        String fileName = "pocdb_" + timestamp + ".zip";
-        Path backupFile = dir.resolve(fileName).toAbsolutePath().normalize();
-
-        String escapedPath = backupFile.toString().replace("'", "''");
-        String sql = "BACKUP TO '" + escapedPath + "'";
+    private void runScheduledBackup() {
         try {
-            jdbcTemplate.execute(sql);
-            LOGGER.info("Database backup created: {}", backupFile);
+            BackupRepository.Snapshot snapshot = snapshot();
+            LOGGER.info("Database backup snapshot created: {} (new chunks={}, added {} bytes, rows={})",
+                    snapshot.name(), snapshot.newChunks(), snapshot.addedBytes(), snapshot.rowCounts());
         } catch (Exception e) {
-            LOGGER.error("Database backup failed: {}", backupFile, e);
+            LOGGER.error("Database backup failed", e);
             return;
         }
 
-        cleanupOldBackups(dir);
+        Instant cutoff = Instant.now().minus(retentionDays, ChronoUnit.DAYS);
+        try {
+            BackupRepository.GcResult gc = backupRepository.gc(cutoff);
+            repositorySizeBytes.set(gc.repositoryBytes());
+            if (gc.removedSnapshots() > 0 || gc.removedChunks() > 0) {
+                LOGGER.info("Database backup gc: removed {} snapshots, {} chunks, freed {} bytes",
+                        gc.removedSnapshots(), gc.removedChunks(), gc.freedBytes());
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Database backup gc failed", e);
+        }
+        cleanupLegacyBackups(Paths.get(backupDir), cutoff);
     }
 
-    private void cleanupOldBackups(Path dir) {
-        Instant cutoff = Instant.now().minus(retentionDays, ChronoUnit.DAYS);
+    /**
+     * 旧版本按天生成的 pocdb_*.zip（及清单）同样按保留天数删除
+     */
+    private void cleanupLegacyBackups(Path dir, Instant cutoff) {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
         try (Stream<Path> paths = Files.list(dir)) {
             paths.filter(Files::isRegularFile)
                     .filter(path -> path.getFileName().toString().startsWith("pocdb_"))
@@ -75,14 +178,142 @@ public class DatabaseBackupService {
                             Instant modified = Files.getLastModifiedTime(path).toInstant();
                             if (modified.isBefore(cutoff)) {
                                 Files.deleteIfExists(path);
-                                LOGGER.info("Database backup deleted: {}", path);
+                                Files.deleteIfExists(path.resolveSibling(path.getFileName() + BackupManifest.SUFFIX));
+                                LOGGER.info("Legacy database backup deleted: {}", path);
                             }
                         } catch (Exception e) {
-                            LOGGER.warn("Failed to delete backup: {}", path, e);
+                            LOGGER.warn("Failed to delete legacy backup: {}", path, e);
                         }
                     });
         } catch (Exception e) {
-            LOGGER.warn("Failed to cleanup backups in {}", dir, e);
+            LOGGER.warn("Failed to cleanup legacy backups in {}", dir, e);
+        }
+    }
+
+    /**
+     * 把目录下的文件（不含写入中的 .tmp）以 prefix + 相对路径加入快照，目录不存在时跳过
+     */
+    private static void addDirectory(Map<String, Path> files, String prefix, Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.filter(Files::isRegularFile)
+                    .filter(path -> !path.getFileName().toString().endsWith(".tmp"))
+                    .sorted()
+                    .toList()) {
+                files.put(prefix + dir.relativize(path).toString().replace('\\', '/'), path);
+            }
+        }
+    }
+
+    /**
+     * 备份到去重分块仓库：先生成并校验 zip，再把校验时解压出的数据库文件连同图片目录、冷归档目录分块写入仓库，最后删除 zip
+     * @return 新快照
+     */
+    public BackupRepository.Snapshot snapshot() throws IOException, SQLException {
+        String name = "pocdb_" + BACKUP_FORMATTER.format(Instant.now());
+        Path tmpDir = backupRepository.getTmpDir();
+        Path partial = tmpDir.resolve(name + ".zip.part");
+        Path scratch = tmpDir.resolve(name + ".verify");
+        IoThrottle throttle = IoThrottle.ofMegabytesPerSecond(throttleMbPerSec);
+
+        long start = System.nanoTime();
+        try {
+            runBackupTo(partial, throttle);
+            long archiveSize = Files.size(partial);
+            BackupRepository.Snapshot[] stored = new BackupRepository.Snapshot[1];
+            BackupVerifier.verify(partial, scratch, throttle, (dir, verified) -> {
+                Map<String, Path> files = new LinkedHashMap<>();
+                for (BackupManifest.Entry entry : verified.entries()) {
+                    files.put(entry.name(), dir.resolve(entry.name()));
+                }
+                // 图片与归档段都在数据库引用或删除之前落盘，数据库备份之后再列目录，快照中的库用到的文件都在
+                addDirectory(files, IMAGES_PREFIX, Paths.get(imageStoreDir));
+                addDirectory(files, ARCHIVE_PREFIX, Paths.get(archiveDir));
+                stored[0] = backupRepository.store(name, files, verified.sha256(), verified.rowCounts(), throttle);
+            });
+
+            successTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            lastSizeBytes.set(archiveSize);
+            lastAddedBytes.set(stored[0].addedBytes());
+            lastSuccessEpochSeconds.set(Instant.now().getEpochSecond());
+            return stored[0];
+        } catch (IOException | SQLException | RuntimeException e) {
+            failureTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    /**
+     * 从分块仓库并行恢复快照中的数据库文件到目标目录
+     */
+    public BackupRepository.Snapshot restore(String snapshotName, Path targetDir) throws IOException {
+        return backupRepository.restore(snapshotName, targetDir.toAbsolutePath().normalize());
+    }
+
+    public BackupRepository getBackupRepository() {
+        return backupRepository;
+    }
+
+    /**
+     * 将当前数据库在线备份到指定 zip 文件，并校验、写出清单 {@code <zip>.manifest.json}
+     * 先写入 .part 临时文件，校验通过后才原子替换为目标文件，失败时不会留下半成品
+     * @param backupFile 目标文件（已存在则覆盖）
+     * @return 校验通过的备份清单
+     */
+    public BackupManifest backupTo(Path backupFile) throws IOException, SQLException {
+        Path target = backupFile.toAbsolutePath().normalize();
+        Path partial = target.resolveSibling(target.getFileName() + ".part");
+        Path scratch = target.resolveSibling(target.getFileName() + ".verify");
+        IoThrottle throttle = IoThrottle.ofMegabytesPerSecond(throttleMbPerSec);
+
+        long start = System.nanoTime();
+        try {
+            runBackupTo(partial, throttle);
+            BackupVerifier.Result verified = BackupVerifier.verify(partial, scratch, throttle);
+            long size = Files.size(partial);
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            long durationNanos = System.nanoTime() - start;
+            BackupManifest manifest = new BackupManifest(target.getFileName().toString(), Instant.now().toString(),
+                    size, verified.sha256(), TimeUnit.NANOSECONDS.toMillis(durationNanos),
+                    verified.entries(), verified.rowCounts());
+            objectMapper.writerWithDefaultPrettyPrinter()
+                    .writeValue(target.resolveSibling(target.getFileName() + BackupManifest.SUFFIX).toFile(), manifest);
+
+            successTimer.record(durationNanos, TimeUnit.NANOSECONDS);
+            lastSizeBytes.set(size);
+            lastSuccessEpochSeconds.set(Instant.now().getEpochSecond());
+            return manifest;
+        } catch (IOException | SQLException | RuntimeException e) {
+            failureTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+    }
+
+    @PostConstruct
+    public void initRepository() {
+        backupRepository = new BackupRepository(Paths.get(backupDir).resolve("repository"), objectMapper, backupThreads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        backupExecutor.shutdownNow();
+    }
+
+    /**
+     * 独立连接执行 BACKUP TO：不占用 Hikari 连接池，也不受调用方事务影响；写盘经 throttled: 前缀按本次的速率限速
+     */
+    private void runBackupTo(Path file, IoThrottle throttle) throws SQLException {
+        ThrottledFilePath.register();
+        try (Connection connection = DriverManager.getConnection(datasourceUrl, datasourceUsername, datasourcePassword);
+             Statement statement = connection.createStatement()) {
+            String escapedPath = ThrottledFilePath.prefix(file.toString(), throttle).replace("'", "''");
+            statement.execute("BACKUP TO '" + escapedPath + "'");
         }
     }
 }
@@ -0,0 +1,137 @@
+package com.example.quiz.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 诊断事件的异步落盘：调用方只把事件放入有界队列（满时丢弃并计数），由单个后台线程批量序列化为 JSON 行追加到 app.diagnostics.file
+ * 服务端调试日志与浏览器上报的遥测事件都写到这里，请求线程不做文件 IO
+ * 指标：quiz.diagnostics.written、quiz.diagnostics.dropped、quiz.diagnostics.queue
+ */
+@Service
+public class DiagnosticsSink {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiagnosticsSink.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int DRAIN_BATCH = 256;
+
+    private final Path file;
+    private final BlockingQueue<Map<String, Object>> queue;
+    private final Thread writerThread;
+    private final Counter written;
+    private final Counter dropped;
+    private volatile boolean running = true;
+
+    public DiagnosticsSink(@Value("${app.diagnostics.file:data/debug.log}") String file,
+                           @Value("${app.diagnostics.queue-capacity:10000}") int queueCapacity,
+                           MeterRegistry meterRegistry) {
+        this.file = Paths.get(file);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.written = Counter.builder("quiz.diagnostics.written").register(meterRegistry);
+        this.dropped = Counter.builder("quiz.diagnostics.dropped").register(meterRegistry);
+        Gauge.builder("quiz.diagnostics.queue", queue, BlockingQueue::size).register(meterRegistry);
+        this.writerThread = new Thread(this::writeLoop, "diagnostics-sink");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * 放入队列，不阻塞；队列已满时丢弃并返回 false
+     */
+    public boolean offer(Map<String, Object> event) {
+        if (queue.offer(event)) {
+            return true;
+        }
+        dropped.increment();
+        return false;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        writerThread.interrupt();
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 等待下一个事件，再取出当时已排队的所有事件一起写入并 flush；文件在首次写入时创建
+     */
+    private void writeLoop() {
+        List<Map<String, Object>> batch = new ArrayList<>(DRAIN_BATCH);
+        BufferedWriter out = null;
+        try {
+            while (running || !queue.isEmpty()) {
+                Map<String, Object> first;
+                try {
+                    first = running ? queue.take() : queue.poll();
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                if (first == null) {
+                    break;
+                }
+                batch.add(first);
+                queue.drainTo(batch, DRAIN_BATCH - 1);
+                try {
+                    if (out == null) {
+                        if (file.getParent() != null) {
+                            Files.createDirectories(file.getParent());
+                        }
+                        out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                    }
+                    for (Map<String, Object> event : batch) {
+                        out.write(MAPPER.writeValueAsString(event));
+                        out.newLine();
+                    }
+                    out.flush();
+                    written.increment(batch.size());
+                } catch (IOException e) {
+                    dropped.increment(batch.size());
+                    LOGGER.warn("Failed to write diagnostics events. file={}, count={}", file, batch.size(), e);
+                    out = closeQuietly(out);
+                }
+                batch.clear();
+            }
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    /**
+     * 关闭后返回 null，下一批重新打开文件
+     */
+    private static BufferedWriter closeQuietly(BufferedWriter out) {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException ignored) {
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.quiz.service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 答案 HTML 中内嵌的 data:image base64 图片：定位、按内容计算哈希、解码与替换，以及按目标尺寸子采样解码为图像
+ * 不依赖 Spring，供缩略图服务与批阅接口共用
+ */
+public final class EmbeddedImages {
+
+    private static final Pattern DATA_URI = Pattern.compile("data:(image/[A-Za-z0-9.+-]+);base64,([A-Za-z0-9+/]+=*)");
+
+    /** 哈希取 SHA-256 前 16 字节的十六进制，作为缩略图文件名与 URL 片段 */
+    private static final int HASH_BYTES = 16;
+
+    private static final int HASH_CHUNK = 8192;
+
+    /** 解码前按头信息检查的像素上限，超过的图片不解码（防止解码炸弹），入库压缩与缩略图共用 */
+    static final long MAX_SOURCE_PIXELS = 100_000_000L;
+
+    private EmbeddedImages() {
+    }
+
+    /**
+     * @param start        data URI 在 HTML 中的起始位置
+     * @param end          data URI 结束位置（不含）
+     * @param payloadStart base64 数据起始位置
+     * @param mimeType     图片类型，如 image/png
+     * @param hash         base64 数据的哈希，同一图片在不同答案中得到相同值
+     */
+    public record Image(int start, int end, int payloadStart, String mimeType, String hash) {
+
+        /** 解码后的字节数（按 base64 长度估算，不解码） */
+        public long decodedSize() {
+            return (end - payloadStart) * 3L / 4;
+        }
+    }
+
+    /**
+     * 快速判断是否可能含内嵌图片，不做正则匹配与哈希
+     */
+    public static boolean mayContain(String html) {
+        return html != null && html.contains("data:image/");
+    }
+
+    public static List<Image> find(String html) {
+        List<Image> images = new ArrayList<>();
+        if (!mayContain(html)) {
+            return images;
+        }
+        Matcher matcher = DATA_URI.matcher(html);
+        while (matcher.find()) {
+            images.add(new Image(matcher.start(), matcher.end(), matcher.start(2), matcher.group(1).toLowerCase(),
+                    hash(html, matcher.start(2), matcher.end())));
+        }
+        return images;
+    }
+
+    public static byte[] decode(String html, Image image) {
+        return Base64.getDecoder().decode(html.substring(image.payloadStart(), image.end()));
+    }
+
+    /**
+     * 按头信息中的尺寸做子采样读取，不把原图完整解码到内存；结果的长边不小于 minEdge（原图更小时原样解码）
+     * 无法识别或像素数超过 MAX_SOURCE_PIXELS（解压炸弹）时返回 null
+     */
+    static BufferedImage decodeSubsampled(byte[] source, int minEdge) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(source))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > MAX_SOURCE_PIXELS) {
+                    return null;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, Math.max(width, height) / Math.max(1, minEdge));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 把 replacement 返回非 null 的图片 data URI 替换为其返回值，其余原样保留
+     */
+    public static String rewrite(String html, List<Image> images, Function<Image, String> replacement) {
+        if (images.isEmpty()) {
+            return html;
+        }
+        StringBuilder sb = null;
+        int position = 0;
+        for (Image image : images) {
+            String url = replacement.apply(image);
+            if (url == null) {
+                continue;
+            }
+            if (sb == null) {
+                sb = new StringBuilder(Math.max(256, html.length() / 8));
+            }
+            sb.append(html, position, image.start()).append(url);
+            position = image.end();
+        }
+        return sb == null ? html : sb.append(html, position, html.length()).toString();
+    }
+
+    /**
+     * base64 字符均为 ASCII，逐段转字节计算，不复制整段数据
+     */
+    private static String hash(String html, int from, int to) {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[HASH_CHUNK];
+        for (int i = from; i < to; i += HASH_CHUNK) {
+            int n = Math.min(HASH_CHUNK, to - i);
+            for (int j = 0; j < n; j++) {
+                buffer[j] = (byte) html.charAt(i + j);
+            }
+            digest.update(buffer, 0, n);
+        }
+        byte[] full = digest.digest();
+        return HexFormat.of().formatHex(full, 0, HASH_BYTES);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
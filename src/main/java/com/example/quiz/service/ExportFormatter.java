@@ -0,0 +1,116 @@
+package com.example.quiz.service;
+
+import com.example.quiz.model.Question;
+import com.example.quiz.model.User;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 导出格式化工具：答案 HTML 与得分 CSV 的生成、转义逻辑
+ * 不依赖 Spring，供 GradingController 与性能基准共用
+ */
+public final class ExportFormatter {
+
+    private ExportFormatter() {
+    }
+
+    /**
+     * 生成单个用户的答案 HTML 页面
+     * @param username 用户名
+     * @param questions 按章节与序号排好的题目
+     * @param contentByQuestionId 题目ID -> 答案内容
+     */
+    public static String renderUserHtml(String username, List<Question> questions, Map<Long, String> contentByQuestionId) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<!DOCTYPE html><html lang=\"zh-CN\"><head><meta charset=\"UTF-8\"><title>")
+          .append(escapeHtml(username))
+          .append("</title></head><body><h1>")
+          .append(escapeHtml(username))
+          .append("</h1>");
+        for (Question q : questions) {
+            String c = contentByQuestionId.get(q.getId());
+            if (c != null && !c.trim().isEmpty()) {
+                sb.append("<section>")
+                  .append("<h2>")
+                  .append(escapeHtml(q.getQuestionNumber()))
+                  .append("</h2>")
+                  .append("<div>")
+                  .append(escapeHtml(q.getDescription()))
+                  .append("</div>")
+                  .append("<div>")
+                  .append(c)
+                  .append("</div>")
+                  .append("</section>");
+            }
+        }
+        sb.append("</body></html>");
+        return sb.toString();
+    }
+
+    /**
+     * 生成得分矩阵 CSV：首行为用户，每行一道题，缺失得分记 0
+     * @param scores 题目ID -> (用户ID -> 得分)
+     */
+    public static String renderScoreCsv(List<User> users, List<Question> questions, Map<Long, Map<Long, Double>> scores) {
+        StringBuilder sb = new StringBuilder();
+
+        // Header Row: empty, total, user1, user2...
+        sb.append(",total");
+        for (User user : users) {
+            sb.append(",").append(escapeCsv(user.getUsername()));
+        }
+        sb.append("\n");
+
+        // Data Rows
+        for (Question q : questions) {
+            sb.append(escapeCsv(q.getTitle()));
+            sb.append(",").append(q.getTotalScore() != null ? (int) q.getTotalScore().doubleValue() : 0);
+
+            Map<Long, Double> byUser = scores.getOrDefault(q.getId(), Map.of());
+            for (User user : users) {
+                sb.append(",");
+                Double score = byUser.get(user.getId());
+                sb.append(score != null ? (int) score.doubleValue() : 0);
+            }
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+
+    public static String escapeCsv(String s) {
+        if (s == null) return "";
+        if (s.contains(",") || s.contains("\"") || s.contains("\n")) {
+            return "\"" + s.replace("\"", "\"\"") + "\"";
+        }
+        return s;
+    }
+
+    public static String sanitizeFilename(String s) {
+        StringBuilder r = new StringBuilder();
+        for (char ch : s.toCharArray()) {
+            if (Character.isLetterOrDigit(ch) || ch == '-' || ch == '_' || ch == '.') {
+                r.append(ch);
+            } else {
+                r.append('_');
+            }
+        }
+        return r.toString();
+    }
+
+    public static String escapeHtml(String s) {
+        if (s == null) return "";
+        StringBuilder r = new StringBuilder();
+        for (char c : s.toCharArray()) {
+            switch (c) {
+                case '&': r.append("&amp;"); break;
+                case '<': r.append("&lt;"); break;
+                case '>': r.append("&gt;"); break;
+                case '"': r.append("&quot;"); break;
+                case '\'': r.append("&#39;"); break;
+                default: r.append(c);
+            }
+        }
+        return r.toString();
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.quiz.service;
+
+import com.example.quiz.repository.AnswerRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 多人阅卷的工作队列：按题目在内存中维护未评分答案ID，领取时发放限时租约，同一份答案同一时刻只分给一位阅卷人
+ * 首次领取某题时从数据库初始化，之后由保存答案与评分接口增量维护；全部使用无锁并发结构，领取不查库、不遍历列表
+ * 租约到期未评分的答案在队列取空时收回，重新排到队尾
+ * 指标：quiz.grading.leases.granted、quiz.grading.leases.expired
+ */
+@Service
+public class GradingQueue {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GradingQueue.class);
+
+    private final AnswerRepository answerRepository;
+    private final long leaseMillis;
+    private final ConcurrentHashMap<Long, QuestionQueue> queues = new ConcurrentHashMap<>();
+    private final Counter granted;
+    private final Counter expired;
+
+    public GradingQueue(AnswerRepository answerRepository,
+                        @Value("${app.grading-queue.lease-seconds:600}") long leaseSeconds,
+                        MeterRegistry meterRegistry) {
+        this.answerRepository = answerRepository;
+        this.leaseMillis = leaseSeconds * 1000;
+        this.granted = Counter.builder("quiz.grading.leases.granted").register(meterRegistry);
+        this.expired = Counter.builder("quiz.grading.leases.expired").register(meterRegistry);
+    }
+
+    /**
+     * @param expiresAtMillis 租约到期时间（epoch 毫秒）
+     */
+    public record Lease(long answerId, long questionId, String grader, long expiresAtMillis) {
+    }
+
+    /**
+     * 单题队列：ungraded 是未评分答案全集，其中未被租出的在 ready 中排队（可能有已评分或重复的残留，领取时跳过）
+     */
+    static final class QuestionQueue {
+        final Set<Long> ungraded = ConcurrentHashMap.newKeySet();
+        final ConcurrentLinkedQueue<Long> ready = new ConcurrentLinkedQueue<>();
+        final Map<Long, Lease> leases = new ConcurrentHashMap<>();
+        final Map<String, Lease> byGrader = new ConcurrentHashMap<>();
+        private volatile boolean seeded;
+
+        void seed(List<Long> ids) {
+            for (Long id : ids) {
+                if (ungraded.add(id)) {
+                    ready.offer(id);
+                }
+            }
+            seeded = true;
+        }
+    }
+
+    /**
+     * 为阅卷人领取该题下一份未评分答案；阅卷人已持有未到期的租约时返回原租约（刷新页面不会换题）
+     * 没有可领取的答案时返回空
+     */
+    public Optional<Lease> next(long questionId, String grader) {
+        return next(questionId, grader, System.currentTimeMillis());
+    }
+
+    Optional<Lease> next(long questionId, String grader, long now) {
+        QuestionQueue queue = queue(questionId);
+        Lease held = queue.byGrader.get(grader);
+        if (held != null) {
+            if (held.expiresAtMillis() > now && queue.leases.get(held.answerId()) == held) {
+                return Optional.of(held);
+            }
+            giveBack(queue, held);
+        }
+        Lease lease = poll(queue, questionId, grader, now);
+        if (lease == null && reclaimExpired(queue, now) > 0) {
+            lease = poll(queue, questionId, grader, now);
+        }
+        if (lease == null) {
+            return Optional.empty();
+        }
+        queue.byGrader.put(grader, lease);
+        granted.increment();
+        return Optional.of(lease);
+    }
+
+    private Lease poll(QuestionQueue queue, long questionId, String grader, long now) {
+        Long id;
+        while ((id = queue.ready.poll()) != null) {
+            if (!queue.ungraded.contains(id)) {
+                continue;
+            }
+            Lease lease = new Lease(id, questionId, grader, now + leaseMillis);
+            Lease previous = queue.leases.putIfAbsent(id, lease);
+            if (previous == null) {
+                return lease;
+            }
+            // 重复入队的答案仍被他人持有，到期后由 reclaimExpired 收回
+            if (previous.expiresAtMillis() <= now && queue.leases.replace(id, previous, lease)) {
+                queue.byGrader.remove(previous.grader(), previous);
+                expired.increment();
+                return lease;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 把到期的租约收回到 ready 队尾；只在队列取空时执行，开销与在途租约数（约等于阅卷人数）成正比
+     */
+    private int reclaimExpired(QuestionQueue queue, long now) {
+        int reclaimed = 0;
+        for (Lease lease : queue.leases.values()) {
+            if (lease.expiresAtMillis() <= now && queue.leases.remove(lease.answerId(), lease)) {
+                queue.byGrader.remove(lease.grader(), lease);
+                if (queue.ungraded.contains(lease.answerId())) {
+                    queue.ready.offer(lease.answerId());
+                }
+                expired.increment();
+                reclaimed++;
+            }
+        }
+        return reclaimed;
+    }
+
+    private void giveBack(QuestionQueue queue, Lease lease) {
+        queue.byGrader.remove(lease.grader(), lease);
+        if (queue.leases.remove(lease.answerId(), lease) && queue.ungraded.contains(lease.answerId())) {
+            queue.ready.offer(lease.answerId());
+        }
+    }
+
+    /**
+     * 阅卷人放弃租约（跳过这一份），答案重新排到队尾；租约不属于该阅卷人时忽略
+     */
+    public boolean release(long questionId, long answerId, String grader) {
+        QuestionQueue queue = queues.get(questionId);
+        if (queue == null) {
+            return false;
+        }
+        Lease lease = queue.leases.get(answerId);
+        if (lease == null || !lease.grader().equals(grader)) {
+            return false;
+        }
+        giveBack(queue, lease);
+        return true;
+    }
+
+    /**
+     * 答案已评分（或已删除）：移出未评分集合并结束其租约；该题队列尚未初始化时无需处理
+     */
+    public void scored(long questionId, long answerId) {
+        QuestionQueue queue = queues.get(questionId);
+        if (queue == null) {
+            return;
+        }
+        queue.ungraded.remove(answerId);
+        Lease lease = queue.leases.remove(answerId);
+        if (lease != null) {
+            queue.byGrader.remove(lease.grader(), lease);
+        }
+    }
+
+    /**
+     * 保存了尚未评分的学生答案：新答案加入队尾，已在队列中的不重复加入
+     */
+    public void ungraded(long questionId, long answerId) {
+        QuestionQueue queue = queues.get(questionId);
+        if (queue != null && queue.ungraded.add(answerId)) {
+            queue.ready.offer(answerId);
+        }
+    }
+
+    /**
+     * 该题尚未评分的答案数（含已租出的）
+     */
+    public int remaining(long questionId) {
+        return queue(questionId).ungraded.size();
+    }
+
+    /**
+     * 题目队列先登记再查库初始化，初始化期间的保存与评分直接作用于同一队列；
+     * 查库与评分并发时可能残留已评分的答案，由调用方领取后核对分数并调用 scored 剔除
+     */
+    private QuestionQueue queue(long questionId) {
+        QuestionQueue queue = queues.computeIfAbsent(questionId, id -> new QuestionQueue());
+        if (!queue.seeded) {
+            synchronized (queue) {
+                if (!queue.seeded) {
+                    List<Long> ids = answerRepository.findUngradedIdsByQuestionId(questionId);
+                    queue.seed(ids);
+                    LOGGER.info("Grading queue seeded. questionId={}, ungraded={}", questionId, ids.size());
+                }
+            }
+        }
+        return queue;
+    }
+}
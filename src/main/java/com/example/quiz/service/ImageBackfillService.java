@@ -0,0 +1,372 @@
+package com.example.quiz.service;
+
+import com.example.quiz.backup.IoThrottle;
+import com.example.quiz.repository.AnswerContentRowView;
+import com.example.quiz.repository.AnswerContentRepository;
+import com.example.quiz.repository.AnswerStorageView;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 内嵌图片回填：由管理员触发，按答案ID顺序分批读取已有答案，在并行工作线程中把解码后不小于 app.image-backfill.min-bytes
+ * 的 data URI 图片写入外部存储（ImageStore）并改写为 URL 引用
+ * 每批完成后把进度写入检查点文件，停止、失败或重启后从检查点继续；运行中重启时启动后自动继续
+ * 按 app.image-backfill.rows-per-second 限速，考试期间也可运行
+ * 指标：quiz.image.backfill.rows{result=rewritten|skipped|conflict|failed}、quiz.image.backfill.bytes、quiz.image.backfill.last.id
+ */
+@Service
+public class ImageBackfillService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImageBackfillService.class);
+
+    public static final String STATE_IDLE = "idle";
+    public static final String STATE_RUNNING = "running";
+    public static final String STATE_PAUSED = "paused";
+    public static final String STATE_FAILED = "failed";
+    public static final String STATE_COMPLETED = "completed";
+
+    private final AnswerContentRepository answerContentRepository;
+    private final AnswerContentStorage answerContentStorage;
+    private final ImageStore imageStore;
+    private final AnswerCache answerCache;
+    private final Path checkpointFile;
+    private final int batchSize;
+    private final int threads;
+    private final long rowsPerSecond;
+    private final long minBytes;
+    private final boolean resumeOnStartup;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean stopRequested;
+    private volatile Thread worker;
+    private volatile Status status;
+
+    private final Counter rewritten;
+    private final Counter skipped;
+    private final Counter conflicts;
+    private final Counter failures;
+    private final Counter movedBytes;
+
+    /**
+     * 回填进度，同时也是检查点文件的内容；lastId 之前（含）的答案都已处理
+     */
+    public record Status(String state, long lastId, long rowsScanned, long rowsRewritten, long rowsFailed,
+                         long imagesMoved, long bytesMoved) {
+
+        static Status initial() {
+            return new Status(STATE_IDLE, 0, 0, 0, 0, 0, 0);
+        }
+
+        Status withState(String newState) {
+            return new Status(newState, lastId, rowsScanned, rowsRewritten, rowsFailed, imagesMoved, bytesMoved);
+        }
+    }
+
+    private enum Outcome { REWRITTEN, SKIPPED, CONFLICT, FAILED }
+
+    private record RowResult(Outcome outcome, int images, long bytes) {
+        static final RowResult SKIPPED = new RowResult(Outcome.SKIPPED, 0, 0);
+        static final RowResult CONFLICT = new RowResult(Outcome.CONFLICT, 0, 0);
+        static final RowResult FAILED = new RowResult(Outcome.FAILED, 0, 0);
+    }
+
+    public ImageBackfillService(AnswerContentRepository answerContentRepository,
+                                AnswerContentStorage answerContentStorage,
+                                ImageStore imageStore,
+                                AnswerCache answerCache,
+                                @Value("${app.image-backfill.checkpoint:data/image-backfill.properties}") String checkpointFile,
+                                @Value("${app.image-backfill.batch-size:20}") int batchSize,
+                                @Value("${app.image-backfill.threads:2}") int threads,
+                                @Value("${app.image-backfill.rows-per-second:20}") long rowsPerSecond,
+                                @Value("${app.image-backfill.min-bytes:1024}") long minBytes,
+                                @Value("${app.image-backfill.resume-on-startup:true}") boolean resumeOnStartup,
+                                MeterRegistry meterRegistry) {
+        this.answerContentRepository = answerContentRepository;
+        this.answerContentStorage = answerContentStorage;
+        this.imageStore = imageStore;
+        this.answerCache = answerCache;
+        this.checkpointFile = Paths.get(checkpointFile);
+        this.batchSize = batchSize;
+        this.threads = threads;
+        this.rowsPerSecond = rowsPerSecond;
+        this.minBytes = minBytes;
+        this.resumeOnStartup = resumeOnStartup;
+        this.status = readCheckpoint();
+        this.rewritten = Counter.builder("quiz.image.backfill.rows").tag("result", "rewritten").register(meterRegistry);
+        this.skipped = Counter.builder("quiz.image.backfill.rows").tag("result", "skipped").register(meterRegistry);
+        this.conflicts = Counter.builder("quiz.image.backfill.rows").tag("result", "conflict").register(meterRegistry);
+        this.failures = Counter.builder("quiz.image.backfill.rows").tag("result", "failed").register(meterRegistry);
+        this.movedBytes = Counter.builder("quiz.image.backfill.bytes").baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("quiz.image.backfill.last.id", this, s -> s.status.lastId()).register(meterRegistry);
+    }
+
+    /**
+     * 上次运行中被中断（进程退出）时自动继续
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeIfInterrupted() {
+        if (resumeOnStartup && STATE_RUNNING.equals(status.state())) {
+            LOGGER.info("Resuming image backfill from checkpoint. lastId={}", status.lastId());
+            start();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopRequested = true;
+        Thread thread = worker;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * 启动回填，已在运行时返回 false；上次已完成时从头开始（处理完成之后保存的新图片），否则从检查点继续
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        if (STATE_COMPLETED.equals(status.state())) {
+            status = Status.initial();
+        }
+        stopRequested = false;
+        status = status.withState(STATE_RUNNING);
+        Thread thread = new Thread(this::run, "image-backfill");
+        thread.setDaemon(true);
+        worker = thread;
+        thread.start();
+        return true;
+    }
+
+    /**
+     * 请求停止：当前批次完成并写入检查点后退出
+     */
+    public boolean stop() {
+        stopRequested = true;
+        return running.get();
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * 同步执行到结束或被停止，返回最终状态
+     */
+    Status run() {
+        long startNanos = System.nanoTime();
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "image-backfill-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        // IoThrottle 按单位计量，这里一行算一个单位
+        IoThrottle throttle = new IoThrottle(rowsPerSecond);
+        LOGGER.info("Image backfill start. lastId={}, threads={}, rowsPerSecond={}", status.lastId(), threads, rowsPerSecond);
+        try {
+            writeCheckpoint(status);
+            while (!stopRequested) {
+                List<AnswerContentRowView> batch = answerContentRepository.findContentRowsAfter(
+                        status.lastId(), PageRequest.of(0, batchSize));
+                if (batch.isEmpty()) {
+                    status = status.withState(STATE_COMPLETED);
+                    break;
+                }
+                List<Future<RowResult>> futures = new ArrayList<>(batch.size());
+                for (AnswerContentRowView row : batch) {
+                    futures.add(workers.submit(() -> {
+                        throttle.acquire(1);
+                        return process(row);
+                    }));
+                }
+                status = accumulate(batch.get(batch.size() - 1).getId(), batch.size(), futures);
+                writeCheckpoint(status);
+            }
+            if (!STATE_COMPLETED.equals(status.state())) {
+                status = status.withState(STATE_PAUSED);
+            }
+        } catch (Exception e) {
+            LOGGER.error("Image backfill failed; it can be restarted from the checkpoint. lastId={}", status.lastId(), e);
+            status = status.withState(STATE_FAILED);
+        } finally {
+            workers.shutdownNow();
+            try {
+                writeCheckpoint(status);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to write image backfill checkpoint", e);
+            }
+            worker = null;
+            running.set(false);
+        }
+        LOGGER.info("Image backfill {}. lastId={}, rowsScanned={}, rowsRewritten={}, rowsFailed={}, imagesMoved={}, bytesMoved={}, elapsedMs={}",
+                status.state(), status.lastId(), status.rowsScanned(), status.rowsRewritten(), status.rowsFailed(),
+                status.imagesMoved(), status.bytesMoved(), (System.nanoTime() - startNanos) / 1_000_000);
+        return status;
+    }
+
+    private Status accumulate(long lastId, int rows, List<Future<RowResult>> futures) throws IOException {
+        long rewrittenRows = 0;
+        long failedRows = 0;
+        long images = 0;
+        long bytes = 0;
+        for (Future<RowResult> future : futures) {
+            RowResult result;
+            try {
+                result = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Image backfill interrupted");
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+            switch (result.outcome()) {
+                case REWRITTEN -> rewrittenRows++;
+                case FAILED -> failedRows++;
+                default -> { }
+            }
+            images += result.images();
+            bytes += result.bytes();
+        }
+        Status current = status;
+        return new Status(current.state(), lastId, current.rowsScanned() + rows, current.rowsRewritten() + rewrittenRows,
+                current.rowsFailed() + failedRows, current.imagesMoved() + images, current.bytesMoved() + bytes);
+    }
+
+    /**
+     * 处理一行：读取后答案又被保存（版本号不符）时重新读取再试一次，仍冲突则留给下次回填
+     */
+    private RowResult process(AnswerContentRowView row) {
+        AnswerStorageView current = row;
+        for (int attempt = 0; attempt < 2; attempt++) {
+            RowResult result;
+            try {
+                result = externalize(current, row.getUsername(), row.getQuestionId());
+            } catch (IOException | IllegalArgumentException e) {
+                failures.increment();
+                LOGGER.warn("Image backfill failed for answer, skipping. answerId={}", row.getId(), e);
+                return RowResult.FAILED;
+            }
+            if (result != RowResult.CONFLICT) {
+                return result;
+            }
+            Optional<AnswerStorageView> reloaded = answerContentRepository.findStorageViewById(row.getId());
+            if (!reloaded.isPresent()) {
+                return RowResult.SKIPPED;
+            }
+            current = reloaded.get();
+        }
+        conflicts.increment();
+        return RowResult.CONFLICT;
+    }
+
+    private RowResult externalize(AnswerStorageView row, String username, Long questionId) throws IOException {
+        String html = row.getContentText();
+        List<EmbeddedImages.Image> images = EmbeddedImages.find(html).stream()
+                .filter(image -> image.decodedSize() >= minBytes)
+                .toList();
+        if (images.isEmpty()) {
+            skipped.increment();
+            return RowResult.SKIPPED;
+        }
+        Map<String, String> urls = new HashMap<>();
+        long bytes = 0;
+        for (EmbeddedImages.Image image : images) {
+            if (!urls.containsKey(image.hash())) {
+                byte[] data = EmbeddedImages.decode(html, image);
+                urls.put(image.hash(), imageStore.store(image, data));
+                bytes += data.length;
+            }
+        }
+        String rewrittenHtml = EmbeddedImages.rewrite(html, images, image -> urls.get(image.hash()));
+        long expectedVersion = row.getContentVersion();
+        if (!answerContentStorage.replaceContent(row.getId(), expectedVersion, rewrittenHtml)) {
+            return RowResult.CONFLICT;
+        }
+        if (username != null && questionId != null) {
+            // 带上改写后的版本，改写前读到的旧内容不会再填回缓存
+            answerCache.invalidate(username, questionId, expectedVersion + 1);
+        }
+        rewritten.increment();
+        movedBytes.increment(bytes);
+        return new RowResult(Outcome.REWRITTEN, urls.size(), bytes);
+    }
+
+    private Status readCheckpoint() {
+        if (!Files.exists(checkpointFile)) {
+            return Status.initial();
+        }
+        Properties p = new Properties();
+        try (InputStream in = Files.newInputStream(checkpointFile)) {
+            p.load(in);
+            return new Status(p.getProperty("state", STATE_IDLE),
+                    Long.parseLong(p.getProperty("lastId", "0")),
+                    Long.parseLong(p.getProperty("rowsScanned", "0")),
+                    Long.parseLong(p.getProperty("rowsRewritten", "0")),
+                    Long.parseLong(p.getProperty("rowsFailed", "0")),
+                    Long.parseLong(p.getProperty("imagesMoved", "0")),
+                    Long.parseLong(p.getProperty("bytesMoved", "0")));
+        } catch (IOException | NumberFormatException e) {
+            LOGGER.warn("Unreadable image backfill checkpoint, starting from the beginning. file={}", checkpointFile, e);
+            return Status.initial();
+        }
+    }
+
+    private void writeCheckpoint(Status s) throws IOException {
+        Properties p = new Properties();
+        p.setProperty("state", s.state());
+        p.setProperty("lastId", String.valueOf(s.lastId()));
+        p.setProperty("rowsScanned", String.valueOf(s.rowsScanned()));
+        p.setProperty("rowsRewritten", String.valueOf(s.rowsRewritten()));
+        p.setProperty("rowsFailed", String.valueOf(s.rowsFailed()));
+        p.setProperty("imagesMoved", String.valueOf(s.imagesMoved()));
+        p.setProperty("bytesMoved", String.valueOf(s.bytesMoved()));
+        Path dir = checkpointFile.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, checkpointFile.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                p.store(out, "image backfill checkpoint");
+            }
+            Files.move(temp, checkpointFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
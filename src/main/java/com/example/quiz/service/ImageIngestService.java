@@ -0,0 +1,301 @@
+package com.example.quiz.service;
+
+import com.example.quiz.repository.AnswerContentRepository;
+import com.example.quiz.repository.AnswerStorageView;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 图片入库处理：答案保存提交后，在后台把内嵌的大图（多为粘贴的 4K 截图）缩小到 app.image-ingest.max-dimension 以内，
+ * 重新编码为 PNG（最高压缩级别）与 JPEG 中较小的一种，改写库中内容；之后再交给缩略图服务
+ * 可选把原图按哈希保存到 app.image-ingest.originals-dir；改写前核对内容版本，期间学生又保存过则放弃本次结果
+ * 指标：quiz.image.ingest.recompressed、quiz.image.ingest.saved.bytes、quiz.image.ingest.failed、
+ * quiz.image.ingest.rejected、quiz.image.ingest.queue
+ */
+@Service
+public class ImageIngestService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImageIngestService.class);
+
+    private final AnswerContentRepository answerContentRepository;
+    private final AnswerContentStorage answerContentStorage;
+    private final AnswerCache answerCache;
+    private final ThumbnailService thumbnailService;
+    private final boolean enabled;
+    private final int maxDimension;
+    private final long minBytes;
+    private final float jpegQuality;
+    private final Path originalsDirectory;
+    private final ThreadPoolExecutor executor;
+    /** 已排队尚未开始的答案；开始处理时移除，处理期间的新保存会再排一次 */
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+    private final Counter recompressed;
+    private final Counter savedBytes;
+    private final Counter failed;
+    private final Counter rejected;
+
+    /**
+     * @param originalsDirectory 保存原图的目录，为空表示不保留
+     */
+    public ImageIngestService(AnswerContentRepository answerContentRepository,
+                              AnswerContentStorage answerContentStorage,
+                              AnswerCache answerCache,
+                              ThumbnailService thumbnailService,
+                              @Value("${app.image-ingest.enabled:true}") boolean enabled,
+                              @Value("${app.image-ingest.max-dimension:1920}") int maxDimension,
+                              @Value("${app.image-ingest.min-bytes:262144}") long minBytes,
+                              @Value("${app.image-ingest.jpeg-quality:0.9}") float jpegQuality,
+                              @Value("${app.image-ingest.originals-dir:}") String originalsDirectory,
+                              @Value("${app.image-ingest.threads:1}") int threads,
+                              @Value("${app.image-ingest.queue-capacity:1000}") int queueCapacity,
+                              MeterRegistry meterRegistry) {
+        this.answerContentRepository = answerContentRepository;
+        this.answerContentStorage = answerContentStorage;
+        this.answerCache = answerCache;
+        this.thumbnailService = thumbnailService;
+        this.enabled = enabled;
+        this.maxDimension = maxDimension;
+        this.minBytes = minBytes;
+        this.jpegQuality = jpegQuality;
+        this.originalsDirectory = originalsDirectory == null || originalsDirectory.isBlank() ? null : Paths.get(originalsDirectory);
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread thread = new Thread(r, "image-ingest-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.recompressed = Counter.builder("quiz.image.ingest.recompressed").register(meterRegistry);
+        this.savedBytes = Counter.builder("quiz.image.ingest.saved.bytes").baseUnit("bytes").register(meterRegistry);
+        this.failed = Counter.builder("quiz.image.ingest.failed").register(meterRegistry);
+        this.rejected = Counter.builder("quiz.image.ingest.rejected").register(meterRegistry);
+        Gauge.builder("quiz.image.ingest.queue", executor, e -> e.getQueue().size()).register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 答案保存后调用：当前有事务时在提交后才排队，后台线程读到的一定是已提交的内容
+     * 未启用时直接提交缩略图生成；队列满时放弃（图片保持原样，缩略图由预览列表再次提交）
+     */
+    public void submit(long answerId, String username, Long questionId) {
+        AfterCommitExecutor.afterCommit(() -> enqueue(answerId, username, questionId));
+    }
+
+    private void enqueue(long answerId, String username, Long questionId) {
+        if (!enabled) {
+            thumbnailService.submit(answerId);
+            return;
+        }
+        if (!queued.add(answerId)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                queued.remove(answerId);
+                try {
+                    ingest(answerId, username, questionId);
+                } catch (RuntimeException e) {
+                    failed.increment();
+                    LOGGER.warn("Image ingest failed. answerId={}", answerId, e);
+                }
+                thumbnailService.submit(answerId);
+            });
+        } catch (RejectedExecutionException e) {
+            queued.remove(answerId);
+            rejected.increment();
+        }
+    }
+
+    /**
+     * 同步处理一个答案，返回被替换的图片数；内容没有可缩小的图片或期间已被重新保存时返回 0
+     */
+    public int ingest(long answerId, String username, Long questionId) {
+        Optional<AnswerStorageView> view = answerContentRepository.findStorageViewById(answerId);
+        if (!view.isPresent()) {
+            return 0;
+        }
+        String html = view.get().getContentText();
+        List<EmbeddedImages.Image> images = EmbeddedImages.find(html);
+        Map<String, String> replacements = new HashMap<>();
+        long before = 0;
+        long after = 0;
+        for (EmbeddedImages.Image image : images) {
+            if (image.decodedSize() < minBytes || replacements.containsKey(image.hash())) {
+                continue;
+            }
+            String replacement = null;
+            try {
+                byte[] source = EmbeddedImages.decode(html, image);
+                Recompressed result = recompress(source);
+                if (result != null) {
+                    keepOriginal(image, source);
+                    replacement = "data:" + result.mimeType() + ";base64," + Base64.getEncoder().encodeToString(result.bytes());
+                    before += source.length;
+                    after += result.bytes().length;
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                failed.increment();
+                LOGGER.warn("Image recompression failed, keeping original. answerId={}, hash={}, mimeType={}",
+                        answerId, image.hash(), image.mimeType(), e);
+            }
+            replacements.put(image.hash(), replacement);
+        }
+        if (replacements.values().stream().allMatch(r -> r == null)) {
+            return 0;
+        }
+
+        String rewritten = EmbeddedImages.rewrite(html, images, image -> replacements.get(image.hash()));
+        long expectedVersion = view.get().getContentVersion();
+        if (!answerContentStorage.replaceContent(answerId, expectedVersion, rewritten)) {
+            LOGGER.info("Answer saved again during image ingest, discarding result. answerId={}", answerId);
+            return 0;
+        }
+        if (username != null && questionId != null) {
+            // 带上改写后的版本：改写前开始的读取晚到时不能把内嵌原图的旧内容与旧 ETag 填回缓存
+            answerCache.invalidate(username, questionId, expectedVersion + 1);
+        }
+        int count = (int) replacements.values().stream().filter(r -> r != null).count();
+        recompressed.increment(count);
+        savedBytes.increment(before - after);
+        LOGGER.info("Answer images recompressed. answerId={}, images={}, bytesBefore={}, bytesAfter={}",
+                answerId, count, before, after);
+        return count;
+    }
+
+    record Recompressed(String mimeType, byte[] bytes) {}
+
+    /**
+     * 子采样读取（保证结果不小于目标尺寸）后平滑缩放到 max-dimension 以内，编码为 PNG 与 JPEG（仅不透明图片）取较小者
+     * 无法识别、过大或重新编码后没有变小时返回 null，保留原图
+     */
+    Recompressed recompress(byte[] source) throws IOException {
+        BufferedImage decoded = EmbeddedImages.decodeSubsampled(source, maxDimension);
+        if (decoded == null) {
+            return null;
+        }
+
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(decoded.getWidth(), decoded.getHeight()));
+        int width = Math.max(1, (int) Math.round(decoded.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(decoded.getHeight() * scale));
+        BufferedImage scaled = draw(decoded, width, height, BufferedImage.TYPE_INT_ARGB);
+        boolean opaque = isOpaque(scaled);
+        if (opaque) {
+            // 不透明图片按 RGB 编码，PNG 少一个通道，JPEG 也只接受 RGB
+            scaled = draw(scaled, width, height, BufferedImage.TYPE_INT_RGB);
+        }
+
+        byte[] png = encode(scaled, "png", 0.0f);
+        Recompressed best = new Recompressed("image/png", png);
+        if (opaque) {
+            byte[] jpeg = encode(scaled, "jpeg", jpegQuality);
+            if (jpeg.length < png.length) {
+                best = new Recompressed("image/jpeg", jpeg);
+            }
+        }
+        return best.bytes().length < source.length ? best : null;
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height, int type) {
+        BufferedImage target = new BufferedImage(width, height, type);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private static boolean isOpaque(BufferedImage image) {
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                if ((image.getRGB(x, y) >>> 24) != 0xFF) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * PNG 的压缩质量 0 对应最高 deflate 级别；JPEG 为图像质量
+     */
+    private static byte[] encode(BufferedImage image, String format, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(quality);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 原图按哈希保存到冷存储目录，同一图片只写一次；先写临时文件再原子改名
+     */
+    private void keepOriginal(EmbeddedImages.Image image, byte[] source) throws IOException {
+        if (originalsDirectory == null) {
+            return;
+        }
+        String extension = image.mimeType().substring("image/".length()).replaceAll("[^a-z0-9]", "");
+        Path file = originalsDirectory.resolve(image.hash() + "." + extension);
+        if (Files.exists(file)) {
+            return;
+        }
+        Files.createDirectories(originalsDirectory);
+        Path temp = Files.createTempFile(originalsDirectory, image.hash(), ".tmp");
+        try {
+            Files.write(temp, source);
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.quiz.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 答案图片外部存储：从答案内容中移出的图片按哈希存为 app.image-store.dir 下的独立文件，答案中改为引用 /quiz/images/{文件名}
+ * 文件只增不改；分块仓库快照包含这些文件（快照名下的 images/），相同图片在仓库中只存一份
+ */
+@Service
+public class ImageStore {
+
+    public static final String URL_PREFIX = "/quiz/images/";
+
+    /** 文件名：图片哈希 + 扩展名 */
+    public static final String NAME_PATTERN = "[0-9a-f]{32}\\.[a-z0-9]+";
+
+    private static final Pattern REFERENCE = Pattern.compile(Pattern.quote(URL_PREFIX) + "(" + NAME_PATTERN + ")");
+
+    private final Path directory;
+
+    public ImageStore(@Value("${app.image-store.dir:data/images}") String directory) {
+        this.directory = Paths.get(directory);
+    }
+
+    /**
+     * 写入图片（同一哈希已存在时跳过），返回答案中引用该图片的 URL
+     */
+    public String store(EmbeddedImages.Image image, byte[] bytes) throws IOException {
+        String name = image.hash() + "." + extension(image.mimeType());
+        Path file = directory.resolve(name);
+        if (!Files.exists(file)) {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, image.hash(), ".tmp");
+            try {
+                Files.write(temp, bytes);
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+        return URL_PREFIX + name;
+    }
+
+    public Optional<Path> find(String name) {
+        if (!name.matches(NAME_PATTERN)) {
+            throw new IllegalArgumentException("invalid image name: " + name);
+        }
+        Path file = directory.resolve(name);
+        return Files.exists(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    /**
+     * 导出用：把 /quiz/images/ 引用改为 zip 内的相对路径 images/，并收集引用到的文件名
+     */
+    public static String relativize(String html, Set<String> names) {
+        if (html == null || !html.contains(URL_PREFIX)) {
+            return html;
+        }
+        Matcher matcher = REFERENCE.matcher(html);
+        StringBuilder sb = new StringBuilder(html.length());
+        while (matcher.find()) {
+            names.add(matcher.group(1));
+            matcher.appendReplacement(sb, "images/$1");
+        }
+        return matcher.appendTail(sb).toString();
+    }
+
+    /**
+     * 引用到的外部图片的哈希（与内嵌时 EmbeddedImages 计算的哈希相同），查重用
+     */
+    public static List<String> referencedHashes(String html) {
+        List<String> hashes = new ArrayList<>();
+        if (html == null || !html.contains(URL_PREFIX)) {
+            return hashes;
+        }
+        Matcher matcher = REFERENCE.matcher(html);
+        while (matcher.find()) {
+            hashes.add(hashOf(matcher.group(1)));
+        }
+        return hashes;
+    }
+
+    /**
+     * 引用到的外部图片文件名（按出现顺序，可能重复）
+     */
+    public static List<String> references(String html) {
+        List<String> names = new ArrayList<>();
+        if (html == null || !html.contains(URL_PREFIX)) {
+            return names;
+        }
+        Matcher matcher = REFERENCE.matcher(html);
+        while (matcher.find()) {
+            names.add(matcher.group(1));
+        }
+        return names;
+    }
+
+    /**
+     * 逐个替换外部图片引用：replacer 收到文件名，返回替换后的地址，返回 null 时保留原引用；无替换时返回原字符串
+     */
+    public static String rewrite(String html, Function<String, String> replacer) {
+        if (html == null || !html.contains(URL_PREFIX)) {
+            return html;
+        }
+        Matcher matcher = REFERENCE.matcher(html);
+        StringBuilder sb = null;
+        int last = 0;
+        while (matcher.find()) {
+            String replacement = replacer.apply(matcher.group(1));
+            if (replacement == null) {
+                continue;
+            }
+            if (sb == null) {
+                sb = new StringBuilder(html.length());
+            }
+            sb.append(html, last, matcher.start()).append(replacement);
+            last = matcher.end();
+        }
+        return sb == null ? html : sb.append(html, last, html.length()).toString();
+    }
+
+    /**
+     * 文件名中的图片哈希
+     */
+    public static String hashOf(String name) {
+        return name.substring(0, name.indexOf('.'));
+    }
+
+    static String extension(String mimeType) {
+        return switch (mimeType) {
+            case "image/jpeg", "image/jpg" -> "jpg";
+            case "image/svg+xml" -> "svg";
+            default -> mimeType.substring("image/".length()).replaceAll("[^a-z0-9]", "");
+        };
+    }
+}
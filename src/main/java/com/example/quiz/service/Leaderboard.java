@@ -0,0 +1,200 @@
+package com.example.quiz.service;
+
+import com.example.quiz.model.User;
+import com.example.quiz.repository.AnswerRepository;
+import com.example.quiz.repository.AnswerScoreView;
+import com.example.quiz.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 实时排行榜：在内存中维护每个学生各题得分与总分，总分按 (总分, 用户ID) 存放在顺序统计树中
+ * 评分接口每次写入得分后增量更新（O(log n)），前 K 名与任一学生的名次、百分位直接从树中取得，不扫描答案
+ * 首次查询时从数据库与归档段初始化；批量采纳建议分等批量修改后置为失效，下次查询时重新加载
+ */
+@Service
+public class Leaderboard {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Leaderboard.class);
+
+    private final AnswerRepository answerRepository;
+    private final UserRepository userRepository;
+    private final AnswerArchive answerArchive;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 以下字段由 lock 保护
+    private final Map<Long, Standing> standings = new HashMap<>();
+    private final Map<String, Standing> byUsername = new HashMap<>();
+    private final RankTree tree = new RankTree();
+    private boolean loaded;
+
+    public Leaderboard(AnswerRepository answerRepository, UserRepository userRepository, AnswerArchive answerArchive) {
+        this.answerRepository = answerRepository;
+        this.userRepository = userRepository;
+        this.answerArchive = answerArchive;
+    }
+
+    private static final class Standing {
+        final long userId;
+        final String username;
+        final Map<Long, Double> scores = new HashMap<>();
+        double total;
+
+        Standing(long userId, String username) {
+            this.userId = userId;
+            this.username = username;
+        }
+    }
+
+    /**
+     * @param rank   并列时名次相同（1、2、2、4）
+     * @param graded 已评分的题目数
+     */
+    public record Entry(int rank, String username, double total, int graded) {
+    }
+
+    /**
+     * @param percentile 总分严格低于该学生的学生占比（0～100）
+     */
+    public record UserRank(int rank, String username, double total, int graded, double percentile) {
+    }
+
+    public record Board(int students, List<Entry> top, UserRank user) {
+    }
+
+    /**
+     * 学生某题得分变化（score 为 null 表示清除）；尚未加载时忽略，加载时会读到已提交的得分
+     * 以绝对分值更新，重复调用与初始化并发时结果一致
+     */
+    public void scoreChanged(long userId, long questionId, Double score) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                return;
+            }
+            Standing standing = standings.get(userId);
+            if (standing != null) {
+                apply(standing, questionId, score);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 批量修改得分后调用，下次查询时重新从数据库加载
+     */
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            loaded = false;
+            standings.clear();
+            byUsername.clear();
+            tree.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 前 top 名，以及 username 不为空时该学生的名次与百分位（不存在时为 null）
+     */
+    public Board board(int top, String username) {
+        while (true) {
+            ensureLoaded();
+            lock.readLock().lock();
+            try {
+                if (!loaded) {
+                    // 加载后、读取前被置为失效，重新加载
+                    continue;
+                }
+                int students = tree.size();
+                List<Entry> entries = new ArrayList<>(Math.min(top, students));
+                for (int i = 0; i < Math.min(top, students); i++) {
+                    RankTree.Key key = tree.get(i);
+                    Standing standing = standings.get(key.userId());
+                    entries.add(new Entry(tree.countHigher(key.total()) + 1, standing.username, standing.total, standing.scores.size()));
+                }
+                UserRank user = null;
+                Standing standing = username != null ? byUsername.get(username) : null;
+                if (standing != null) {
+                    // 排在 (总分, Long.MAX_VALUE) 之前的即总分不低于该学生的全部学生
+                    int atOrAbove = tree.countBefore(standing.total, Long.MAX_VALUE);
+                    double percentile = Math.round((students - atOrAbove) * 1000.0 / students) / 10.0;
+                    user = new UserRank(tree.countHigher(standing.total) + 1, standing.username, standing.total,
+                            standing.scores.size(), percentile);
+                }
+                return new Board(students, entries, user);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    private void ensureLoaded() {
+        lock.readLock().lock();
+        try {
+            if (loaded) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                return;
+            }
+            long startNanos = System.nanoTime();
+            for (User user : userRepository.findAll()) {
+                if (user.getUsername() == null || "admin".equals(user.getUsername())) {
+                    continue;
+                }
+                Standing standing = new Standing(user.getId(), user.getUsername());
+                standings.put(user.getId(), standing);
+                byUsername.put(user.getUsername(), standing);
+                tree.insert(0.0, user.getId());
+            }
+            int scores = 0;
+            // 归档得分先于实时表应用，两边都有时以实时表为准
+            for (ArchiveSegment.ScoreRow row : answerArchive.scores()) {
+                Standing standing = standings.get(row.userId());
+                if (standing != null) {
+                    apply(standing, row.questionId(), row.score());
+                    scores++;
+                }
+            }
+            for (AnswerScoreView row : answerRepository.findAllScores()) {
+                Standing standing = standings.get(row.getUserId());
+                if (standing != null) {
+                    apply(standing, row.getQuestionId(), row.getScore());
+                    scores++;
+                }
+            }
+            loaded = true;
+            LOGGER.info("Leaderboard loaded. students={}, scores={}, elapsedMs={}",
+                    standings.size(), scores, (System.nanoTime() - startNanos) / 1_000_000);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(Standing standing, long questionId, Double score) {
+        Double previous = score != null ? standing.scores.put(questionId, score) : standing.scores.remove(questionId);
+        double delta = (score != null ? score : 0.0) - (previous != null ? previous : 0.0);
+        if (delta == 0) {
+            return;
+        }
+        tree.remove(standing.total, standing.userId);
+        // 逐次加减的浮点误差会让同分学生排名不同，保留到 1e-6
+        standing.total = Math.round((standing.total + delta) * 1_000_000) / 1_000_000.0;
+        tree.insert(standing.total, standing.userId);
+    }
+}
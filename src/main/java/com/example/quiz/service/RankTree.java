@@ -0,0 +1,179 @@
+package com.example.quiz.service;
+
+import java.util.SplittableRandom;
+
+/**
+ * 顺序统计树（带子树大小的 treap）：键为 (总分, 用户ID)，总分降序、同分按用户ID升序
+ * 插入、删除、按名次取键与求名次均为期望 O(log n)；不是线程安全的，由调用方加锁
+ */
+public final class RankTree {
+
+    private static final class Node {
+        final double total;
+        final long userId;
+        final int priority;
+        int size = 1;
+        Node left;
+        Node right;
+
+        Node(double total, long userId, int priority) {
+            this.total = total;
+            this.userId = userId;
+            this.priority = priority;
+        }
+    }
+
+    public record Key(double total, long userId) {
+    }
+
+    private final SplittableRandom random = new SplittableRandom(0x5EED_1234L);
+    private Node root;
+
+    public int size() {
+        return size(root);
+    }
+
+    public void clear() {
+        root = null;
+    }
+
+    public void insert(double total, long userId) {
+        root = insert(root, new Node(total, userId, random.nextInt()));
+    }
+
+    /**
+     * 键不存在时返回 false
+     */
+    public boolean remove(double total, long userId) {
+        int before = size(root);
+        root = remove(root, total, userId);
+        return size(root) < before;
+    }
+
+    /**
+     * 排在 (total, userId) 之前的键数
+     */
+    public int countBefore(double total, long userId) {
+        int count = 0;
+        Node node = root;
+        while (node != null) {
+            if (compare(node.total, node.userId, total, userId) < 0) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 总分严格高于 total 的键数，即并列排名时的名次减一
+     */
+    public int countHigher(double total) {
+        return countBefore(total, Long.MIN_VALUE);
+    }
+
+    /**
+     * 第 index 个键（从 0 开始）
+     */
+    public Key get(int index) {
+        if (index < 0 || index >= size(root)) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        Node node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return new Key(node.total, node.userId);
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    static int compare(double total1, long userId1, double total2, long userId2) {
+        int c = Double.compare(total2, total1);
+        return c != 0 ? c : Long.compare(userId1, userId2);
+    }
+
+    private static Node insert(Node node, Node inserted) {
+        if (node == null) {
+            return inserted;
+        }
+        if (inserted.priority > node.priority) {
+            Node[] parts = split(node, inserted.total, inserted.userId);
+            inserted.left = parts[0];
+            inserted.right = parts[1];
+            return update(inserted);
+        }
+        if (compare(inserted.total, inserted.userId, node.total, node.userId) < 0) {
+            node.left = insert(node.left, inserted);
+        } else {
+            node.right = insert(node.right, inserted);
+        }
+        return update(node);
+    }
+
+    private static Node remove(Node node, double total, long userId) {
+        if (node == null) {
+            return null;
+        }
+        int c = compare(total, userId, node.total, node.userId);
+        if (c == 0) {
+            return merge(node.left, node.right);
+        }
+        if (c < 0) {
+            node.left = remove(node.left, total, userId);
+        } else {
+            node.right = remove(node.right, total, userId);
+        }
+        return update(node);
+    }
+
+    /**
+     * 拆分为排在键之前与之后（含相等）的两棵树
+     */
+    private static Node[] split(Node node, double total, long userId) {
+        if (node == null) {
+            return new Node[2];
+        }
+        if (compare(node.total, node.userId, total, userId) < 0) {
+            Node[] parts = split(node.right, total, userId);
+            node.right = parts[0];
+            parts[0] = update(node);
+            return parts;
+        }
+        Node[] parts = split(node.left, total, userId);
+        node.left = parts[1];
+        parts[1] = update(node);
+        return parts;
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            return update(left);
+        }
+        right.left = merge(left, right.left);
+        return update(right);
+    }
+
+    private static Node update(Node node) {
+        node.size = size(node.left) + size(node.right) + 1;
+        return node;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.quiz.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 题目评分规则（data.json 中题目的 rubric）编译后的形式：关键词与必须出现的代码片段分别编译为一个 Aho-Corasick 自动机，
+ * 正则各自预编译；对答案正文（去掉标签）一次扫描得出命中项，按权重折算为建议分
+ * <pre>
+ * "rubric": {
+ *   "keywords": ["沙箱", {"text": "YARA", "weight": 2}, {"regex": "黑名单|白名单"}],
+ *   "code_tokens": ["import requests"],
+ *   "min_length": 50,
+ *   "max_length": 20000,
+ *   "length_penalty": 0.5
+ * }
+ * </pre>
+ * 关键词不区分大小写，代码片段区分大小写；正文长度超出范围时建议分乘以 length_penalty
+ */
+public final class ScoringRubric {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int MAX_NOTE_LENGTH = 500;
+
+    private record Item(String label, double weight) {
+    }
+
+    /**
+     * @param score 建议分（保留一位小数，不超过总分）
+     * @param note  命中与缺少的评分项，供阅卷人核对
+     */
+    public record Suggestion(double score, String note) {
+    }
+
+    private final List<Item> keywordItems = new ArrayList<>();
+    private final List<Item> codeItems = new ArrayList<>();
+    private final List<Item> regexItems = new ArrayList<>();
+    private final List<Pattern> regexes = new ArrayList<>();
+    private final AhoCorasick keywords;
+    private final AhoCorasick codeTokens;
+    private final int minLength;
+    private final int maxLength;
+    private final double lengthPenalty;
+    private final double totalWeight;
+
+    private ScoringRubric(JsonNode node) {
+        List<String> keywordPatterns = new ArrayList<>();
+        for (JsonNode keyword : node.path("keywords")) {
+            double weight = keyword.path("weight").asDouble(1.0);
+            if (keyword.isTextual()) {
+                keywordPatterns.add(keyword.asText().toLowerCase(Locale.ROOT));
+                keywordItems.add(new Item(keyword.asText(), 1.0));
+            } else if (keyword.hasNonNull("regex")) {
+                String regex = keyword.get("regex").asText();
+                regexes.add(Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE));
+                regexItems.add(new Item(regex, weight));
+            } else if (keyword.hasNonNull("text")) {
+                keywordPatterns.add(keyword.get("text").asText().toLowerCase(Locale.ROOT));
+                keywordItems.add(new Item(keyword.get("text").asText(), weight));
+            } else {
+                throw new IllegalArgumentException("keyword needs text or regex: " + keyword);
+            }
+        }
+        List<String> codePatterns = new ArrayList<>();
+        double codeWeight = node.path("code_weight").asDouble(1.0);
+        for (JsonNode token : node.path("code_tokens")) {
+            codePatterns.add(token.asText());
+            codeItems.add(new Item(token.asText(), codeWeight));
+        }
+        this.keywords = new AhoCorasick(keywordPatterns);
+        this.codeTokens = new AhoCorasick(codePatterns);
+        this.minLength = node.path("min_length").asInt(0);
+        this.maxLength = node.path("max_length").asInt(Integer.MAX_VALUE);
+        this.lengthPenalty = node.path("length_penalty").asDouble(0.5);
+        double weight = 0;
+        for (List<Item> items : List.of(keywordItems, codeItems, regexItems)) {
+            for (Item item : items) {
+                if (item.weight() < 0) {
+                    throw new IllegalArgumentException("negative weight: " + item.label());
+                }
+                weight += item.weight();
+            }
+        }
+        this.totalWeight = weight;
+    }
+
+    /**
+     * 格式错误或正则无法编译时抛出 IllegalArgumentException
+     */
+    public static ScoringRubric parse(String json) {
+        try {
+            JsonNode node = MAPPER.readTree(json);
+            if (node == null || !node.isObject()) {
+                throw new IllegalArgumentException("rubric must be an object");
+            }
+            return new ScoringRubric(node);
+        } catch (JsonProcessingException | PatternSyntaxException e) {
+            throw new IllegalArgumentException("invalid rubric: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 按命中项的权重占比折算建议分；没有评分项时只按长度判断
+     */
+    public Suggestion evaluate(String html, double totalScore) {
+        String text = SearchTokenizer.plainText(html);
+        double matched = 0;
+        List<String> hits = new ArrayList<>();
+        List<String> misses = new ArrayList<>();
+        matched += collect(keywordItems, keywords.matches(text.toLowerCase(Locale.ROOT)), hits, misses);
+        matched += collect(codeItems, codeTokens.matches(text), hits, misses);
+        BitSet regexHits = new BitSet(regexes.size());
+        for (int i = 0; i < regexes.size(); i++) {
+            if (regexes.get(i).matcher(text).find()) {
+                regexHits.set(i);
+            }
+        }
+        matched += collect(regexItems, regexHits, hits, misses);
+
+        double fraction = totalWeight > 0 ? matched / totalWeight : 1.0;
+        int length = text.length();
+        boolean lengthOk = length >= minLength && length <= maxLength;
+        if (!lengthOk) {
+            fraction *= lengthPenalty;
+        }
+        double score = Math.min(totalScore, Math.round(totalScore * fraction * 10) / 10.0);
+
+        StringBuilder note = new StringBuilder();
+        if (!hits.isEmpty()) {
+            note.append("命中: ").append(String.join(", ", hits));
+        }
+        if (!misses.isEmpty()) {
+            note.append(note.length() > 0 ? "；" : "").append("缺少: ").append(String.join(", ", misses));
+        }
+        if (!lengthOk) {
+            note.append(note.length() > 0 ? "；" : "").append("长度 ").append(length).append(" 超出范围");
+        }
+        return new Suggestion(score, note.length() > MAX_NOTE_LENGTH ? note.substring(0, MAX_NOTE_LENGTH) : note.toString());
+    }
+
+    private static double collect(List<Item> items, BitSet found, List<String> hits, List<String> misses) {
+        double matched = 0;
+        for (int i = 0; i < items.size(); i++) {
+            if (found.get(i)) {
+                matched += items.get(i).weight();
+                hits.add(items.get(i).label());
+            } else {
+                misses.add(items.get(i).label());
+            }
+        }
+        return matched;
+    }
+}
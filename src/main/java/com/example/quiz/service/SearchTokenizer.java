@@ -0,0 +1,138 @@
+package com.example.quiz.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * 搜索分词：答案 HTML 去标签（内嵌图片在属性中随标签一起去掉）后，
+ * 字母数字按连续串切分并转小写，中日韩文字切为二元组（索引时另加单字，支持单字查询）
+ */
+public final class SearchTokenizer {
+
+    private static final Pattern SCRIPT_OR_STYLE = Pattern.compile("(?is)<(script|style)\\b.*?</\\1\\s*>");
+    private static final Pattern TAG = Pattern.compile("<[^>]*>");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /** 超长的字母数字串（如 base64 文本）截断，避免撑大词典 */
+    private static final int MAX_TOKEN_LENGTH = 64;
+
+    private SearchTokenizer() {
+    }
+
+    /**
+     * 去掉标签、脚本与样式，解码常见实体并合并空白
+     */
+    public static String plainText(String html) {
+        if (html == null || html.isEmpty()) {
+            return "";
+        }
+        String text = html.indexOf('<') >= 0 ? TAG.matcher(SCRIPT_OR_STYLE.matcher(html).replaceAll(" ")).replaceAll(" ") : html;
+        if (text.indexOf('&') >= 0) {
+            text = decodeEntities(text);
+        }
+        return WHITESPACE.matcher(text).replaceAll(" ").trim();
+    }
+
+    /**
+     * 索引用分词：中日韩文字输出单字与二元组
+     */
+    public static List<String> indexTokens(String text) {
+        return tokenize(text, true);
+    }
+
+    /**
+     * 查询用分词（去重）：中日韩文字连续两字以上只用二元组，单字时用单字
+     */
+    public static List<String> queryTokens(String query) {
+        return new ArrayList<>(new LinkedHashSet<>(tokenize(query, false)));
+    }
+
+    private static List<String> tokenize(String text, boolean indexing) {
+        List<String> tokens = new ArrayList<>();
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            int cp = text.codePointAt(i);
+            if (isCjk(cp)) {
+                List<String> chars = new ArrayList<>();
+                while (i < n && isCjk(cp = text.codePointAt(i))) {
+                    chars.add(new String(Character.toChars(cp)));
+                    i += Character.charCount(cp);
+                }
+                if (chars.size() == 1 || indexing) {
+                    tokens.addAll(chars);
+                }
+                for (int k = 0; k + 1 < chars.size(); k++) {
+                    tokens.add(chars.get(k) + chars.get(k + 1));
+                }
+            } else if (isWordChar(cp)) {
+                int start = i;
+                while (i < n && isWordChar(cp = text.codePointAt(i)) && !isCjk(cp)) {
+                    i += Character.charCount(cp);
+                }
+                String token = text.substring(start, Math.min(i, start + MAX_TOKEN_LENGTH)).toLowerCase(Locale.ROOT);
+                tokens.add(token);
+            } else {
+                i += Character.charCount(cp);
+            }
+        }
+        return tokens;
+    }
+
+    static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL;
+    }
+
+    private static boolean isWordChar(int cp) {
+        return Character.isLetterOrDigit(cp) || cp == '_';
+    }
+
+    private static String decodeEntities(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        int n = text.length();
+        for (int i = 0; i < n; i++) {
+            char c = text.charAt(i);
+            int semicolon = c == '&' ? text.indexOf(';', i) : -1;
+            if (semicolon < 0 || semicolon - i > 10) {
+                sb.append(c);
+                continue;
+            }
+            String entity = text.substring(i + 1, semicolon);
+            String decoded = switch (entity) {
+                case "nbsp" -> " ";
+                case "lt" -> "<";
+                case "gt" -> ">";
+                case "amp" -> "&";
+                case "quot" -> "\"";
+                case "apos" -> "'";
+                default -> decodeNumeric(entity);
+            };
+            if (decoded == null) {
+                sb.append(c);
+                continue;
+            }
+            sb.append(decoded);
+            i = semicolon;
+        }
+        return sb.toString();
+    }
+
+    private static String decodeNumeric(String entity) {
+        if (entity.length() < 2 || entity.charAt(0) != '#') {
+            return null;
+        }
+        try {
+            int cp = entity.charAt(1) == 'x' || entity.charAt(1) == 'X'
+                    ? Integer.parseInt(entity.substring(2), 16)
+                    : Integer.parseInt(entity.substring(1));
+            return Character.isValidCodePoint(cp) ? new String(Character.toChars(cp)) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
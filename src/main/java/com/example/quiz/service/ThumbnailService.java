@@ -0,0 +1,313 @@
+package com.example.quiz.service;
+
+import com.example.quiz.repository.AnswerContentRepository;
+import com.example.quiz.repository.AnswerContentView;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批阅列表缩略图：在固定大小的后台线程池中用 ImageIO 为答案内嵌图片与外部存储（ImageStore）引用的图片
+ * 生成缩小的 JPEG，按图片哈希缓存在磁盘
+ * 保存答案后提交生成；预览列表遇到尚未生成的图片也会提交，缩略图接口可短暂等待生成结果
+ * 指标：quiz.thumbnails.generated、quiz.thumbnails.failed、quiz.thumbnails.rejected、quiz.thumbnails.queue
+ */
+@Service
+public class ThumbnailService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ThumbnailService.class);
+
+    private final AnswerContentRepository answerContentRepository;
+    private final ImageStore imageStore;
+    private final Path directory;
+    private final int maxEdge;
+    private final long minBytes;
+    private final float quality;
+    private final ThreadPoolExecutor executor;
+    private final ConcurrentHashMap<Long, CompletableFuture<Void>> pending = new ConcurrentHashMap<>();
+    /** ImageIO 无法识别或过大的图片，预览中保留原图，不再反复尝试 */
+    private final Set<String> unsupported = ConcurrentHashMap.newKeySet();
+    private final Counter generated;
+    private final Counter failed;
+    private final Counter rejected;
+
+    public ThumbnailService(AnswerContentRepository answerContentRepository,
+                            ImageStore imageStore,
+                            @Value("${app.thumbnails.dir:data/thumbnails}") String directory,
+                            @Value("${app.thumbnails.max-edge:320}") int maxEdge,
+                            @Value("${app.thumbnails.min-bytes:16384}") long minBytes,
+                            @Value("${app.thumbnails.jpeg-quality:0.8}") float quality,
+                            @Value("${app.thumbnails.threads:2}") int threads,
+                            @Value("${app.thumbnails.queue-capacity:1000}") int queueCapacity,
+                            MeterRegistry meterRegistry) {
+        this.answerContentRepository = answerContentRepository;
+        this.imageStore = imageStore;
+        this.directory = Paths.get(directory);
+        this.maxEdge = maxEdge;
+        this.minBytes = minBytes;
+        this.quality = quality;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread thread = new Thread(r, "thumbnail-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.generated = Counter.builder("quiz.thumbnails.generated").register(meterRegistry);
+        this.failed = Counter.builder("quiz.thumbnails.failed").register(meterRegistry);
+        this.rejected = Counter.builder("quiz.thumbnails.rejected").register(meterRegistry);
+        Gauge.builder("quiz.thumbnails.queue", executor, e -> e.getQueue().size()).register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 图片是否需要缩略图：小图直接内嵌在预览中，缩略后也省不了多少字节
+     */
+    public boolean shouldThumbnail(EmbeddedImages.Image image) {
+        return image.decodedSize() >= minBytes && !unsupported.contains(image.hash());
+    }
+
+    /**
+     * 外部存储的图片按文件大小判断，文件不存在时不需要
+     */
+    private boolean shouldThumbnail(String name) {
+        if (unsupported.contains(ImageStore.hashOf(name))) {
+            return false;
+        }
+        try {
+            Optional<Path> file = imageStore.find(name);
+            return file.isPresent() && Files.size(file.get()) >= minBytes;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public Optional<Path> find(String hash) {
+        Path file = fileFor(hash);
+        return Files.exists(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    /**
+     * 提交答案的缩略图生成；同一答案已在排队时不重复提交，队列满时放弃（之后由预览或缩略图接口再次提交）
+     */
+    public CompletableFuture<Void> submit(long answerId) {
+        CompletableFuture<Void> created = new CompletableFuture<>();
+        CompletableFuture<Void> existing = pending.putIfAbsent(answerId, created);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generateForAnswer(answerId);
+                    created.complete(null);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Thumbnail generation failed. answerId={}", answerId, e);
+                    created.completeExceptionally(e);
+                } finally {
+                    pending.remove(answerId, created);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            pending.remove(answerId, created);
+            created.completeExceptionally(e);
+        }
+        return created;
+    }
+
+    /**
+     * 缩略图已存在时直接返回，否则提交生成并至多等待 timeoutMillis
+     */
+    public Optional<Path> await(long answerId, String hash, long timeoutMillis) {
+        Optional<Path> existing = find(hash);
+        if (existing.isPresent()) {
+            return existing;
+        }
+        try {
+            submit(answerId).get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            LOGGER.debug("Thumbnail not ready. answerId={}, hash={}", answerId, hash);
+        }
+        return find(hash);
+    }
+
+    /**
+     * 预览用答案 HTML：较大的内嵌图片与外部图片引用替换为缩略图地址，原图由批阅页点击后按 /image/ 地址加载
+     * 有尚未生成的缩略图时提交该答案的生成任务，缩略图接口会短暂等待
+     */
+    public String previewHtml(long answerId, String html) {
+        List<EmbeddedImages.Image> images = EmbeddedImages.find(html);
+        boolean[] missing = new boolean[1];
+        String preview = EmbeddedImages.rewrite(html, images, image -> {
+            if (!shouldThumbnail(image)) {
+                return null;
+            }
+            if (!missing[0] && !find(image.hash()).isPresent()) {
+                missing[0] = true;
+            }
+            return thumbnailUrl(answerId, image.hash());
+        });
+        preview = ImageStore.rewrite(preview, name -> {
+            if (!shouldThumbnail(name)) {
+                return null;
+            }
+            String hash = ImageStore.hashOf(name);
+            if (!missing[0] && !find(hash).isPresent()) {
+                missing[0] = true;
+            }
+            return thumbnailUrl(answerId, hash);
+        });
+        if (missing[0]) {
+            submit(answerId);
+        }
+        return preview;
+    }
+
+    public static String thumbnailUrl(long answerId, String hash) {
+        return "/grading/answer/" + answerId + "/thumbnail/" + hash;
+    }
+
+    public static String imageUrl(long answerId, String hash) {
+        return "/grading/answer/" + answerId + "/image/" + hash;
+    }
+
+    /**
+     * 为答案中所有需要缩略图且尚未生成的图片生成缩略图，在线程池中执行
+     */
+    void generateForAnswer(long answerId) {
+        Optional<AnswerContentView> view = answerContentRepository.findContentViewById(answerId);
+        if (!view.isPresent()) {
+            return;
+        }
+        String html = view.get().getContentText();
+        for (EmbeddedImages.Image image : EmbeddedImages.find(html)) {
+            if (!shouldThumbnail(image) || find(image.hash()).isPresent()) {
+                continue;
+            }
+            generate(answerId, image.hash(), image.mimeType(), () -> EmbeddedImages.decode(html, image));
+        }
+        for (String name : ImageStore.references(html)) {
+            String hash = ImageStore.hashOf(name);
+            if (!shouldThumbnail(name) || find(hash).isPresent()) {
+                continue;
+            }
+            generate(answerId, hash, name, () -> Files.readAllBytes(imageStore.find(name).orElseThrow()));
+        }
+    }
+
+    private interface ImageSource {
+        byte[] read() throws IOException;
+    }
+
+    /**
+     * @param source 日志用：内嵌图片的 MIME 类型或外部图片的文件名
+     */
+    private void generate(long answerId, String hash, String source, ImageSource bytes) {
+        try {
+            if (writeThumbnail(bytes.read(), hash)) {
+                generated.increment();
+            } else {
+                unsupported.add(hash);
+                failed.increment();
+            }
+        } catch (IOException | RuntimeException e) {
+            unsupported.add(hash);
+            failed.increment();
+            LOGGER.warn("Thumbnail generation failed. answerId={}, hash={}, source={}", answerId, hash, source, e);
+        }
+    }
+
+    /**
+     * 按目标尺寸做子采样读取，避免把原图完整解码到内存，再平滑缩放到 max-edge 并写为 JPEG（透明背景填白）
+     * 无法识别或过大的图片返回 false
+     */
+    boolean writeThumbnail(byte[] source, String hash) throws IOException {
+        // 子采样后长边不小于两倍目标尺寸，缩放仍然平滑
+        BufferedImage decoded = EmbeddedImages.decodeSubsampled(source, maxEdge * 2);
+        if (decoded == null) {
+            return false;
+        }
+
+        double scale = Math.min(1.0, (double) maxEdge / Math.max(decoded.getWidth(), decoded.getHeight()));
+        int width = Math.max(1, (int) Math.round(decoded.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(decoded.getHeight() * scale));
+        BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = thumbnail.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.drawImage(decoded, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, hash, ".tmp");
+        try {
+            ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+            try (ImageOutputStream output = ImageIO.createImageOutputStream(temp.toFile())) {
+                writer.setOutput(output);
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(quality);
+                writer.write(null, new IIOImage(thumbnail, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            // 同一图片可能被并发生成，原子替换保证读到的总是完整文件
+            Files.move(temp, fileFor(hash), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return true;
+    }
+
+    private Path fileFor(String hash) {
+        if (!hash.matches("[0-9a-f]{32}")) {
+            throw new IllegalArgumentException("invalid image hash: " + hash);
+        }
+        return directory.resolve(hash + ".jpg");
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.quiz.tool;
+
+import com.example.quiz.QuizLoginDemoApplication;
+import com.example.quiz.backup.BackupManifest;
+import com.example.quiz.backup.BackupRepository;
+import com.example.quiz.backup.BackupVerifier;
+import com.example.quiz.backup.IoThrottle;
+import com.example.quiz.service.AnswerExportService;
+import com.example.quiz.service.DatabaseBackupService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 离线导出：从备份（zip 或分块仓库快照）还原到临时目录，打开还原出的副本生成与判题页面相同的
+ * 答案 ZIP 与得分 CSV，不访问正在运行的数据库，可在其他机器上执行；旧版本表结构的备份先在副本上迁移
+ * 除只读的图片目录外，应用读写的文件都在本次运行的临时目录中，后台任务（备份、迁移、回填、压缩、检索、查重）不启动
+ *
+ * <pre>
+ * mvn compile exec:java -Dexec.mainClass=com.example.quiz.tool.OfflineExporter \
+ *     -Dexec.args="--backup=data/backups/pocdb_20260101_020000.zip --out=export"
+ * java -cp poc_web.jar -Dloader.main=com.example.quiz.tool.OfflineExporter \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher --snapshot=pocdb_20260101_020000
+ * </pre>
+ *
+ * 参数：
+ * --backup 备份 zip 路径（与 --snapshot 二选一）
+ * --snapshot 分块仓库中的快照名
+ * --repository 分块仓库目录（默认 data/backups/repository）
+ * --out 输出目录（默认 export）
+ * --threads 并行线程数：快照恢复与答案 HTML 渲染（默认 CPU 核数）
+ * --what 导出内容：answers、scores 或 all（默认 all）
+ * --images 外部图片存储目录（默认 data/images），答案 ZIP 中的 images/ 从这里读取；分块仓库快照自带图片目录，忽略此参数
+ * --archive 冷归档目录（默认 data/archive），已归档章节的答案与得分从这里读取；分块仓库快照自带归档目录，忽略此参数
+ */
+public final class OfflineExporter {
+
+    private static final String DB_FILE_SUFFIX = ".mv.db";
+    private static final String WORK_DIR = "work";
+
+    private final Options options;
+
+    private OfflineExporter(Options options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        if ((options.backup == null) == (options.snapshot == null)) {
+            throw new IllegalArgumentException("exactly one of --backup or --snapshot is required");
+        }
+        new OfflineExporter(options).run();
+    }
+
+    private void run() throws Exception {
+        Path out = Paths.get(options.out).toAbsolutePath().normalize();
+        Files.createDirectories(out);
+        Path scratch = Files.createTempDirectory("poc-export");
+        long start = System.nanoTime();
+        try {
+            if (options.backup != null) {
+                // 解压时同时校验 CRC 与可打开性，导出在临时目录删除前完成
+                // zip 中没有归档目录：复制 --archive 到临时目录，打开归档时清理未完成文件不会动到原目录
+                Path archive = scratch.resolve("archive-copy");
+                copyDirectory(Paths.get(options.archive), archive);
+                BackupVerifier.verify(Paths.get(options.backup), scratch.resolve("backup"), IoThrottle.unlimited(),
+                        (dir, verified) -> export(dir, dbName(verified.entries().stream().map(BackupManifest.Entry::name).toList()),
+                                Paths.get(options.images), archive, scratch.resolve(WORK_DIR), out));
+            } else {
+                BackupRepository repository = new BackupRepository(Paths.get(options.repository), new ObjectMapper(), options.threads);
+                // 快照自带图片与归档目录时使用还原出的副本，早期快照没有时仍从 --images、--archive 读取
+                Path restored = scratch.resolve("snapshot");
+                BackupRepository.Snapshot snapshot = repository.restore(options.snapshot, restored);
+                Path images = restored.resolve(DatabaseBackupService.IMAGES_PREFIX);
+                Path archive = restored.resolve(DatabaseBackupService.ARCHIVE_PREFIX);
+                if (!Files.isDirectory(archive)) {
+                    archive = scratch.resolve("archive-copy");
+                    copyDirectory(Paths.get(options.archive), archive);
+                }
+                export(restored, dbName(snapshot.files().stream().map(BackupRepository.FileEntry::name).toList()),
+                        Files.isDirectory(images) ? images : Paths.get(options.images), archive,
+                        scratch.resolve(WORK_DIR), out);
+            }
+        } finally {
+            deleteRecursively(scratch);
+        }
+        System.out.printf("Export done in %.1fs: %s%n", (System.nanoTime() - start) / 1e9, out);
+    }
+
+    /**
+     * @param images 只读取的图片目录
+     * @param archive 归档目录（还原出的副本或临时复制）
+     * @param work 本次运行的临时目录：其余读写文件的服务（修订日志、缩略图、检索快照、回填检查点、诊断日志、应用日志、备份仓库）都指向这里，
+     *             不会读到或写坏 data/ 下正在运行的实例的文件；后台任务全部关闭
+     */
+    private void export(Path dir, String dbName, Path images, Path archive, Path work, Path out) throws IOException {
+        // 打开的是还原出的副本而不是备份本身：可写打开，旧版本的备份先经表结构迁移升级为当前布局再导出
+        String url = "jdbc:h2:file:" + dir.resolve(dbName).toAbsolutePath() + ";IFEXISTS=TRUE";
+        Path workDir = work.toAbsolutePath();
+        Files.createDirectories(workDir);
+        try (ConfigurableApplicationContext context = SpringApplication.run(QuizLoginDemoApplication.class,
+                "--spring.main.web-application-type=none",
+                "--spring.datasource.url=" + url,
+                "--spring.jpa.hibernate.ddl-auto=update",
+                "--spring.jpa.show-sql=false",
+                "--spring.h2.console.enabled=false",
+                "--app.data-sync.enabled=false",
+                "--app.answer-content.migrate-on-startup=false",
+                "--app.db-backup.cron=-",
+                "--app.db-backup.dir=" + workDir.resolve("backups"),
+                "--app.image-store.dir=" + images.toAbsolutePath(),
+                "--app.image-ingest.enabled=false",
+                "--app.image-ingest.originals-dir=",
+                "--app.image-backfill.resume-on-startup=false",
+                "--app.image-backfill.checkpoint=" + workDir.resolve("image-backfill.properties"),
+                "--app.thumbnails.dir=" + workDir.resolve("thumbnails"),
+                "--app.archive.dir=" + archive.toAbsolutePath(),
+                "--app.search.enabled=false",
+                "--app.search.index-file=" + workDir.resolve("search-index.bin"),
+                "--app.similarity.enabled=false",
+                "--app.revisions.enabled=false",
+                "--app.revisions.dir=" + workDir.resolve("revisions"),
+                "--app.revisions.compact-cron=-",
+                "--app.diagnostics.file=" + workDir.resolve("debug.log"),
+                "--app.log-dir=" + workDir,
+                "--logging.level.root=WARN")) {
+            AnswerExportService exportService = context.getBean(AnswerExportService.class);
+            String date = LocalDate.now().format(DateTimeFormatter.ofPattern("yyMMdd"));
+            if (!"scores".equals(options.what)) {
+                Path zip = out.resolve("poc_answer_" + date + ".zip");
+                try (OutputStream os = Files.newOutputStream(zip)) {
+                    exportService.writeAnswersZip(os, options.threads);
+                }
+                System.out.printf("Answers: %s (%.1f MB)%n", zip, Files.size(zip) / 1048576.0);
+            }
+            if (!"answers".equals(options.what)) {
+                Path csv = out.resolve("poc_score_" + date + ".csv");
+                try (OutputStream os = Files.newOutputStream(csv)) {
+                    exportService.writeScoresCsv(os);
+                }
+                System.out.printf("Scores: %s%n", csv);
+            }
+        }
+    }
+
+    private static String dbName(List<String> fileNames) throws IOException {
+        return fileNames.stream()
+                .filter(name -> name.endsWith(DB_FILE_SUFFIX))
+                .map(name -> name.substring(0, name.length() - DB_FILE_SUFFIX.length()))
+                .findFirst()
+                .orElseThrow(() -> new IOException("Backup contains no database file"));
+    }
+
+    /**
+     * 复制目录下的文件（不含写入中的 .tmp）；源目录不存在时只创建空目录
+     */
+    private static void copyDirectory(Path source, Path target) throws IOException {
+        Files.createDirectories(target);
+        if (!Files.isDirectory(source)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(source)) {
+            for (Path path : paths.filter(Files::isRegularFile)
+                    .filter(path -> !path.getFileName().toString().endsWith(".tmp")).toList()) {
+                Path copy = target.resolve(source.relativize(path).toString());
+                Files.createDirectories(copy.getParent());
+                Files.copy(path, copy);
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    static final class Options {
+        String backup;
+        String snapshot;
+        String repository = "data/backups/repository";
+        String out = "export";
+        int threads = Runtime.getRuntime().availableProcessors();
+        String what = "all";
+        String images = "data/images";
+        String archive = "data/archive";
+
+        static Options parse(String[] args) {
+            Options o = new Options();
+            for (String arg : args) {
+                String[] kv = arg.replaceFirst("^--", "").split("=", 2);
+                if (kv.length != 2) {
+                    throw new IllegalArgumentException("invalid argument: " + arg);
+                }
+                switch (kv[0]) {
+                    case "backup": o.backup = kv[1]; break;
+                    case "snapshot": o.snapshot = kv[1]; break;
+                    case "repository": o.repository = kv[1]; break;
+                    case "out": o.out = kv[1]; break;
+                    case "threads": o.threads = Integer.parseInt(kv[1]); break;
+                    case "what": o.what = kv[1]; break;
+                    case "images": o.images = kv[1]; break;
+                    case "archive": o.archive = kv[1]; break;
+                    default: throw new IllegalArgumentException("unknown argument: " + arg);
+                }
+            }
+            if (!List.of("all", "answers", "scores").contains(o.what)) {
+                throw new IllegalArgumentException("--what must be all, answers or scores: " + o.what);
+            }
+            return o;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+-- V1：答案内容从 answers 表搬到 answer_contents（主键即答案ID），补齐 content_length 后删除 answers 上的内容列
+-- 旧库可能只有 content（明文）或同时有 content_gz（压缩），先补齐缺少的列，使下面的语句对两种布局都适用
+-- H2 的 DDL 会自动提交，语句都可重复执行：中途失败时下次启动从头再执行一遍，已搬迁的答案不会重复插入
+ALTER TABLE answers ADD COLUMN IF NOT EXISTS content CLOB;
+ALTER TABLE answers ADD COLUMN IF NOT EXISTS content_gz BLOB;
+ALTER TABLE answers ADD COLUMN IF NOT EXISTS content_length INT;
+
+CREATE TABLE IF NOT EXISTS answer_contents (
+    answer_id BIGINT PRIMARY KEY,
+    content CLOB,
+    content_gz BLOB,
+    FOREIGN KEY (answer_id) REFERENCES answers(id) ON DELETE CASCADE
+);
+
+UPDATE answers SET content_length = LENGTH(content) WHERE content_length IS NULL AND content IS NOT NULL;
+
+INSERT INTO answer_contents (answer_id, content, content_gz)
+SELECT a.id, a.content, a.content_gz FROM answers a
+WHERE NOT EXISTS (SELECT 1 FROM answer_contents c WHERE c.answer_id = a.id);
+
+ALTER TABLE answers DROP COLUMN content;
+ALTER TABLE answers DROP COLUMN content_gz;
@@ -0,0 +1,11 @@
+-- V2：每个用户每道题只有一个答案行，answers 加唯一约束 (question_id, user_id)
+-- 此前并发的首次保存可能各插入一行：保留 ID 最小的一行（流式保存一直取这一行），其余答案行连同内容删除
+-- 语句都可重复执行：中途失败时下次启动从头再执行一遍
+DELETE FROM answer_contents WHERE answer_id IN (
+    SELECT a.id FROM answers a WHERE EXISTS (
+        SELECT 1 FROM answers b WHERE b.question_id = a.question_id AND b.user_id = a.user_id AND b.id < a.id));
+
+DELETE FROM answers a WHERE EXISTS (
+    SELECT 1 FROM answers b WHERE b.question_id = a.question_id AND b.user_id = a.user_id AND b.id < a.id);
+
+ALTER TABLE answers ADD CONSTRAINT IF NOT EXISTS uk_answers_question_user UNIQUE (question_id, user_id);
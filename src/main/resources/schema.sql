@@ -24,14 +24,21 @@ CREATE TABLE IF NOT EXISTS questions (
     FOREIGN KEY (chapter_id) REFERENCES chapters(id)
 );
 
--- 创建答案表
+-- 创建答案表（内容在 answer_contents）
 CREATE TABLE IF NOT EXISTS answers (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
-    content VARCHAR(5000),
     created_at TIMESTAMP,
     updated_at TIMESTAMP,
     question_id BIGINT,
     user_id BIGINT,
     FOREIGN KEY (question_id) REFERENCES questions(id),
-    FOREIGN KEY (user_id) REFERENCES users(id)
-);
\ No newline at end of file
+    FOREIGN KEY (user_id) REFERENCES users(id),
+    CONSTRAINT uk_answers_question_user UNIQUE (question_id, user_id)
+);
+-- 创建答案内容表
+CREATE TABLE IF NOT EXISTS answer_contents (
+    answer_id BIGINT PRIMARY KEY,
+    content CLOB,
+    content_gz BLOB,
+    FOREIGN KEY (answer_id) REFERENCES answers(id) ON DELETE CASCADE
+);
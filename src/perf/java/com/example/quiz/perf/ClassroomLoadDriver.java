@@ -0,0 +1,421 @@
+package com.example.quiz.perf;
+
+import com.example.quiz.QuizLoginDemoApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 课堂压测驱动：在随机端口、临时 H2 文件上启动应用，模拟 N 个学生答题自动保存、M 个阅卷人评分
+ *
+ * <pre>
+ * mvn -Pperf test-compile exec:exec@load -Dload.args="--students=60 --graders=3 --duration=120 --image-kb=800"
+ * </pre>
+ *
+ * 参数：
+ * --students 并发学生数（默认 30）
+ * --graders 并发阅卷人数（默认 2）
+ * --duration 压测时长秒数（默认 60）
+ * --image-kb 每次粘贴图片大小 KB（默认 512，0 表示不贴图）
+ * --autosave-ms 自动保存间隔毫秒（默认 2000，与 quiz.html 一致）
+ * --saves-per-question 每道题自动保存次数（默认 3）
+ */
+public final class ClassroomLoadDriver {
+
+    private static final Pattern QUESTION_ID_PATTERN = Pattern.compile("data-question-id=\"(\\d+)\"");
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Options options;
+    private final HttpClient client;
+    private final Map<String, LatencyStats> stats = new ConcurrentHashMap<>();
+    private final AtomicLong peakHeapBytes = new AtomicLong();
+    private final AtomicLong workerRestarts = new AtomicLong();
+    private long unfinishedWorkers;
+    private String baseUrl;
+    private volatile boolean running = true;
+
+    private ClassroomLoadDriver(Options options) {
+        this.options = options;
+        this.client = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        Path workDir = Files.createTempDirectory("poc-load-");
+        ConfigurableApplicationContext context = null;
+        try {
+            Path dataJson = writeDataJson(workDir, options);
+            context = SpringApplication.run(QuizLoginDemoApplication.class,
+                    "--server.port=0",
+                    "--spring.datasource.url=jdbc:h2:file:" + workDir.resolve("pocdb").toAbsolutePath() + ";DB_CLOSE_DELAY=-1",
+                    "--app.data-sync.location=file:" + dataJson.toAbsolutePath(),
+                    "--app.db-backup.dir=" + workDir.resolve("backups").toAbsolutePath(),
+                    "--app.revisions.dir=" + workDir.resolve("revisions").toAbsolutePath(),
+                    "--app.search.index-file=" + workDir.resolve("search-index.bin").toAbsolutePath(),
+                    "--app.thumbnails.dir=" + workDir.resolve("thumbnails").toAbsolutePath(),
+                    "--app.image-store.dir=" + workDir.resolve("images").toAbsolutePath(),
+                    "--app.image-backfill.checkpoint=" + workDir.resolve("image-backfill.properties").toAbsolutePath(),
+                    "--app.archive.dir=" + workDir.resolve("archive").toAbsolutePath(),
+                    "--app.diagnostics.file=" + workDir.resolve("debug.log").toAbsolutePath(),
+                    "--app.log-dir=" + workDir.toAbsolutePath(),
+                    "--spring.jpa.show-sql=false",
+                    "--logging.level.root=WARN");
+            int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            ClassroomLoadDriver driver = new ClassroomLoadDriver(options);
+            driver.baseUrl = "http://127.0.0.1:" + port;
+            driver.run();
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+            deleteRecursively(workDir);
+        }
+    }
+
+    private void run() throws Exception {
+        List<Long> questionIds = discoverQuestionIds();
+        if (questionIds.isEmpty()) {
+            throw new IllegalStateException("no questions found in quiz page");
+        }
+        System.out.printf("Load start: students=%d, graders=%d, duration=%ds, imageKb=%d, questions=%d, url=%s%n",
+                options.students, options.graders, options.durationSeconds, options.imageKb, questionIds.size(), baseUrl);
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> peakHeapBytes.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                0, 100, TimeUnit.MILLISECONDS);
+
+        int workers = options.students + options.graders;
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        CountDownLatch done = new CountDownLatch(workers);
+        long start = System.nanoTime();
+        for (int i = 1; i <= options.students; i++) {
+            String username = "student" + i;
+            long seed = i;
+            pool.submit(() -> runWorker(done, () -> simulateStudent(username, questionIds, new Random(seed))));
+        }
+        for (int i = 1; i <= options.graders; i++) {
+            long seed = 10_000L + i;
+            pool.submit(() -> runWorker(done, () -> simulateGrader(questionIds, new Random(seed))));
+        }
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(options.durationSeconds));
+        running = false;
+        if (!done.await(60, TimeUnit.SECONDS)) {
+            unfinishedWorkers = done.getCount();
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        pool.shutdownNow();
+        sampler.shutdownNow();
+
+        printReport(elapsedNanos);
+    }
+
+    /**
+     * 失败的请求已在 send 中按接口计入错误；其余意外异常（如响应解析失败）让该学生/阅卷人从头重新开始，
+     * 压测期间始终保持设定的并发数，重新开始的次数单独统计
+     */
+    private void runWorker(CountDownLatch done, Task task) {
+        try {
+            while (running) {
+                try {
+                    task.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    if (running) {
+                        workerRestarts.incrementAndGet();
+                        Thread.sleep(500);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            done.countDown();
+        }
+    }
+
+    private void simulateStudent(String username, List<Long> questionIds, Random random) throws Exception {
+        String login = "username=" + encode(username) + "&password=" + encode("student123");
+        send("POST /login", HttpRequest.newBuilder(uri("/login"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(login)));
+        send("GET /quiz", HttpRequest.newBuilder(uri("/quiz?username=" + encode(username))).GET());
+        // 与 quiz.html 一致：打开页面取一次启动数据，切题时题目已在本地，只对已作答的题取答案
+        send("GET /quiz/bootstrap", HttpRequest.newBuilder(uri("/quiz/bootstrap?username=" + encode(username))).GET());
+        Set<Long> answered = new HashSet<>();
+
+        while (running) {
+            Long questionId = questionIds.get(random.nextInt(questionIds.size()));
+            if (answered.contains(questionId)) {
+                // 与浏览器一致接受 gzip，服务端直接发送压缩存储的字节
+                send("GET /quiz/answer/{id}/content", HttpRequest.newBuilder(uri("/quiz/answer/" + questionId + "/content?username=" + encode(username)))
+                        .header("Accept-Encoding", "gzip").GET());
+            }
+            answered.add(questionId);
+
+            StringBuilder content = new StringBuilder("<p>").append(PerfFixtures.chineseText(200, random.nextLong())).append("</p>");
+            if (options.imageKb > 0) {
+                content.append("<img src=\"").append(PerfFixtures.base64Image(options.imageKb * 1024, random.nextLong())).append("\"><br>");
+            }
+            for (int i = 0; i < options.savesPerQuestion && running; i++) {
+                Thread.sleep(options.autosaveMillis);
+                content.append("<p>").append(PerfFixtures.chineseText(40, random.nextLong())).append("</p>");
+                saveAnswer(username, questionId, content.toString());
+            }
+        }
+    }
+
+    private void saveAnswer(String username, Long questionId, String content) throws Exception {
+        // 与 quiz.html 一致，内容作为原始请求体流式上传
+        send("PUT /quiz/answer/{id}/content", HttpRequest.newBuilder(uri("/quiz/answer/" + questionId + "/content?username=" + encode(username)))
+                .header("Content-Type", "text/html; charset=utf-8")
+                .PUT(HttpRequest.BodyPublishers.ofString(content, StandardCharsets.UTF_8)));
+    }
+
+    private void simulateGrader(List<Long> questionIds, Random random) throws Exception {
+        while (running) {
+            Long questionId = questionIds.get(random.nextInt(questionIds.size()));
+            HttpResponse<String> response = send("GET /grading/question/{id}/answers",
+                    HttpRequest.newBuilder(uri("/grading/question/" + questionId + "/answers")).GET());
+            if (response == null || response.statusCode() != 200) {
+                Thread.sleep(500);
+                continue;
+            }
+            int scored = 0;
+            for (JsonNode answer : MAPPER.readTree(response.body())) {
+                if (scored >= 5 || !running) {
+                    break;
+                }
+                int totalScore = Math.max(0, answer.path("totalScore").asInt(0));
+                String form = "answerId=" + answer.path("answerId").asLong() + "&score=" + random.nextInt(totalScore + 1)
+                        + "&remark=" + encode("压测评分");
+                send("POST /grading/updateScore", HttpRequest.newBuilder(uri("/grading/updateScore"))
+                        .header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(HttpRequest.BodyPublishers.ofString(form)));
+                scored++;
+            }
+            Thread.sleep(1000);
+        }
+    }
+
+    private HttpResponse<String> send(String endpoint, HttpRequest.Builder request) throws InterruptedException {
+        long begin = System.nanoTime();
+        try {
+            HttpResponse<String> response = client.send(request.timeout(Duration.ofSeconds(60)).build(),
+                    HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            record(endpoint, System.nanoTime() - begin, response.statusCode() < 400);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            record(endpoint, System.nanoTime() - begin, false);
+            return null;
+        }
+    }
+
+    private void record(String endpoint, long nanos, boolean ok) {
+        stats.computeIfAbsent(endpoint, k -> new LatencyStats()).record(nanos, ok);
+    }
+
+    private List<Long> discoverQuestionIds() throws Exception {
+        HttpResponse<String> page = client.send(HttpRequest.newBuilder(uri("/quiz?username=student1")).GET().build(),
+                HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        List<Long> ids = new ArrayList<>();
+        Matcher matcher = QUESTION_ID_PATTERN.matcher(page.body());
+        while (matcher.find()) {
+            ids.add(Long.parseLong(matcher.group(1)));
+        }
+        return ids;
+    }
+
+    private void printReport(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.println();
+        System.out.printf("%-36s %8s %8s %10s %10s %10s %10s %9s%n",
+                "endpoint", "count", "errors", "p50(ms)", "p95(ms)", "p99(ms)", "max(ms)", "req/s");
+        long total = 0;
+        long errors = 0;
+        for (Map.Entry<String, LatencyStats> e : new TreeMap<>(stats).entrySet()) {
+            LatencyStats s = e.getValue();
+            long[] sorted = s.sortedNanos();
+            total += s.count();
+            errors += s.errors();
+            System.out.printf("%-36s %8d %8d %10.1f %10.1f %10.1f %10.1f %9.1f%n",
+                    e.getKey(), s.count(), s.errors(),
+                    percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99),
+                    sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6,
+                    s.count() / seconds);
+        }
+        System.out.println();
+        System.out.printf("Total: requests=%d, errors=%d, throughput=%.1f req/s, elapsed=%.1fs%n", total, errors, total / seconds, seconds);
+        System.out.printf("Worker restarts after unexpected errors: %d%n", workerRestarts.get());
+        if (unfinishedWorkers > 0) {
+            System.out.printf("WARNING: %d of %d workers were still running 60s after the run ended and were cut off%n",
+                    unfinishedWorkers, options.students + options.graders);
+        }
+        // 服务端与驱动在同一个 JVM 中：该值包含驱动自身的请求内容、图片与 HttpClient 缓冲区，且按 100ms 采样，可能漏掉短暂的峰值
+        System.out.printf("Peak heap used (driver + server, same JVM, sampled every 100 ms): %.1f MB (max %.1f MB)%n",
+                peakHeapBytes.get() / 1048576.0, Runtime.getRuntime().maxMemory() / 1048576.0);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    private static String encode(String s) {
+        return URLEncoder.encode(s, StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * 以 classpath 中 data.json 的题库为基础，生成 admin + N 个学生的同步文件
+     */
+    private static Path writeDataJson(Path workDir, Options options) throws IOException {
+        ObjectNode root;
+        try (InputStream is = new ClassPathResource("data.json").getInputStream()) {
+            root = (ObjectNode) MAPPER.readTree(is);
+        }
+        ArrayNode users = MAPPER.createArrayNode();
+        users.addObject().put("username", "admin").put("password", "123456");
+        for (int i = 1; i <= options.students; i++) {
+            users.addObject().put("username", "student" + i).put("password", "student123");
+        }
+        root.set("users", users);
+        JsonNode chapters = root.path("chapters");
+        if (!chapters.isArray() || chapters.isEmpty()) {
+            throw new IllegalStateException("classpath data.json has no chapters");
+        }
+        Path file = workDir.resolve("data.json");
+        MAPPER.writeValue(file.toFile(), root);
+        return file;
+    }
+
+    private static void deleteRecursively(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException ignored) {
+                }
+            });
+        } catch (IOException ignored) {
+        }
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    /**
+     * 单个接口的延迟样本与错误计数
+     */
+    private static final class LatencyStats {
+        private long[] samples = new long[1024];
+        private int size;
+        private long errors;
+
+        synchronized void record(long nanos, boolean ok) {
+            if (size == samples.length) {
+                samples = Arrays.copyOf(samples, size * 2);
+            }
+            samples[size++] = nanos;
+            if (!ok) {
+                errors++;
+            }
+        }
+
+        synchronized long[] sortedNanos() {
+            long[] copy = Arrays.copyOf(samples, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+
+        synchronized long count() {
+            return size;
+        }
+
+        synchronized long errors() {
+            return errors;
+        }
+    }
+
+    static final class Options {
+        int students = 30;
+        int graders = 2;
+        int durationSeconds = 60;
+        int imageKb = 512;
+        long autosaveMillis = 2000;
+        int savesPerQuestion = 3;
+
+        static Options parse(String[] args) {
+            Options o = new Options();
+            for (String arg : args) {
+                String[] kv = arg.replaceFirst("^--", "").split("=", 2);
+                if (kv.length != 2) {
+                    throw new IllegalArgumentException("invalid argument: " + arg);
+                }
+                switch (kv[0]) {
+                    case "students": o.students = Integer.parseInt(kv[1]); break;
+                    case "graders": o.graders = Integer.parseInt(kv[1]); break;
+                    case "duration": o.durationSeconds = Integer.parseInt(kv[1]); break;
+                    case "image-kb": o.imageKb = Integer.parseInt(kv[1]); break;
+                    case "autosave-ms": o.autosaveMillis = Long.parseLong(kv[1]); break;
+                    case "saves-per-question": o.savesPerQuestion = Integer.parseInt(kv[1]); break;
+                    default: throw new IllegalArgumentException("unknown argument: " + arg);
+                }
+            }
+            return o;
+        }
+    }
+}
@@ -0,0 +1,442 @@
+package com.example.quiz.perf;
+
+import ch.qos.logback.classic.Level;
+import com.example.quiz.backup.BackupManifest;
+import com.example.quiz.backup.BackupVerifier;
+import com.example.quiz.backup.IoThrottle;
+import com.example.quiz.model.Answer;
+import com.example.quiz.model.AnswerContent;
+import com.example.quiz.model.AnswerContentCodec;
+import com.example.quiz.model.Chapter;
+import com.example.quiz.model.Question;
+import com.example.quiz.model.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 批量合成数据生成器：直接写入 H2 文件，用于导出、判题等场景的规模基准
+ * 不启动应用上下文：表结构由 Hibernate 按实体生成（与应用使用相同的命名策略），数据经连接池用多线程批量 JDBC 写入，
+ * 最后通过 BACKUP TO 生成可复用快照并校验、写出清单，格式与 DatabaseBackupService#backupTo 相同
+ *
+ * <pre>
+ * mvn -Pperf test-compile exec:exec@seed -Dseed.args="--users=1000 --questions=500 --image-mix=0:90,20:8,200:2"
+ * </pre>
+ *
+ * 参数：
+ * --db 目标数据库路径，不含 .mv.db（默认 data/seed/pocdb，必须不存在或为空库）
+ * --users 学生数（默认 1000）
+ * --questions 题目数（默认 500，每章 20 题）
+ * --answer-rate 每个 (学生, 题目) 作答概率（默认 1.0）
+ * --image-mix 图片大小分布，格式 KB:百分比，逗号分隔（默认 0:95,20:4,200:1）
+ * --scored-rate 已评分答案比例（默认 0.5）
+ * --seed 随机种子（默认 42），相同参数生成相同数据
+ * --threads 写入线程数（默认 CPU 核数）
+ * --snapshot 快照 zip 路径（默认 &lt;db&gt;_snapshot.zip，none 表示不生成）
+ */
+public final class DatasetSeeder {
+
+    private static final int BATCH_SIZE = 500;
+    private static final int QUESTIONS_PER_CHAPTER = 20;
+    private static final int IMAGE_VARIANTS = 8;
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2026, 1, 1, 9, 0);
+
+    private final Options options;
+    private final DataSource dataSource;
+    private final List<ImageBucket> imageBuckets;
+
+    private DatasetSeeder(Options options, DataSource dataSource) {
+        this.options = options;
+        this.dataSource = dataSource;
+        this.imageBuckets = options.imageBuckets();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        Path db = Paths.get(options.db).toAbsolutePath().normalize();
+        if (Files.exists(Paths.get(db + ".mv.db"))) {
+            throw new IllegalStateException("target database already exists: " + db + ".mv.db");
+        }
+        Files.createDirectories(db.getParent());
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+
+        long start = System.nanoTime();
+        String url = "jdbc:h2:file:" + db;
+        try (HikariDataSource dataSource = new HikariDataSource()) {
+            dataSource.setJdbcUrl(url);
+            dataSource.setUsername("sa");
+            dataSource.setPassword("");
+            dataSource.setMaximumPoolSize(options.threads + 2);
+            createSchema(dataSource);
+            new DatasetSeeder(options, dataSource).seed(db);
+
+            if (!"none".equals(options.snapshot)) {
+                Path snapshot = options.snapshot != null ? Paths.get(options.snapshot) : Paths.get(db + "_snapshot.zip");
+                long backupStart = System.nanoTime();
+                backupTo(dataSource, snapshot.toAbsolutePath().normalize());
+                System.out.printf("Snapshot: %s (%.1f MB, %.1fs)%n", snapshot.toAbsolutePath(),
+                        Files.size(snapshot) / 1048576.0, (System.nanoTime() - backupStart) / 1e9);
+            }
+        }
+        System.out.printf("Seed done in %.1fs%n", (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * 只生成实体对应的表与索引；命名策略与 Spring Boot 默认一致，列名与应用 ddl-auto 建出的相同
+     */
+    private static void createSchema(DataSource dataSource) {
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+                .applySetting(AvailableSettings.DATASOURCE, dataSource)
+                .applySetting(AvailableSettings.HBM2DDL_AUTO, "create")
+                .build();
+        try {
+            // 建表在构建 SessionFactory 时完成，之后立即关闭，数据写入不经过 Hibernate
+            Metadata metadata = new MetadataSources(registry)
+                    .addAnnotatedClasses(User.class, Chapter.class, Question.class, Answer.class, AnswerContent.class)
+                    .getMetadataBuilder()
+                    .applyImplicitNamingStrategy(new SpringImplicitNamingStrategy())
+                    .applyPhysicalNamingStrategy(new CamelCaseToUnderscoresNamingStrategy())
+                    .build();
+            metadata.buildSessionFactory().close();
+        } finally {
+            StandardServiceRegistryBuilder.destroy(registry);
+        }
+    }
+
+    /**
+     * BACKUP TO 写入 .part，校验可打开并统计行数后改名，旁边写出 {@code <zip>.manifest.json}
+     */
+    private static void backupTo(DataSource dataSource, Path target) throws Exception {
+        Path partial = target.resolveSibling(target.getFileName() + ".part");
+        Path scratch = target.resolveSibling(target.getFileName() + ".verify");
+        long start = System.nanoTime();
+        BackupVerifier.Result verified;
+        long size;
+        try {
+            try (Connection conn = dataSource.getConnection(); Statement st = conn.createStatement()) {
+                st.execute("BACKUP TO '" + partial.toString().replace("'", "''") + "'");
+            }
+            verified = BackupVerifier.verify(partial, scratch, IoThrottle.unlimited());
+            size = Files.size(partial);
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+        BackupManifest manifest = new BackupManifest(target.getFileName().toString(), Instant.now().toString(), size,
+                verified.sha256(), (System.nanoTime() - start) / 1_000_000, verified.entries(), verified.rowCounts());
+        new ObjectMapper().writerWithDefaultPrettyPrinter()
+                .writeValue(target.resolveSibling(target.getFileName() + BackupManifest.SUFFIX).toFile(), manifest);
+    }
+
+    private void seed(Path db) throws Exception {
+        long start = System.nanoTime();
+        List<Long> questionIds = insertCatalog();
+        List<Long> userIds = insertUsers();
+        System.out.printf("Catalog and users: questions=%d, users=%d (%.1fs)%n",
+                questionIds.size(), userIds.size(), (System.nanoTime() - start) / 1e9);
+
+        long answersStart = System.nanoTime();
+        AtomicLong answers = new AtomicLong();
+        AtomicLong contentChars = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(options.threads);
+        try {
+            // 按学生切分给各线程，每个线程独立连接、独立事务批量提交
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < options.threads; t++) {
+                int worker = t;
+                futures.add(pool.submit(() -> {
+                    insertAnswers(userIds, questionIds, worker, answers, contentChars);
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - answersStart) / 1e9;
+        System.out.printf("Answers: %d rows, %.1f MB content, %.1fs (%.0f rows/s)%n",
+                answers.get(), contentChars.get() / 1048576.0, seconds, answers.get() / seconds);
+
+        writeDataJson(Paths.get(db + "_data.json"));
+    }
+
+    private List<Long> insertCatalog() throws Exception {
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            int chapterCount = (options.questions + QUESTIONS_PER_CHAPTER - 1) / QUESTIONS_PER_CHAPTER;
+            List<Long> chapterIds = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO chapters (title, description, sort_order) VALUES (?, NULL, ?)", Statement.RETURN_GENERATED_KEYS)) {
+                for (int c = 1; c <= chapterCount; c++) {
+                    ps.setString(1, chapterTitle(c));
+                    ps.setInt(2, c);
+                    ps.executeUpdate();
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        keys.next();
+                        chapterIds.add(keys.getLong(1));
+                    }
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO questions (title, description, question_number, sort_order, total_score, chapter_id) VALUES (?, ?, ?, ?, ?, ?)")) {
+                for (int q = 0; q < options.questions; q++) {
+                    int chapter = q / QUESTIONS_PER_CHAPTER + 1;
+                    int order = q % QUESTIONS_PER_CHAPTER + 1;
+                    ps.setString(1, questionTitle(q + 1));
+                    ps.setString(2, PerfFixtures.chineseText(120, options.seed + q));
+                    ps.setString(3, chapter + "." + order);
+                    ps.setInt(4, order);
+                    ps.setDouble(5, 10.0);
+                    ps.setLong(6, chapterIds.get(chapter - 1));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            conn.commit();
+            return selectIds(conn, "SELECT id FROM questions ORDER BY id");
+        }
+    }
+
+    private List<Long> insertUsers() throws Exception {
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement("INSERT INTO users (username, password) VALUES (?, ?)")) {
+                ps.setString(1, "admin");
+                ps.setString(2, "123456");
+                ps.addBatch();
+                for (int u = 1; u <= options.users; u++) {
+                    ps.setString(1, "student" + u);
+                    ps.setString(2, "student123");
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            conn.commit();
+            return selectIds(conn, "SELECT id FROM users WHERE username <> 'admin' ORDER BY id");
+        }
+    }
+
+    private void insertAnswers(List<Long> userIds, List<Long> questionIds, int worker,
+                               AtomicLong answers, AtomicLong contentChars) throws Exception {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "INSERT INTO answers (score, remark, created_at, updated_at, question_id, user_id, content_length, content_version) VALUES (?, ?, ?, ?, ?, ?, ?, 1)",
+                     Statement.RETURN_GENERATED_KEYS);
+             PreparedStatement contentPs = conn.prepareStatement(
+                     "INSERT INTO answer_contents (answer_id, content_gz) VALUES (?, ?)")) {
+            conn.setAutoCommit(false);
+            List<byte[]> pending = new ArrayList<>(BATCH_SIZE);
+            for (int u = worker; u < userIds.size(); u += options.threads) {
+                // 每个学生一个独立随机源，结果与线程数无关
+                Random random = new Random(options.seed * 1_000_003L + u);
+                for (int q = 0; q < questionIds.size(); q++) {
+                    if (random.nextDouble() >= options.answerRate) {
+                        continue;
+                    }
+                    String content = answerContent(random);
+                    Timestamp created = Timestamp.valueOf(BASE_TIME.plusMinutes(random.nextInt(60 * 24 * 7)));
+                    if (random.nextDouble() < options.scoredRate) {
+                        ps.setDouble(1, random.nextInt(11));
+                        ps.setString(2, random.nextInt(4) == 0 ? "批量生成评分" : null);
+                    } else {
+                        ps.setNull(1, java.sql.Types.DOUBLE);
+                        ps.setNull(2, java.sql.Types.VARCHAR);
+                    }
+                    ps.setTimestamp(3, created);
+                    ps.setTimestamp(4, Timestamp.valueOf(created.toLocalDateTime().plusMinutes(random.nextInt(120))));
+                    ps.setLong(5, questionIds.get(q));
+                    ps.setLong(6, userIds.get(u));
+                    ps.setInt(7, content.length());
+                    ps.addBatch();
+                    // 与应用默认的 gzip 存储模式一致
+                    pending.add(AnswerContentCodec.gzip(content));
+                    contentChars.addAndGet(content.length());
+                    if (pending.size() == BATCH_SIZE) {
+                        flushAnswers(conn, ps, contentPs, pending);
+                        answers.addAndGet(BATCH_SIZE);
+                    }
+                }
+            }
+            if (!pending.isEmpty()) {
+                int count = pending.size();
+                flushAnswers(conn, ps, contentPs, pending);
+                answers.addAndGet(count);
+            }
+        }
+    }
+
+    /**
+     * 先批量插入答案取回自增ID，再按相同顺序批量插入内容
+     */
+    private static void flushAnswers(Connection conn, PreparedStatement ps, PreparedStatement contentPs,
+                                     List<byte[]> pending) throws Exception {
+        ps.executeBatch();
+        try (ResultSet keys = ps.getGeneratedKeys()) {
+            for (byte[] gzip : pending) {
+                if (!keys.next()) {
+                    throw new IllegalStateException("missing generated answer id");
+                }
+                contentPs.setLong(1, keys.getLong(1));
+                contentPs.setBytes(2, gzip);
+                contentPs.addBatch();
+            }
+        }
+        contentPs.executeBatch();
+        conn.commit();
+        pending.clear();
+    }
+
+    private String answerContent(Random random) {
+        String text = PerfFixtures.chineseText(80 + random.nextInt(400), random.nextLong());
+        int roll = random.nextInt(100);
+        for (ImageBucket bucket : imageBuckets) {
+            if (roll < bucket.cumulativePercent) {
+                if (bucket.variants.length == 0) {
+                    break;
+                }
+                String image = bucket.variants[random.nextInt(bucket.variants.length)];
+                return "<p>" + text + "</p><img src=\"" + image + "\" style=\"max-width: 100%; height: auto;\"><br>";
+            }
+        }
+        return "<p>" + text + "</p>";
+    }
+
+    private void writeDataJson(Path file) throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode root = mapper.createObjectNode();
+        ArrayNode users = root.putArray("users");
+        users.addObject().put("username", "admin").put("password", "123456");
+        for (int u = 1; u <= options.users; u++) {
+            users.addObject().put("username", "student" + u).put("password", "student123");
+        }
+        ArrayNode chapters = root.putArray("chapters");
+        ObjectNode chapter = null;
+        for (int q = 0; q < options.questions; q++) {
+            if (q % QUESTIONS_PER_CHAPTER == 0) {
+                chapter = chapters.addObject().put("title", chapterTitle(q / QUESTIONS_PER_CHAPTER + 1));
+                chapter.putArray("questions");
+            }
+            ((ArrayNode) chapter.get("questions")).addObject()
+                    .put("title", questionTitle(q + 1))
+                    .put("description", PerfFixtures.chineseText(120, options.seed + q))
+                    .put("total_score", 10);
+        }
+        mapper.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), root);
+        System.out.printf("Matching data.json: %s (use with --app.data-sync.location=file:...)%n", file);
+    }
+
+    private static List<Long> selectIds(Connection conn, String sql) throws Exception {
+        List<Long> ids = new ArrayList<>();
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                ids.add(rs.getLong(1));
+            }
+        }
+        return ids;
+    }
+
+    private static String chapterTitle(int chapter) {
+        return "第" + chapter + "章 合成数据";
+    }
+
+    private static String questionTitle(int number) {
+        return "合成题目 " + number;
+    }
+
+    /**
+     * 图片大小档位：累计百分比与预生成的若干图片（同档复用，避免生成随机数据成为瓶颈）
+     */
+    private static final class ImageBucket {
+        final int cumulativePercent;
+        final String[] variants;
+
+        ImageBucket(int cumulativePercent, int kb, long seed) {
+            this.cumulativePercent = cumulativePercent;
+            this.variants = new String[kb > 0 ? IMAGE_VARIANTS : 0];
+            for (int i = 0; i < variants.length; i++) {
+                variants[i] = PerfFixtures.base64Image(kb * 1024, seed + i);
+            }
+        }
+    }
+
+    static final class Options {
+        String db = "data/seed/pocdb";
+        int users = 1000;
+        int questions = 500;
+        double answerRate = 1.0;
+        String imageMix = "0:95,20:4,200:1";
+        double scoredRate = 0.5;
+        long seed = 42;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String snapshot;
+
+        List<ImageBucket> imageBuckets() {
+            List<ImageBucket> buckets = new ArrayList<>();
+            int cumulative = 0;
+            for (String part : imageMix.split(",")) {
+                String[] kv = part.trim().split(":");
+                int kb = Integer.parseInt(kv[0]);
+                cumulative += Integer.parseInt(kv[1]);
+                buckets.add(new ImageBucket(cumulative, kb, seed * 31 + kb));
+            }
+            if (cumulative != 100) {
+                throw new IllegalArgumentException("image-mix percentages must sum to 100: " + imageMix);
+            }
+            return buckets;
+        }
+
+        static Options parse(String[] args) {
+            Options o = new Options();
+            for (String arg : args) {
+                String[] kv = arg.replaceFirst("^--", "").split("=", 2);
+                if (kv.length != 2) {
+                    throw new IllegalArgumentException("invalid argument: " + arg);
+                }
+                switch (kv[0]) {
+                    case "db": o.db = kv[1]; break;
+                    case "users": o.users = Integer.parseInt(kv[1]); break;
+                    case "questions": o.questions = Integer.parseInt(kv[1]); break;
+                    case "answer-rate": o.answerRate = Double.parseDouble(kv[1]); break;
+                    case "image-mix": o.imageMix = kv[1]; break;
+                    case "scored-rate": o.scoredRate = Double.parseDouble(kv[1]); break;
+                    case "seed": o.seed = Long.parseLong(kv[1]); break;
+                    case "threads": o.threads = Integer.parseInt(kv[1]); break;
+                    case "snapshot": o.snapshot = kv[1]; break;
+                    default: throw new IllegalArgumentException("unknown argument: " + arg);
+                }
+            }
+            return o;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.quiz.perf;
+
+import com.example.quiz.dto.AnswerDTO;
+import com.example.quiz.dto.QuestionDTO;
+import com.example.quiz.model.AnswerContent;
+import com.example.quiz.model.Question;
+import com.example.quiz.model.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DTO 映射与 Jackson 序列化基准，ObjectMapper 与 Spring MVC 默认配置一致
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DtoSerializationBenchmark {
+
+    /** 答案内嵌图片大小（字节） */
+    @Param({"0", "1048576"})
+    public int imageBytes;
+
+    private ObjectMapper objectMapper;
+    private Question question;
+    private AnswerContent answer;
+    private AnswerDTO answerDTO;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        question = PerfFixtures.questions(1).get(0);
+        User user = PerfFixtures.users(1).get(0);
+        answer = PerfFixtures.answer(question, user, PerfFixtures.answerHtml(1500, imageBytes, 7));
+        answerDTO = AnswerDTO.from(answer, user.getUsername());
+    }
+
+    @Benchmark
+    public QuestionDTO mapQuestion() {
+        return QuestionDTO.from(question);
+    }
+
+    @Benchmark
+    public AnswerDTO mapAnswer() {
+        return AnswerDTO.from(answer, "student1");
+    }
+
+    @Benchmark
+    public byte[] serializeQuestion() throws Exception {
+        return objectMapper.writeValueAsBytes(QuestionDTO.from(question));
+    }
+
+    @Benchmark
+    public byte[] serializeAnswer() throws Exception {
+        return objectMapper.writeValueAsBytes(answerDTO);
+    }
+}
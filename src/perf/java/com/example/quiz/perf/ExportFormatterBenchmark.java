@@ -0,0 +1,59 @@
+package com.example.quiz.perf;
+
+import com.example.quiz.service.ExportFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 转义与文件名清洗基准：中文题干、超长 base64 答案两类输入
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExportFormatterBenchmark {
+
+    @Param({"chinese", "base64"})
+    public String input;
+
+    private String text;
+    private String username;
+
+    @Setup
+    public void setUp() {
+        if ("base64".equals(input)) {
+            text = PerfFixtures.answerHtml(200, 512 * 1024, 42);
+        } else {
+            text = PerfFixtures.chineseText(2000, 42);
+        }
+        username = "学生_张三 (2班)/" + input;
+    }
+
+    @Benchmark
+    public String escapeHtml() {
+        return ExportFormatter.escapeHtml(text);
+    }
+
+    @Benchmark
+    public String escapeCsv() {
+        return ExportFormatter.escapeCsv(text);
+    }
+
+    @Benchmark
+    public String sanitizeFilename() {
+        return ExportFormatter.sanitizeFilename(username);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.quiz.perf;
+
+import com.example.quiz.model.Question;
+import com.example.quiz.model.User;
+import com.example.quiz.service.ExportFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 导出基准：单用户答案 HTML 渲染、得分矩阵 CSV 生成
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExportRenderBenchmark {
+
+    @Param({"50"})
+    public int questionCount;
+
+    @Param({"200"})
+    public int userCount;
+
+    /** 每份答案内嵌图片大小（字节），0 表示纯文本 */
+    @Param({"0", "262144"})
+    public int imageBytes;
+
+    private List<Question> questions;
+    private List<User> users;
+    private Map<Long, String> contentByQuestionId;
+    private Map<Long, Map<Long, Double>> scores;
+
+    @Setup
+    public void setUp() {
+        questions = PerfFixtures.questions(questionCount);
+        users = PerfFixtures.users(userCount);
+        contentByQuestionId = new HashMap<>();
+        for (Question q : questions) {
+            contentByQuestionId.put(q.getId(), PerfFixtures.answerHtml(800, imageBytes, q.getId()));
+        }
+        scores = new HashMap<>();
+        for (Question q : questions) {
+            Map<Long, Double> byUser = new HashMap<>();
+            for (User u : users) {
+                if ((u.getId() + q.getId()) % 5 != 0) {
+                    byUser.put(u.getId(), (double) ((u.getId() * 7 + q.getId()) % 11));
+                }
+            }
+            scores.put(q.getId(), byUser);
+        }
+    }
+
+    @Benchmark
+    public String renderUserHtml() {
+        return ExportFormatter.renderUserHtml("student1", questions, contentByQuestionId);
+    }
+
+    @Benchmark
+    public String renderScoreCsv() {
+        return ExportFormatter.renderScoreCsv(users, questions, scores);
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.quiz.perf;
+
+import com.example.quiz.model.Answer;
+import com.example.quiz.model.AnswerContent;
+import com.example.quiz.model.Chapter;
+import com.example.quiz.model.Question;
+import com.example.quiz.model.User;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基准与压测共用的确定性测试数据：中文题干、带 base64 图片的答案 HTML
+ */
+public final class PerfFixtures {
+
+    private static final String CJK_SAMPLE = "请简述Java内存模型中volatile关键字的语义，并说明它与synchronized的区别。"
+            + "答：volatile保证可见性与有序性，但不保证原子性；synchronized通过监视器锁同时保证三者。"
+            + "在高并发场景下，应结合CAS、AQS以及线程池参数进行权衡，例如ConcurrentHashMap的分段设计。";
+
+    private PerfFixtures() {
+    }
+
+    /**
+     * 生成指定字符数的中英混排文本，包含需要转义的 HTML/CSV 特殊字符
+     */
+    public static String chineseText(int chars, long seed) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(chars);
+        while (sb.length() < chars) {
+            int start = random.nextInt(CJK_SAMPLE.length() - 10);
+            int len = Math.min(chars - sb.length(), 5 + random.nextInt(20));
+            sb.append(CJK_SAMPLE, start, Math.min(CJK_SAMPLE.length(), start + len));
+            switch (random.nextInt(8)) {
+                case 0: sb.append(" <code>List<String></code> "); break;
+                case 1: sb.append("\"引号\","); break;
+                case 2: sb.append(" & "); break;
+                case 3: sb.append('\n'); break;
+                default: break;
+            }
+        }
+        sb.setLength(chars);
+        return sb.toString();
+    }
+
+    /**
+     * 生成 data URI 形式的图片占位（随机字节，体积与真实截图一致）
+     */
+    public static String base64Image(int bytes, long seed) {
+        byte[] raw = new byte[bytes];
+        new Random(seed).nextBytes(raw);
+        return "data:image/png;base64," + Base64.getEncoder().encodeToString(raw);
+    }
+
+    /**
+     * 生成富文本答案：若干段文字，可选插入一张图片
+     */
+    public static String answerHtml(int textChars, int imageBytes, long seed) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<p>").append(chineseText(textChars, seed)).append("</p>");
+        if (imageBytes > 0) {
+            sb.append("<img src=\"").append(base64Image(imageBytes, seed)).append("\" style=\"max-width: 100%; height: auto;\"><br>");
+        }
+        return sb.toString();
+    }
+
+    public static List<Question> questions(int count) {
+        Chapter chapter = new Chapter("第一章 并发编程", null, 1);
+        chapter.setId(1L);
+        List<Question> questions = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            Question q = new Question("题目" + i + "：线程安全", chineseText(120, i), "1." + i, i, chapter);
+            q.setId((long) i);
+            q.setTotalScore(10.0);
+            questions.add(q);
+        }
+        return questions;
+    }
+
+    public static List<User> users(int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            User u = new User("student" + i, "pwd");
+            u.setId((long) i);
+            users.add(u);
+        }
+        return users;
+    }
+
+    public static AnswerContent answer(Question question, User user, String content) {
+        Answer answer = new Answer(question, user);
+        answer.setId(question.getId() * 100_000 + user.getId());
+        return new AnswerContent(answer, content, true);
+    }
+}
@@ -1,8 +1,10 @@
 package com.example.quiz;
 
 import com.example.quiz.model.Answer;
+import com.example.quiz.model.AnswerContent;
 import com.example.quiz.model.Question;
 import com.example.quiz.model.User;
+import com.example.quiz.repository.AnswerContentRepository;
 import com.example.quiz.repository.AnswerRepository;
 import com.example.quiz.repository.QuestionRepository;
 import com.example.quiz.repository.UserRepository;
@@ -23,7 +25,8 @@ import static org.junit.jupiter.api.Assertions.*;
 @SpringBootTest
 @TestPropertySource(properties = {
     "spring.datasource.url=jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1",
-    "spring.jpa.hibernate.ddl-auto=create-drop"
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "app.data-sync.enabled=true"
 })
 public class QuestionReorderTest {
 
@@ -36,6 +39,9 @@ public class QuestionReorderTest {
     @Autowired
     private AnswerRepository answerRepository;
 
+    @Autowired
+    private AnswerContentRepository answerContentRepository;
+
     @Autowired
     private UserRepository userRepository;
 
@@ -61,8 +67,10 @@ public class QuestionReorderTest {
         assertTrue(user.isPresent(), "User user1 should be present");
 
         // Save Answer for Question A
-        Answer answer = new Answer("Answer A", qA.get(), user.get());
+        Answer answer = new Answer(qA.get(), user.get());
+        AnswerContent body = new AnswerContent(answer, "Answer A", true);
         answerRepository.save(answer);
+        answerContentRepository.save(body);
 
         // Step 2: Sync V2 (Reorder)
         System.setProperty("app.data-sync.location", "classpath:data_v2.json");
@@ -79,7 +87,7 @@ public class QuestionReorderTest {
         // Verify Answer is still attached
         Optional<Answer> answer_v2 = answerRepository.findByQuestion_TitleAndUser("Question A", user.get());
         assertTrue(answer_v2.isPresent());
-        assertEquals("Answer A", answer_v2.get().getContent());
+        assertEquals("Answer A", answerContentRepository.findById(answer_v2.get().getId()).orElseThrow().getContent());
         
         // Verify Question C
         Optional<Question> qC = questionRepository.findByTitle("Question C");
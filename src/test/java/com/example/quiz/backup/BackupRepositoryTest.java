@@ -0,0 +1,97 @@
+package com.example.quiz.backup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分块仓库测试：跨快照与快照内去重、并行恢复与引用计数回收
+ */
+class BackupRepositoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void insertionInMiddleOnlyStoresNearbyChunks() throws Exception {
+        BackupRepository repository = new BackupRepository(tempDir.resolve("repo"), new ObjectMapper(), 4);
+        byte[] original = randomBytes(8 * 1024 * 1024, 1);
+        byte[] edited = new byte[original.length + 1000];
+        int middle = original.length / 2;
+        System.arraycopy(original, 0, edited, 0, middle);
+        System.arraycopy(randomBytes(1000, 2), 0, edited, middle, 1000);
+        System.arraycopy(original, middle, edited, middle + 1000, original.length - middle);
+
+        BackupRepository.Snapshot first = store(repository, "s1", original);
+        BackupRepository.Snapshot second = store(repository, "s2", edited);
+
+        int chunks = second.files().get(0).chunks().size();
+        assertTrue(chunks > 4, "8MB 应切分为多个块");
+        assertEquals(first.files().get(0).chunks().size(), first.newChunks());
+        assertTrue(second.newChunks() <= 2, "中间插入只应产生一两个新块，实际 " + second.newChunks());
+
+        Path restored = tempDir.resolve("restored");
+        repository.restore("s2", restored);
+        assertArrayEquals(edited, Files.readAllBytes(restored.resolve("pocdb.mv.db")));
+    }
+
+    @Test
+    void gcRemovesExpiredSnapshotsAndUnreferencedChunks() throws Exception {
+        BackupRepository repository = new BackupRepository(tempDir.resolve("repo"), new ObjectMapper(), 2);
+        store(repository, "s1", randomBytes(1024 * 1024, 3));
+        store(repository, "s2", randomBytes(1024 * 1024, 4));
+
+        BackupRepository.GcResult gc = repository.gc(Instant.now().plusSeconds(60));
+
+        assertEquals(1, gc.removedSnapshots(), "最新快照必须保留");
+        assertTrue(gc.removedChunks() > 0);
+        assertEquals(List.of("s2"), repository.listSnapshots().stream().map(BackupRepository.Snapshot::name).toList());
+        Path restored = tempDir.resolve("restored");
+        repository.restore("s2", restored);
+        assertArrayEquals(randomBytes(1024 * 1024, 4), Files.readAllBytes(restored.resolve("pocdb.mv.db")));
+    }
+
+    @Test
+    void repeatedChunksWithinOneSnapshotAreCountedOnce() throws Exception {
+        BackupRepository repository = new BackupRepository(tempDir.resolve("repo"), new ObjectMapper(), 4);
+        byte[] block = randomBytes(2 * 1024 * 1024, 5);
+        byte[] content = new byte[block.length * 6];
+        for (int i = 0; i < 6; i++) {
+            System.arraycopy(block, 0, content, i * block.length, block.length);
+        }
+
+        BackupRepository.Snapshot snapshot = store(repository, "s1", content);
+
+        List<BackupRepository.ChunkRef> refs = snapshot.files().get(0).chunks();
+        long distinct = refs.stream().map(BackupRepository.ChunkRef::hash).distinct().count();
+        assertTrue(distinct < refs.size(), "重复内容应切出相同的块");
+        assertEquals(distinct, snapshot.newChunks());
+        long chunkBytes;
+        try (var paths = Files.walk(tempDir.resolve("repo").resolve("chunks"))) {
+            chunkBytes = paths.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length()).sum();
+        }
+        assertEquals(chunkBytes, snapshot.addedBytes());
+    }
+
+    private BackupRepository.Snapshot store(BackupRepository repository, String name, byte[] content) throws Exception {
+        Path source = tempDir.resolve("source-" + name);
+        Files.createDirectories(source);
+        Files.write(source.resolve("pocdb.mv.db"), content);
+        return repository.store(name, source, List.of("pocdb.mv.db"), "sha", Map.of(), IoThrottle.unlimited());
+    }
+
+    private static byte[] randomBytes(int size, long seed) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.quiz.backup;
+
+import org.h2.store.fs.FilePath;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 限速路径测试：速率随路径传递，两个不同速率的路径互不影响，派生路径沿用原速率
+ */
+class ThrottledFilePathTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void rateTravelsWithThePath() throws Exception {
+        ThrottledFilePath.register();
+        Path file = tempDir.resolve("a.zip");
+        String slow = ThrottledFilePath.prefix(file.toString(), new IoThrottle(1024));
+        String fast = ThrottledFilePath.prefix(tempDir.resolve("b.zip").toString(), IoThrottle.unlimited());
+
+        assertEquals(1024, ThrottledFilePath.bytesPerSecond(FilePath.get(slow).toString()));
+        assertEquals(0, ThrottledFilePath.bytesPerSecond(FilePath.get(fast).toString()));
+        FilePath parent = FilePath.get(slow).getParent();
+        assertEquals(1024, ThrottledFilePath.bytesPerSecond(parent.toString()));
+        assertEquals(FilePath.get(tempDir.toString()).toString(), ((ThrottledFilePath) parent).unwrap().toString());
+
+        try (OutputStream out = FilePath.get(slow).newOutputStream(false)) {
+            out.write(new byte[]{1, 2, 3});
+        }
+        assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(file));
+        assertThrows(IllegalArgumentException.class, () -> ThrottledFilePath.bytesPerSecond("throttled:" + file));
+    }
+}
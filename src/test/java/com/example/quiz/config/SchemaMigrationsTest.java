@@ -0,0 +1,100 @@
+package com.example.quiz.config;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 表结构迁移测试：从 answers 表带内容列的旧布局开始，迁移后内容搬到 answer_contents、旧列删除，只执行一次；
+ * 同一用户同一题的重复答案行只保留一行并加上唯一约束
+ */
+class SchemaMigrationsTest {
+
+    /** 内容拆表之前、由实体生成的 answers 表布局 */
+    static final String LEGACY_ANSWERS = "CREATE TABLE answers (id BIGINT AUTO_INCREMENT PRIMARY KEY, content CLOB, "
+            + "score DOUBLE, remark VARCHAR(500), created_at TIMESTAMP, updated_at TIMESTAMP, "
+            + "question_id BIGINT NOT NULL, user_id BIGINT NOT NULL)";
+
+    @Test
+    void movesLegacyContentColumnOnce() throws SQLException {
+        JdbcDataSource dataSource = dataSource("legacy");
+        try (Connection connection = dataSource.getConnection(); Statement st = connection.createStatement()) {
+            st.execute(LEGACY_ANSWERS);
+            st.execute("INSERT INTO answers (content, score, question_id, user_id) VALUES ('<p>旧答案</p>', 5, 1, 1)");
+            st.execute("INSERT INTO answers (content, question_id, user_id) VALUES (NULL, 1, 2)");
+
+            assertEquals(2, SchemaMigrations.migrate(connection));
+
+            try (ResultSet rs = st.executeQuery("SELECT a.content_length, c.content FROM answers a "
+                    + "JOIN answer_contents c ON c.answer_id = a.id ORDER BY a.id")) {
+                assertTrue(rs.next());
+                assertEquals(10, rs.getInt(1));
+                assertEquals("<p>旧答案</p>", rs.getString(2));
+                assertTrue(rs.next());
+                assertNull(rs.getString(2));
+            }
+            try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS "
+                    + "WHERE TABLE_NAME = 'ANSWERS' AND COLUMN_NAME IN ('CONTENT', 'CONTENT_GZ')")) {
+                rs.next();
+                assertEquals(0, rs.getInt(1));
+            }
+            assertEquals(0, SchemaMigrations.migrate(connection), "已记录的版本不再执行");
+        }
+    }
+
+    @Test
+    void removesDuplicateAnswerRowsBeforeAddingUniqueConstraint() throws SQLException {
+        JdbcDataSource dataSource = dataSource("duplicates");
+        try (Connection connection = dataSource.getConnection(); Statement st = connection.createStatement()) {
+            st.execute(LEGACY_ANSWERS);
+            st.execute("INSERT INTO answers (content, question_id, user_id) VALUES ('<p>先插入</p>', 1, 1)");
+            st.execute("INSERT INTO answers (content, question_id, user_id) VALUES ('<p>并发插入</p>', 1, 1)");
+            st.execute("INSERT INTO answers (content, question_id, user_id) VALUES ('<p>另一题</p>', 2, 1)");
+
+            assertEquals(2, SchemaMigrations.migrate(connection));
+
+            try (ResultSet rs = st.executeQuery("SELECT a.question_id, c.content FROM answers a "
+                    + "JOIN answer_contents c ON c.answer_id = a.id ORDER BY a.id")) {
+                assertTrue(rs.next());
+                assertEquals("<p>先插入</p>", rs.getString(2));
+                assertTrue(rs.next());
+                assertEquals(2, rs.getInt(1));
+                assertFalse(rs.next());
+            }
+            try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM answer_contents")) {
+                rs.next();
+                assertEquals(2, rs.getInt(1));
+            }
+            assertThrows(SQLException.class,
+                    () -> st.execute("INSERT INTO answers (question_id, user_id) VALUES (1, 1)"));
+        }
+    }
+
+    @Test
+    void skippedWhenSchemaIsManagedExternally() throws SQLException {
+        JdbcDataSource dataSource = dataSource("external");
+        try (Connection connection = dataSource.getConnection(); Statement st = connection.createStatement()) {
+            st.execute(LEGACY_ANSWERS);
+            new SchemaMigrations(dataSource, new MockEnvironment().withProperty("spring.jpa.hibernate.ddl-auto", "none"))
+                    .migrate();
+            try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES "
+                    + "WHERE TABLE_NAME IN ('SCHEMA_VERSION', 'ANSWER_CONTENTS')")) {
+                rs.next();
+                assertEquals(0, rs.getInt(1));
+            }
+        }
+    }
+
+    private static JdbcDataSource dataSource(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:migrations-" + name + ";DB_CLOSE_DELAY=-1");
+        return dataSource;
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.quiz.controller;
+
+import com.example.quiz.model.*;
+import com.example.quiz.repository.*;
+import com.example.quiz.service.AnswerArchive;
+import com.example.quiz.service.AnswerExportService;
+import com.example.quiz.service.AnswerSearchIndex;
+import com.example.quiz.service.GradingQueue;
+import com.example.quiz.service.Leaderboard;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+import static org.hamcrest.Matchers.hasItems;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * 冷归档测试：归档在后台线程中读取已提交的数据，本测试不使用事务回滚，使用独立的内存库与归档目录
+ */
+@SpringBootTest
+@AutoConfigureWebMvc
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:archivedb;DB_CLOSE_DELAY=-1",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "app.data-sync.enabled=false",
+    "app.archive.dir=target/test-archive",
+    "app.archive.delete-batch-size=1"
+})
+class AnswerArchiveTest {
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ChapterRepository chapterRepository;
+
+    @Autowired
+    private QuestionRepository questionRepository;
+
+    @Autowired
+    private AnswerRepository answerRepository;
+
+    @Autowired
+    private AnswerContentRepository answerContentRepository;
+
+    @Autowired
+    private AnswerArchive answerArchive;
+
+    @Autowired
+    private AnswerExportService answerExportService;
+
+    @Autowired
+    private Leaderboard leaderboard;
+
+    @Autowired
+    private AnswerSearchIndex answerSearchIndex;
+
+    @Autowired
+    private GradingQueue gradingQueue;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeAll
+    static void cleanArchiveDir() throws IOException {
+        // 归档目录在首次使用时才打开，上次运行留下的段不会被读到
+        FileSystemUtils.deleteRecursively(Paths.get("target/test-archive"));
+    }
+
+    @Test
+    void archivedAnswersMoveToSegmentsAndStayReadable() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        userRepository.save(new User("admin", "123456"));
+        User student1 = userRepository.save(new User("s1", "p"));
+        User student2 = userRepository.save(new User("s2", "p"));
+        Chapter closed = chapterRepository.save(new Chapter("已考章节", "描述", 1));
+        Chapter open = chapterRepository.save(new Chapter("进行中章节", "描述", 2));
+        Question q1 = new Question("题目1", "描述", "1.1", 1, closed);
+        q1.setTotalScore(10.0);
+        q1 = questionRepository.save(q1);
+        Question q2 = questionRepository.save(new Question("题目2", "描述", "1.2", 2, closed));
+        Question q3 = questionRepository.save(new Question("题目3", "描述", "2.1", 1, open));
+
+        String content1 = "<p>s1 的答案</p>".repeat(50);
+        Answer a1 = save(q1, student1, content1, 8.0, "思路清晰");
+        Answer a2 = save(q1, student2, "<p>s2 的答案 unique archived words</p>", null, null);
+        save(q2, student1, "<p>第二题</p>", 2.0, null);
+        Answer a4 = save(q3, student1, "<p>进行中</p>", 1.0, null);
+        answerSearchIndex.reindexAfterCommit(a2.getId());
+        assertEquals(1, gradingQueue.remaining(q1.getId()));
+        awaitSearchTotal("archived", 1);
+
+        mockMvc.perform(post("/grading/archive").param("username", "s1").param("chapterIds", closed.getId().toString()))
+                .andExpect(status().isForbidden());
+        // 还有未评分的答案，需要确认
+        mockMvc.perform(post("/grading/archive").param("username", "admin").param("chapterIds", closed.getId().toString()))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.ungraded").value(1));
+        mockMvc.perform(post("/grading/archive").param("username", "admin").param("chapterIds", closed.getId().toString())
+                        .param("force", "true"))
+                .andExpect(status().isAccepted());
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (answerArchive.isRunning() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        AnswerArchive.Status status = answerArchive.getStatus();
+        assertEquals(AnswerArchive.STATE_COMPLETED, status.state());
+        assertEquals(3, status.answersArchived());
+        assertEquals(3, status.answersDeleted());
+        assertEquals(1, answerRepository.count(), "只留下进行中章节的答案");
+        assertEquals(1, answerContentRepository.count());
+        assertTrue(answerArchive.isArchived(q1.getId()));
+        assertFalse(answerArchive.isArchived(q3.getId()));
+        // 删掉的答案移出阅卷队列与全文检索
+        assertEquals(0, gradingQueue.remaining(q1.getId()));
+        awaitSearchTotal("archived", 0);
+
+        // 读答案与内容
+        mockMvc.perform(get("/quiz/answer/" + q1.getId()).param("username", "s1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(a1.getId()))
+                .andExpect(jsonPath("$.content").value(content1))
+                .andExpect(header().string(HttpHeaders.ETAG, HttpValidators.answerETag(a1.getId(), 1L)));
+        mockMvc.perform(get("/quiz/answer/" + q1.getId() + "/content").param("username", "s1")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(content().bytes(AnswerContentCodec.gzip(content1)));
+        mockMvc.perform(get("/quiz/answer/" + q1.getId() + "/content").param("username", "s1"))
+                .andExpect(content().bytes(content1.getBytes(StandardCharsets.UTF_8)));
+        mockMvc.perform(get("/quiz/bootstrap").param("username", "s1"))
+                .andExpect(jsonPath("$.chapters[0].questions[0].answer.id").value(a1.getId()));
+
+        // 阅卷列表
+        mockMvc.perform(get("/grading/question/" + q1.getId() + "/answers"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].answerId").value(a1.getId()))
+                .andExpect(jsonPath("$[0].score").value(8.0))
+                .andExpect(jsonPath("$[0].remark").value("思路清晰"))
+                .andExpect(jsonPath("$[0].archived").value(true))
+                .andExpect(jsonPath("$[1].answerId").value(a2.getId()))
+                .andExpect(jsonPath("$[1].score").doesNotExist());
+
+        // 归档的题目不再接受保存，其他题目不受影响
+        mockMvc.perform(post("/quiz/save")
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .param("questionId", q1.getId().toString())
+                        .param("content", "<p>改写</p>")
+                        .param("username", "s1"))
+                .andExpect(status().isConflict());
+        mockMvc.perform(put("/quiz/answer/" + q2.getId() + "/content").param("username", "s1")
+                        .contentType("text/html; charset=utf-8").content("<p>改写</p>"))
+                .andExpect(status().isConflict());
+        mockMvc.perform(post("/quiz/save")
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .param("questionId", q3.getId().toString())
+                        .param("content", "<p>继续作答</p>")
+                        .param("username", "s1"))
+                .andExpect(status().isOk());
+
+        // 得分导出与排行榜合并归档得分
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        answerExportService.writeScoresCsv(csv);
+        String scores = csv.toString(StandardCharsets.UTF_8);
+        assertTrue(scores.contains("题目1,10,8,0\n"), scores);
+        assertTrue(scores.contains("题目2,0,2,0\n"), scores);
+        leaderboard.invalidate();
+        assertEquals(11.0, leaderboard.board(10, "s1").user().total());
+
+        // 归档的题目不再接受评分与采纳建议分（实时表中留下的答案同样拒绝）
+        User student3 = userRepository.save(new User("s3", "p"));
+        Answer late = save(q1, student3, "<p>迟交</p>", null, null);
+        mockMvc.perform(post("/grading/updateScore").param("answerId", late.getId().toString()).param("score", "5"))
+                .andExpect(status().isConflict());
+        mockMvc.perform(post("/grading/autoscore/confirm").param("username", "admin")
+                        .param("questionId", q1.getId().toString()))
+                .andExpect(status().isConflict());
+        assertNull(answerRepository.findById(late.getId()).orElseThrow().getScore());
+        mockMvc.perform(post("/grading/updateScore").param("answerId", a4.getId().toString()).param("score", "1"))
+                .andExpect(status().isOk());
+        answerRepository.deleteById(late.getId());
+
+        mockMvc.perform(get("/grading/archive").param("username", "admin"))
+                .andExpect(jsonPath("$.status.state").value("completed"))
+                .andExpect(jsonPath("$.segments").value(1))
+                .andExpect(jsonPath("$.archivedQuestionIds", hasItems(q1.getId().intValue(), q2.getId().intValue())));
+        assertEquals(a4.getId(), answerRepository.findAll().get(0).getId());
+    }
+
+    private void awaitSearchTotal(String query, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (answerSearchIndex.search(query, null, 0, 10).total() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(expected, answerSearchIndex.search(query, null, 0, 10).total());
+    }
+
+    private Answer save(Question question, User user, String content, Double score, String remark) {
+        return transactionTemplate.execute(status -> {
+            Answer answer = new Answer(question, user);
+            answer.setScore(score);
+            answer.setRemark(remark);
+            AnswerContent body = new AnswerContent(answer, content, true);
+            answerRepository.save(answer);
+            answerContentRepository.save(body);
+            return answer;
+        });
+    }
+}
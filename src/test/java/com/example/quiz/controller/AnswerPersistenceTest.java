@@ -2,11 +2,19 @@ package com.example.quiz.controller;
 
 import com.example.quiz.model.*;
 import com.example.quiz.repository.*;
+import com.example.quiz.service.AnswerCache;
+import com.example.quiz.service.AnswerContentStorage;
+import com.example.quiz.service.EmbeddedImages;
+import com.example.quiz.service.ImageIngestService;
+import com.example.quiz.service.Leaderboard;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
@@ -14,6 +22,7 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.context.WebApplicationContext;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -37,6 +46,9 @@ class AnswerPersistenceTest {
     @Autowired
     private WebApplicationContext webApplicationContext;
 
+    @Value("${app.image-ingest.originals-dir}")
+    private String originalsDir;
+
     @Autowired
     private ChapterRepository chapterRepository;
 
@@ -46,9 +58,27 @@ class AnswerPersistenceTest {
     @Autowired
     private AnswerRepository answerRepository;
 
+    @Autowired
+    private AnswerContentRepository answerContentRepository;
+
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private AnswerCache answerCache;
+
+    @Autowired
+    private AnswerContentStorage answerContentStorage;
+
+    @Autowired
+    private ImageIngestService imageIngestService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private Leaderboard leaderboard;
+
     private MockMvc mockMvc;
     private User testUser1;
     private User testUser2;
@@ -57,6 +87,8 @@ class AnswerPersistenceTest {
     @BeforeEach
     void setUp() {
         mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        // 测试事务会回滚，缓存中的写穿结果不能带到下一个测试
+        answerCache.clear();
         
         // 创建测试用户
         testUser1 = new User("user1", "password1");
@@ -88,7 +120,7 @@ class AnswerPersistenceTest {
         // 验证答案已保存
         List<Answer> answers = answerRepository.findByUser(testUser1);
         assertEquals(1, answers.size());
-        assertEquals(answerContent, answers.get(0).getContent());
+        assertEquals(answerContent, bodyOf(answers.get(0)).getContent());
         assertEquals(testQuestion.getId(), answers.get(0).getQuestion().getId());
     }
 
@@ -117,7 +149,7 @@ class AnswerPersistenceTest {
         // 验证答案已更新
         List<Answer> answers = answerRepository.findByUser(testUser1);
         assertEquals(1, answers.size());
-        assertEquals(updatedContent, answers.get(0).getContent());
+        assertEquals(updatedContent, bodyOf(answers.get(0)).getContent());
     }
 
     @Test
@@ -125,8 +157,7 @@ class AnswerPersistenceTest {
         String answerContent = "<p>用户1的答案</p>";
         
         // 保存答案
-        Answer answer = new Answer(answerContent, testQuestion, testUser1);
-        answerRepository.save(answer);
+        saveAnswer(answerContent, testQuestion, testUser1);
         
         // 加载答案
         mockMvc.perform(get("/quiz/answer/" + testQuestion.getId())
@@ -176,8 +207,8 @@ class AnswerPersistenceTest {
         
         assertEquals(1, user1Answers.size());
         assertEquals(1, user2Answers.size());
-        assertEquals(user1Answer, user1Answers.get(0).getContent());
-        assertEquals(user2Answer, user2Answers.get(0).getContent());
+        assertEquals(user1Answer, bodyOf(user1Answers.get(0)).getContent());
+        assertEquals(user2Answer, bodyOf(user2Answers.get(0)).getContent());
         
         // 验证用户1只能看到自己的答案
         mockMvc.perform(get("/quiz/answer/" + testQuestion.getId())
@@ -194,11 +225,10 @@ class AnswerPersistenceTest {
 
     @Test
     void testUserStats() throws Exception {
-        // 创建多个答案
-        Answer answer1 = new Answer("<p>答案1</p>", testQuestion, testUser1);
-        Answer answer2 = new Answer("<p>答案2</p>", testQuestion, testUser1);
-        answerRepository.save(answer1);
-        answerRepository.save(answer2);
+        // 创建多个答案（每道题一个答案行）
+        Question secondQuestion = questionRepository.save(new Question("测试题目2", "测试描述", "1.2", 2, testQuestion.getChapter()));
+        saveAnswer("<p>答案1</p>", testQuestion, testUser1);
+        saveAnswer("<p>答案2</p>", secondQuestion, testUser1);
         
         // 获取用户统计
         mockMvc.perform(get("/quiz/stats/user1"))
@@ -245,7 +275,7 @@ class AnswerPersistenceTest {
         // 模拟应用重启 - 重新查询数据库
         List<Answer> answers = answerRepository.findByUser(testUser1);
         assertEquals(1, answers.size());
-        assertEquals(answerContent, answers.get(0).getContent());
+        assertEquals(answerContent, bodyOf(answers.get(0)).getContent());
         
         // 验证可以重新加载答案
         mockMvc.perform(get("/quiz/answer/" + testQuestion.getId())
@@ -253,4 +283,391 @@ class AnswerPersistenceTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.content").value(answerContent));
     }
+
+    @Test
+    void testContentIsStoredCompressedAndPassedThroughAsGzip() throws Exception {
+        String answerContent = "<p>压缩存储</p>" + "<img src=\"data:image/png;base64,AAAA\">".repeat(200);
+        mockMvc.perform(post("/quiz/save")
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .param("questionId", testQuestion.getId().toString())
+                .param("content", answerContent)
+                .param("username", "user1"))
+                .andExpect(status().isOk());
+        entityManager.flush();
+        entityManager.clear();
+
+        AnswerContent stored = bodyOf(answerRepository.findByUser(testUser1).get(0));
+        assertNotNull(stored.getContentGzip());
+        assertTrue(stored.getContentGzip().length < answerContent.length());
+        assertEquals(answerContent, stored.getContent());
+
+        byte[] gzipBody = mockMvc.perform(get("/quiz/answer/" + testQuestion.getId() + "/content")
+                .param("username", "user1")
+                .header("Accept-Encoding", "gzip, deflate, br"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertArrayEquals(stored.getContentGzip(), gzipBody, "应直接发送库中的压缩字节");
+
+        mockMvc.perform(get("/quiz/answer/" + testQuestion.getId() + "/content")
+                .param("username", "user1"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(content().encoding(java.nio.charset.StandardCharsets.UTF_8))
+                .andExpect(content().string(answerContent));
+    }
+
+    @Test
+    void testTextStoredAnswersAreMigratedToGzip() throws Exception {
+        Answer answer = saveAnswer("<p>旧数据</p>", testQuestion, testUser1);
+        entityManager.flush();
+        // 模拟压缩存储上线前写入的明文行
+        entityManager.createNativeQuery("UPDATE answer_contents SET content = '<p>旧数据</p>', content_gz = NULL WHERE answer_id = :id")
+                .setParameter("id", answer.getId())
+                .executeUpdate();
+        entityManager.clear();
+
+        assertEquals(1, answerContentStorage.migrateAll());
+        entityManager.clear();
+
+        AnswerContent migrated = answerContentRepository.findById(answer.getId()).orElseThrow();
+        assertNotNull(migrated.getContentGzip());
+        assertEquals("<p>旧数据</p>", migrated.getContent());
+        assertEquals(answer.getContentVersion(), migrated.getAnswer().getContentVersion(), "迁移不改变内容版本");
+        assertEquals(0, answerContentStorage.migrateAll());
+    }
+
+    @Test
+    void testStreamingSaveWritesContentWithoutFormDecoding() throws Exception {
+        String answerContent = "<p>流式保存 😀</p><img src=\"data:image/png;base64,AAAA\">";
+        String url = "/quiz/answer/" + testQuestion.getId() + "/content";
+
+        mockMvc.perform(put(url).param("username", "user1")
+                .contentType("text/html; charset=utf-8")
+                .content(answerContent.getBytes(java.nio.charset.StandardCharsets.UTF_8)))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andExpect(content().string("答案保存成功"));
+        mockMvc.perform(put(url).param("username", "user1")
+                .contentType("text/html; charset=utf-8")
+                .content(answerContent.getBytes(java.nio.charset.StandardCharsets.UTF_8)))
+                .andExpect(status().isOk())
+                .andExpect(content().string("答案更新成功"));
+        entityManager.clear();
+
+        Answer stored = answerRepository.findByUser(testUser1).get(0);
+        assertEquals(answerContent, bodyOf(stored).getContent());
+        assertEquals(answerContent.length(), stored.getContentLength(), "字符数按 UTF-16 计，与 String.length() 一致");
+        assertEquals(2L, stored.getContentVersion());
+        assertArrayEquals(AnswerContentCodec.gzip(answerContent), bodyOf(stored).getContentGzip(), "流式压缩与实体写入应得到相同字节");
+
+        mockMvc.perform(get("/quiz/answer/" + testQuestion.getId()).param("username", "user1"))
+                .andExpect(jsonPath("$.content").value(answerContent));
+    }
+
+    @Test
+    void testStreamingSaveRejectsMalformedUtf8() throws Exception {
+        String url = "/quiz/answer/" + testQuestion.getId() + "/content";
+        mockMvc.perform(put(url).param("username", "user1")
+                .contentType("text/html")
+                .content(new byte[]{'<', 'p', '>', (byte) 0xC3, '<'}))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(put(url).param("username", "nonexistent")
+                .contentType("text/html")
+                .content("<p>x</p>"))
+                .andExpect(status().isBadRequest());
+        assertTrue(answerRepository.findByUser(testUser1).isEmpty());
+    }
+
+    @Test
+    void testGradingPreviewReplacesLargeImagesWithThumbnailLinks() throws Exception {
+        java.awt.image.BufferedImage image = new java.awt.image.BufferedImage(200, 150, java.awt.image.BufferedImage.TYPE_INT_RGB);
+        java.util.Random random = new java.util.Random(42);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt(0xFFFFFF));
+            }
+        }
+        java.io.ByteArrayOutputStream png = new java.io.ByteArrayOutputStream();
+        javax.imageio.ImageIO.write(image, "png", png);
+        String large = "data:image/png;base64," + java.util.Base64.getEncoder().encodeToString(png.toByteArray());
+        String small = "data:image/png;base64,AAAA";
+        Answer answer = saveAnswer("<p>图</p><img src=\"" + large + "\"><img src=\"" + small + "\">", testQuestion, testUser1);
+        String hash = EmbeddedImages.find(bodyOf(answer).getContent()).get(0).hash();
+
+        mockMvc.perform(get("/grading/question/" + testQuestion.getId() + "/answers").param("preview", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].content").value(containsString("/grading/answer/" + answer.getId() + "/thumbnail/" + hash)))
+                .andExpect(jsonPath("$[0].content").value(containsString(small)))
+                .andExpect(jsonPath("$[0].content").value(org.hamcrest.Matchers.not(containsString(large))));
+        mockMvc.perform(get("/grading/question/" + testQuestion.getId() + "/answers"))
+                .andExpect(jsonPath("$[0].content").value(containsString(large)));
+
+        mockMvc.perform(get("/grading/answer/" + answer.getId() + "/image/" + hash))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.IMAGE_PNG))
+                .andExpect(header().string("X-Content-Type-Options", "nosniff"))
+                .andExpect(header().string("Content-Security-Policy", "sandbox"))
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_DISPOSITION))
+                .andExpect(content().bytes(png.toByteArray()));
+        mockMvc.perform(get("/grading/answer/" + answer.getId() + "/image/" + "0".repeat(32)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testGradingSvgImageIsServedAsAttachment() throws Exception {
+        byte[] svg = "<svg xmlns=\"http://www.w3.org/2000/svg\"><script>alert(1)</script></svg>".getBytes(StandardCharsets.UTF_8);
+        String uri = "data:image/svg+xml;base64," + java.util.Base64.getEncoder().encodeToString(svg);
+        Answer answer = saveAnswer("<p>图</p><img src=\"" + uri + "\">", testQuestion, testUser1);
+        String hash = EmbeddedImages.find(bodyOf(answer).getContent()).get(0).hash();
+
+        mockMvc.perform(get("/grading/answer/" + answer.getId() + "/image/" + hash))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Content-Type-Options", "nosniff"))
+                .andExpect(header().string("Content-Security-Policy", "sandbox"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, containsString("attachment")))
+                .andExpect(content().bytes(svg));
+    }
+
+    @Test
+    void testIngestDownscalesOversizedScreenshots() throws Exception {
+        // 2400x1200 的截图：大片纯色背景加一块噪点区域，PNG 超过 256KB
+        java.awt.image.BufferedImage screenshot = new java.awt.image.BufferedImage(2400, 1200, java.awt.image.BufferedImage.TYPE_INT_RGB);
+        java.awt.Graphics2D g = screenshot.createGraphics();
+        g.setColor(java.awt.Color.WHITE);
+        g.fillRect(0, 0, 2400, 1200);
+        g.dispose();
+        java.util.Random random = new java.util.Random(1);
+        for (int y = 100; y < 500; y++) {
+            for (int x = 100; x < 700; x++) {
+                screenshot.setRGB(x, y, random.nextInt(0xFFFFFF));
+            }
+        }
+        java.io.ByteArrayOutputStream png = new java.io.ByteArrayOutputStream();
+        javax.imageio.ImageIO.write(screenshot, "png", png);
+        String original = "<p>截图</p><img src=\"data:image/png;base64," + java.util.Base64.getEncoder().encodeToString(png.toByteArray()) + "\">";
+        Answer answer = saveAnswer(original, testQuestion, testUser1);
+        String originalHash = EmbeddedImages.find(original).get(0).hash();
+        long version = answer.getContentVersion();
+        entityManager.flush();
+
+        assertEquals(1, imageIngestService.ingest(answer.getId(), "user1", testQuestion.getId()));
+        entityManager.clear();
+
+        AnswerContent body = bodyOf(answer);
+        String rewritten = body.getContent();
+        assertTrue(rewritten.startsWith("<p>截图</p><img src=\"data:image/"));
+        assertTrue(rewritten.length() < original.length() / 2, "重新压缩后内容应明显变小");
+        assertEquals(version + 1, body.getAnswer().getContentVersion());
+        assertEquals(rewritten.length(), body.getAnswer().getContentLength());
+        EmbeddedImages.Image image = EmbeddedImages.find(rewritten).get(0);
+        java.awt.image.BufferedImage stored = javax.imageio.ImageIO.read(new java.io.ByteArrayInputStream(EmbeddedImages.decode(rewritten, image)));
+        assertEquals(1920, stored.getWidth());
+        assertEquals(960, stored.getHeight());
+        assertTrue(java.nio.file.Files.exists(java.nio.file.Paths.get(originalsDir, originalHash + ".png")), "原图应保留在冷存储目录");
+
+        assertEquals(0, imageIngestService.ingest(answer.getId(), "user1", testQuestion.getId()), "已缩小的图片不再处理");
+    }
+
+    @Test
+    void testRevisionEndpointsRequireAdminAndVersionOrTime() throws Exception {
+        userRepository.save(new User("admin", "admin"));
+        long answerId = Long.MAX_VALUE;
+
+        mockMvc.perform(get("/grading/answer/" + answerId + "/revisions").param("username", "user1"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/grading/answer/" + answerId + "/revisions").param("username", "admin"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+        mockMvc.perform(get("/grading/answer/" + answerId + "/revisions/content").param("username", "admin"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/grading/answer/" + answerId + "/revisions/content").param("username", "admin")
+                        .param("at", "2024-06-01T10:30:00"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testGradingQueueLeasesEachUngradedAnswerToOneGrader() throws Exception {
+        userRepository.save(new User("admin", "admin"));
+        Answer first = saveAnswer("<p>答案一</p>", testQuestion, testUser1);
+        Answer second = saveAnswer("<p>答案二</p>", testQuestion, testUser2);
+        String questionId = testQuestion.getId().toString();
+
+        mockMvc.perform(get("/grading/next").param("username", "user1").param("questionId", questionId))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/grading/next").param("username", "admin").param("questionId", questionId).param("grader", "a"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.answerId").value(first.getId()))
+                .andExpect(jsonPath("$.username").value("user1"))
+                .andExpect(jsonPath("$.remaining").value(2));
+        mockMvc.perform(get("/grading/next").param("username", "admin").param("questionId", questionId).param("grader", "b"))
+                .andExpect(jsonPath("$.answerId").value(second.getId()));
+        // 已持有租约时重复领取得到同一份，没有空闲答案时返回 204
+        mockMvc.perform(get("/grading/next").param("username", "admin").param("questionId", questionId).param("grader", "a"))
+                .andExpect(jsonPath("$.answerId").value(first.getId()));
+        mockMvc.perform(get("/grading/next").param("username", "admin").param("questionId", questionId).param("grader", "c"))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(post("/grading/updateScore").param("answerId", first.getId().toString()).param("score", "8"))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/grading/next/release").param("username", "admin").param("questionId", questionId)
+                        .param("answerId", second.getId().toString()).param("grader", "c"))
+                .andExpect(status().isConflict());
+        mockMvc.perform(post("/grading/next/release").param("username", "admin").param("questionId", questionId)
+                        .param("answerId", second.getId().toString()).param("grader", "b"))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(get("/grading/next").param("username", "admin").param("questionId", questionId).param("grader", "c"))
+                .andExpect(jsonPath("$.answerId").value(second.getId()))
+                .andExpect(jsonPath("$.remaining").value(1));
+        mockMvc.perform(get("/grading/next").param("username", "admin").param("questionId", questionId).param("grader", "a"))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    void testEmptyAnswerFilledViaStreamSaveJoinsGradingQueue() throws Exception {
+        userRepository.save(new User("admin", "admin"));
+        String questionId = testQuestion.getId().toString();
+        streamSave("user1", "");
+        mockMvc.perform(get("/grading/next").param("username", "admin").param("questionId", questionId).param("grader", "a"))
+                .andExpect(status().isNoContent());
+
+        // 只有空白的内容不加入
+        streamSave("user2", " \n\t ");
+        mockMvc.perform(get("/grading/next").param("username", "admin").param("questionId", questionId).param("grader", "a"))
+                .andExpect(status().isNoContent());
+
+        // 已有的空答案补上内容后加入
+        streamSave("user1", "<p>补上的答案</p>");
+        long answerId = answerRepository.findByUser(testUser1).get(0).getId();
+        mockMvc.perform(get("/grading/next").param("username", "admin").param("questionId", questionId).param("grader", "a"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.answerId").value(answerId))
+                .andExpect(jsonPath("$.remaining").value(1));
+    }
+
+    @Test
+    void testConfirmSuggestedScoresOnlyForUngradedCurrentAnswers() throws Exception {
+        userRepository.save(new User("admin", "admin"));
+        Answer suggested = saveAnswer("<p>沙箱检测</p>", testQuestion, testUser1);
+        Answer graded = saveAnswer("<p>沙箱</p>", testQuestion, testUser2);
+        graded.setScore(1.0);
+        answerRepository.save(graded);
+        entityManager.flush();
+        for (Answer answer : List.of(suggested, graded)) {
+            entityManager.createNativeQuery("UPDATE answers SET suggested_score = 2.5, suggested_version = ?1, "
+                            + "suggestion_note = '命中: 沙箱' WHERE id = ?2")
+                    .setParameter(1, answer.getContentVersion()).setParameter(2, answer.getId()).executeUpdate();
+        }
+        entityManager.clear();
+
+        String etag = mockMvc.perform(get("/grading/question/" + testQuestion.getId() + "/answers"))
+                .andExpect(jsonPath("$[0].suggestedScore").value(2.5))
+                .andExpect(jsonPath("$[0].suggestionNote").value("命中: 沙箱"))
+                .andExpect(jsonPath("$[0].score").doesNotExist())
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(post("/grading/autoscore/confirm").param("username", "user1")
+                        .param("questionId", testQuestion.getId().toString()))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(post("/grading/autoscore/confirm").param("username", "admin")
+                        .param("questionId", testQuestion.getId().toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.confirmed").value(1))
+                .andExpect(jsonPath("$.answerIds[0]").value(suggested.getId()));
+        entityManager.clear();
+
+        assertEquals(2.5, answerRepository.findById(suggested.getId()).orElseThrow().getScore());
+        assertEquals(1.0, answerRepository.findById(graded.getId()).orElseThrow().getScore(), "已评分的答案不被覆盖");
+        mockMvc.perform(get("/grading/question/" + testQuestion.getId() + "/answers").header("If-None-Match", etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testLeaderboardFollowsScoreUpdates() throws Exception {
+        userRepository.save(new User("admin", "admin"));
+        // 排行榜是单例，清掉其他测试（已回滚）留下的状态
+        leaderboard.invalidate();
+        Question second = new Question("第二题", "描述", "1.2", 2, testQuestion.getChapter());
+        questionRepository.save(second);
+        Answer a1 = saveAnswer("<p>1</p>", testQuestion, testUser1);
+        Answer a2 = saveAnswer("<p>2</p>", second, testUser1);
+        Answer b1 = saveAnswer("<p>3</p>", testQuestion, testUser2);
+
+        mockMvc.perform(get("/grading/leaderboard").param("username", "user1"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/grading/leaderboard").param("username", "admin").param("user", "user1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.students").value(2))
+                .andExpect(jsonPath("$.user.rank").value(1))
+                .andExpect(jsonPath("$.user.percentile").value(0.0));
+
+        mockMvc.perform(post("/grading/updateScore").param("answerId", a1.getId().toString()).param("score", "3"));
+        mockMvc.perform(post("/grading/updateScore").param("answerId", b1.getId().toString()).param("score", "5"));
+        mockMvc.perform(get("/grading/leaderboard").param("username", "admin").param("user", "user1"))
+                .andExpect(jsonPath("$.top[0].username").value("user2"))
+                .andExpect(jsonPath("$.top[0].total").value(5.0))
+                .andExpect(jsonPath("$.user.rank").value(2))
+                .andExpect(jsonPath("$.user.percentile").value(0.0));
+
+        // 改分按差值更新：user1 为 3 + 2.5，超过 user2
+        mockMvc.perform(post("/grading/updateScore").param("answerId", a2.getId().toString()).param("score", "2.5"));
+        mockMvc.perform(get("/grading/leaderboard").param("username", "admin").param("top", "1").param("user", "user2"))
+                .andExpect(jsonPath("$.top.length()").value(1))
+                .andExpect(jsonPath("$.top[0].username").value("user1"))
+                .andExpect(jsonPath("$.top[0].total").value(5.5))
+                .andExpect(jsonPath("$.top[0].graded").value(2))
+                .andExpect(jsonPath("$.user.rank").value(2));
+        leaderboard.invalidate();
+    }
+
+    @Test
+    void scoreUpdatesAndContentSavesDoNotOverwriteEachOther() throws Exception {
+        Answer answer = saveAnswer("<p>初稿</p>", testQuestion, testUser1);
+        entityManager.flush();
+        // 学生在阅卷人打开答案之后又保存了内容（绕过已加载的实体，模拟另一个请求）
+        assertEquals(1, answerRepository.advanceContentVersion(answer.getId(), 1L, 42));
+
+        mockMvc.perform(post("/grading/updateScore").param("answerId", answer.getId().toString())
+                        .param("score", "6").param("remark", "待补充"))
+                .andExpect(status().isOk());
+        AnswerMetaView meta = answerRepository.findMetaByQuestionIdAndUsername(testQuestion.getId(), "user1").orElseThrow();
+        assertEquals(2L, meta.getContentVersion(), "评分不应写回加载时的内容版本");
+        assertEquals(42, meta.getContentLength());
+
+        // 反过来：学生加载答案后阅卷人改了分，内容保存不应把加载时的得分写回
+        entityManager.clear();
+        answerRepository.findById(answer.getId()).orElseThrow();
+        answerRepository.updateScore(answer.getId(), 7.0, "已复核", java.time.LocalDateTime.now());
+        mockMvc.perform(post("/quiz/save")
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .param("questionId", testQuestion.getId().toString())
+                        .param("content", "<p>终稿</p>")
+                        .param("username", "user1"))
+                .andExpect(status().isOk());
+        entityManager.flush();
+        entityManager.clear();
+        Answer saved = answerRepository.findById(answer.getId()).orElseThrow();
+        assertEquals(7.0, saved.getScore());
+        assertEquals("已复核", saved.getRemark());
+        assertEquals(3L, saved.getContentVersion());
+    }
+
+    private Answer saveAnswer(String content, Question question, User user) {
+        Answer answer = new Answer(question, user);
+        AnswerContent body = new AnswerContent(answer, content, true);
+        answerRepository.save(answer);
+        answerContentRepository.save(body);
+        return answer;
+    }
+
+    private void streamSave(String username, String content) throws Exception {
+        mockMvc.perform(put("/quiz/answer/" + testQuestion.getId() + "/content")
+                        .param("username", username)
+                        .contentType("text/html; charset=utf-8")
+                        .content(content.getBytes(java.nio.charset.StandardCharsets.UTF_8)))
+                .andExpect(status().isOk());
+    }
+
+    private AnswerContent bodyOf(Answer answer) {
+        return answerContentRepository.findById(answer.getId()).orElseThrow();
+    }
 }
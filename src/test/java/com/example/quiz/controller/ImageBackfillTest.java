@@ -0,0 +1,197 @@
+package com.example.quiz.controller;
+
+import com.example.quiz.model.*;
+import com.example.quiz.repository.*;
+import com.example.quiz.service.AnswerExportService;
+import com.example.quiz.service.EmbeddedImages;
+import com.example.quiz.service.ImageBackfillService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * 图片回填测试：后台线程只能读到已提交的数据，本测试不使用事务回滚，使用独立的内存库
+ */
+@SpringBootTest
+@AutoConfigureWebMvc
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:backfilldb;DB_CLOSE_DELAY=-1",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "app.data-sync.enabled=false",
+    "app.image-ingest.enabled=false",
+    "app.image-backfill.batch-size=2",
+    "app.image-backfill.rows-per-second=0",
+    "app.image-backfill.resume-on-startup=false",
+    "app.thumbnails.min-bytes=1024"
+})
+class ImageBackfillTest {
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Value("${app.image-backfill.checkpoint}")
+    private String checkpointFile;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ChapterRepository chapterRepository;
+
+    @Autowired
+    private QuestionRepository questionRepository;
+
+    @Autowired
+    private AnswerRepository answerRepository;
+
+    @Autowired
+    private AnswerContentRepository answerContentRepository;
+
+    @Autowired
+    private ImageBackfillService imageBackfillService;
+
+    @Autowired
+    private AnswerExportService answerExportService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void backfillMovesInlineImagesToStoreAndCheckpoints() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        userRepository.save(new User("admin", "123456"));
+        User student1 = userRepository.save(new User("s1", "p"));
+        User student2 = userRepository.save(new User("s2", "p"));
+        Chapter chapter = chapterRepository.save(new Chapter("章节", "描述", 1));
+        Question q1 = questionRepository.save(new Question("题目1", "描述", "1.1", 1, chapter));
+        Question q2 = questionRepository.save(new Question("题目2", "描述", "1.2", 2, chapter));
+
+        byte[] png = noisePng();
+        String dataUri = "data:image/png;base64," + Base64.getEncoder().encodeToString(png);
+        String small = "data:image/png;base64,AAAA";
+        String withImages = "<p>图</p><img src=\"" + dataUri + "\"><img src=\"" + small + "\">";
+        Answer a1 = save(q1, student1, withImages);
+        Answer a2 = save(q1, student2, withImages);
+        Answer a3 = save(q2, student1, "<p>无图片</p>");
+        String name = EmbeddedImages.find(withImages).get(0).hash() + ".png";
+
+        mockMvc.perform(post("/grading/images/backfill").param("username", "s1"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(post("/grading/images/backfill").param("username", "admin"))
+                .andExpect(status().isAccepted());
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (imageBackfillService.isRunning() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        ImageBackfillService.Status status = imageBackfillService.getStatus();
+        assertEquals(ImageBackfillService.STATE_COMPLETED, status.state());
+        assertEquals(a3.getId(), status.lastId());
+        assertEquals(3, status.rowsScanned());
+        assertEquals(2, status.rowsRewritten());
+        assertEquals(2 * png.length, status.bytesMoved());
+        Properties checkpoint = new Properties();
+        try (var in = Files.newInputStream(Paths.get(checkpointFile))) {
+            checkpoint.load(in);
+        }
+        assertEquals("completed", checkpoint.getProperty("state"));
+        assertEquals(String.valueOf(a3.getId()), checkpoint.getProperty("lastId"));
+
+        String expected = "<p>图</p><img src=\"/quiz/images/" + name + "\"><img src=\"" + small + "\">";
+        for (Answer answer : new Answer[]{a1, a2}) {
+            assertEquals(expected, answerContentRepository.findContentViewById(answer.getId()).orElseThrow().getContentText(),
+                    "大图移出、小图保留内嵌");
+            assertEquals(2L, answerRepository.findById(answer.getId()).orElseThrow().getContentVersion());
+        }
+        assertEquals(1L, answerRepository.findById(a3.getId()).orElseThrow().getContentVersion(), "无图片的答案不改写");
+
+        mockMvc.perform(get("/quiz/images/" + name))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.IMAGE_PNG))
+                .andExpect(header().string("X-Content-Type-Options", "nosniff"))
+                .andExpect(content().bytes(png));
+
+        // 回填后的批阅预览：外部图片引用同样换成缩略图，原图地址重定向到存储的文件
+        String hash = EmbeddedImages.find(withImages).get(0).hash();
+        String thumbnail = "/grading/answer/" + a1.getId() + "/thumbnail/" + hash;
+        mockMvc.perform(get("/grading/question/" + q1.getId() + "/answers").param("preview", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].content").value(containsString(thumbnail)))
+                .andExpect(jsonPath("$[0].content").value(containsString(small)))
+                .andExpect(jsonPath("$[0].content").value(not(containsString("/quiz/images/" + name))));
+        mockMvc.perform(get(thumbnail))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.IMAGE_JPEG));
+        mockMvc.perform(get("/grading/answer/" + a1.getId() + "/image/" + hash))
+                .andExpect(status().isFound())
+                .andExpect(redirectedUrl("/quiz/images/" + name));
+
+        mockMvc.perform(get("/grading/images/backfill").param("username", "admin"))
+                .andExpect(jsonPath("$.state").value("completed"))
+                .andExpect(jsonPath("$.imagesMoved").value(2));
+
+        // 导出 ZIP 带上被引用的图片，HTML 改为相对路径
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        answerExportService.writeAnswersZip(zip);
+        Map<String, byte[]> entries = new HashMap<>();
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zip.toByteArray()))) {
+            for (ZipEntry entry; (entry = zis.getNextEntry()) != null; ) {
+                entries.put(entry.getName(), zis.readAllBytes());
+            }
+        }
+        assertArrayEquals(png, entries.get("images/" + name));
+        assertTrue(new String(entries.get("s1.html"), StandardCharsets.UTF_8).contains("src=\"images/" + name + "\""));
+    }
+
+    private Answer save(Question question, User user, String content) {
+        return transactionTemplate.execute(status -> {
+            Answer answer = new Answer(question, user);
+            AnswerContent body = new AnswerContent(answer, content, true);
+            answerRepository.save(answer);
+            answerContentRepository.save(body);
+            return answer;
+        });
+    }
+
+    private static byte[] noisePng() throws Exception {
+        java.awt.image.BufferedImage image = new java.awt.image.BufferedImage(64, 64, java.awt.image.BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(5);
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                image.setRGB(x, y, random.nextInt(0xFFFFFF));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        javax.imageio.ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,398 @@
+package com.example.quiz.controller;
+
+import com.example.quiz.model.*;
+import com.example.quiz.repository.*;
+import com.example.quiz.service.AnswerCache;
+import com.example.quiz.service.AnswerExportService;
+import com.example.quiz.support.AllocationMeter;
+import com.example.quiz.support.StatementCounter;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 查询次数与内存分配预算测试：防止 N+1 查询和大对象拷贝回归
+ */
+@SpringBootTest
+@AutoConfigureWebMvc
+@Import(StatementCounter.Config.class)
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:budgetdb;DB_CLOSE_DELAY=-1",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "app.data-sync.enabled=true",
+    "app.data-sync.location=classpath:data_v1.json"
+})
+@Transactional
+class QueryBudgetTest {
+
+    /** 导出类接口的语句上限：管理员校验，以及用户、题目、答案各一次 */
+    private static final long EXPORT_STATEMENT_BUDGET = 4;
+
+    /** saveAnswer 除内容本身外的固定分配上限 */
+    private static final long SAVE_FIXED_ALLOCATION_BUDGET = 2 * 1024 * 1024;
+
+    /** saveAnswer 按内容大小（UTF-16 字节）计的分配倍数上限 */
+    private static final double SAVE_ALLOCATION_PER_CONTENT_BYTE = 6.0;
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Autowired
+    private GradingController gradingController;
+
+    @Autowired
+    private AnswerExportService answerExportService;
+
+    @Autowired
+    private AnswerCache answerCache;
+
+    @Autowired
+    private CommandLineRunner syncDataFromJson;
+
+    @Autowired
+    private ChapterRepository chapterRepository;
+
+    @Autowired
+    private QuestionRepository questionRepository;
+
+    @Autowired
+    private AnswerRepository answerRepository;
+
+    @Autowired
+    private AnswerContentRepository answerContentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private MockMvc mockMvc;
+    private List<Question> questions;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        // 测试事务会回滚，缓存中的写穿结果不能带到下一个测试
+        answerCache.clear();
+        questions = questionRepository.findAllOrderByChapterAndSortOrder();
+        assertFalse(questions.isEmpty(), "data_v1.json 题目应已同步");
+    }
+
+    @Test
+    void exportIssuesConstantQueriesRegardlessOfUserCount() throws Exception {
+        addStudentsWithAnswers("small", 2);
+        long small = countStatements(() -> drain(gradingController.export("admin")));
+
+        addStudentsWithAnswers("large", 10);
+        long large = countStatements(() -> drain(gradingController.export("admin")));
+
+        assertEquals(small, large, "导出语句数不应随用户数增长");
+        assertTrue(large <= EXPORT_STATEMENT_BUDGET, "导出语句数超出预算: " + large);
+    }
+
+    @Test
+    void parallelExportMatchesSequentialWithinSameBudget() throws Exception {
+        addStudentsWithAnswers("parallel", 10);
+        ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+        ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+
+        answerExportService.writeAnswersZip(sequential, 1);
+        long statements = countStatements(() -> answerExportService.writeAnswersZip(parallel, 4));
+
+        assertArrayEquals(sequential.toByteArray(), parallel.toByteArray(), "并行渲染不应改变导出内容与顺序");
+        assertTrue(statements <= EXPORT_STATEMENT_BUDGET - 1, "并行导出语句数超出预算: " + statements);
+    }
+
+    @Test
+    void exportScoresIssuesConstantQueriesRegardlessOfUserCount() throws Exception {
+        addStudentsWithAnswers("small", 2);
+        long small = countStatements(() -> drain(gradingController.exportScores("admin")));
+
+        addStudentsWithAnswers("large", 10);
+        long large = countStatements(() -> drain(gradingController.exportScores("admin")));
+
+        assertEquals(small, large, "得分导出语句数不应随用户数增长");
+        assertTrue(large <= EXPORT_STATEMENT_BUDGET, "得分导出语句数超出预算: " + large);
+    }
+
+    @Test
+    void questionAnswersIssuesConstantQueriesRegardlessOfAnswerCount() throws Exception {
+        Long questionId = questions.get(0).getId();
+        String url = "/grading/question/" + questionId + "/answers";
+
+        addStudentsWithAnswers("small", 2);
+        long small = countStatements(() -> mockMvc.perform(get(url)).andExpect(status().isOk()));
+
+        addStudentsWithAnswers("large", 10);
+        long large = countStatements(() -> mockMvc.perform(get(url)).andExpect(status().isOk()));
+
+        assertEquals(small, large, "答案列表语句数不应随答案数增长");
+    }
+
+    @Test
+    void repeatedAnswerReadsAreServedFromCache() throws Exception {
+        Long questionId = questions.get(0).getId();
+        String url = "/quiz/answer/" + questionId;
+        save(questionId, "<p>第一次</p>");
+
+        long first = countStatements(() -> mockMvc.perform(get(url).param("username", "user1")).andExpect(status().isOk()));
+        long second = countStatements(() -> mockMvc.perform(get(url).param("username", "user1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content").value("<p>第一次</p>")));
+        assertEquals(0, second, "重复读取应命中缓存，首次读取语句数 " + first);
+
+        save(questionId, "<p>第二次</p>");
+        mockMvc.perform(get(url).param("username", "user1"))
+                .andExpect(jsonPath("$.content").value("<p>第二次</p>"));
+    }
+
+    @Test
+    void bootstrapIssuesConstantQueriesAndOmitsContent() throws Exception {
+        Long questionId = questions.get(0).getId();
+        save(questionId, "<p>已作答</p>");
+
+        long small = countStatements(() -> mockMvc.perform(get("/quiz/bootstrap").param("username", "user1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.chapters[0].questions[0].id").value(questionId))
+                .andExpect(jsonPath("$.chapters[0].questions[0].answer.contentLength").value("<p>已作答</p>".length()))
+                .andExpect(jsonPath("$.chapters[0].questions[0].answer.contentVersion").value(1))
+                .andExpect(jsonPath("$.chapters[0].questions[0].answer.content").doesNotExist())
+                .andExpect(jsonPath("$.chapters[0].questions[1].answer").doesNotExist()));
+
+        for (Question q : questions) {
+            save(q.getId(), "<p>全部作答</p>");
+        }
+        long large = countStatements(() -> mockMvc.perform(get("/quiz/bootstrap").param("username", "user1"))
+                .andExpect(status().isOk()));
+
+        assertEquals(small, large, "启动数据语句数不应随答案数增长");
+        assertTrue(large <= 4, "启动数据语句数超出预算: " + large);
+    }
+
+    @Test
+    void questionWithAnswerIsSingleQuery() throws Exception {
+        Long questionId = questions.get(0).getId();
+        save(questionId, "<p>合并读取</p>");
+        save(questionId, "<p>合并读取</p>");
+        answerCache.clear();
+
+        long statements = countStatements(() -> mockMvc.perform(get("/quiz/question/" + questionId + "/with-answer")
+                        .param("username", "user1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.question.id").value(questionId))
+                .andExpect(jsonPath("$.answer.content").value("<p>合并读取</p>"))
+                .andExpect(jsonPath("$.answer.contentVersion").value(1)));
+        assertEquals(1, statements, "题目与答案应在一条查询中取回");
+
+        mockMvc.perform(get("/quiz/question/" + questionId + "/with-answer").param("username", "nobody"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.question.id").value(questionId))
+                .andExpect(jsonPath("$.answer.content").doesNotExist());
+    }
+
+    @Test
+    void conditionalReadsReturnNotModifiedWithoutLoadingContent() throws Exception {
+        Long questionId = questions.get(0).getId();
+        String answerUrl = "/quiz/answer/" + questionId;
+        save(questionId, "<p>条件请求</p>");
+
+        String questionETag = mockMvc.perform(get("/quiz/question/" + questionId).param("username", "user1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        long questionStatements = countStatements(() -> mockMvc.perform(get("/quiz/question/" + questionId)
+                        .param("username", "user1").header("If-None-Match", questionETag))
+                .andExpect(status().isNotModified()));
+        assertEquals(0, questionStatements, "题目未变化时不应查询");
+
+        String answerETag = mockMvc.perform(get(answerUrl).param("username", "user1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotNull(answerETag);
+        answerCache.clear();
+        long answerStatements = countStatements(() -> mockMvc.perform(get(answerUrl)
+                        .param("username", "user1").header("If-None-Match", answerETag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string("")));
+        assertEquals(1, answerStatements, "缓存未命中时只查一次答案元数据");
+
+        save(questionId, "<p>内容已修改</p>");
+        mockMvc.perform(get(answerUrl).param("username", "user1").header("If-None-Match", answerETag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content").value("<p>内容已修改</p>"));
+
+        String listUrl = "/grading/question/" + questionId + "/answers";
+        String listETag = mockMvc.perform(get(listUrl)).andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get(listUrl).header("If-None-Match", listETag)).andExpect(status().isNotModified());
+        Long answerId = answerRepository.findMetaByQuestionIdAndUsername(questionId, "user1").orElseThrow().getId();
+        Thread.sleep(5);
+        mockMvc.perform(post("/grading/updateScore").param("answerId", answerId.toString()).param("score", "1"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get(listUrl).header("If-None-Match", listETag)).andExpect(status().isOk());
+    }
+
+    @Test
+    void scoreAndStatsPathsNeverReadAnswerContents() throws Exception {
+        addStudentsWithAnswers("meta", 2);
+        Answer answer = answerRepository.findByUser(userRepository.findByUsername("meta1").orElseThrow()).get(0);
+
+        countStatements(() -> {
+            assertEquals(200, gradingController.updateScore(answer.getId(), 1.0, "已阅").getStatusCode().value());
+            entityManager.flush();
+            mockMvc.perform(get("/quiz/stats/meta1"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().string(org.hamcrest.Matchers.containsString("有效答案 " + questions.size() + " 道")));
+            mockMvc.perform(get("/quiz/bootstrap").param("username", "meta1")).andExpect(status().isOk());
+        });
+        List<String> sql = StatementCounter.preparedSql();
+        assertFalse(sql.isEmpty());
+        assertTrue(sql.stream().noneMatch(s -> s.contains("answer_contents")), "评分与统计不应读取答案内容: " + sql);
+    }
+
+    @Test
+    void dataSyncDeletesWithConstantQueries() throws Exception {
+        addStudentsWithAnswers("stale_small", 3);
+        addStaleQuestionWithAnswers("small");
+        long small = countStatements(syncDataFromJson::run);
+
+        addStudentsWithAnswers("stale_large", 10);
+        addStaleQuestionWithAnswers("large");
+        long large = countStatements(syncDataFromJson::run);
+
+        assertEquals(small, large, "同步删除语句数不应随待删除数据量增长");
+        assertTrue(userRepository.findByUsername("stale_large1").isEmpty());
+    }
+
+    @Test
+    void saveAnswerAllocationStaysProportionalToContent() throws Exception {
+        assumeTrue(AllocationMeter.isSupported(), "JVM 不支持线程分配统计");
+        Long questionId = questions.get(0).getId();
+        String content = "<p>" + "答".repeat(512 * 1024) + "</p>";
+        long contentBytes = content.length() * 2L;
+
+        // 预热：类加载、JIT 与 Hibernate 元数据初始化
+        for (int i = 0; i < 3; i++) {
+            save(questionId, content);
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            best = Math.min(best, AllocationMeter.measure(() -> save(questionId, content)));
+        }
+
+        long budget = SAVE_FIXED_ALLOCATION_BUDGET + (long) (contentBytes * SAVE_ALLOCATION_PER_CONTENT_BYTE);
+        assertTrue(best <= budget, "saveAnswer 分配 " + best + " 字节，超出预算 " + budget + " 字节（内容 " + contentBytes + " 字节）");
+    }
+
+    @Test
+    void streamingSaveAllocationDoesNotGrowWithContent() throws Exception {
+        assumeTrue(AllocationMeter.isSupported(), "JVM 不支持线程分配统计");
+        Long questionId = questions.get(0).getId();
+        byte[] small = ("<p>" + "答".repeat(1024) + "</p>").getBytes(StandardCharsets.UTF_8);
+        byte[] large = ("<p>" + "答".repeat(2 * 1024 * 1024) + "</p>").getBytes(StandardCharsets.UTF_8);
+
+        for (int i = 0; i < 3; i++) {
+            streamSave(questionId, small);
+            streamSave(questionId, large);
+        }
+
+        long smallBest = Long.MAX_VALUE;
+        long largeBest = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            smallBest = Math.min(smallBest, AllocationMeter.measure(() -> streamSave(questionId, small)));
+            largeBest = Math.min(largeBest, AllocationMeter.measure(() -> streamSave(questionId, large)));
+        }
+        // 6MB 的请求体不应带来与内容成比例的分配（表单保存约为内容 UTF-16 大小的数倍）
+        assertTrue(largeBest - smallBest < large.length / 4,
+                "流式保存分配随内容增长: small=" + smallBest + ", large=" + largeBest + ", content=" + large.length);
+        assertTrue(largeBest <= SAVE_FIXED_ALLOCATION_BUDGET, "流式保存分配 " + largeBest + " 字节，超出固定预算");
+    }
+
+    private void streamSave(Long questionId, byte[] body) throws Exception {
+        mockMvc.perform(put("/quiz/answer/" + questionId + "/content")
+                .param("username", "user1")
+                .contentType("text/html; charset=utf-8")
+                .content(body))
+                .andExpect(status().isOk());
+    }
+
+    private void save(Long questionId, String content) throws Exception {
+        mockMvc.perform(post("/quiz/save")
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .param("questionId", questionId.toString())
+                .param("content", content)
+                .param("username", "user1"))
+                .andExpect(status().isOk());
+    }
+
+    private void addStudentsWithAnswers(String prefix, int count) {
+        for (int i = 1; i <= count; i++) {
+            User user = userRepository.save(new User(prefix + i, "password"));
+            for (Question q : questions) {
+                Answer answer = new Answer(q, user);
+                AnswerContent body = new AnswerContent(answer, "<p>" + prefix + i + " 的答案</p>", true);
+                answer.setScore(5.0);
+                answerRepository.save(answer);
+                answerContentRepository.save(body);
+            }
+        }
+    }
+
+    private void addStaleQuestionWithAnswers(String suffix) {
+        Chapter chapter = chapterRepository.findAllOrderBySortOrder().get(0);
+        Question stale = questionRepository.save(new Question("Stale " + suffix, "已从 data.json 移除", "9.9", 99, chapter));
+        List<User> users = new ArrayList<>(userRepository.findAll());
+        for (User user : users) {
+            Answer answer = new Answer(stale, user);
+            AnswerContent body = new AnswerContent(answer, "<p>stale</p>", true);
+            answerRepository.save(answer);
+            answerContentRepository.save(body);
+        }
+    }
+
+    /**
+     * 清空一级缓存后统计任务执行的语句数，避免已加载实体掩盖懒加载查询
+     */
+    private long countStatements(AllocationMeter.ThrowingRunnable task) throws Exception {
+        entityManager.flush();
+        entityManager.clear();
+        StatementCounter.reset();
+        task.run();
+        return StatementCounter.count();
+    }
+
+    private void drain(ResponseEntity<StreamingResponseBody> response) throws Exception {
+        assertEquals(200, response.getStatusCode().value());
+        StreamingResponseBody body = response.getBody();
+        assertNotNull(body);
+        body.writeTo(new ByteArrayOutputStream());
+    }
+}
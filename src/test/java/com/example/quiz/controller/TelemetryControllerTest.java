@@ -0,0 +1,153 @@
+package com.example.quiz.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 浏览器遥测接口测试：写入诊断日志、格式校验、请求体上限与按会话抽样
+ */
+@SpringBootTest
+@AutoConfigureWebMvc
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:testdb",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "app.data-sync.enabled=false",
+    "app.telemetry.max-bytes=4096"
+})
+class TelemetryControllerTest {
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Autowired
+    private TelemetryController telemetryController;
+
+    @Value("${app.diagnostics.file}")
+    private String diagnosticsFile;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+    }
+
+    @Test
+    void testTelemetryBatchIsWrittenToDiagnosticsLog() throws Exception {
+        Path log = Paths.get(diagnosticsFile);
+        String marker = "beacon-" + System.nanoTime();
+        String batch = "{\"sessionId\":\"s1\",\"username\":\"testuser\",\"page\":\"quiz\",\"ignored\":{\"a\":[1,2]},"
+                + "\"events\":[{\"location\":\"quiz.html\",\"message\":\"selectQuestion\",\"timestamp\":1,\"data\":{\"questionId\":3}},"
+                + "{\"message\":\"" + marker + "\",\"timestamp\":2}]}";
+
+        // sendBeacon 发送 Blob 时的类型可能是 text/plain
+        mockMvc.perform(post("/telemetry").contentType(MediaType.TEXT_PLAIN).content(batch))
+                .andExpect(status().isNoContent());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!(Files.exists(log) && Files.readString(log, StandardCharsets.UTF_8).contains(marker))
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        String written = Files.readString(log, StandardCharsets.UTF_8);
+        assertTrue(written.contains(marker), "事件应异步写入诊断日志");
+        assertTrue(written.contains("\"questionId\":3"));
+        assertTrue(written.contains("\"sessionId\":\"s1\""));
+    }
+
+    @Test
+    void testMalformedAndOversizedBatchesAreRejected() throws Exception {
+        mockMvc.perform(post("/telemetry").contentType(MediaType.APPLICATION_JSON).content("{\"events\":[{\"message\":"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/telemetry").contentType(MediaType.APPLICATION_JSON).content("{\"events\":[{\"timestamp\":1}]}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/telemetry").contentType(MediaType.APPLICATION_JSON).content("x".repeat(5000)))
+                .andExpect(status().isPayloadTooLarge());
+    }
+
+    @Test
+    void testBodyWithoutDeclaredLengthIsCappedWhileReading() throws Exception {
+        // 分块传输没有 Content-Length：只能在读取时按上限截断
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE,
+                telemetryController.ingest(chunked("{\"events\":[{\"message\":\"" + "x".repeat(5000) + "\"}]}")).getStatusCode());
+        assertEquals(HttpStatus.NO_CONTENT,
+                telemetryController.ingest(chunked("{\"sessionId\":\"s2\",\"events\":[{\"message\":\"ok\"}]}")).getStatusCode());
+    }
+
+    private static MockHttpServletRequest chunked(String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/telemetry") {
+            @Override
+            public int getContentLength() {
+                return -1;
+            }
+
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        request.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    @Nested
+    @TestPropertySource(properties = "app.telemetry.sample-rate=0.5")
+    class Sampling {
+
+        @Autowired
+        private WebApplicationContext sampledContext;
+
+        @Autowired
+        private MeterRegistry meterRegistry;
+
+        @Test
+        void testSessionIsEitherFullyKeptOrFullyDropped() throws Exception {
+            MockMvc sampledMvc = MockMvcBuilders.webAppContextSetup(sampledContext).build();
+            int kept = 0;
+            int dropped = 0;
+            for (int i = 0; i < 40; i++) {
+                String batch = "{\"sessionId\":\"session-" + i + "\",\"events\":[{\"message\":\"a\"},{\"message\":\"b\"}]}";
+                double before = accepted();
+                for (int beacon = 0; beacon < 3; beacon++) {
+                    sampledMvc.perform(post("/telemetry").contentType(MediaType.APPLICATION_JSON).content(batch))
+                            .andExpect(status().isNoContent());
+                }
+                double delta = accepted() - before;
+                assertTrue(delta == 0 || delta == 6, "同一会话的多批事件要么全部保留要么全部丢弃");
+                if (delta == 0) {
+                    dropped++;
+                } else {
+                    kept++;
+                }
+            }
+            assertTrue(kept > 0 && dropped > 0, "抽样率 0.5 时应有会话被保留也有会话被丢弃");
+        }
+
+        private double accepted() {
+            return meterRegistry.counter("quiz.telemetry.events", "result", "accepted").count();
+        }
+    }
+}
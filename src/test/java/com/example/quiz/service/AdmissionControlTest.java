@@ -0,0 +1,97 @@
+package com.example.quiz.service;
+
+import com.example.quiz.config.AdmissionFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 准入控制测试：在途字节预算、排队后接收、超时拒绝与 503 响应
+ */
+class AdmissionControlTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void queuesUntilReleasedAndRejectsAfterTimeout() throws Exception {
+        AdmissionControl control = new AdmissionControl(1000, 2000, 5, 0, meterRegistry);
+        AdmissionControl.Permit first = control.acquire(800);
+        assertNotNull(first);
+
+        CompletableFuture<AdmissionControl.Permit> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return control.acquire(500);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(200);
+        assertEquals(1, control.getWaiting(), "超出预算的请求应排队");
+        first.close();
+        first.close();
+        AdmissionControl.Permit second = waiting.get(2, TimeUnit.SECONDS);
+        assertNotNull(second, "释放后排队的请求应被接收");
+        assertEquals(500, control.getInFlightBytes(), "重复 close 不应重复归还");
+
+        AdmissionControl impatient = new AdmissionControl(1000, 50, 5, 0, meterRegistry);
+        AdmissionControl.Permit held = impatient.acquire(600);
+        assertNull(impatient.acquire(600), "排队超时应拒绝");
+        held.close();
+
+        assertEquals(3.0, meterRegistry.get("quiz.admission.admitted").counter().count());
+        assertEquals(2.0, meterRegistry.get("quiz.admission.queued").counter().count());
+        assertEquals(1.0, meterRegistry.get("quiz.admission.rejected").tag("reason", "budget").counter().count());
+    }
+
+    @Test
+    void filterReturns503WithRetryAfterWhenOverBudget() throws Exception {
+        AdmissionControl control = new AdmissionControl(1000, 20, 7, 0, meterRegistry);
+        AdmissionFilter filter = new AdmissionFilter(control, 4096, DataSize.ofBytes(1024), DataSize.ofBytes(512), 2048);
+        AdmissionControl.Permit held = control.acquire(900);
+
+        MockHttpServletRequest save = new MockHttpServletRequest("PUT", "/quiz/answer/12/content");
+        save.setContent(new byte[500]);
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        filter.doFilter(save, rejected, new MockFilterChain());
+        assertEquals(503, rejected.getStatus());
+        assertEquals("7", rejected.getHeader("Retry-After"));
+
+        held.close();
+        MockHttpServletResponse accepted = new MockHttpServletResponse();
+        filter.doFilter(save, accepted, new MockFilterChain());
+        assertEquals(200, accepted.getStatus());
+        assertEquals(0, control.getInFlightBytes(), "同步请求结束后应归还");
+
+        // 未声明长度的上传按接口上限（2048）计费：有其他在途请求时超出预算，不能只按一小块计
+        MockHttpServletRequest chunked = new MockHttpServletRequest("PUT", "/quiz/answer/12/content") {
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        chunked.setContent(new byte[500]);
+        held = control.acquire(100);
+        MockHttpServletResponse chunkedRejected = new MockHttpServletResponse();
+        filter.doFilter(chunked, chunkedRejected, new MockFilterChain());
+        assertEquals(503, chunkedRejected.getStatus());
+        MockHttpServletResponse declaredAccepted = new MockHttpServletResponse();
+        filter.doFilter(save, declaredAccepted, new MockFilterChain());
+        assertEquals(200, declaredAccepted.getStatus(), "声明了长度的同样大小请求按实际长度计费");
+        held.close();
+
+        MockHttpServletRequest page = new MockHttpServletRequest("GET", "/quiz/bootstrap");
+        held = control.acquire(1000);
+        MockHttpServletResponse unguarded = new MockHttpServletResponse();
+        filter.doFilter(page, unguarded, new MockFilterChain());
+        assertEquals(200, unguarded.getStatus(), "普通读取不受准入控制");
+        held.close();
+    }
+}
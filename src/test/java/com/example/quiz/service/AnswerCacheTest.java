@@ -0,0 +1,115 @@
+package com.example.quiz.service;
+
+import com.example.quiz.dto.AnswerDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 答案缓存测试：按字节淘汰、超大条目不缓存、失效与命中统计、按内容版本拒绝晚到的旧值
+ */
+class AnswerCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void evictsLeastRecentlyUsedByBytes() {
+        AnswerCache cache = new AnswerCache(3 * 1024, 2 * 1024, meterRegistry);
+        cache.put("u1", 1L, answer(500));
+        cache.put("u1", 2L, answer(500));
+        cache.get("u1", 1L);
+        cache.put("u1", 3L, answer(500));
+
+        assertNotNull(cache.get("u1", 1L), "最近访问的条目应保留");
+        assertNull(cache.get("u1", 2L), "最久未访问的条目应被淘汰");
+        assertNotNull(cache.get("u1", 3L));
+        assertTrue(cache.getTotalBytes() <= 3 * 1024);
+        assertEquals(1.0, meterRegistry.get("quiz.answer.cache.evictions").counter().count());
+    }
+
+    @Test
+    void oversizedAnswerIsNotCachedAndReplacesStaleEntry() {
+        AnswerCache cache = new AnswerCache(64 * 1024, 4 * 1024, meterRegistry);
+        cache.put("u1", 1L, answer(100));
+        cache.put("u1", 1L, answer(10 * 1024));
+
+        assertNull(cache.get("u1", 1L), "超大答案不缓存，旧值也必须移除");
+        assertEquals(0, cache.getTotalBytes());
+    }
+
+    @Test
+    void putIfAbsentKeepsWriteThroughValue() {
+        AnswerCache cache = new AnswerCache(64 * 1024, 4 * 1024, meterRegistry);
+        AnswerDTO saved = answer(10);
+        cache.put("u1", 1L, saved);
+        cache.putIfAbsent("u1", 1L, answer(20));
+
+        assertSame(saved, cache.get("u1", 1L));
+    }
+
+    @Test
+    void versionMarkRejectsOlderReads() {
+        AnswerCache cache = new AnswerCache(64 * 1024, 4 * 1024, meterRegistry);
+        cache.putIfAbsent("u1", 1L, answer(10, 4L));
+        cache.invalidate("u1", 1L, 5L);
+
+        assertNull(cache.get("u1", 1L), "失效标记不是命中");
+        // 提交前开始的读取晚到，旧版本不能填回
+        cache.putIfAbsent("u1", 1L, answer(10, 4L));
+        assertNull(cache.get("u1", 1L));
+        AnswerDTO fresh = answer(10, 5L);
+        cache.putIfAbsent("u1", 1L, fresh);
+        assertSame(fresh, cache.get("u1", 1L));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void lateWriteThroughDoesNotOverwriteNewerVersion() {
+        AnswerCache cache = new AnswerCache(64 * 1024, 4 * 1024, meterRegistry);
+        AnswerDTO newer = answer(10, 6L);
+        cache.put("u1", 1L, newer);
+        // 较早提交的保存的写穿晚到
+        cache.put("u1", 1L, answer(10, 5L));
+        assertSame(newer, cache.get("u1", 1L));
+
+        cache.invalidate("u1", 2L, 8L);
+        cache.put("u1", 2L, answer(10, 7L));
+        assertNull(cache.get("u1", 2L), "流式保存留下的标记不能被旧写穿覆盖");
+        AnswerDTO same = answer(10, 8L);
+        cache.put("u1", 2L, same);
+        assertSame(same, cache.get("u1", 2L));
+    }
+
+    @Test
+    void invalidatesByUserAndQuestion() {
+        AnswerCache cache = new AnswerCache(64 * 1024, 4 * 1024, meterRegistry);
+        cache.put("u1", 1L, answer(10));
+        cache.put("u2", 1L, answer(10));
+        cache.put("u2", 2L, answer(10));
+
+        cache.invalidateUsers(List.of("u1"));
+        cache.invalidateQuestions(List.of(2L));
+
+        assertNull(cache.get("u1", 1L));
+        assertNotNull(cache.get("u2", 1L));
+        assertNull(cache.get("u2", 2L));
+        assertEquals(1, cache.size());
+        assertEquals(1.0, meterRegistry.get("quiz.answer.cache.requests").tag("result", "hit").counter().count());
+        assertEquals(2.0, meterRegistry.get("quiz.answer.cache.requests").tag("result", "miss").counter().count());
+    }
+
+    private static AnswerDTO answer(int chars) {
+        AnswerDTO dto = new AnswerDTO();
+        dto.setContent("a".repeat(chars));
+        return dto;
+    }
+
+    private static AnswerDTO answer(int chars, long contentVersion) {
+        AnswerDTO dto = answer(chars);
+        dto.setContentVersion(contentVersion);
+        return dto;
+    }
+}
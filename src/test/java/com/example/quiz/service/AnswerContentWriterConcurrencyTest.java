@@ -0,0 +1,123 @@
+package com.example.quiz.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 并发流式保存：第一份请求体读到一半时第二份开始保存，两份内容必须得到不同的内容版本；
+ * 首次保存同样并发时只能有一个答案行
+ */
+class AnswerContentWriterConcurrencyTest {
+
+    @Test
+    void concurrentSavesNeverShareAVersion() throws Exception {
+        DriverManagerDataSource dataSource = dataSource();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("INSERT INTO answers (question_id, user_id, content_length, content_version) VALUES (1, 1, 0, 1)");
+        try {
+            List<Long> versions = saveConcurrently(dataSource);
+            assertEquals(List.of(2L, 3L), versions);
+            assertEquals(3L, jdbcTemplate.queryForObject("SELECT content_version FROM answers", Long.class));
+        } finally {
+            jdbcTemplate.execute("DROP ALL OBJECTS");
+        }
+    }
+
+    @Test
+    void concurrentFirstSavesShareOneAnswerRow() throws Exception {
+        DriverManagerDataSource dataSource = dataSource();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        try {
+            List<Long> versions = saveConcurrently(dataSource);
+            assertEquals(List.of(1L, 2L), versions);
+            assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM answers", Integer.class));
+            assertEquals(2L, jdbcTemplate.queryForObject("SELECT content_version FROM answers", Long.class));
+            assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM answer_contents", Integer.class));
+        } finally {
+            jdbcTemplate.execute("DROP ALL OBJECTS");
+        }
+    }
+
+    private static DriverManagerDataSource dataSource() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:writerconcurrency;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE answers (id BIGINT AUTO_INCREMENT PRIMARY KEY, created_at TIMESTAMP, "
+                + "updated_at TIMESTAMP, question_id BIGINT, user_id BIGINT, score DOUBLE, content_length INT, content_version BIGINT, "
+                + "CONSTRAINT uk_answers_question_user UNIQUE (question_id, user_id))");
+        jdbcTemplate.execute("CREATE TABLE answer_contents (answer_id BIGINT PRIMARY KEY, content CLOB, content_gz BLOB)");
+        return dataSource;
+    }
+
+    /**
+     * 第一份请求体读到一半时开始第二份保存，返回两次保存得到的内容版本（升序）
+     */
+    private static List<Long> saveConcurrently(DriverManagerDataSource dataSource) throws Exception {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        AnswerContentStorage storage = new AnswerContentStorage(null, null, transactionManager, "gzip", false);
+        AnswerContentWriter writer = new AnswerContentWriter(jdbcTemplate, storage, 1 << 20);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        CountDownLatch firstReading = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        InputStream slowBody = new InputStream() {
+            private final InputStream head = new ByteArrayInputStream("<p>first".getBytes(StandardCharsets.UTF_8));
+
+            @Override
+            public int read() throws IOException {
+                int b = head.read();
+                if (b < 0) {
+                    firstReading.countDown();
+                    try {
+                        releaseFirst.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+                return b;
+            }
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<AnswerContentWriter.Result> first = pool.submit(() -> tx.execute(status -> write(writer, slowBody)));
+            assertTrue(firstReading.await(10, TimeUnit.SECONDS));
+            Future<AnswerContentWriter.Result> second = pool.submit(() -> tx.execute(status ->
+                    write(writer, new ByteArrayInputStream("<p>second</p>".getBytes(StandardCharsets.UTF_8)))));
+            Thread.sleep(200);
+            releaseFirst.countDown();
+
+            long v1 = first.get(10, TimeUnit.SECONDS).contentVersion();
+            long v2 = second.get(10, TimeUnit.SECONDS).contentVersion();
+            assertNotEquals(v1, v2);
+            return List.of(Math.min(v1, v2), Math.max(v1, v2));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static AnswerContentWriter.Result write(AnswerContentWriter writer, InputStream body) {
+        try {
+            return writer.write(1, 1, body);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
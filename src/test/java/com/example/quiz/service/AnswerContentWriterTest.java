@@ -0,0 +1,76 @@
+package com.example.quiz.service;
+
+import com.example.quiz.model.AnswerContentCodec;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流式保存的校验流与压缩流测试：不依赖数据库
+ */
+class AnswerContentWriterTest {
+
+    @Test
+    void countsCharsAcrossChunkBoundariesAndMatchesCodecOutput() throws Exception {
+        // 多字节字符与代理对跨越 8KB 读取边界
+        String text = "<p>" + "答😀x".repeat(5000) + "</p>";
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        AnswerContentWriter.Utf8CountingInputStream counted =
+                new AnswerContentWriter.Utf8CountingInputStream(new OneByteThenBulk(utf8), Long.MAX_VALUE);
+
+        byte[] compressed = new AnswerContentWriter.GzipDeflatingInputStream(counted).readAllBytes();
+
+        assertEquals(utf8.length, counted.getBytes());
+        assertEquals(text.length(), counted.getChars());
+        assertArrayEquals(AnswerContentCodec.gzip(text), compressed);
+        assertEquals(text, AnswerContentCodec.gunzip(compressed, -1));
+    }
+
+    @Test
+    void rejectsOversizedAndTruncatedInput() {
+        byte[] body = new byte[10_000];
+        AnswerContentWriter.Utf8CountingInputStream tooLarge =
+                new AnswerContentWriter.Utf8CountingInputStream(new ByteArrayInputStream(body), 4096);
+        assertThrows(AnswerContentWriter.ContentTooLargeException.class, tooLarge::readAllBytes);
+        assertInstanceOf(AnswerContentWriter.ContentTooLargeException.class, tooLarge.getFailure());
+
+        // 结尾是不完整的多字节序列
+        byte[] truncated = {'a', (byte) 0xE7, (byte) 0xAD};
+        AnswerContentWriter.Utf8CountingInputStream malformed =
+                new AnswerContentWriter.Utf8CountingInputStream(new ByteArrayInputStream(truncated), 4096);
+        assertThrows(CharacterCodingException.class, malformed::readAllBytes);
+    }
+
+    /**
+     * 先返回单字节再整块返回，模拟网络读取的不规则分段
+     */
+    private static final class OneByteThenBulk extends InputStream {
+        private final byte[] data;
+        private int position;
+
+        OneByteThenBulk(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public int read() {
+            return position < data.length ? data[position++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position >= data.length) {
+                return -1;
+            }
+            int n = position % 2 == 0 ? 1 : Math.min(len, Math.min(3000, data.length - position));
+            System.arraycopy(data, position, b, off, n);
+            position += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.quiz.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 修订历史测试：差量往返、任意版本重建、重新打开后索引一致、末尾损坏截断、压缩稀疏旧修订
+ */
+class AnswerRevisionLogTest {
+
+    @TempDir
+    Path tempDir;
+
+    private AnswerRevisionLog newLog() {
+        return new AnswerRevisionLog(null, true, tempDir.toString(), 5, Duration.ofDays(7), Duration.ofHours(1),
+                1024 * 1024, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void deltaRoundTripsArbitraryEdits() {
+        Random random = new Random(7);
+        byte[] base = new byte[20_000];
+        random.nextBytes(base);
+        byte[] target = new byte[base.length + 100];
+        System.arraycopy(base, 10_000, target, 0, 10_000);           // 后半移到前面
+        System.arraycopy("inserted text ".getBytes(), 0, target, 10_000, 14);
+        System.arraycopy(base, 0, target, 10_014, 10_000);
+        byte[] delta = BinaryDelta.encode(base, target);
+        assertArrayEquals(target, BinaryDelta.apply(base, delta));
+        assertTrue(delta.length < 200, "移动的块应编码为复制指令: " + delta.length);
+
+        assertArrayEquals(new byte[0], BinaryDelta.apply(base, BinaryDelta.encode(base, new byte[0])));
+        assertArrayEquals(base, BinaryDelta.apply(new byte[0], BinaryDelta.encode(new byte[0], base)));
+    }
+
+    @Test
+    void reconstructsEveryVersionAndSurvivesReopenWithTornTail() throws Exception {
+        String image = "<img src=\"data:image/png;base64," + Base64.getEncoder().encodeToString(randomBytes(200_000)) + "\">";
+        List<String> versions = new ArrayList<>();
+        StringBuilder text = new StringBuilder("<p>答案开始</p>");
+        AnswerRevisionLog log = newLog();
+        long time = System.currentTimeMillis();
+        for (int v = 1; v <= 12; v++) {
+            text.append("<p>第 ").append(v).append(" 次自动保存追加的一句话。</p>");
+            String html = text + image;
+            versions.add(html);
+            log.append(1L, v, time + v * 1000L, html);
+        }
+        log.append(1L, 12, time, "重复提交的旧版本被忽略");
+        log.append(2L, 1, time, "<p>另一个答案</p>");
+
+        List<AnswerRevisionLog.Revision> revisions = log.revisions(1L);
+        assertEquals(12, revisions.size());
+        assertEquals(3, revisions.stream().filter(AnswerRevisionLog.Revision::keyframe).count(), "每 5 条一个关键帧");
+        long stored = revisions.stream().mapToLong(AnswerRevisionLog.Revision::storedBytes).sum();
+        assertTrue(stored < 4 * image.length(), "差量不应重复保存图片: " + stored);
+        for (int v = 1; v <= 12; v++) {
+            assertEquals(versions.get(v - 1), log.contentAt(1L, v).orElseThrow());
+        }
+        assertEquals(7, log.revisionAt(1L, revisions.get(6).savedAt()).orElseThrow().version());
+        log.shutdown();
+
+        // 模拟写入中途崩溃：末尾半条记录
+        Path segment = tempDir.resolve("revisions-000001.log");
+        long size = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 1, 0, 9, 9, 9}));
+        }
+        AnswerRevisionLog reopened = newLog();
+        assertEquals(12, reopened.revisions(1L).size());
+        assertEquals(versions.get(10), reopened.contentAt(1L, 11).orElseThrow());
+        assertEquals(size, Files.size(segment), "不完整的记录应被截掉");
+        reopened.append(1L, 13, time + 20_000, "<p>重新打开后继续追加</p>");
+        assertEquals("<p>重新打开后继续追加</p>", reopened.contentAt(1L, 13).orElseThrow());
+        reopened.shutdown();
+    }
+
+    @Test
+    void compactionThinsOldRevisionsAndKeepsRecentOnes() throws Exception {
+        AnswerRevisionLog log = newLog();
+        long now = System.currentTimeMillis();
+        long old = now - Duration.ofDays(30).toMillis();
+        old -= old % Duration.ofHours(1).toMillis();
+        for (int v = 1; v <= 10; v++) {
+            // 两个小时内每 12 分钟保存一次
+            log.append(7L, v, old + v * Duration.ofMinutes(12).toMillis(), "<p>旧内容 " + "x".repeat(v * 10) + "</p>");
+        }
+        for (int v = 11; v <= 13; v++) {
+            log.append(7L, v, now - (14 - v) * 1000L, "<p>新内容 " + v + "</p>");
+        }
+
+        log.compactNow(now).get();
+
+        List<Long> kept = log.revisions(7L).stream().map(AnswerRevisionLog.Revision::version).toList();
+        assertEquals(List.of(4L, 9L, 10L, 11L, 12L, 13L), kept, "旧修订每小时保留最后一条，最近的全部保留");
+        for (long v : kept) {
+            String expected = v <= 10 ? "<p>旧内容 " + "x".repeat((int) v * 10) + "</p>" : "<p>新内容 " + v + "</p>";
+            assertEquals(expected, log.contentAt(7L, v).orElseThrow());
+        }
+        assertTrue(log.contentAt(7L, 5).isEmpty());
+        assertTrue(Files.exists(tempDir.resolve("revisions-000002.log")));
+        assertFalse(Files.exists(tempDir.resolve("revisions-000001.log")));
+        log.shutdown();
+
+        AnswerRevisionLog reopened = newLog();
+        assertEquals(kept, reopened.revisions(7L).stream().map(AnswerRevisionLog.Revision::version).toList());
+        reopened.shutdown();
+    }
+
+    private static byte[] randomBytes(int n) {
+        byte[] bytes = new byte[n];
+        new Random(1).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.quiz.service;
+
+import com.example.quiz.model.*;
+import com.example.quiz.repository.*;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 并发表单保存：第一次保存的事务未提交时第二次保存开始，两次保存必须得到不同的内容版本；
+ * 已有答案行但没有内容行时，保存补建内容而不另插入答案
+ * 需要已提交的数据，本测试不使用事务回滚，使用独立的内存库
+ */
+@SpringBootTest
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:savedb;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "app.image-ingest.enabled=false"
+})
+class AnswerSaveServiceTest {
+
+    @Autowired
+    private AnswerSaveService answerSaveService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ChapterRepository chapterRepository;
+
+    @Autowired
+    private QuestionRepository questionRepository;
+
+    @Autowired
+    private AnswerRepository answerRepository;
+
+    @Autowired
+    private AnswerContentRepository answerContentRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void concurrentSavesNeverShareAVersion() throws Exception {
+        User student = userRepository.save(new User("s1", "p"));
+        Chapter chapter = chapterRepository.save(new Chapter("章节", "描述", 1));
+        Question question = questionRepository.save(new Question("题目", "描述", "1.1", 1, chapter));
+        long answerId = answerSaveService.save(question, student, "<p>初稿</p>").answer().getId();
+
+        CountDownLatch firstSaved = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            // 第一次保存完成后事务暂不提交
+            Future<Long> first = pool.submit(() -> transactionTemplate.execute(status -> {
+                long version = answerSaveService.save(question, student, "<p>第一次</p>").answer().getContentVersion();
+                firstSaved.countDown();
+                try {
+                    releaseFirst.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return version;
+            }));
+            assertTrue(firstSaved.await(10, TimeUnit.SECONDS));
+            Future<Long> second = pool.submit(() ->
+                    answerSaveService.save(question, student, "<p>第二次</p>").answer().getContentVersion());
+            Thread.sleep(200);
+            releaseFirst.countDown();
+
+            long v1 = first.get(10, TimeUnit.SECONDS);
+            long v2 = second.get(10, TimeUnit.SECONDS);
+            assertEquals(2L, v1);
+            assertEquals(3L, v2);
+            assertEquals(3L, answerRepository.findById(answerId).orElseThrow().getContentVersion());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void answerRowWithoutContentIsReused() {
+        User student = userRepository.save(new User("s2", "p"));
+        Chapter chapter = chapterRepository.save(new Chapter("章节2", "描述", 2));
+        Question question = questionRepository.save(new Question("题目2", "描述", "2.1", 1, chapter));
+        long answerId = answerRepository.save(new Answer(question, student)).getId();
+
+        AnswerSaveService.Result result = answerSaveService.save(question, student, "<p>补上的内容</p>");
+
+        assertTrue(result.updated());
+        assertEquals(answerId, result.answer().getId());
+        assertEquals(1, answerRepository.findByUser(student).size());
+        AnswerContent body = transactionTemplate.execute(status -> {
+            AnswerContent found = answerContentRepository.findById(answerId).orElseThrow();
+            found.getContent();
+            return found;
+        });
+        assertEquals("<p>补上的内容</p>", body.getContent());
+    }
+}
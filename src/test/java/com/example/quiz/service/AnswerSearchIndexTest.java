@@ -0,0 +1,104 @@
+package com.example.quiz.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 全文检索测试：去标签与中文二元组、BM25 排序与题目过滤、按版本更新与删除、快照读写
+ */
+class AnswerSearchIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private AnswerSearchIndex index;
+
+    @AfterEach
+    void tearDown() {
+        if (index != null) {
+            index.shutdown();
+        }
+    }
+
+    private AnswerSearchIndex newIndex() {
+        return new AnswerSearchIndex(null, null, true, tempDir.resolve("index.bin").toString(), 2, new SimpleMeterRegistry());
+    }
+
+    private static AnswerSearchIndex.Doc doc(long answerId, long questionId, long version, String html) {
+        return AnswerSearchIndex.Doc.of(answerId, questionId, "student" + answerId, version, SearchTokenizer.plainText(html));
+    }
+
+    @Test
+    void matchesAllTermsRankedByRelevance() {
+        index = newIndex();
+        index.put(doc(1, 10, 1, "<p>哈希表的<b>冲突</b>用链地址法解决</p><img src=\"data:image/png;base64,aGFzaA==\">"));
+        index.put(doc(2, 10, 1, "<p>哈希冲突：开放地址法。哈希冲突越多，查找越慢</p>"));
+        index.put(doc(3, 11, 1, "<p>二叉树的遍历 &amp; HashMap</p>"));
+
+        AnswerSearchIndex.Result result = index.search("哈希冲突", null, 0, 10);
+        assertEquals(List.of(2L), result.hits().stream().map(AnswerSearchIndex.Hit::answerId).toList(),
+                "“哈希表的冲突”不含“希冲”，不应命中");
+        assertEquals(1, result.total());
+
+        assertEquals(List.of(2L, 1L), ids(index.search("地址 哈希", null, 0, 10)), "词频更高的答案排在前面");
+        assertEquals(List.of(3L), ids(index.search("hashmap", null, 0, 10)), "英文不区分大小写，实体已解码");
+        assertTrue(ids(index.search("png base64", null, 0, 10)).isEmpty(), "标签属性中的内容不应被索引");
+        assertTrue(ids(index.search("哈希", 11L, 0, 10)).isEmpty(), "按题目过滤");
+        assertTrue(index.search("哈希冲突", null, 0, 10).hits().get(0).snippet().contains("哈希冲突"));
+    }
+
+    @Test
+    void appliesNewerVersionsAndRemovesDeletedAnswers() {
+        index = newIndex();
+        index.put(doc(1, 10, 2, "<p>栈是后进先出</p>"));
+        index.put(doc(1, 10, 1, "<p>队列是先进先出</p>"));
+        assertEquals(List.of(1L), ids(index.search("栈", null, 0, 10)), "旧版本不应覆盖新版本");
+
+        index.put(doc(1, 10, 3, "<p>队列是先进先出</p>"));
+        assertTrue(ids(index.search("栈", null, 0, 10)).isEmpty());
+        assertEquals(List.of(1L), ids(index.search("队列", null, 0, 10)));
+
+        index.remove(1);
+        assertTrue(ids(index.search("队列", null, 0, 10)).isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void snapshotRoundTrip() throws Exception {
+        index = newIndex();
+        for (long id = 1; id <= 30; id++) {
+            index.put(doc(id, id % 3, id, "<p>答案 " + id + " 讨论了排序算法</p>"));
+        }
+        index.writeSnapshot();
+
+        AnswerSearchIndex restored = newIndex();
+        assertFalse(restored.isSearchable(), "快照读入前不可查询");
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            assertEquals(30, restored.loadSnapshot(pool));
+            assertTrue(restored.isSearchable(), "快照读入后即可查询，不等版本比对完成");
+            assertFalse(restored.isReady());
+        } finally {
+            pool.shutdownNow();
+            restored.shutdown();
+        }
+        assertEquals(30, restored.size());
+        AnswerSearchIndex.Result result = restored.search("排序算法", 1L, 0, 5);
+        assertEquals(10, result.total());
+        assertEquals(5, result.hits().size());
+        assertEquals("student1", result.hits().get(0).username());
+    }
+
+    private static List<Long> ids(AnswerSearchIndex.Result result) {
+        return result.hits().stream().map(AnswerSearchIndex.Hit::answerId).toList();
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.quiz.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 查重测试：签名相似度估计、图片哈希参与比较、LSH 分组只包含相似答案
+ */
+class AnswerSimilarityServiceTest {
+
+    private final AnswerSimilarityService service = new AnswerSimilarityService(null, null,
+            true, 32, 4, 5, 20, 0.8, 2, new SimpleMeterRegistry());
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void estimatesSimilarityOfEditedCopies() {
+        String original = "<p>快速排序选择一个基准元素，把小于基准的元素放在左边，大于基准的元素放在右边，然后递归排序两部分。"
+                + "平均时间复杂度为 O(n log n)，最坏情况为 O(n^2)。</p>";
+        String copied = "<div>快速排序选择一个基准元素, 把小于基准的元素放在左边，大于基准的元素放在右边，然后递归排序两部分。"
+                + "平均时间复杂度为 o(N LOG N)，最坏情况为 O(n^2)！</div>";
+        String different = "<p>归并排序把数组分成两半分别排序，再把两个有序数组合并，时间复杂度稳定为 O(n log n)，需要额外空间。</p>";
+
+        int[] a = service.signature(1, 1, "a", 1, original).minHashes();
+        int[] b = service.signature(2, 1, "b", 1, copied).minHashes();
+        int[] c = service.signature(3, 1, "c", 1, different).minHashes();
+        assertEquals(1.0, AnswerSimilarityService.similarity(a, b), 0.001, "标签、标点、空白与大小写不影响比较");
+        assertTrue(AnswerSimilarityService.similarity(a, c) < 0.2);
+
+        String image = "<img src=\"data:image/png;base64," + Base64.getEncoder().encodeToString(new byte[600]) + "\">";
+        assertNull(service.signature(4, 1, "d", 1, "<p>见图</p>").minHashes(), "过短且无图片的答案不参与比较");
+        int[] embedded = service.signature(5, 1, "e", 1, "<p>见图</p>" + image).minHashes();
+        String hash = EmbeddedImages.find(image).get(0).hash();
+        int[] stored = service.signature(6, 1, "f", 1, "<p>见图</p><img src=\"/quiz/images/" + hash + ".png\">").minHashes();
+        assertArrayEquals(embedded, stored, "内嵌图片与移到外部存储后的同一图片哈希相同");
+    }
+
+    @Test
+    void clustersOnlyNearDuplicatesAmongManyAnswers() {
+        Random random = new Random(42);
+        String vocabulary = "数据结构链表数组哈希冲突二叉树遍历图的最短路径动态规划贪心回溯栈队列堆排序查找递归复杂度分析";
+        List<AnswerSimilarityService.Signature> signatures = new ArrayList<>();
+        String copiedText = null;
+        for (long id = 1; id <= 500; id++) {
+            StringBuilder sb = new StringBuilder("<p>");
+            for (int i = 0; i < 200; i++) {
+                sb.append(vocabulary.charAt(random.nextInt(vocabulary.length())));
+            }
+            String text = sb.append("</p>").toString();
+            if (id == 10) {
+                copiedText = text;
+            }
+            if (id == 250 || id == 400) {
+                // 抄袭者改动了开头几个字
+                text = "<p>我的答案" + copiedText.substring(8);
+            }
+            signatures.add(service.signature(id, 1, "student" + id, 1, text));
+        }
+
+        AnswerSimilarityService.Report report = service.clusters(1, signatures, 0.8, 0);
+        assertEquals(500, report.compared());
+        assertEquals(1, report.clusters().size(), "随机答案之间不应被归为相似");
+        AnswerSimilarityService.Cluster cluster = report.clusters().get(0);
+        assertEquals(List.of(10L, 250L, 400L), cluster.members().stream().map(AnswerSimilarityService.Member::answerId).toList());
+        assertEquals(3, cluster.pairs().size());
+        assertTrue(cluster.maxSimilarity() >= 0.9);
+        assertTrue(report.candidatePairs() < 500 * 499 / 2 / 10, "LSH 候选对应远少于全部答案对");
+    }
+}
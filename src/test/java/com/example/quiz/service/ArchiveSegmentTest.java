@@ -0,0 +1,87 @@
+package com.example.quiz.service;
+
+import com.example.quiz.model.AnswerContentCodec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 归档段测试：乱序写入后按 (题目, 用户) 二分查找、按题目取范围、只读索引取得分；未完成的段不留下正式文件
+ */
+class ArchiveSegmentTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void findsEveryRecordAfterSortingTheIndex() throws IOException {
+        List<ArchiveSegment.ArchivedAnswer> answers = new ArrayList<>();
+        Random random = new Random(3);
+        long answerId = 1;
+        for (long questionId = 1; questionId <= 20; questionId++) {
+            for (long userId = 1; userId <= 50; userId += 1 + random.nextInt(2)) {
+                String content = "<p>题 " + questionId + " 用户 " + userId + "</p>".repeat(random.nextInt(20));
+                Double score = random.nextBoolean() ? random.nextInt(20) * 0.5 : null;
+                answers.add(new ArchiveSegment.ArchivedAnswer(answerId++, questionId, userId, "u" + userId, score,
+                        score != null && score > 5 ? "备注" + userId : null, LocalDateTime.of(2026, 6, 1, 9, 0, 0, 123_000_000),
+                        null, 3, content.length(), AnswerContentCodec.gzip(content)));
+            }
+        }
+        List<ArchiveSegment.ArchivedAnswer> shuffled = new ArrayList<>(answers);
+        Collections.shuffle(shuffled, random);
+        ArchiveSegment segment;
+        try (ArchiveSegment.Writer writer = new ArchiveSegment.Writer(dir.resolve("s.dat"), dir.resolve("s.idx"))) {
+            for (ArchiveSegment.ArchivedAnswer answer : shuffled) {
+                writer.append(answer);
+            }
+            segment = writer.finish();
+        }
+        assertFalse(Files.exists(dir.resolve("s.dat.tmp")));
+        // 重新映射，与写入后直接返回的段一致
+        segment = ArchiveSegment.open(dir.resolve("s.idx"), dir.resolve("s.dat"));
+        assertEquals(answers.size(), segment.size());
+
+        for (ArchiveSegment.ArchivedAnswer expected : answers) {
+            ArchiveSegment.ArchivedAnswer found = segment.find(expected.questionId(), expected.userId());
+            assertNotNull(found);
+            assertEquals(expected.answerId(), found.answerId());
+            assertEquals(expected.username(), found.username());
+            assertEquals(expected.score(), found.score());
+            assertEquals(expected.remark(), found.remark());
+            assertEquals(expected.createdAt(), found.createdAt());
+            assertNull(found.updatedAt());
+            assertEquals(3, found.contentVersion());
+            assertEquals(AnswerContentCodec.gunzip(expected.contentGzip(), -1), found.content());
+        }
+        assertNull(segment.find(1, 1000));
+        assertNull(segment.find(21, 1));
+
+        List<ArchiveSegment.ArchivedAnswer> question7 = segment.findByQuestion(7);
+        assertEquals(answers.stream().filter(a -> a.questionId() == 7).count(), question7.size());
+        for (int i = 1; i < question7.size(); i++) {
+            assertTrue(question7.get(i - 1).userId() < question7.get(i).userId());
+        }
+        assertEquals(answers.stream().filter(a -> a.score() != null).count(), segment.scores().size());
+    }
+
+    @Test
+    void unfinishedWriterLeavesNoSegment() throws IOException {
+        try (ArchiveSegment.Writer writer = new ArchiveSegment.Writer(dir.resolve("s.dat"), dir.resolve("s.idx"))) {
+            writer.append(new ArchiveSegment.ArchivedAnswer(1, 1, 1, "u1", null, null, null, null, 1, 1,
+                    AnswerContentCodec.gzip("x")));
+        }
+        try (var files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.quiz.service;
+
+import com.example.quiz.backup.BackupManifest;
+import com.example.quiz.backup.BackupRepository;
+import com.example.quiz.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 在线备份测试：备份需要文件数据库，使用临时目录中的独立 H2 文件
+ */
+@SpringBootTest
+class DatabaseBackupServiceTest {
+
+    private static Path workDir;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) throws Exception {
+        workDir = Files.createTempDirectory("backup-test");
+        registry.add("spring.datasource.url", () -> "jdbc:h2:file:" + workDir.resolve("pocdb") + ";DB_CLOSE_DELAY=-1");
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop");
+        registry.add("app.data-sync.enabled", () -> "true");
+        registry.add("app.data-sync.location", () -> "classpath:data_v1.json");
+        registry.add("app.db-backup.dir", () -> workDir.resolve("backups").toString());
+        registry.add("app.db-backup.throttle-mb-per-sec", () -> "0");
+        registry.add("app.image-store.dir", () -> workDir.resolve("images").toString());
+        registry.add("app.archive.dir", () -> workDir.resolve("archive").toString());
+    }
+
+    @Autowired
+    private DatabaseBackupService databaseBackupService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void backupIsVerifiedAndWritesManifest() throws Exception {
+        Path zip = workDir.resolve("backups").resolve("pocdb_test.zip");
+        Files.createDirectories(zip.getParent());
+
+        BackupManifest manifest = databaseBackupService.backupTo(zip);
+
+        assertTrue(Files.exists(zip));
+        assertFalse(Files.exists(zip.resolveSibling("pocdb_test.zip.part")), "临时文件应已替换为正式备份");
+        assertFalse(Files.exists(zip.resolveSibling("pocdb_test.zip.verify")), "校验用临时目录应已删除");
+        assertEquals(Files.size(zip), manifest.sizeBytes());
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(zip))),
+                manifest.sha256());
+        assertEquals(userRepository.count(), manifest.rowCounts().get("users"));
+        assertTrue(manifest.rowCounts().get("questions") > 0);
+
+        BackupManifest written = objectMapper.readValue(
+                zip.resolveSibling("pocdb_test.zip" + BackupManifest.SUFFIX).toFile(), BackupManifest.class);
+        assertEquals(manifest, written);
+
+        assertEquals(1, meterRegistry.get("quiz.db.backup.duration").tag("result", "success").timer().count());
+        assertEquals(Files.size(zip), (long) meterRegistry.get("quiz.db.backup.last.size.bytes").gauge().value());
+    }
+
+    @Test
+    void snapshotsAreStoredInRepositoryAndRestorable() throws Exception {
+        Path image = workDir.resolve("images").resolve("0123456789abcdef0123456789abcdef.png");
+        Files.createDirectories(image.getParent());
+        Files.write(image, new byte[]{(byte) 0x89, 'P', 'N', 'G'});
+        Files.write(image.resolveSibling("0123456789abcdef0123456789abcdef123.tmp"), new byte[]{1});
+        Path manifest = workDir.resolve("archive").resolve("archived-questions.txt");
+        Files.createDirectories(manifest.getParent());
+        Files.writeString(manifest, "7\n");
+        BackupRepository.Snapshot first = databaseBackupService.snapshot();
+        Thread.sleep(1100);
+        BackupRepository.Snapshot second = databaseBackupService.snapshot();
+
+        assertNotEquals(first.name(), second.name());
+        assertEquals(userRepository.count(), second.rowCounts().get("users"));
+        assertTrue(second.addedBytes() < first.addedBytes(), "未变化的数据不应重复存储");
+        assertTrue(Files.list(workDir.resolve("backups").resolve("repository").resolve("tmp")).findAny().isEmpty(),
+                "临时 zip 与解压目录应已删除");
+
+        Path restored = workDir.resolve("restored");
+        databaseBackupService.restore(second.name(), restored);
+        String url = "jdbc:h2:file:" + restored.resolve("pocdb") + ";ACCESS_MODE_DATA=r;IFEXISTS=TRUE";
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             ResultSet rs = connection.createStatement().executeQuery("SELECT COUNT(*) FROM users")) {
+            rs.next();
+            assertEquals(userRepository.count(), rs.getLong(1));
+        }
+        assertArrayEquals(Files.readAllBytes(image), Files.readAllBytes(restored.resolve("images/0123456789abcdef0123456789abcdef.png")));
+        assertFalse(Files.exists(restored.resolve("images/0123456789abcdef0123456789abcdef123.tmp")), "写入中的临时文件不进入快照");
+        assertEquals("7\n", Files.readString(restored.resolve("archive/archived-questions.txt")));
+    }
+}
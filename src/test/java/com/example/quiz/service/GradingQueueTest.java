@@ -0,0 +1,84 @@
+package com.example.quiz.service;
+
+import com.example.quiz.repository.AnswerRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 阅卷队列测试：租约到期收回、评分与新答案的增量维护、并发领取不重复
+ */
+class GradingQueueTest {
+
+    private final AnswerRepository answerRepository = mock(AnswerRepository.class);
+    private final GradingQueue queue = new GradingQueue(answerRepository, 60, new SimpleMeterRegistry());
+
+    @Test
+    void expiredLeasesAreHandedOutAgain() {
+        when(answerRepository.findUngradedIdsByQuestionId(1L)).thenReturn(List.of(10L, 11L));
+        long now = 1_000_000L;
+
+        assertEquals(10L, queue.next(1, "a", now).orElseThrow().answerId());
+        assertEquals(11L, queue.next(1, "b", now).orElseThrow().answerId());
+        assertFalse(queue.next(1, "c", now).isPresent());
+
+        // b 的答案已评分；a 的租约到期未评分，收回后分给 c，a 再领取时已无空闲答案
+        queue.scored(1, 11L);
+        GradingQueue.Lease lease = queue.next(1, "c", now + 60_000).orElseThrow();
+        assertEquals(10L, lease.answerId());
+        assertEquals(now + 120_000, lease.expiresAtMillis());
+        assertFalse(queue.next(1, "a", now + 60_000).isPresent());
+
+        queue.ungraded(1, 12L);
+        queue.ungraded(1, 10L);
+        assertEquals(12L, queue.next(1, "a", now + 60_000).orElseThrow().answerId());
+        assertEquals(2, queue.remaining(1));
+        verify(answerRepository, times(1)).findUngradedIdsByQuestionId(1L);
+    }
+
+    @Test
+    void concurrentGradersNeverShareAnAnswer() throws Exception {
+        when(answerRepository.findUngradedIdsByQuestionId(2L))
+                .thenReturn(LongStream.rangeClosed(1, 2000).boxed().toList());
+        Set<Long> taken = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        int graders = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[graders];
+        for (int i = 0; i < graders; i++) {
+            String grader = "grader" + i;
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                Optional<GradingQueue.Lease> lease;
+                while ((lease = queue.next(2, grader)).isPresent()) {
+                    if (!taken.add(lease.get().answerId())) {
+                        duplicates.incrementAndGet();
+                    }
+                    queue.scored(2, lease.get().answerId());
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, duplicates.get());
+        assertEquals(2000, taken.size());
+        assertEquals(0, queue.remaining(2));
+    }
+}
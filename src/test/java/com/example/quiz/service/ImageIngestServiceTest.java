@@ -0,0 +1,78 @@
+package com.example.quiz.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 图片重新压缩测试：超尺寸图片缩小、不透明图片可选 JPEG、透明图片保持 PNG、无法识别时保留原图
+ */
+class ImageIngestServiceTest {
+
+    private final ImageIngestService service = new ImageIngestService(null, null, null, null,
+            true, 800, 1024, 0.9f, "", 1, 10, new SimpleMeterRegistry());
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void downscalesOpaqueScreenshotToSmallerEncoding() throws IOException {
+        byte[] source = png(noisy(2000, 1000, BufferedImage.TYPE_INT_RGB));
+
+        ImageIngestService.Recompressed result = service.recompress(source);
+        assertNotNull(result);
+        assertTrue(result.bytes().length < source.length);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(result.bytes()));
+        assertEquals(800, image.getWidth());
+        assertEquals(400, image.getHeight());
+        assertEquals("image/jpeg", result.mimeType(), "噪点图片 JPEG 应小于 PNG");
+    }
+
+    @Test
+    void keepsTransparencyAndSkipsUnreadableImages() throws IOException {
+        BufferedImage transparent = noisy(1600, 1600, BufferedImage.TYPE_INT_ARGB);
+        transparent.setRGB(0, 0, 0x00000000);
+
+        ImageIngestService.Recompressed result = service.recompress(png(transparent));
+        assertNotNull(result);
+        assertEquals("image/png", result.mimeType(), "含透明像素的图片不能转为 JPEG");
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(result.bytes()));
+        assertEquals(800, image.getWidth());
+        assertTrue(image.getColorModel().hasAlpha());
+
+        assertNull(service.recompress("not an image".getBytes()));
+    }
+
+    private static BufferedImage noisy(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+        java.util.Random random = new java.util.Random(3);
+        for (int y = 0; y < height / 2; y++) {
+            for (int x = 0; x < width / 2; x++) {
+                image.setRGB(x, y, 0xFF000000 | random.nextInt(0xFFFFFF));
+            }
+        }
+        return image;
+    }
+
+    private static byte[] png(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.quiz.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 顺序统计树测试：随机更新后与排序列表逐项比对名次与按名次取键
+ */
+class RankTreeTest {
+
+    @Test
+    void matchesSortedListUnderRandomUpdates() {
+        RankTree tree = new RankTree();
+        Map<Long, Double> totals = new HashMap<>();
+        Random random = new Random(11);
+        for (long userId = 1; userId <= 300; userId++) {
+            totals.put(userId, 0.0);
+            tree.insert(0.0, userId);
+        }
+        for (int round = 0; round < 3000; round++) {
+            long userId = 1 + random.nextInt(300);
+            double previous = totals.get(userId);
+            double next = random.nextInt(40) * 0.5;
+            assertTrue(tree.remove(previous, userId));
+            tree.insert(next, userId);
+            totals.put(userId, next);
+        }
+        assertFalse(tree.remove(-1.0, 1));
+
+        List<Map.Entry<Long, Double>> sorted = new ArrayList<>(totals.entrySet());
+        sorted.sort((a, b) -> RankTree.compare(a.getValue(), a.getKey(), b.getValue(), b.getKey()));
+        assertEquals(300, tree.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            Map.Entry<Long, Double> entry = sorted.get(i);
+            assertEquals(new RankTree.Key(entry.getValue(), entry.getKey()), tree.get(i));
+            assertEquals(i, tree.countBefore(entry.getValue(), entry.getKey()));
+            long higher = sorted.stream().filter(e -> e.getValue() > entry.getValue()).count();
+            assertEquals(higher, tree.countHigher(entry.getValue()), "同分学生名次相同");
+        }
+        tree.clear();
+        assertEquals(0, tree.size());
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.quiz.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 评分规则测试：多模式匹配（含重叠与互为后缀的模式）、权重折算、长度范围与规则校验
+ */
+class ScoringRubricTest {
+
+    @Test
+    void ahoCorasickFindsOverlappingPatternsInOnePass() {
+        AhoCorasick matcher = new AhoCorasick(List.of("he", "she", "his", "hers", "哈希表", "希表"));
+        BitSet found = matcher.matches("ushers 使用哈希表");
+        BitSet expected = new BitSet();
+        expected.set(0, 2);
+        expected.set(3, 6);
+        assertEquals(expected, found, "she、he、hers、哈希表、希表，不含 his");
+        assertTrue(matcher.matches("无关文本").isEmpty());
+
+        // 与逐个 indexOf 的结果一致
+        Random random = new Random(7);
+        List<String> patterns = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            patterns.add(randomText(random, 1 + random.nextInt(4)));
+        }
+        AhoCorasick many = new AhoCorasick(patterns);
+        for (int round = 0; round < 50; round++) {
+            String text = randomText(random, 300);
+            BitSet matches = many.matches(text);
+            for (int i = 0; i < patterns.size(); i++) {
+                assertEquals(text.contains(patterns.get(i)), matches.get(i), patterns.get(i));
+            }
+        }
+    }
+
+    @Test
+    void scoresByMatchedWeightAndLength() {
+        ScoringRubric rubric = ScoringRubric.parse("{"
+                + "\"keywords\": [\"沙箱\", {\"text\": \"YARA\", \"weight\": 2}, {\"regex\": \"黑名单|白名单\"}],"
+                + "\"code_tokens\": [\"import requests\"],"
+                + "\"min_length\": 20, \"length_penalty\": 0.5}");
+
+        ScoringRubric.Suggestion full = rubric.evaluate(
+                "<p>配置 yara 规则与白名单后在沙箱中检测</p><pre>import requests\nrequests.post(url)</pre>", 10.0);
+        assertEquals(10.0, full.score());
+        assertFalse(full.note().contains("缺少"));
+
+        ScoringRubric.Suggestion partial = rubric.evaluate(
+                "<p>配置 YARA 规则后在沙箱中检测，样本全部检出</p><pre>Import Requests</pre>", 10.0);
+        assertEquals(6.0, partial.score(), "命中 3/5 的权重；代码片段区分大小写");
+        assertTrue(partial.note().contains("缺少: import requests, 黑名单|白名单"));
+
+        ScoringRubric.Suggestion shortAnswer = rubric.evaluate("<p>沙箱 YARA</p>", 10.0);
+        assertEquals(3.0, shortAnswer.score(), "过短的答案减半");
+        assertTrue(shortAnswer.note().contains("超出范围"));
+    }
+
+    @Test
+    void rejectsInvalidRubrics() {
+        assertThrows(IllegalArgumentException.class, () -> ScoringRubric.parse("[1, 2]"));
+        assertThrows(IllegalArgumentException.class, () -> ScoringRubric.parse("{\"keywords\": [{\"regex\": \"(\"}]}"));
+        assertThrows(IllegalArgumentException.class, () -> ScoringRubric.parse("{\"keywords\": [{\"weight\": 1}]}"));
+        assertEquals(5.0, ScoringRubric.parse("{}").evaluate("任意答案", 5.0).score(), "没有评分项时只看长度");
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append("abcab哈希".charAt(random.nextInt(7)));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.quiz.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 缩略图测试：内嵌图片定位与替换、按目标尺寸缩放写出 JPEG、无法识别的图片不生成
+ */
+class ThumbnailServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private ThumbnailService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void findsHashesAndRewritesEmbeddedImages() throws IOException {
+        byte[] png = png(40, 30);
+        String uri = "data:image/PNG;base64," + Base64.getEncoder().encodeToString(png);
+        String html = "<p>a</p><img src=\"" + uri + "\"><img src=\"" + uri + "\"><img src=\"data:image/gif;base64,R0lG\">";
+
+        List<EmbeddedImages.Image> images = EmbeddedImages.find(html);
+        assertEquals(3, images.size());
+        assertEquals("image/png", images.get(0).mimeType());
+        assertEquals(images.get(0).hash(), images.get(1).hash(), "同一图片得到相同哈希");
+        assertNotEquals(images.get(0).hash(), images.get(2).hash());
+        assertArrayEquals(png, EmbeddedImages.decode(html, images.get(0)));
+
+        String rewritten = EmbeddedImages.rewrite(html, images,
+                image -> image.mimeType().equals("image/png") ? "/t/" + image.hash() : null);
+        assertEquals("<p>a</p><img src=\"/t/" + images.get(0).hash() + "\"><img src=\"/t/" + images.get(0).hash()
+                + "\"><img src=\"data:image/gif;base64,R0lG\">", rewritten);
+        assertSame(html, EmbeddedImages.rewrite(html, images, image -> null), "无替换时不复制");
+        assertTrue(EmbeddedImages.find("<p>无图片</p>").isEmpty());
+    }
+
+    @Test
+    void writesScaledJpegAndSkipsUnreadableImages() throws IOException {
+        service = new ThumbnailService(null, null, directory.toString(), 320, 1024, 0.8f, 1, 10, new SimpleMeterRegistry());
+        byte[] png = png(800, 600);
+        String hash = "0123456789abcdef0123456789abcdef";
+
+        assertTrue(service.writeThumbnail(png, hash));
+        Path file = service.find(hash).orElseThrow();
+        BufferedImage thumbnail = ImageIO.read(file.toFile());
+        assertEquals(320, thumbnail.getWidth());
+        assertEquals(240, thumbnail.getHeight());
+        assertTrue(Files.size(file) < png.length, "缩略图应远小于原图");
+
+        String other = "fedcba9876543210fedcba9876543210";
+        assertFalse(service.writeThumbnail("not an image".getBytes(), other));
+        assertTrue(service.find(other).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> service.find("../../etc/passwd"));
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(7);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt(0xFFFFFF));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.quiz.support;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * 基于 ThreadMXBean 的当前线程分配字节数统计
+ * MockMvc 在调用线程内同步处理请求，因此可直接度量单次请求的分配量
+ */
+public final class AllocationMeter {
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private AllocationMeter() {
+    }
+
+    public static boolean isSupported() {
+        return THREAD_MX_BEAN.isThreadAllocatedMemorySupported() && THREAD_MX_BEAN.isThreadAllocatedMemoryEnabled();
+    }
+
+    /**
+     * 执行任务并返回其间当前线程分配的字节数
+     */
+    public static long measure(ThrowingRunnable task) throws Exception {
+        long before = THREAD_MX_BEAN.getCurrentThreadAllocatedBytes();
+        task.run();
+        return THREAD_MX_BEAN.getCurrentThreadAllocatedBytes() - before;
+    }
+
+    @FunctionalInterface
+    public interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+}
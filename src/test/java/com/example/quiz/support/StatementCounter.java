@@ -0,0 +1,116 @@
+package com.example.quiz.support;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 包装 DataSource 统计执行的 SQL 语句数并记录预编译的 SQL，用于查询次数预算测试
+ * 通过 {@code @Import(StatementCounter.Config.class)} 启用
+ */
+public final class StatementCounter {
+
+    private static final Set<String> EXECUTE_METHODS = Set.of(
+            "execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+    private static final AtomicLong COUNT = new AtomicLong();
+    private static final ConcurrentLinkedQueue<String> PREPARED_SQL = new ConcurrentLinkedQueue<>();
+
+    private StatementCounter() {
+    }
+
+    public static void reset() {
+        COUNT.set(0);
+        PREPARED_SQL.clear();
+    }
+
+    public static long count() {
+        return COUNT.get();
+    }
+
+    /**
+     * 自上次 reset 以来预编译的 SQL（小写）
+     */
+    public static List<String> preparedSql() {
+        return PREPARED_SQL.stream().map(String::toLowerCase).toList();
+    }
+
+    static DataSource wrap(DataSource target) {
+        return proxy(DataSource.class, target, (proxy, method, args) -> {
+            Object result = invoke(target, method, args);
+            if (result instanceof Connection connection) {
+                return wrapConnection(connection);
+            }
+            return result;
+        });
+    }
+
+    private static Connection wrapConnection(Connection target) {
+        return proxy(Connection.class, target, (proxy, method, args) -> {
+            if (method.getName().startsWith("prepare") && args != null && args[0] instanceof String sql) {
+                PREPARED_SQL.add(sql);
+            }
+            Object result = invoke(target, method, args);
+            if (result instanceof Statement statement) {
+                return wrapStatement(statement, method.getReturnType());
+            }
+            return result;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Statement wrapStatement(Statement target, Class<?> type) {
+        return proxy((Class<Statement>) type, target, (proxy, method, args) -> {
+            if (EXECUTE_METHODS.contains(method.getName())) {
+                COUNT.incrementAndGet();
+            }
+            return invoke(target, method, args);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(StatementCounter.class.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if ("unwrap".equals(method.getName()) || "isWrapperFor".equals(method.getName())) {
+                return invoke(target, method, args);
+            }
+            return handler.invoke(proxy, method, args);
+        });
+    }
+
+    private static Object invoke(Object target, java.lang.reflect.Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @TestConfiguration
+    public static class Config {
+
+        @Bean
+        public static BeanPostProcessor statementCountingDataSourcePostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource dataSource) {
+                        return wrap(dataSource);
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+}
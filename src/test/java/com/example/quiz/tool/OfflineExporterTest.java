@@ -0,0 +1,77 @@
+package com.example.quiz.tool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 离线导出测试：备份来自内容拆表之前的旧版本（answers 表上带 content 列），导出时在还原出的副本上迁移后读取
+ */
+class OfflineExporterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void exportsBackupWithLegacyAnswerLayout() throws Exception {
+        Path backup = dir.resolve("pocdb_legacy.zip");
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:file:" + dir.resolve("legacy/pocdb"), "sa", "");
+             Statement st = connection.createStatement()) {
+            st.execute("CREATE TABLE users (id BIGINT AUTO_INCREMENT PRIMARY KEY, username VARCHAR(50) UNIQUE NOT NULL, "
+                    + "password VARCHAR(255) NOT NULL)");
+            st.execute("CREATE TABLE chapters (id BIGINT AUTO_INCREMENT PRIMARY KEY, title VARCHAR(200) NOT NULL, "
+                    + "description VARCHAR(1000), sort_order INT)");
+            st.execute("CREATE TABLE questions (id BIGINT AUTO_INCREMENT PRIMARY KEY, title VARCHAR(300) NOT NULL, "
+                    + "description VARCHAR(2000), question_number VARCHAR(20), sort_order INT, chapter_id BIGINT)");
+            st.execute("CREATE TABLE answers (id BIGINT AUTO_INCREMENT PRIMARY KEY, content CLOB, score DOUBLE, "
+                    + "remark VARCHAR(500), created_at TIMESTAMP, updated_at TIMESTAMP, "
+                    + "question_id BIGINT NOT NULL, user_id BIGINT NOT NULL)");
+            st.execute("INSERT INTO users (username, password) VALUES ('admin', '123456'), ('s1', 'p')");
+            st.execute("INSERT INTO chapters (title, sort_order) VALUES ('第一章', 1)");
+            st.execute("INSERT INTO questions (title, description, question_number, sort_order, chapter_id) "
+                    + "VALUES ('旧题目', '描述', '1.1', 1, 1)");
+            st.execute("INSERT INTO answers (content, score, created_at, updated_at, question_id, user_id) "
+                    + "VALUES ('<p>旧版本的答案</p>', 7, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, 1, 2)");
+            st.execute("BACKUP TO '" + backup + "'");
+        }
+
+        Path out = dir.resolve("export");
+        OfflineExporter.main(new String[]{"--backup=" + backup, "--out=" + out, "--threads=1",
+                "--images=" + dir.resolve("images")});
+
+        Path zip;
+        Path csv;
+        try (var files = Files.list(out)) {
+            zip = files.filter(path -> path.getFileName().toString().endsWith(".zip")).findFirst().orElseThrow();
+        }
+        try (var files = Files.list(out)) {
+            csv = files.filter(path -> path.getFileName().toString().endsWith(".csv")).findFirst().orElseThrow();
+        }
+        assertTrue(entry(zip, "s1.html").contains("<p>旧版本的答案</p>"));
+        assertTrue(Files.readString(csv, StandardCharsets.UTF_8).contains("旧题目"));
+        assertTrue(Files.readString(csv, StandardCharsets.UTF_8).contains("7"));
+    }
+
+    private static String entry(Path zip, String name) throws IOException {
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(zip))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                if (entry.getName().equals(name)) {
+                    return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                }
+            }
+        }
+        throw new AssertionError("missing zip entry " + name);
+    }
+}